@@ -180,6 +180,10 @@ public interface ShopkeepersPlugin extends Plugin {
 	 * The <code>shopkeeper.snapshot</code> permission.
 	 */
 	public static final String SNAPSHOT_PERMISSION = "shopkeeper.snapshot";
+	/**
+	 * The <code>shopkeeper.tradelog</code> permission.
+	 */
+	public static final String TRADE_LOG_PERMISSION = "shopkeeper.tradelog";
 	/**
 	 * The <code>shopkeeper.edit-villagers</code> permission.
 	 */
@@ -51,6 +51,9 @@ public interface Shopkeeper {
 	 * Note: This does not update items stored in the containers linked to the shopkeeper, e.g. for
 	 * player shops.
 	 * <p>
+	 * The items of snapshots that are not loaded yet may only be updated once the snapshots are
+	 * next accessed.
+	 * <p>
 	 * This modifies but does not automatically {@link #save() save} the shopkeeper.
 	 * 
 	 * @return the number of updated items
@@ -1,6 +1,7 @@
 package com.nisovin.shopkeepers.api.shopkeeper;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Stream;
@@ -242,6 +243,72 @@ public interface ShopkeeperRegistry {
 	// a single shopkeeper at the same location.
 	public Collection<? extends Shopkeeper> getShopkeepersAtLocation(Location location);
 
+	/**
+	 * Gets the shopkeepers inside the specified block area of the specified world.
+	 * <p>
+	 * All bounds are inclusive. Only the shopkeepers that are currently loaded are taken into
+	 * account.
+	 * 
+	 * @param worldName
+	 *            the world name
+	 * @param minX
+	 *            the minimum block x coordinate
+	 * @param minY
+	 *            the minimum block y coordinate
+	 * @param minZ
+	 *            the minimum block z coordinate
+	 * @param maxX
+	 *            the maximum block x coordinate
+	 * @param maxY
+	 *            the maximum block y coordinate
+	 * @param maxZ
+	 *            the maximum block z coordinate
+	 * @return an unmodifiable collection of the shopkeepers, may be empty
+	 */
+	public Collection<? extends Shopkeeper> getShopkeepersInArea(
+			String worldName,
+			int minX,
+			int minY,
+			int minZ,
+			int maxX,
+			int maxY,
+			int maxZ
+	);
+
+	/**
+	 * Gets the shopkeepers within the specified distance of the given location.
+	 * <p>
+	 * The distance is measured to the center of the shopkeepers' blocks. Only the shopkeepers that
+	 * are currently loaded are taken into account.
+	 * 
+	 * @param location
+	 *            the location
+	 * @param radius
+	 *            the radius, not negative
+	 * @return an unmodifiable collection of the shopkeepers, may be empty
+	 */
+	public Collection<? extends Shopkeeper> getShopkeepersInRadius(Location location, double radius);
+
+	/**
+	 * Gets up to the specified number of shopkeepers that are closest to the given location.
+	 * <p>
+	 * The distance is measured to the center of the shopkeepers' blocks. Only the shopkeepers that
+	 * are currently loaded are taken into account.
+	 * 
+	 * @param location
+	 *            the location
+	 * @param count
+	 *            the maximum number of shopkeepers to return, not negative
+	 * @param maxDistance
+	 *            the maximum distance of the returned shopkeepers to the location, not negative
+	 * @return an unmodifiable list of the shopkeepers, ordered by increasing distance, may be empty
+	 */
+	public List<? extends Shopkeeper> getNearestShopkeepers(
+			Location location,
+			int count,
+			double maxDistance
+	);
+
 	// BY SHOP OBJECT
 
 	/**
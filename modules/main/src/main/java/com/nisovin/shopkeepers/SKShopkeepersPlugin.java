@@ -34,12 +34,15 @@ import com.nisovin.shopkeepers.container.protection.RemoveShopOnContainerBreak;
 import com.nisovin.shopkeepers.debug.Debug;
 import com.nisovin.shopkeepers.debug.DebugOptions;
 import com.nisovin.shopkeepers.debug.events.EventDebugger;
+import com.nisovin.shopkeepers.debug.metrics.MetricsRegistry;
 import com.nisovin.shopkeepers.debug.trades.TradingCountListener;
 import com.nisovin.shopkeepers.dependencies.worldguard.WorldGuardDependency;
 import com.nisovin.shopkeepers.input.chat.ChatInput;
 import com.nisovin.shopkeepers.input.interaction.InteractionInput;
 import com.nisovin.shopkeepers.internals.SKApiInternals;
 import com.nisovin.shopkeepers.itemconversion.ItemConversions;
+import com.nisovin.shopkeepers.items.BulkItemUpdate;
+import com.nisovin.shopkeepers.items.ItemUpdates;
 import com.nisovin.shopkeepers.lang.Messages;
 import com.nisovin.shopkeepers.metrics.PluginMetrics;
 import com.nisovin.shopkeepers.moving.ShopkeeperMoving;
@@ -72,6 +75,7 @@ import com.nisovin.shopkeepers.villagers.RegularVillagers;
 import com.nisovin.shopkeepers.world.ForcingCreatureSpawner;
 import com.nisovin.shopkeepers.world.ForcingEntityTeleporter;
 import com.nisovin.shopkeepers.world.PlayerMap;
+import com.nisovin.shopkeepers.world.PlayerProximityIndex;
 
 public class SKShopkeepersPlugin extends JavaPlugin implements InternalShopkeepersPlugin {
 
@@ -99,6 +103,9 @@ public class SKShopkeepersPlugin extends JavaPlugin implements InternalShopkeepe
 
 	private final ApiInternals apiInternals = new SKApiInternals();
 
+	// Initialized first, since other components already retrieve their metrics during construction:
+	private final MetricsRegistry metricsRegistry = new MetricsRegistry(Unsafe.initialized(this));
+
 	// Shop types and shop object types registry:
 	private final SKShopTypesRegistry shopTypesRegistry = new SKShopTypesRegistry();
 	private final SKShopObjectTypesRegistry shopObjectTypesRegistry = new SKShopObjectTypesRegistry();
@@ -120,6 +127,9 @@ public class SKShopkeepersPlugin extends JavaPlugin implements InternalShopkeepe
 	private final ForcingCreatureSpawner forcingCreatureSpawner = new ForcingCreatureSpawner(Unsafe.initialized(this));
 	private final ForcingEntityTeleporter forcingEntityTeleporter = new ForcingEntityTeleporter(Unsafe.initialized(this));
 	private final PlayerMap playerMap = new PlayerMap(Unsafe.initialized(this));
+	private final PlayerProximityIndex playerProximityIndex = new PlayerProximityIndex(
+			Unsafe.initialized(this)
+	);
 	private final ItemConversions itemConversions = new ItemConversions(Unsafe.initialized(this));
 	private final Commands commands = new Commands(Unsafe.initialized(this));
 	private final ChatInput chatInput = new ChatInput(Unsafe.initialized(this));
@@ -356,9 +366,11 @@ public class SKShopkeepersPlugin extends JavaPlugin implements InternalShopkeepe
 		// we register default shop types, etc., during onLoad).
 		Bukkit.getPluginManager().callEvent(new ShopkeepersStartupEvent());
 
+		metricsRegistry.onEnable();
 		forcingCreatureSpawner.onEnable();
 		forcingEntityTeleporter.onEnable();
 		playerMap.onEnable();
+		playerProximityIndex.onEnable();
 
 		// Inform UI registry (registers UI event handlers):
 		uiRegistry.onEnable();
@@ -463,6 +475,9 @@ public class SKShopkeepersPlugin extends JavaPlugin implements InternalShopkeepe
 				this.getLogger()
 		);
 
+		// Cancel any running bulk item update:
+		BulkItemUpdate.onDisable();
+
 		// Inform UI registry about disable:
 		uiRegistry.onDisable();
 
@@ -526,9 +541,11 @@ public class SKShopkeepersPlugin extends JavaPlugin implements InternalShopkeepe
 		shopObjectTypesRegistry.clearAll();
 		uiRegistry.clearAll();
 
+		playerProximityIndex.onDisable();
 		playerMap.onDisable();
 		forcingEntityTeleporter.onDisable();
 		forcingCreatureSpawner.onDisable();
+		metricsRegistry.onDisable();
 
 		// Plugin metrics:
 		pluginMetrics.onDisable();
@@ -585,6 +602,14 @@ public class SKShopkeepersPlugin extends JavaPlugin implements InternalShopkeepe
 		return playerMap;
 	}
 
+	public PlayerProximityIndex getPlayerProximityIndex() {
+		return playerProximityIndex;
+	}
+
+	public MetricsRegistry getMetricsRegistry() {
+		return metricsRegistry;
+	}
+
 	// SHOPKEEPER REGISTRY
 
 	@Override
@@ -608,12 +633,18 @@ public class SKShopkeepersPlugin extends JavaPlugin implements InternalShopkeepe
 		// Note: Not safe to be called from inside inventory events!
 		uiRegistry.abortUISessions();
 
-		int updatedItems = Settings.getInstance().updateItems();
+		// Items that are used in many places, such as currency items, only trigger a single
+		// UpdateItemEvent:
+		ItemUpdates.Memo memo = new ItemUpdates.Memo();
+		int updatedItems = ItemUpdates.runMemoized(memo, Settings.getInstance()::updateItems);
 
-		int shopkeeperUpdatedItems = 0;
-		for (AbstractShopkeeper shopkeeper : shopkeeperRegistry.getAllShopkeepers()) {
-			shopkeeperUpdatedItems += shopkeeper.updateItems();
-		}
+		int shopkeeperUpdatedItems = ItemUpdates.runMemoized(memo, () -> {
+			int updatedShopkeeperItems = 0;
+			for (AbstractShopkeeper shopkeeper : shopkeeperRegistry.getAllShopkeepers()) {
+				updatedShopkeeperItems += shopkeeper.updateItems();
+			}
+			return updatedShopkeeperItems;
+		});
 		if (shopkeeperUpdatedItems > 0) {
 			updatedItems += shopkeeperUpdatedItems;
 			shopkeeperStorage.save();
@@ -761,4 +792,10 @@ public class SKShopkeepersPlugin extends JavaPlugin implements InternalShopkeepe
 	public TradeNotifications getTradeNotifications() {
 		return tradeNotifications;
 	}
+
+	// TRADE LOGGING
+
+	public TradeLoggers getTradeLoggers() {
+		return tradeLoggers;
+	}
 }
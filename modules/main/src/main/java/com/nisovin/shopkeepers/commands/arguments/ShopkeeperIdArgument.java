@@ -6,7 +6,7 @@ import java.util.stream.Stream;
 
 import org.bukkit.command.CommandSender;
 
-import com.nisovin.shopkeepers.api.ShopkeepersAPI;
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
 import com.nisovin.shopkeepers.api.internal.util.Unsafe;
 import com.nisovin.shopkeepers.api.shopkeeper.Shopkeeper;
 import com.nisovin.shopkeepers.commands.lib.CommandInput;
@@ -100,7 +100,9 @@ public class ShopkeeperIdArgument extends ObjectIdArgument<Integer> {
 		if (idPrefix.length() >= minimumCompletionInput) {
 			shopkeepersStream = Stream.concat(
 					targetedShopkeepers.stream(),
-					ShopkeepersAPI.getShopkeeperRegistry().getAllShopkeepers().stream()
+					// Does not load the deferred shopkeepers:
+					SKShopkeepersPlugin.getInstance().getShopkeeperRegistry().getLoadedShopkeepers()
+							.stream()
 							.filter(shopkeeper -> !targetedShopkeepers.contains(shopkeeper))
 			);
 		} else {
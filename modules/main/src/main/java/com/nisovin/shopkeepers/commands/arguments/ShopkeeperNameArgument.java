@@ -1,20 +1,19 @@
 package com.nisovin.shopkeepers.commands.arguments;
 
 import java.util.Collections;
-import java.util.Locale;
 import java.util.Objects;
 import java.util.stream.Stream;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
-import com.nisovin.shopkeepers.api.ShopkeepersAPI;
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
 import com.nisovin.shopkeepers.api.internal.util.Unsafe;
 import com.nisovin.shopkeepers.api.shopkeeper.Shopkeeper;
-import com.nisovin.shopkeepers.api.shopkeeper.ShopkeeperRegistry;
 import com.nisovin.shopkeepers.commands.lib.CommandInput;
 import com.nisovin.shopkeepers.commands.lib.argument.filter.ArgumentFilter;
 import com.nisovin.shopkeepers.commands.lib.arguments.ObjectNameArgument;
 import com.nisovin.shopkeepers.commands.lib.context.CommandContextView;
+import com.nisovin.shopkeepers.shopkeeper.registry.SKShopkeeperRegistry;
 import com.nisovin.shopkeepers.util.bukkit.TextUtils;
 import com.nisovin.shopkeepers.util.java.StringUtils;
 
@@ -77,25 +76,33 @@ public class ShopkeeperNameArgument extends ObjectNameArgument {
 			return Collections.emptyList();
 		}
 
+		SKShopkeeperRegistry shopkeeperRegistry = SKShopkeepersPlugin.getInstance()
+				.getShopkeeperRegistry();
+		// TODO CheckerFramework complains when using a wildcard Stream here.
+		Stream<Shopkeeper> shopkeepers;
 		// Strips color, normalizes whitespace, converts to lowercase:
 		String normalizedNamePrefix = StringUtils.normalize(TextUtils.stripColor(namePrefix));
-		// TODO Improve by using a TreeMap for the prefix matching?
-		ShopkeeperRegistry shopkeeperRegistry = ShopkeepersAPI.getShopkeeperRegistry();
-		// TODO CheckerFramework complains when using a wildcard Stream here.
-		Stream<Shopkeeper> shopkeepers = Unsafe.castNonNull(shopkeeperRegistry.getAllShopkeepers().stream());
+		if (normalizedNamePrefix.isEmpty()) {
+			// Does not load the deferred shopkeepers:
+			shopkeepers = Unsafe.castNonNull(shopkeeperRegistry.getLoadedShopkeepers().stream());
+		} else {
+			// Uses the registry's name index: The shopkeepers are sorted by their normalized names,
+			// and the stream is lazily evaluated, so we only inspect the shopkeepers that are
+			// required to fill the suggestions.
+			shopkeepers = Unsafe.castNonNull(
+					shopkeeperRegistry.getShopkeepersByNamePrefix(normalizedNamePrefix)
+			);
+		}
 		Iterable<String> suggestions = shopkeepers
 				.filter(shopkeeper -> shopkeeperFilter.test(input, context, shopkeeper))
 				.<@Nullable String>map(shopkeeper -> {
 					String name = TextUtils.stripColor(shopkeeper.getName());
-					if (name.isEmpty()) return null;
-					String normalizedWithCase = StringUtils.normalizeKeepCase(name);
-					String normalized = normalizedWithCase.toLowerCase(Locale.ROOT);
-					if (normalized.startsWith(normalizedNamePrefix)) {
-						return normalizedWithCase;
-					}
-					return null; // No match
+					if (name.isEmpty()) return null; // Has no name
+					return StringUtils.normalizeKeepCase(name);
 				}).filter(Objects::nonNull)
-				.map(Unsafe::assertNonNull)::iterator;
+				.map(Unsafe::assertNonNull)
+				.distinct()
+				.limit(MAX_SUGGESTIONS)::iterator;
 		return suggestions;
 	}
 
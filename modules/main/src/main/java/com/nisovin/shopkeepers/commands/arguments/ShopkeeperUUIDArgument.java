@@ -7,7 +7,7 @@ import java.util.stream.Stream;
 
 import org.bukkit.command.CommandSender;
 
-import com.nisovin.shopkeepers.api.ShopkeepersAPI;
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
 import com.nisovin.shopkeepers.api.internal.util.Unsafe;
 import com.nisovin.shopkeepers.api.shopkeeper.Shopkeeper;
 import com.nisovin.shopkeepers.commands.lib.CommandInput;
@@ -90,7 +90,9 @@ public class ShopkeeperUUIDArgument extends ObjectUUIDArgument {
 			// TODO Improve by using a TreeMap for the prefix matching?
 			shopkeepersStream = Stream.concat(
 					targetedShopkeepers.stream(),
-					ShopkeepersAPI.getShopkeeperRegistry().getAllShopkeepers().stream()
+					// Does not load the deferred shopkeepers:
+					SKShopkeepersPlugin.getInstance().getShopkeeperRegistry().getLoadedShopkeepers()
+							.stream()
 							.filter(shopkeeper -> !targetedShopkeepers.contains(shopkeeper))
 			);
 		} else {
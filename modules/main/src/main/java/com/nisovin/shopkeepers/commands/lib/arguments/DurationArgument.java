@@ -0,0 +1,101 @@
+package com.nisovin.shopkeepers.commands.lib.arguments;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.commands.lib.CommandInput;
+import com.nisovin.shopkeepers.commands.lib.argument.ArgumentParseException;
+import com.nisovin.shopkeepers.commands.lib.argument.ArgumentsReader;
+import com.nisovin.shopkeepers.commands.lib.argument.CommandArgument;
+import com.nisovin.shopkeepers.commands.lib.context.CommandContextView;
+
+/**
+ * Parses a positive {@link Duration} that is specified as a sequence of amounts with time units,
+ * e.g. {@code 30m}, {@code 12h}, {@code 7d}, or {@code 1d12h}.
+ * <p>
+ * Supported time units are {@code s} (seconds), {@code m} (minutes), {@code h} (hours), {@code d}
+ * (days), and {@code w} (weeks).
+ */
+public class DurationArgument extends CommandArgument<Duration> {
+
+	private static final Pattern DURATION_PATTERN = Pattern.compile("(?:\\d+[smhdw])+");
+	private static final Pattern COMPONENT_PATTERN = Pattern.compile("(\\d+)([smhdw])");
+
+	/**
+	 * Parses the given duration.
+	 * 
+	 * @param input
+	 *            the input
+	 * @return the positive duration, or <code>null</code> if the input is not a valid duration
+	 */
+	public static @Nullable Duration parseDuration(String input) {
+		String lowerCaseInput = input.toLowerCase(Locale.ROOT);
+		if (!DURATION_PATTERN.matcher(lowerCaseInput).matches()) return null;
+
+		Duration duration = Duration.ZERO;
+		Matcher matcher = COMPONENT_PATTERN.matcher(lowerCaseInput);
+		try {
+			while (matcher.find()) {
+				long amount = Long.parseLong(matcher.group(1));
+				switch (matcher.group(2)) {
+				case "s":
+					duration = duration.plusSeconds(amount);
+					break;
+				case "m":
+					duration = duration.plusMinutes(amount);
+					break;
+				case "h":
+					duration = duration.plusHours(amount);
+					break;
+				case "d":
+					duration = duration.plusDays(amount);
+					break;
+				case "w":
+				default:
+					duration = duration.plusDays(Math.multiplyExact(amount, 7L));
+					break;
+				}
+			}
+		} catch (ArithmeticException | NumberFormatException e) {
+			return null; // Too large
+		}
+		if (duration.isZero()) return null;
+		return duration;
+	}
+
+	public DurationArgument(String name) {
+		super(name);
+	}
+
+	@Override
+	public Duration parseValue(
+			CommandInput input,
+			CommandContextView context,
+			ArgumentsReader argsReader
+	) throws ArgumentParseException {
+		if (!argsReader.hasNext()) {
+			throw this.missingArgumentError();
+		}
+		String argument = argsReader.next();
+		Duration value = parseDuration(argument);
+		if (value == null) {
+			throw this.invalidArgumentError(argument);
+		}
+		return value;
+	}
+
+	@Override
+	public List<? extends String> complete(
+			CommandInput input,
+			CommandContextView context,
+			ArgumentsReader argsReader
+	) {
+		return Collections.emptyList();
+	}
+}
@@ -28,9 +28,11 @@ import com.nisovin.shopkeepers.commands.lib.arguments.FirstOfArgument;
 import com.nisovin.shopkeepers.commands.lib.arguments.LiteralArgument;
 import com.nisovin.shopkeepers.commands.lib.context.CommandContextView;
 import com.nisovin.shopkeepers.config.Settings;
+import com.nisovin.shopkeepers.debug.metrics.MetricsRegistry;
 import com.nisovin.shopkeepers.shopkeeper.activation.ShopkeeperChunkActivator;
 import com.nisovin.shopkeepers.shopkeeper.registry.SKShopkeeperRegistry;
 import com.nisovin.shopkeepers.shopkeeper.spawning.ShopkeeperSpawner;
+import com.nisovin.shopkeepers.shopkeeper.ticking.ShopkeeperTicker;
 import com.nisovin.shopkeepers.shopobjects.living.LivingEntityAI;
 import com.nisovin.shopkeepers.text.Text;
 import com.nisovin.shopkeepers.util.bukkit.TextUtils;
@@ -41,11 +43,13 @@ class CommandCheck extends Command {
 
 	private static final String ARGUMENT_CHUNKS = "chunks";
 	private static final String ARGUMENT_ACTIVE = "active";
+	private static final String ARGUMENT_METRICS = "metrics";
 
 	private final SKShopkeepersPlugin plugin;
 	private final SKShopkeeperRegistry shopkeeperRegistry;
 	private final ShopkeeperSpawner shopkeeperSpawner;
 	private final ShopkeeperChunkActivator chunkActivator;
+	private final ShopkeeperTicker shopkeeperTicker;
 
 	CommandCheck(SKShopkeepersPlugin plugin) {
 		super("check");
@@ -53,6 +57,7 @@ class CommandCheck extends Command {
 		this.shopkeeperRegistry = plugin.getShopkeeperRegistry();
 		this.shopkeeperSpawner = shopkeeperRegistry.getShopkeeperSpawner();
 		this.chunkActivator = shopkeeperRegistry.getChunkActivator();
+		this.shopkeeperTicker = shopkeeperRegistry.getShopkeeperTicker();
 
 		// Set permission:
 		this.setPermission(ShopkeepersPlugin.DEBUG_PERMISSION);
@@ -66,7 +71,8 @@ class CommandCheck extends Command {
 		// Arguments:
 		this.addArgument(new FirstOfArgument("context", Arrays.asList(
 				new LiteralArgument(ARGUMENT_CHUNKS),
-				new LiteralArgument(ARGUMENT_ACTIVE)
+				new LiteralArgument(ARGUMENT_ACTIVE),
+				new LiteralArgument(ARGUMENT_METRICS)
 		), true).optional()); // Join formats
 	}
 
@@ -78,6 +84,11 @@ class CommandCheck extends Command {
 		boolean listChunks = context.has(ARGUMENT_CHUNKS);
 		boolean listActive = context.has(ARGUMENT_ACTIVE);
 
+		if (context.has(ARGUMENT_METRICS)) {
+			this.sendMetrics(sender);
+			return;
+		}
+
 		LivingEntityAI livingEntityAI = plugin.getLivingShops().getLivingEntityAI();
 
 		int totalChunksWithShopkeepers = shopkeeperRegistry.getWorldsWithShopkeepers().stream()
@@ -86,8 +97,10 @@ class CommandCheck extends Command {
 				.sum();
 
 		sender.sendMessage(ChatColor.YELLOW + "All shopkeepers:");
-		sender.sendMessage("  Total: " + shopkeeperRegistry.getAllShopkeepers().size()
-				+ "    (Virtual: " + shopkeeperRegistry.getVirtualShopkeepers().size() + ")");
+		// Does not load the deferred shopkeepers:
+		sender.sendMessage("  Total: " + shopkeeperRegistry.getShopkeeperCount()
+				+ "    (Virtual: " + shopkeeperRegistry.getVirtualShopkeepers().size()
+				+ ", Deferred: " + shopkeeperRegistry.getDeferredShopkeeperCount() + ")");
 		sender.sendMessage("  Unsaved dirty | deleted | dirty storage: "
 				+ plugin.getShopkeeperStorage().getUnsavedDirtyShopkeepersCount()
 				+ " | " + plugin.getShopkeeperStorage().getUnsavedDeletedShopkeepersCount()
@@ -103,6 +116,10 @@ class CommandCheck extends Command {
 		TaskQueueStatistics spawnQueueStatistics = shopkeeperSpawner.getSpawnQueueStatistics();
 		sender.sendMessage("  Pending shopkeeper spawns | max: " + spawnQueueStatistics.getPendingCount()
 				+ " | " + spawnQueueStatistics.getMaxPendingCount());
+		sender.sendMessage("    Spawn wait times (p50 | p95 | p99): "
+				+ TextUtils.format(spawnQueueStatistics.getWaitTimePercentileMillis(50)) + " ms"
+				+ " | " + TextUtils.format(spawnQueueStatistics.getWaitTimePercentileMillis(95)) + " ms"
+				+ " | " + TextUtils.format(spawnQueueStatistics.getWaitTimePercentileMillis(99)) + " ms");
 
 		Timings chunkActivationTimings = chunkActivator.getChunkActivationTimings();
 		double avgChunkActivationTimings = chunkActivationTimings.getAverageTimeMillis();
@@ -110,7 +127,14 @@ class CommandCheck extends Command {
 		sender.sendMessage("  Chunk activation timings (avg | max | cnt): "
 				+ TextUtils.format(avgChunkActivationTimings) + " ms"
 				+ " | " + TextUtils.format(maxChunkActivationTimings) + " ms"
-				+ " | " + chunkActivationTimings.getCounter());
+				+ " | " + chunkActivationTimings.getCounter()
+				+ "    (Pending: " + chunkActivator.getPendingChunkActivationsCount() + ")");
+
+		Timings tickTimings = shopkeeperTicker.getTickTimings();
+		sender.sendMessage("  Shopkeeper tick timings (per tick) (avg | max): "
+				+ TextUtils.format(tickTimings.getAverageTimeMillis()) + " ms"
+				+ " | " + TextUtils.format(tickTimings.getMaxTimeMillis()) + " ms"
+				+ "    (Queued: " + shopkeeperTicker.getQueuedShopkeepersCount() + ")");
 
 		double avgTotalAITimings = livingEntityAI.getTotalTimings().getAverageTimeMillis();
 		double maxTotalAITiming = livingEntityAI.getTotalTimings().getMaxTimeMillis();
@@ -119,13 +143,12 @@ class CommandCheck extends Command {
 				+ TextUtils.format(avgTotalAITimings) + " ms"
 				+ " | " + TextUtils.format(maxTotalAITiming) + " ms");
 
-		// Note: These are per activation, which happens only every 20 ticks (not per tick).
-		double avgAIActivationTimings = livingEntityAI.getActivationTimings().getAverageTimeMillis();
-		double maxAIActivationTiming = livingEntityAI.getActivationTimings().getMaxTimeMillis();
-		sender.sendMessage("    AI activation timings (per "
-				+ LivingEntityAI.AI_ACTIVATION_TICK_RATE + " ticks) (avg | max): "
-				+ TextUtils.format(avgAIActivationTimings) + " ms"
-				+ " | " + TextUtils.format(maxAIActivationTiming) + " ms");
+		// Note: These are per player chunk change, and include the AI and chunk activations.
+		Timings proximityTimings = plugin.getPlayerProximityIndex().getUpdateTimings();
+		sender.sendMessage("    Player proximity timings (per chunk change) (avg | max | cnt): "
+				+ TextUtils.format(proximityTimings.getAverageTimeMillis()) + " ms"
+				+ " | " + TextUtils.format(proximityTimings.getMaxTimeMillis()) + " ms"
+				+ " | " + proximityTimings.getCounter());
 
 		double avgGravityTimings = livingEntityAI.getGravityTimings().getAverageTimeMillis();
 		double maxGravityTiming = livingEntityAI.getGravityTimings().getMaxTimeMillis();
@@ -240,4 +263,11 @@ class CommandCheck extends Command {
 			sender.sendMessage("More information is printed when the command is run from console.");
 		}
 	}
+
+	private void sendMetrics(CommandSender sender) {
+		sender.sendMessage(ChatColor.YELLOW + "Performance metrics (since plugin start):");
+		plugin.getMetricsRegistry().getHistograms().forEach((name, histogram) -> {
+			sender.sendMessage("  " + name + ": " + MetricsRegistry.getSummary(histogram));
+		});
+	}
 }
@@ -1,19 +1,15 @@
 package com.nisovin.shopkeepers.commands.shopkeepers;
 
-import java.util.concurrent.TimeUnit;
-
 import org.bukkit.command.CommandSender;
 
-import com.nisovin.shopkeepers.api.ShopkeepersAPI;
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
 import com.nisovin.shopkeepers.api.ShopkeepersPlugin;
 import com.nisovin.shopkeepers.commands.lib.Command;
 import com.nisovin.shopkeepers.commands.lib.CommandException;
 import com.nisovin.shopkeepers.commands.lib.CommandInput;
 import com.nisovin.shopkeepers.commands.lib.context.CommandContextView;
-import com.nisovin.shopkeepers.debug.DebugOptions;
+import com.nisovin.shopkeepers.items.BulkItemUpdate;
 import com.nisovin.shopkeepers.lang.Messages;
-import com.nisovin.shopkeepers.util.bukkit.TextUtils;
-import com.nisovin.shopkeepers.util.logging.Log;
 
 class CommandUpdateItems extends Command {
 
@@ -30,13 +26,10 @@ class CommandUpdateItems extends Command {
 	protected void execute(CommandInput input, CommandContextView context) throws CommandException {
 		CommandSender sender = input.getSender();
 
-		long startNanos = System.nanoTime();
-		int updatedItems = ShopkeepersAPI.updateItems();
-		long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
-
-		Log.debug(DebugOptions.itemUpdates, "Updated " + updatedItems + " items (" + durationMillis
-				+ " ms).");
-
-		TextUtils.sendMessage(sender, Messages.itemsUpdated, "count", updatedItems);
+		// The items are updated over multiple ticks. The sender is informed once the item update
+		// has completed.
+		if (!BulkItemUpdate.start(SKShopkeepersPlugin.getInstance(), sender)) {
+			throw new CommandException(Messages.itemsUpdateAlreadyRunning);
+		}
 	}
 }
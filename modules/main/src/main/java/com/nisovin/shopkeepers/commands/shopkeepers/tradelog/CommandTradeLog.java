@@ -0,0 +1,30 @@
+package com.nisovin.shopkeepers.commands.shopkeepers.tradelog;
+
+import java.util.Arrays;
+
+import com.nisovin.shopkeepers.api.ShopkeepersPlugin;
+import com.nisovin.shopkeepers.api.internal.util.Unsafe;
+import com.nisovin.shopkeepers.commands.lib.Command;
+import com.nisovin.shopkeepers.commands.lib.CommandRegistry;
+import com.nisovin.shopkeepers.tradelog.TradeLoggers;
+
+public class CommandTradeLog extends Command {
+
+	public CommandTradeLog(TradeLoggers tradeLoggers) {
+		super("tradelog", Arrays.asList("tradelogs"));
+
+		// Set permission:
+		this.setPermission(ShopkeepersPlugin.TRADE_LOG_PERMISSION);
+
+		// Flatten in help:
+		this.setHiddenInOwnHelp(true);
+		this.setHiddenInParentHelp(true);
+		this.setIncludeChildsInParentHelp(true);
+
+		// Register child commands:
+		CommandRegistry childCommands = this.getChildCommands();
+		childCommands.register(new CommandTradeLogHelp(Unsafe.initialized(this)));
+		childCommands.register(new CommandTradeLogShop(tradeLoggers));
+		childCommands.register(new CommandTradeLogPlayer(tradeLoggers));
+	}
+}
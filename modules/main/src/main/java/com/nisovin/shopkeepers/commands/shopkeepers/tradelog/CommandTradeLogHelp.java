@@ -0,0 +1,19 @@
+package com.nisovin.shopkeepers.commands.shopkeepers.tradelog;
+
+import java.util.Arrays;
+
+import com.nisovin.shopkeepers.api.ShopkeepersPlugin;
+import com.nisovin.shopkeepers.commands.lib.commands.HelpCommand;
+
+public class CommandTradeLogHelp extends HelpCommand {
+
+	public CommandTradeLogHelp(CommandTradeLog helpSource) {
+		super("help", Arrays.asList("?"), helpSource);
+
+		// Set permission:
+		this.setPermission(ShopkeepersPlugin.TRADE_LOG_PERMISSION);
+
+		// Hidden to reduce the number of commands shown in the parent help:
+		this.setHiddenInParentHelp(true);
+	}
+}
@@ -0,0 +1,84 @@
+package com.nisovin.shopkeepers.commands.shopkeepers.tradelog;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.api.ShopkeepersPlugin;
+import com.nisovin.shopkeepers.commands.lib.Command;
+import com.nisovin.shopkeepers.commands.lib.CommandException;
+import com.nisovin.shopkeepers.commands.lib.CommandInput;
+import com.nisovin.shopkeepers.commands.lib.arguments.DurationArgument;
+import com.nisovin.shopkeepers.commands.lib.arguments.FirstOfArgument;
+import com.nisovin.shopkeepers.commands.lib.arguments.PlayerArgument;
+import com.nisovin.shopkeepers.commands.lib.arguments.PlayerUUIDArgument;
+import com.nisovin.shopkeepers.commands.lib.arguments.PositiveIntegerArgument;
+import com.nisovin.shopkeepers.commands.lib.arguments.SenderPlayerFallback;
+import com.nisovin.shopkeepers.commands.lib.context.CommandContextView;
+import com.nisovin.shopkeepers.lang.Messages;
+import com.nisovin.shopkeepers.tradelog.TradeLoggers;
+import com.nisovin.shopkeepers.tradelog.query.TradeLogQuery;
+import com.nisovin.shopkeepers.util.bukkit.TextUtils;
+
+class CommandTradeLogPlayer extends Command {
+
+	private static final String ARGUMENT_PLAYER = "player";
+	private static final String ARGUMENT_PLAYER_UUID = "player:uuid";
+	private static final String ARGUMENT_PLAYER_ONLINE = "player:online";
+
+	private final TradeLoggers tradeLoggers;
+
+	CommandTradeLogPlayer(TradeLoggers tradeLoggers) {
+		super("player");
+		this.tradeLoggers = tradeLoggers;
+
+		// Set permission:
+		this.setPermission(ShopkeepersPlugin.TRADE_LOG_PERMISSION);
+
+		// Set description:
+		this.setDescription(Messages.commandDescriptionTradeLogPlayer);
+
+		// Arguments:
+		// Offline players can only be specified by uuid, since the trade logs are indexed by uuid.
+		this.addArgument(new FirstOfArgument(ARGUMENT_PLAYER, Arrays.asList(
+				new PlayerUUIDArgument(ARGUMENT_PLAYER_UUID), // Accepts any uuid
+				new SenderPlayerFallback(new PlayerArgument(ARGUMENT_PLAYER_ONLINE))
+		), false)); // Don't join formats
+		this.addArgument(new DurationArgument(TradeLogCommandUtils.ARGUMENT_SINCE).optional());
+		this.addArgument(new PositiveIntegerArgument(TradeLogCommandUtils.ARGUMENT_PAGE)
+				.orDefaultValue(1));
+	}
+
+	@Override
+	protected void execute(CommandInput input, CommandContextView context) throws CommandException {
+		CommandSender sender = input.getSender();
+		UUID playerUUID = context.getOrNull(ARGUMENT_PLAYER_UUID);
+		@Nullable String playerName = null;
+		if (playerUUID == null) {
+			Player player = context.get(ARGUMENT_PLAYER_ONLINE);
+			playerUUID = player.getUniqueId();
+			playerName = player.getName();
+		}
+		Duration since = context.getOrNull(TradeLogCommandUtils.ARGUMENT_SINCE);
+		int page = context.get(TradeLogCommandUtils.ARGUMENT_PAGE);
+
+		UUID targetPlayerUUID = playerUUID;
+		@Nullable String targetPlayerName = playerName;
+		TradeLogQuery query = TradeLogQuery.ofPlayer(
+				targetPlayerUUID,
+				TradeLogCommandUtils.getSince(since),
+				page,
+				TradeLogCommandUtils.ENTRIES_PER_PAGE
+		);
+		TradeLogCommandUtils.queryTrades(tradeLoggers, sender, query, () -> {
+			TextUtils.sendMessage(sender, Messages.tradeLogPlayerHeader,
+					"player", TextUtils.getPlayerText(targetPlayerName, targetPlayerUUID),
+					"page", page
+			);
+		});
+	}
+}
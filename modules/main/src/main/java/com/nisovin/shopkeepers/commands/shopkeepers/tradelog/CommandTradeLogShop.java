@@ -0,0 +1,69 @@
+package com.nisovin.shopkeepers.commands.shopkeepers.tradelog;
+
+import java.time.Duration;
+
+import org.bukkit.command.CommandSender;
+
+import com.nisovin.shopkeepers.api.ShopkeepersPlugin;
+import com.nisovin.shopkeepers.commands.arguments.ShopkeeperArgument;
+import com.nisovin.shopkeepers.commands.arguments.TargetShopkeeperFallback;
+import com.nisovin.shopkeepers.commands.lib.Command;
+import com.nisovin.shopkeepers.commands.lib.CommandException;
+import com.nisovin.shopkeepers.commands.lib.CommandInput;
+import com.nisovin.shopkeepers.commands.lib.arguments.DurationArgument;
+import com.nisovin.shopkeepers.commands.lib.arguments.PositiveIntegerArgument;
+import com.nisovin.shopkeepers.commands.lib.context.CommandContextView;
+import com.nisovin.shopkeepers.commands.util.ShopkeeperArgumentUtils.TargetShopkeeperFilter;
+import com.nisovin.shopkeepers.lang.Messages;
+import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
+import com.nisovin.shopkeepers.tradelog.TradeLoggers;
+import com.nisovin.shopkeepers.tradelog.query.TradeLogQuery;
+import com.nisovin.shopkeepers.util.bukkit.TextUtils;
+
+class CommandTradeLogShop extends Command {
+
+	private static final String ARGUMENT_SHOPKEEPER = "shopkeeper";
+
+	private final TradeLoggers tradeLoggers;
+
+	CommandTradeLogShop(TradeLoggers tradeLoggers) {
+		super("shop");
+		this.tradeLoggers = tradeLoggers;
+
+		// Set permission:
+		this.setPermission(ShopkeepersPlugin.TRADE_LOG_PERMISSION);
+
+		// Set description:
+		this.setDescription(Messages.commandDescriptionTradeLogShop);
+
+		// Arguments:
+		this.addArgument(new TargetShopkeeperFallback(
+				new ShopkeeperArgument(ARGUMENT_SHOPKEEPER),
+				TargetShopkeeperFilter.ANY
+		));
+		this.addArgument(new DurationArgument(TradeLogCommandUtils.ARGUMENT_SINCE).optional());
+		this.addArgument(new PositiveIntegerArgument(TradeLogCommandUtils.ARGUMENT_PAGE)
+				.orDefaultValue(1));
+	}
+
+	@Override
+	protected void execute(CommandInput input, CommandContextView context) throws CommandException {
+		CommandSender sender = input.getSender();
+		AbstractShopkeeper shopkeeper = context.get(ARGUMENT_SHOPKEEPER);
+		Duration since = context.getOrNull(TradeLogCommandUtils.ARGUMENT_SINCE);
+		int page = context.get(TradeLogCommandUtils.ARGUMENT_PAGE);
+
+		TradeLogQuery query = TradeLogQuery.ofShop(
+				shopkeeper.getUniqueId(),
+				TradeLogCommandUtils.getSince(since),
+				page,
+				TradeLogCommandUtils.ENTRIES_PER_PAGE
+		);
+		TradeLogCommandUtils.queryTrades(tradeLoggers, sender, query, () -> {
+			Messages.tradeLogShopHeader.setPlaceholderArguments(
+					shopkeeper.getMessageArguments("shop_")
+			);
+			TextUtils.sendMessage(sender, Messages.tradeLogShopHeader, "page", page);
+		});
+	}
+}
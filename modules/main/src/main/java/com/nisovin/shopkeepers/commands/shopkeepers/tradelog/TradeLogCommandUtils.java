@@ -0,0 +1,111 @@
+package com.nisovin.shopkeepers.commands.shopkeepers.tradelog;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.config.Settings.DerivedSettings;
+import com.nisovin.shopkeepers.lang.Messages;
+import com.nisovin.shopkeepers.tradelog.TradeLoggers;
+import com.nisovin.shopkeepers.tradelog.query.LoggedTrade;
+import com.nisovin.shopkeepers.tradelog.query.LoggedTrade.LoggedItem;
+import com.nisovin.shopkeepers.tradelog.query.TradeLogQuery;
+import com.nisovin.shopkeepers.tradelog.query.TradeLogQueryResult;
+import com.nisovin.shopkeepers.util.bukkit.TextUtils;
+
+final class TradeLogCommandUtils {
+
+	static final String ARGUMENT_SINCE = "since";
+	static final String ARGUMENT_PAGE = "page";
+
+	static final int ENTRIES_PER_PAGE = 8;
+
+	static @Nullable Instant getSince(@Nullable Duration duration) {
+		if (duration == null) return null;
+		return Instant.now().minus(duration);
+	}
+
+	/**
+	 * Asynchronously runs the given query and sends the found trades to the given command sender.
+	 * 
+	 * @param tradeLoggers
+	 *            the trade loggers
+	 * @param sender
+	 *            the command sender
+	 * @param query
+	 *            the query
+	 * @param sendHeader
+	 *            sends the header of the query result to the command sender
+	 */
+	static void queryTrades(
+			TradeLoggers tradeLoggers,
+			CommandSender sender,
+			TradeLogQuery query,
+			Runnable sendHeader
+	) {
+		boolean started = tradeLoggers.queryTrades(
+				query,
+				result -> {
+					if (!isStillAvailable(sender)) return;
+					sendHeader.run();
+					sendResult(sender, result);
+				},
+				error -> {
+					if (!isStillAvailable(sender)) return;
+					TextUtils.sendMessage(sender, Messages.tradeLogQueryFailed);
+				}
+		);
+		if (!started) {
+			TextUtils.sendMessage(sender, Messages.tradeLogUnavailable);
+			return;
+		}
+		TextUtils.sendMessage(sender, Messages.tradeLogQueryStarted);
+	}
+
+	// The player might have left while the query was running.
+	private static boolean isStillAvailable(CommandSender sender) {
+		return !(sender instanceof Player) || ((Player) sender).isOnline();
+	}
+
+	private static void sendResult(CommandSender sender, TradeLogQueryResult result) {
+		if (result.getTrades().isEmpty()) {
+			TextUtils.sendMessage(sender, Messages.tradeLogNoTrades);
+			return;
+		}
+
+		for (LoggedTrade trade : result.getTrades()) {
+			LoggedItem item2 = trade.getItem2();
+			TextUtils.sendMessage(sender, Messages.tradeLogEntry,
+					"timestamp", (Supplier<?>) () -> DerivedSettings.dateTimeFormatter.format(
+							trade.getTimestamp()
+					),
+					"player", trade.getPlayer().getName(),
+					"playerUUID", trade.getPlayer().getUniqueId(),
+					"shopUUID", trade.getShopUniqueId(),
+					"shopType", trade.getShopTypeId(),
+					"item1Type", trade.getItem1().getType(),
+					"item1Amount", trade.getItem1().getAmount(),
+					// Includes its own separator, so that it can be omitted if there is no second
+					// item:
+					"item2", (item2 == null) ? ""
+							: (" + " + item2.getAmount() + "x " + item2.getType()),
+					"resultItemType", trade.getResultItem().getType(),
+					"resultItemAmount", trade.getResultItem().getAmount(),
+					"tradeCount", trade.getTradeCount()
+			);
+		}
+
+		if (result.hasMore()) {
+			TextUtils.sendMessage(sender, Messages.tradeLogMorePages,
+					"nextPage", result.getQuery().getPage() + 1
+			);
+		}
+	}
+
+	private TradeLogCommandUtils() {
+	}
+}
@@ -42,6 +42,7 @@ import com.nisovin.shopkeepers.shopcreation.ShopCreationItem;
 import com.nisovin.shopkeepers.shopkeeper.TradingRecipeDraft;
 import com.nisovin.shopkeepers.shopobjects.living.types.MagmaCubeShop;
 import com.nisovin.shopkeepers.shopobjects.living.types.SlimeShop;
+import com.nisovin.shopkeepers.storage.SaveFormat;
 import com.nisovin.shopkeepers.tradelog.TradeLogStorageType;
 import com.nisovin.shopkeepers.util.bukkit.ConfigUtils;
 import com.nisovin.shopkeepers.util.bukkit.EntityUtils;
@@ -63,6 +64,8 @@ public class Settings extends Config {
 	// See DebugOptions for all available options.
 	public static List<String> debugOptions = new ArrayList<>(0);
 	public static boolean enableMetrics = true;
+	public static int performanceMetricsLogIntervalSeconds = 0;
+	public static boolean performanceMetricsExportFile = false;
 
 	/*
 	 * Messages
@@ -73,6 +76,12 @@ public class Settings extends Config {
 	 * Shopkeeper Data
 	 */
 	public static boolean saveInstantly = true;
+	public static SaveFormat saveFormat = SaveFormat.YAML;
+	public static int saveSegmentSize = 0;
+	public static boolean saveJournal = false;
+	public static int saveJournalCompactionThreshold = 500;
+	public static int loadThreads = 1;
+	public static boolean lazyShopkeeperLoading = false;
 
 	public static boolean convertPlayerItems = false;
 	public static boolean convertAllPlayerItems = true;
@@ -215,6 +224,7 @@ public class Settings extends Config {
 
 	public static boolean disableGravity = false;
 	public static int gravityChunkRange = 4;
+	public static boolean gravityGroundCache = false;
 
 	// A tick period of 4 and higher is clearly noticeable, especially when entities are affected by
 	// gravity.
@@ -223,6 +233,10 @@ public class Settings extends Config {
 	// The gravity updates at a tick period of 2 actually appear less smooth in my testing than at a
 	// period of 3 (maybe due to some interpolation artifact by the client).
 	public static int mobBehaviorTickPeriod = 3;
+	public static int shopkeeperTickBudgetMillis = 2;
+	public static int chunkActivationBudgetMillis = 2;
+	public static int itemUpdateBudgetMillis = 2;
+	public static boolean livingShopEventDrivenChecks = false;
 
 	public static boolean shulkerPeekIfPlayerNearby = true;
 	public static float shulkerPeekHeight = 0.3F;
@@ -842,6 +856,19 @@ public class Settings extends Config {
 
 	@Override
 	protected void validateSettings() {
+		if (saveSegmentSize < 0) {
+			Log.warning(this.getLogPrefix() + "'save-segment-size' cannot be negative.");
+			saveSegmentSize = 0;
+		}
+		if (saveJournalCompactionThreshold <= 0) {
+			Log.warning(this.getLogPrefix()
+					+ "'save-journal-compaction-threshold' has to be positive.");
+			saveJournalCompactionThreshold = 1;
+		}
+		if (loadThreads < 0) {
+			Log.warning(this.getLogPrefix() + "'load-threads' cannot be negative.");
+			loadThreads = 0;
+		}
 		if (maxContainerDistance > 50) {
 			Log.warning(this.getLogPrefix() + "'max-container-distance' can be at most 50.");
 			maxContainerDistance = 50;
@@ -854,6 +881,23 @@ public class Settings extends Config {
 			Log.warning(this.getLogPrefix() + "'mob-behavior-tick-period' has to be positive.");
 			mobBehaviorTickPeriod = 1;
 		}
+		if (shopkeeperTickBudgetMillis < 0) {
+			Log.warning(this.getLogPrefix() + "'shopkeeper-tick-budget-millis' cannot be negative.");
+			shopkeeperTickBudgetMillis = 0;
+		}
+		if (performanceMetricsLogIntervalSeconds < 0) {
+			Log.warning(this.getLogPrefix()
+					+ "'performance-metrics-log-interval-seconds' cannot be negative.");
+			performanceMetricsLogIntervalSeconds = 0;
+		}
+		if (chunkActivationBudgetMillis < 0) {
+			Log.warning(this.getLogPrefix() + "'chunk-activation-budget-millis' cannot be negative.");
+			chunkActivationBudgetMillis = 0;
+		}
+		if (itemUpdateBudgetMillis < 0) {
+			Log.warning(this.getLogPrefix() + "'item-update-budget-millis' cannot be negative.");
+			itemUpdateBudgetMillis = 0;
+		}
 		if (shulkerPeekHeight < 0 || shulkerPeekHeight > 1) {
 			Log.warning(this.getLogPrefix() + "'shulker-peek-height' must be between 0.0 and 1.0.");
 			shulkerPeekHeight = (shulkerPeekHeight < 0 ? 0 : 1);
@@ -2,7 +2,9 @@ package com.nisovin.shopkeepers.currency;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 
 import org.bukkit.Material;
@@ -31,6 +33,10 @@ public final class Currencies {
 	// First currency has a value of 1.
 	private static final List<Currency> ALL = new ArrayList<>();
 	private static final List<? extends Currency> ALL_VIEW = Collections.unmodifiableList(ALL);
+	// The currencies by their item type, in the same order as inside ALL:
+	// Since most items are no currency items, this allows us to quickly reject them without
+	// comparing their item data with the data of each currency.
+	private static final Map<Material, List<Currency>> BY_TYPE = new EnumMap<>(Material.class);
 
 	static {
 		load();
@@ -47,6 +53,13 @@ public final class Currencies {
 		// Sort by value:
 		Collections.sort(ALL, (c1, c2) -> Integer.compare(c1.getValue(), c2.getValue()));
 
+		// Index the currencies by their item type:
+		BY_TYPE.clear();
+		ALL.forEach(currency -> {
+			Material type = currency.getItemData().getType();
+			BY_TYPE.computeIfAbsent(type, key -> new ArrayList<>(1)).add(currency);
+		});
+
 		// TODO Throwing an exception here might not be properly handled.
 		Validate.State.isTrue(getBase().getValue() == 1, "There is no currency with value 1!");
 	}
@@ -86,9 +99,13 @@ public final class Currencies {
 
 	public static @Nullable Currency match(@ReadOnly @Nullable ItemStack itemStack) {
 		if (ItemUtils.isEmpty(itemStack)) return null;
-		for (int i = 0; i < ALL.size(); i++) {
-			Currency currency = ALL.get(i);
-			if (currency.getItemData().matches(itemStack)) {
+		assert itemStack != null;
+		List<Currency> candidates = BY_TYPE.get(itemStack.getType());
+		if (candidates == null) return null;
+
+		for (int i = 0; i < candidates.size(); i++) {
+			Currency currency = candidates.get(i);
+			if (currency.matches(itemStack)) {
 				return currency;
 			}
 		}
@@ -1,7 +1,10 @@
 package com.nisovin.shopkeepers.currency;
 
+import org.bukkit.inventory.ItemStack;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import com.nisovin.shopkeepers.api.util.UnmodifiableItemStack;
+import com.nisovin.shopkeepers.util.annotations.ReadOnly;
 import com.nisovin.shopkeepers.util.inventory.ItemData;
 import com.nisovin.shopkeepers.util.inventory.ItemUtils;
 import com.nisovin.shopkeepers.util.java.StringUtils;
@@ -16,6 +19,13 @@ public final class Currency {
 	private final String displayName;
 	private final ItemData itemData;
 	private final int value;
+	// Whether matching items need to contain the item meta data of the currency item:
+	private final boolean hasItemMeta;
+	// A copy of the last item that matched this currency:
+	// Comparing an item with this item is cheaper than comparing its item meta data with the
+	// currency's item data, and often succeeds, because containers and inventories usually contain
+	// several stacks of the same currency item.
+	private @Nullable ItemStack lastMatchedItem = null;
 
 	/**
 	 * Creates a new {@link Currency}.
@@ -41,6 +51,7 @@ public final class Currency {
 		this.displayName = displayName;
 		this.itemData = itemData;
 		this.value = value;
+		this.hasItemMeta = itemData.hasItemMeta();
 	}
 
 	/**
@@ -70,6 +81,37 @@ public final class Currency {
 		return itemData;
 	}
 
+	/**
+	 * Checks if the given item matches the {@link #getItemData() item data} of this currency.
+	 * <p>
+	 * This produces the same result as {@link ItemData#matches(ItemStack)}, but is usually faster
+	 * when items with the same item meta data are checked repeatedly.
+	 * 
+	 * @param itemStack
+	 *            the item stack, can be <code>null</code>
+	 * @return <code>true</code> if the item matches
+	 */
+	public boolean matches(@ReadOnly @Nullable ItemStack itemStack) {
+		if (itemStack == null) return false;
+		if (itemStack.getType() != itemData.getType()) return false;
+		if (!hasItemMeta) return true; // Only the item type needs to match
+
+		// Items without item meta data cannot contain the currency's item meta data:
+		if (!itemStack.hasItemMeta()) return false;
+
+		// Items that are similar to a previously matched item also match:
+		ItemStack lastMatchedItem = this.lastMatchedItem;
+		if (lastMatchedItem != null && itemStack.isSimilar(lastMatchedItem)) return true;
+
+		if (!itemData.matches(itemStack)) return false;
+		this.lastMatchedItem = itemStack.clone();
+		return true;
+	}
+
+	public boolean matches(@Nullable UnmodifiableItemStack itemStack) {
+		return this.matches(ItemUtils.asItemStackOrNull(itemStack));
+	}
+
 	/**
 	 * Gets the value of a single item of this currency measured in some base currency with value
 	 * <code>1</code>.
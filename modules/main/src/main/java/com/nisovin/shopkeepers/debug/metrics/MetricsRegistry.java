@@ -0,0 +1,212 @@
+package com.nisovin.shopkeepers.debug.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.config.Settings;
+import com.nisovin.shopkeepers.util.bukkit.SchedulerUtils;
+import com.nisovin.shopkeepers.util.bukkit.Ticks;
+import com.nisovin.shopkeepers.util.bukkit.TextUtils;
+import com.nisovin.shopkeepers.util.java.FileUtils;
+import com.nisovin.shopkeepers.util.java.Validate;
+import com.nisovin.shopkeepers.util.logging.Log;
+import com.nisovin.shopkeepers.util.timer.Histogram;
+
+/**
+ * Keeps track of the durations of the performance-relevant operations of various subsystems.
+ * <p>
+ * The durations are recorded in {@link Histogram}s so that their percentiles can be inspected,
+ * which helps to identify the subsystems that cause tick spikes. The metrics can be viewed via the
+ * <code>/shopkeeper check metrics</code> command, periodically logged (see
+ * {@link Settings#performanceMetricsLogIntervalSeconds}), and periodically exported into a text
+ * file in the Prometheus exposition format (see {@link Settings#performanceMetricsExportFile}).
+ */
+public class MetricsRegistry {
+
+	// Metric names:
+	public static final String TICKING = "ticking";
+	public static final String SPAWNING = "spawning";
+	public static final String AI = "ai";
+	public static final String GRAVITY = "gravity";
+	public static final String TRADING = "trading";
+	public static final String UI_OPENING = "ui_opening";
+	public static final String SAVE_PREPARATION = "save_preparation";
+	public static final String SAVE_WRITE = "save_write";
+
+	private static final String EXPORT_FILE_NAME = "metrics.prom";
+	private static final long EXPORT_PERIOD_TICKS = Ticks.fromSeconds(30);
+	private static final double[] QUANTILES = { 0.5D, 0.95D, 0.99D };
+
+	private final Plugin plugin;
+	// Preserves the registration order:
+	private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+	private final Map<String, Histogram> histogramsView = Collections.unmodifiableMap(histograms);
+
+	private @Nullable BukkitTask logTask = null;
+	private @Nullable BukkitTask exportTask = null;
+
+	public MetricsRegistry(Plugin plugin) {
+		Validate.notNull(plugin, "plugin is null");
+		this.plugin = plugin;
+
+		// Register the metrics in the order in which they are shown:
+		this.getHistogram(TICKING);
+		this.getHistogram(SPAWNING);
+		this.getHistogram(AI);
+		this.getHistogram(GRAVITY);
+		this.getHistogram(TRADING);
+		this.getHistogram(UI_OPENING);
+		this.getHistogram(SAVE_PREPARATION);
+		this.getHistogram(SAVE_WRITE);
+	}
+
+	public void onEnable() {
+		if (Settings.performanceMetricsLogIntervalSeconds > 0) {
+			long periodTicks = Ticks.fromSeconds(Settings.performanceMetricsLogIntervalSeconds);
+			logTask = Bukkit.getScheduler().runTaskTimer(
+					plugin,
+					this::logMetrics,
+					periodTicks,
+					periodTicks
+			);
+		}
+		if (Settings.performanceMetricsExportFile) {
+			exportTask = Bukkit.getScheduler().runTaskTimer(
+					plugin,
+					this::exportMetrics,
+					EXPORT_PERIOD_TICKS,
+					EXPORT_PERIOD_TICKS
+			);
+		}
+	}
+
+	public void onDisable() {
+		if (logTask != null) {
+			logTask.cancel();
+			logTask = null;
+		}
+		if (exportTask != null) {
+			exportTask.cancel();
+			exportTask = null;
+		}
+		histograms.values().forEach(Histogram::reset);
+	}
+
+	/**
+	 * Gets the histogram of the specified metric, or registers a new histogram if there is none
+	 * yet.
+	 * <p>
+	 * This is expected to be called on the main thread. The returned histogram can record durations
+	 * on any thread.
+	 * 
+	 * @param name
+	 *            the metric name, not <code>null</code> or empty
+	 * @return the histogram, not <code>null</code>
+	 */
+	public Histogram getHistogram(String name) {
+		Validate.notEmpty(name, "name is null or empty");
+		return histograms.computeIfAbsent(name, key -> new Histogram());
+	}
+
+	/**
+	 * Gets all metrics.
+	 * 
+	 * @return an unmodifiable view on the histograms by metric name
+	 */
+	public Map<String, Histogram> getHistograms() {
+		return histogramsView;
+	}
+
+	public void reset() {
+		histograms.values().forEach(Histogram::reset);
+	}
+
+	// LOGGING
+
+	/**
+	 * Gets a one-line summary of the given histogram.
+	 * 
+	 * @param histogram
+	 *            the histogram
+	 * @return the summary
+	 */
+	public static String getSummary(Histogram histogram) {
+		return "p50 " + TextUtils.format(histogram.getPercentileMillis(50)) + " ms"
+				+ " | p95 " + TextUtils.format(histogram.getPercentileMillis(95)) + " ms"
+				+ " | p99 " + TextUtils.format(histogram.getPercentileMillis(99)) + " ms"
+				+ " | max " + TextUtils.format(histogram.getMaxMillis()) + " ms"
+				+ " | cnt " + histogram.getCount();
+	}
+
+	private void logMetrics() {
+		StringBuilder sb = new StringBuilder("Metrics:");
+		histograms.forEach((name, histogram) -> {
+			if (histogram.getCount() == 0L) return;
+			sb.append(' ').append(name)
+					.append("=[").append(getSummary(histogram)).append(']');
+		});
+		Log.info(sb.toString());
+	}
+
+	// EXPORT
+
+	// Builds the export on the main thread, and writes the file asynchronously.
+	private void exportMetrics() {
+		String content = this.toPrometheusText();
+		Path file = plugin.getDataFolder().toPath().resolve(EXPORT_FILE_NAME);
+		SchedulerUtils.runAsyncTaskOrOmit(plugin, () -> {
+			try {
+				FileUtils.writeSafely(
+						file,
+						content,
+						StandardCharsets.UTF_8,
+						plugin.getLogger(),
+						plugin.getDataFolder().toPath()
+				);
+			} catch (IOException e) {
+				Log.warning("Failed to export the metrics to file '" + file + "'!", e);
+			}
+		});
+	}
+
+	/**
+	 * Gets the metrics in the Prometheus text exposition format.
+	 * 
+	 * @return the metrics text
+	 */
+	public String toPrometheusText() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("# HELP shopkeepers_duration_seconds Durations of Shopkeepers operations.\n");
+		sb.append("# TYPE shopkeepers_duration_seconds summary\n");
+		histograms.forEach((name, histogram) -> {
+			String labels = "subsystem=\"" + name + "\"";
+			for (double quantile : QUANTILES) {
+				sb.append("shopkeepers_duration_seconds{").append(labels)
+						.append(",quantile=\"").append(quantile).append("\"} ")
+						.append(toSeconds(histogram.getPercentileNanos(quantile * 100.0D)))
+						.append('\n');
+			}
+			sb.append("shopkeepers_duration_seconds_sum{").append(labels).append("} ")
+					.append(toSeconds(histogram.getTotalNanos())).append('\n');
+			sb.append("shopkeepers_duration_seconds_count{").append(labels).append("} ")
+					.append(histogram.getCount()).append('\n');
+		});
+		return sb.toString();
+	}
+
+	private static String toSeconds(long nanos) {
+		double seconds = (double) nanos / TimeUnit.SECONDS.toNanos(1);
+		return String.format(Locale.ROOT, "%.9f", seconds);
+	}
+}
@@ -0,0 +1,206 @@
+package com.nisovin.shopkeepers.items;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.scheduler.BukkitTask;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
+import com.nisovin.shopkeepers.api.events.UpdateItemEvent;
+import com.nisovin.shopkeepers.config.Settings;
+import com.nisovin.shopkeepers.debug.DebugOptions;
+import com.nisovin.shopkeepers.lang.Messages;
+import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
+import com.nisovin.shopkeepers.shopkeeper.registry.SKShopkeeperRegistry;
+import com.nisovin.shopkeepers.util.bukkit.TextUtils;
+import com.nisovin.shopkeepers.util.java.Validate;
+import com.nisovin.shopkeepers.util.logging.Log;
+
+/**
+ * Updates the items of the config and of all shopkeepers, similar to
+ * {@link SKShopkeepersPlugin#updateItems()}, but spreads the item updates of the shopkeepers over
+ * multiple ticks.
+ * <p>
+ * Each tick, shopkeepers are updated until the {@link Settings#itemUpdateBudgetMillis item update
+ * budget} has been used up. The {@link UpdateItemEvent}s are {@link ItemUpdates.Memo memoized} for
+ * the whole run, so that items that are used by many shopkeepers, such as currency items, only
+ * trigger a single event. The progress is periodically reported to the command sender that started
+ * the item update.
+ * <p>
+ * Only the loaded shopkeepers are updated right away. The shopkeepers whose loading is currently
+ * deferred are updated once they are loaded, via
+ * {@link #updateDeferredShopkeeper(AbstractShopkeeper)}.
+ * <p>
+ * Only one bulk item update can run at a time.
+ */
+public final class BulkItemUpdate implements Runnable {
+
+	private static final long PROGRESS_REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+	private static @Nullable BulkItemUpdate activeUpdate = null;
+
+	/**
+	 * Starts a new bulk item update.
+	 * 
+	 * @param plugin
+	 *            the plugin, not <code>null</code>
+	 * @param sender
+	 *            the command sender to report the progress to, not <code>null</code>
+	 * @return <code>false</code> if another bulk item update is already running
+	 */
+	public static boolean start(SKShopkeepersPlugin plugin, CommandSender sender) {
+		Validate.notNull(plugin, "plugin is null");
+		Validate.notNull(sender, "sender is null");
+		if (activeUpdate != null) return false;
+
+		BulkItemUpdate update = new BulkItemUpdate(plugin, sender);
+		activeUpdate = update;
+		update.start();
+		return true;
+	}
+
+	/**
+	 * Updates the items of the given shopkeeper, whose loading was still deferred when a bulk item
+	 * update was started, after it has been loaded.
+	 * <p>
+	 * If the bulk item update is still running, this reuses its {@link ItemUpdates.Memo memo}, and
+	 * the updated items are included in its report.
+	 * 
+	 * @param shopkeeper
+	 *            the loaded shopkeeper, not <code>null</code>
+	 */
+	public static void updateDeferredShopkeeper(AbstractShopkeeper shopkeeper) {
+		Validate.notNull(shopkeeper, "shopkeeper is null");
+		BulkItemUpdate update = activeUpdate;
+		// The shopkeeper might be loaded during an item update with its own memo:
+		if (update == null || ItemUpdates.isMemoActive()) {
+			shopkeeper.updateItems();
+			return;
+		}
+		update.shopkeeperUpdatedItems += ItemUpdates.runMemoized(
+				update.memo,
+				shopkeeper::updateItems
+		);
+	}
+
+	/**
+	 * This needs to be called on plugin disable.
+	 * <p>
+	 * This cancels any currently running bulk item update. The shopkeepers that have already been
+	 * updated are saved together with all other shopkeepers.
+	 */
+	public static void onDisable() {
+		BulkItemUpdate update = activeUpdate;
+		if (update != null) {
+			Log.info("Cancelling the running item update.");
+			update.cancel();
+		}
+	}
+
+	private final SKShopkeepersPlugin plugin;
+	private final CommandSender sender;
+	private final ItemUpdates.Memo memo = new ItemUpdates.Memo();
+	// Shopkeepers that are removed during the item update are skipped. Shopkeepers that are added
+	// during the item update are not updated. Deferred shopkeepers that are loaded during the item
+	// update are updated separately.
+	private final List<? extends AbstractShopkeeper> shopkeepers;
+	private int nextShopkeeperIndex = 0;
+	private int configUpdatedItems = 0;
+	private int shopkeeperUpdatedItems = 0;
+
+	private final long startNanos = System.nanoTime();
+	private long lastProgressReportNanos = startNanos;
+	private @Nullable BukkitTask task = null;
+
+	private BulkItemUpdate(SKShopkeepersPlugin plugin, CommandSender sender) {
+		this.plugin = plugin;
+		this.sender = sender;
+		// Does not load the deferred shopkeepers:
+		this.shopkeepers = new ArrayList<>(plugin.getShopkeeperRegistry().getLoadedShopkeepers());
+	}
+
+	private void start() {
+		SKShopkeeperRegistry shopkeeperRegistry = plugin.getShopkeeperRegistry();
+		Log.debug(DebugOptions.itemUpdates, "Updating all items (" + shopkeepers.size()
+				+ " shopkeepers, " + shopkeeperRegistry.getDeferredShopkeeperCount()
+				+ " deferred shopkeepers).");
+
+		// Note: Not safe to be called from inside inventory events!
+		plugin.getUIRegistry().abortUISessions();
+
+		configUpdatedItems = ItemUpdates.runMemoized(memo, Settings.getInstance()::updateItems);
+		shopkeeperRegistry.updateItemsOfDeferredShopkeepersOnLoad();
+
+		task = Bukkit.getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+	}
+
+	@Override
+	public void run() {
+		long budgetNanos = TimeUnit.MILLISECONDS.toNanos(Settings.itemUpdateBudgetMillis);
+		long deadlineNanos = (budgetNanos > 0) ? System.nanoTime() + budgetNanos : Long.MAX_VALUE;
+		shopkeeperUpdatedItems += ItemUpdates.runMemoized(
+				memo,
+				() -> this.updateShopkeepers(deadlineNanos)
+		);
+
+		if (nextShopkeeperIndex >= shopkeepers.size()) {
+			this.complete();
+			return;
+		}
+
+		long nowNanos = System.nanoTime();
+		if (nowNanos - lastProgressReportNanos >= PROGRESS_REPORT_INTERVAL_NANOS) {
+			lastProgressReportNanos = nowNanos;
+			TextUtils.sendMessage(sender, Messages.itemsUpdateProgress,
+					"progress", nextShopkeeperIndex,
+					"total", shopkeepers.size()
+			);
+		}
+	}
+
+	// Updates at least one shopkeeper, and then continues until the deadline has been reached.
+	// Returns the number of updated items.
+	private int updateShopkeepers(long deadlineNanos) {
+		int updatedItems = 0;
+		while (nextShopkeeperIndex < shopkeepers.size()) {
+			AbstractShopkeeper shopkeeper = shopkeepers.get(nextShopkeeperIndex++);
+			// Skip shopkeepers that have been removed in the meantime:
+			if (shopkeeper.isValid()) {
+				updatedItems += shopkeeper.updateItems();
+			}
+
+			if (System.nanoTime() >= deadlineNanos) break;
+		}
+		return updatedItems;
+	}
+
+	private void complete() {
+		this.cancel();
+
+		if (shopkeeperUpdatedItems > 0) {
+			plugin.getShopkeeperStorage().save();
+		}
+
+		int updatedItems = configUpdatedItems + shopkeeperUpdatedItems;
+		long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+		Log.debug(DebugOptions.itemUpdates, "Updated " + updatedItems + " items ("
+				+ durationMillis + " ms, " + memo.getSize() + " distinct items).");
+
+		TextUtils.sendMessage(sender, Messages.itemsUpdated, "count", updatedItems);
+	}
+
+	private void cancel() {
+		BukkitTask task = this.task;
+		if (task != null) {
+			task.cancel();
+			this.task = null;
+		}
+		if (activeUpdate == this) {
+			activeUpdate = null;
+		}
+	}
+}
@@ -1,18 +1,84 @@
 package com.nisovin.shopkeepers.items;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
 import org.bukkit.Bukkit;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.nullness.qual.PolyNull;
 
 import com.nisovin.shopkeepers.api.events.UpdateItemEvent;
 import com.nisovin.shopkeepers.api.util.UnmodifiableItemStack;
 import com.nisovin.shopkeepers.util.inventory.ItemData;
 import com.nisovin.shopkeepers.util.inventory.ItemUtils;
+import com.nisovin.shopkeepers.util.java.Validate;
 
 /**
  * Helpers related to the updating of items. See {@link UpdateItemEvent}.
  */
 public class ItemUpdates {
 
+	/**
+	 * Memoizes the outcomes of the {@link UpdateItemEvent}s that are called while the memo is
+	 * {@link ItemUpdates#runMemoized(Memo, IntSupplier) active}.
+	 * <p>
+	 * While a memo is active, only the first update of each distinct item calls an
+	 * {@link UpdateItemEvent}. Subsequent updates of equal items reuse the outcome of this event.
+	 * This is meant for bulk item updates, which usually encounter the same items, such as currency
+	 * items, many times. A memo is only supposed to be used for a single bulk item update, during
+	 * which plugins are not expected to change how they update items.
+	 */
+	public static final class Memo {
+
+		// Not altered items are mapped to NOT_ALTERED:
+		private final Map<UnmodifiableItemStack, Object> updatedItems = new HashMap<>();
+
+		public Memo() {
+		}
+
+		/**
+		 * Gets the number of distinct items for which an {@link UpdateItemEvent} has been called.
+		 * 
+		 * @return the number of distinct items
+		 */
+		public int getSize() {
+			return updatedItems.size();
+		}
+	}
+
+	private static final Object NOT_ALTERED = new Object();
+
+	private static @Nullable Memo activeMemo = null;
+
+	/**
+	 * Runs the given item updates with the given {@link Memo} being active.
+	 * <p>
+	 * Memos cannot be nested.
+	 * 
+	 * @param memo
+	 *            the memo, not <code>null</code>
+	 * @param itemUpdates
+	 *            the item updates, returning the number of updated items, not <code>null</code>
+	 * @return the number of updated items, as returned by the given item updates
+	 */
+	public static int runMemoized(Memo memo, IntSupplier itemUpdates) {
+		Validate.notNull(memo, "memo is null");
+		Validate.notNull(itemUpdates, "itemUpdates is null");
+		Validate.State.isTrue(activeMemo == null, "Another memo is already active!");
+		activeMemo = memo;
+		try {
+			return itemUpdates.getAsInt();
+		} finally {
+			activeMemo = null;
+		}
+	}
+
+	// Checks if a memo is currently active, i.e. if runMemoized cannot be called.
+	static boolean isMemoActive() {
+		return (activeMemo != null);
+	}
+
 	/**
 	 * Calls an {@link UpdateItemEvent} for the given non-empty(!) item.
 	 * 
@@ -37,11 +103,34 @@ public class ItemUpdates {
 		if (ItemUtils.isEmpty(item)) return item;
 		assert item != null;
 
+		@Nullable UnmodifiableItemStack updatedItem = getUpdatedItem(item);
+		return (updatedItem != null) ? updatedItem : item;
+	}
+
+	// Returns null if the item was not altered.
+	private static @Nullable UnmodifiableItemStack getUpdatedItem(UnmodifiableItemStack item) {
+		Memo memo = activeMemo;
+		if (memo != null) {
+			@Nullable Object memoizedItem = memo.updatedItems.get(item);
+			if (memoizedItem != null) {
+				if (memoizedItem == NOT_ALTERED) return null;
+				return (UnmodifiableItemStack) memoizedItem;
+			}
+		}
+
+		@Nullable UnmodifiableItemStack updatedItem = null;
 		UpdateItemEvent updateItemEvent = callUpdateItemEvent(item);
-		if (!updateItemEvent.isItemAltered()) return item;
+		if (updateItemEvent.isItemAltered()) {
+			// Item copy to ensure the item data is immutable:
+			updatedItem = ItemUtils.nonNullUnmodifiableClone(
+					ItemUtils.asItemStack(updateItemEvent.getItem())
+			);
+		}
 
-		// Item copy to ensure the item data is immutable:
-		return ItemUtils.nonNullUnmodifiableClone(ItemUtils.asItemStack(updateItemEvent.getItem()));
+		if (memo != null) {
+			memo.updatedItems.put(item, (updatedItem != null) ? updatedItem : NOT_ALTERED);
+		}
+		return updatedItem;
 	}
 
 	/**
@@ -56,11 +145,10 @@ public class ItemUpdates {
 		if (ItemUtils.isEmpty(item)) return itemData;
 		assert item != null;
 
-		UpdateItemEvent updateItemEvent = callUpdateItemEvent(item);
-		if (!updateItemEvent.isItemAltered()) return itemData;
+		@Nullable UnmodifiableItemStack updatedItem = getUpdatedItem(item);
+		if (updatedItem == null) return itemData;
 
-		// Item copy to ensure the item data is immutable:
-		return new ItemData(ItemUtils.asItemStack(updateItemEvent.getItem()));
+		return new ItemData(updatedItem);
 	}
 
 	private ItemUpdates() {
@@ -2,7 +2,9 @@ package com.nisovin.shopkeepers.lang;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.nisovin.shopkeepers.SKShopkeepersPlugin;
@@ -12,10 +14,13 @@ import com.nisovin.shopkeepers.config.lib.ConfigData;
 import com.nisovin.shopkeepers.config.lib.ConfigLoadException;
 import com.nisovin.shopkeepers.config.lib.annotation.WithDefaultValueType;
 import com.nisovin.shopkeepers.config.lib.annotation.WithValueTypeProvider;
+import com.nisovin.shopkeepers.config.lib.setting.Setting;
 import com.nisovin.shopkeepers.config.lib.value.ValueLoadException;
 import com.nisovin.shopkeepers.config.lib.value.types.ColoredStringListValue;
 import com.nisovin.shopkeepers.config.lib.value.types.ColoredStringValue;
+import com.nisovin.shopkeepers.spigot.text.MessageTemplate;
 import com.nisovin.shopkeepers.text.Text;
+import com.nisovin.shopkeepers.util.bukkit.TextUtils;
 import com.nisovin.shopkeepers.util.data.persistence.DataStore;
 import com.nisovin.shopkeepers.util.data.persistence.bukkit.BukkitConfigDataStore;
 import com.nisovin.shopkeepers.util.java.Validate;
@@ -408,6 +413,8 @@ public class Messages extends Config {
 	public static Text currencyItemSetToMainHandItem = Text.parse("&aThe currency item '&e{currencyId}&a' has been set to the &eitem in your main hand&a!");
 	public static Text itemsConverted = Text.parse("&aConverted &e{count}&a item stack(s)!");
 	public static Text itemsUpdated = Text.parse("&aUpdated &e{count}&a item(s)!");
+	public static Text itemsUpdateProgress = Text.parse("&7Updating items: &e{progress}&7/&e{total}&7 shopkeepers processed ...");
+	public static Text itemsUpdateAlreadyRunning = Text.parse("&cAn item update is already running!");
 	public static String unknownBookAuthor = c("Unknown");
 
 	public static Text tradePermSet = Text.parse("&aThe shop's trading permission has been set to '&e{perm}&a'!");
@@ -766,6 +773,15 @@ public class Messages extends Config {
 	public static Text snapshotRestoreFailed = Text.parse("&cFailed to restore snapshot: &e({id}) &2{name} &8(&7{timestamp}&8)");
 	public static Text snapshotRestored = Text.parse("&aSnapshot restored: &e({id}) &2{name} &8(&7{timestamp}&8)");
 
+	public static Text tradeLogUnavailable = Text.parse("&cTrade logging is disabled, or the configured trade log storage does not support queries.");
+	public static Text tradeLogQueryStarted = Text.parse("&7Searching the trade log ...");
+	public static Text tradeLogQueryFailed = Text.parse("&cFailed to query the trade log! Check the server log for details.");
+	public static Text tradeLogShopHeader = Text.parse("&9Logged trades of shop &e{shop_id}&9: &e(Page {page})");
+	public static Text tradeLogPlayerHeader = Text.parse("&9Logged trades of player &e{player}&9: &e(Page {page})");
+	public static Text tradeLogEntry = Text.parse("  &8[&7{timestamp}&8] &e{player}&7: &e{resultItemAmount}x {resultItemType} &7for &e{item1Amount}x {item1Type}{item2} &8({tradeCount}x, shop &7{shopUUID}&8)");
+	public static Text tradeLogNoTrades = Text.parse("&7No logged trades found.");
+	public static Text tradeLogMorePages = Text.parse("&7There are more trades on page &e{nextPage}&7.");
+
 	public static Text noPermission = Text.parse("&cYou don't have the permission to do that.");
 
 	public static Text commandUnknown = Text.parse("&cUnknown command '&e{command}&c'!");
@@ -823,6 +839,8 @@ public class Messages extends Config {
 	public static Text commandDescriptionSnapshotCreate = Text.parse("Creates a new shop snapshot.");
 	public static Text commandDescriptionSnapshotRemove = Text.parse("Removes a specific or all snapshots of a shop.");
 	public static Text commandDescriptionSnapshotRestore = Text.parse("Restores a specific shop snapshot.");
+	public static Text commandDescriptionTradeLogShop = Text.parse("Shows the logged trades of a shop.");
+	public static Text commandDescriptionTradeLogPlayer = Text.parse("Shows the logged trades of a player.");
 	public static Text commandDescriptionEditVillager = Text.parse("Opens the editor for the target villager.");
 	public static Text commandDescriptionReplaceAllWithVanillaVillagers = Text.parse("Replaces all shopkeepers with vanilla villagers without AI.");
 
@@ -903,10 +921,32 @@ public class Messages extends Config {
 
 	private static final Messages INSTANCE = new Messages();
 
+	// The compiled templates of the loaded messages, by message:
+	private static final Map<Text, MessageTemplate> TEMPLATES = new IdentityHashMap<>();
+
 	public static Messages getInstance() {
 		return INSTANCE;
 	}
 
+	/**
+	 * Gets the {@link MessageTemplate} of the given message.
+	 * <p>
+	 * The templates of the messages are compiled when the messages are loaded. Any other message is
+	 * compiled each time this is called.
+	 * 
+	 * @param message
+	 *            the message, not <code>null</code>
+	 * @return the message template, not <code>null</code>
+	 */
+	public static MessageTemplate getTemplate(Text message) {
+		Validate.notNull(message, "message is null");
+		MessageTemplate template = TEMPLATES.get(message);
+		if (template == null) {
+			template = TextUtils.compileMessage(message);
+		}
+		return template;
+	}
+
 	private Messages() {
 	}
 
@@ -960,5 +1000,15 @@ public class Messages extends Config {
 
 		// Load the config:
 		super.load(configData);
+
+		// Compile the loaded messages:
+		TEMPLATES.clear();
+		for (Setting<?> setting : this.getSettings()) {
+			Object value = setting.getValue();
+			if (value instanceof Text) {
+				Text message = (Text) value;
+				TEMPLATES.put(message, TextUtils.compileMessage(message));
+			}
+		}
 	}
 }
@@ -3,8 +3,8 @@ package com.nisovin.shopkeepers.metrics;
 import org.bstats.bukkit.Metrics;
 
 import com.nisovin.shopkeepers.SKShopkeepersPlugin;
-import com.nisovin.shopkeepers.api.shopkeeper.ShopkeeperRegistry;
 import com.nisovin.shopkeepers.config.Settings;
+import com.nisovin.shopkeepers.shopkeeper.registry.SKShopkeeperRegistry;
 import com.nisovin.shopkeepers.util.java.Validate;
 
 /**
@@ -29,7 +29,7 @@ public class PluginMetrics {
 	}
 
 	private void setupMetrics() {
-		ShopkeeperRegistry shopkeeperRegistry = plugin.getShopkeeperRegistry();
+		SKShopkeeperRegistry shopkeeperRegistry = plugin.getShopkeeperRegistry();
 		Metrics metrics = new Metrics(plugin);
 		metrics.addCustomChart(new CitizensChart());
 		metrics.addCustomChart(new WorldGuardChart());
@@ -2,16 +2,17 @@ package com.nisovin.shopkeepers.metrics;
 
 import org.bstats.bukkit.Metrics;
 
-import com.nisovin.shopkeepers.api.shopkeeper.ShopkeeperRegistry;
+import com.nisovin.shopkeepers.shopkeeper.registry.SKShopkeeperRegistry;
 
 /**
  * Reports the (rough) number of shopkeepers.
  */
 public class ShopkeepersCountChart extends Metrics.SimplePie {
 
-	public ShopkeepersCountChart(ShopkeeperRegistry shopkeeperRegistry) {
+	public ShopkeepersCountChart(SKShopkeeperRegistry shopkeeperRegistry) {
 		super("shopkeepers_count", () -> {
-			int numberOfShopkeepers = shopkeeperRegistry.getAllShopkeepers().size();
+			// Does not load any deferred shopkeepers:
+			int numberOfShopkeepers = shopkeeperRegistry.getShopkeeperCount();
 			if (numberOfShopkeepers >= 100) {
 				int hundreds = (numberOfShopkeepers / 100);
 				return "[" + hundreds + "00," + (hundreds + 1) + "00)";
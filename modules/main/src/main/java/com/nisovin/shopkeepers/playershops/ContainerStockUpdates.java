@@ -0,0 +1,116 @@
+package com.nisovin.shopkeepers.playershops;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.inventory.Inventory;
+
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
+import com.nisovin.shopkeepers.api.shopkeeper.player.PlayerShopkeeper;
+import com.nisovin.shopkeepers.container.ShopContainers;
+import com.nisovin.shopkeepers.container.protection.ProtectedContainers;
+import com.nisovin.shopkeepers.shopkeeper.player.AbstractPlayerShopkeeper;
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * Invalidates the container stock indices of player shops when the contents of their containers
+ * might have changed.
+ * <p>
+ * Trades performed via the shopkeepers themselves directly update the container stock index. This
+ * only handles the other ways in which the container contents can be changed: Players modifying
+ * the container inventory, items being transferred into or out of the container (e.g. by hoppers,
+ * if {@link com.nisovin.shopkeepers.config.Settings#preventItemMovement item movement} is allowed),
+ * and the container block being broken, destroyed, or extended into a double chest.
+ * <p>
+ * Any other changes, e.g. by other plugins, are picked up the next time a player opens the trading
+ * menu of the shop.
+ */
+public class ContainerStockUpdates implements Listener {
+
+	private final SKShopkeepersPlugin plugin;
+
+	public ContainerStockUpdates(SKShopkeepersPlugin plugin) {
+		Validate.notNull(plugin, "plugin is null");
+		this.plugin = plugin;
+	}
+
+	public void onEnable() {
+		Bukkit.getPluginManager().registerEvents(this, plugin);
+	}
+
+	public void onDisable() {
+		HandlerList.unregisterAll(this);
+	}
+
+	private void invalidateContainerStock(Block containerBlock) {
+		if (!ShopContainers.isSupportedContainer(containerBlock.getType())) return;
+		ProtectedContainers protectedContainers = plugin.getProtectedContainers();
+		// Also checks for connected chests (double chests):
+		for (PlayerShopkeeper shopkeeper : protectedContainers.getShopkeepersUsingContainer(
+				containerBlock
+		)) {
+			((AbstractPlayerShopkeeper) shopkeeper).invalidateContainerStock();
+		}
+	}
+
+	private void invalidateContainerStock(Inventory inventory) {
+		// Note: We avoid calling Inventory#getHolder here for performance reasons. For block
+		// inventories this creates a snapshot of the block's BlockState.
+		Location inventoryLocation = inventory.getLocation(); // Can be null
+		if (inventoryLocation == null) return;
+		this.invalidateContainerStock(inventoryLocation.getBlock());
+	}
+
+	// Clicks can also move items into the top inventory from the player's inventory.
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onInventoryClick(InventoryClickEvent event) {
+		this.invalidateContainerStock(event.getView().getTopInventory());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onInventoryDrag(InventoryDragEvent event) {
+		this.invalidateContainerStock(event.getView().getTopInventory());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onInventoryMoveItem(InventoryMoveItemEvent event) {
+		this.invalidateContainerStock(event.getSource());
+		this.invalidateContainerStock(event.getDestination());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onBlockBreak(BlockBreakEvent event) {
+		this.invalidateContainerStock(event.getBlock());
+	}
+
+	// A placed chest can form a double chest with a shop container.
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onBlockPlace(BlockPlaceEvent event) {
+		this.invalidateContainerStock(event.getBlock());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onBlockExplode(BlockExplodeEvent event) {
+		for (Block block : event.blockList()) {
+			this.invalidateContainerStock(block);
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onEntityExplode(EntityExplodeEvent event) {
+		for (Block block : event.blockList()) {
+			this.invalidateContainerStock(block);
+		}
+	}
+}
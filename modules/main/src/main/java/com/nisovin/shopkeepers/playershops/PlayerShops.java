@@ -12,24 +12,28 @@ public class PlayerShops {
 	private final PlayerShopsLimit playerShopsLimit;
 	private final PlayerInactivity playerInactivity;
 	private final ShopOwnerNameUpdates shopOwnerNameUpdates;
+	private final ContainerStockUpdates containerStockUpdates;
 
 	public PlayerShops(SKShopkeepersPlugin plugin) {
 		Validate.notNull(plugin, "plugin is null");
 		this.playerShopsLimit = new PlayerShopsLimit();
 		this.playerInactivity = new PlayerInactivity(plugin);
 		this.shopOwnerNameUpdates = new ShopOwnerNameUpdates(plugin);
+		this.containerStockUpdates = new ContainerStockUpdates(plugin);
 	}
 
 	public void onEnable() {
 		playerShopsLimit.onEnable();
 		playerInactivity.onEnable();
 		shopOwnerNameUpdates.onEnable();
+		containerStockUpdates.onEnable();
 	}
 
 	public void onDisable() {
 		playerShopsLimit.onDisable();
 		playerInactivity.onDisable();
 		shopOwnerNameUpdates.onDisable();
+		containerStockUpdates.onDisable();
 	}
 
 	public PlayerShopsLimit getPlayerShopsLimit() {
@@ -43,4 +47,8 @@ public class PlayerShops {
 	public ShopOwnerNameUpdates getShopOwnerNameUpdates() {
 		return shopOwnerNameUpdates;
 	}
+
+	public ContainerStockUpdates getContainerStockUpdates() {
+		return containerStockUpdates;
+	}
 }
@@ -74,6 +74,7 @@ import com.nisovin.shopkeepers.util.data.serialization.DataAccessor;
 import com.nisovin.shopkeepers.util.data.serialization.DataSerializer;
 import com.nisovin.shopkeepers.util.data.serialization.InvalidDataException;
 import com.nisovin.shopkeepers.util.data.serialization.bukkit.ColoredStringSerializers;
+import com.nisovin.shopkeepers.util.data.serialization.java.BooleanSerializers;
 import com.nisovin.shopkeepers.util.data.serialization.java.DataContainerSerializers;
 import com.nisovin.shopkeepers.util.data.serialization.java.NumberSerializers;
 import com.nisovin.shopkeepers.util.data.serialization.java.StringSerializers;
@@ -154,6 +155,12 @@ public abstract class AbstractShopkeeper implements Shopkeeper {
 
 	private final List<SKShopkeeperSnapshot> snapshots = new ArrayList<>();
 	private final List<? extends SKShopkeeperSnapshot> snapshotsView = Collections.unmodifiableList(snapshots);
+	// The snapshots are stored separately from the shopkeeper data and only loaded on demand:
+	private boolean snapshotsLoaded = true;
+	// The number of snapshots, also known while the snapshots are not loaded:
+	private int snapshotCount = 0;
+	// Whether the items of the unloaded snapshots still need to be updated once they are loaded:
+	private boolean snapshotItemsOutdated = false;
 
 	private final ShopkeeperComponentHolder components = new ShopkeeperComponentHolder(Unsafe.initialized(this));
 
@@ -634,7 +641,29 @@ public abstract class AbstractShopkeeper implements Shopkeeper {
 			}
 		}
 
+		if (snapshotsLoaded) {
+			updatedItems += this.updateSnapshotItems();
+		} else if (!snapshotItemsOutdated) {
+			// Loading the snapshots only for the item update would read and migrate the snapshot
+			// file on the server's main thread, and the items are updated again whenever a bulk
+			// item update runs. Instead, the snapshot items are updated once the snapshots are
+			// next loaded. This is persisted, so that it also applies after a restart.
+			snapshotItemsOutdated = true;
+			this.markDirty();
+		}
+
+		if (updatedItems > 0) {
+			this.markDirty();
+		}
+
+		return updatedItems;
+	}
+
+	// Expects the snapshots to be loaded.
+	private int updateSnapshotItems() {
+		assert snapshotsLoaded;
 		int snapshotId = 0;
+		int snapshotsUpdatedItems = 0;
 		var snapshotIterator = snapshots.listIterator();
 		while (snapshotIterator.hasNext()) {
 			var snapshot = Unsafe.assertNonNull(snapshotIterator.next());
@@ -655,15 +684,13 @@ public abstract class AbstractShopkeeper implements Shopkeeper {
 						updatedSnaphotShopkeeperData
 				);
 				snapshotIterator.set(updatedSnapshot);
-				updatedItems += snapshotUpdatedItems;
+				snapshotsUpdatedItems += snapshotUpdatedItems;
 			}
 		}
-
-		if (updatedItems > 0) {
-			this.markDirty();
+		if (snapshotsUpdatedItems > 0) {
+			this.onSnapshotsChanged();
 		}
-
-		return updatedItems;
+		return snapshotsUpdatedItems;
 	}
 
 	/**
@@ -1285,10 +1312,16 @@ public abstract class AbstractShopkeeper implements Shopkeeper {
 	private void _setName(@Nullable String newName) {
 		// Prepare and apply the new name:
 		String preparedName = this.prepareName(newName);
+		String oldName = this.name;
 		this.name = preparedName;
 
 		// Update the name of the shop object:
 		shopObject.setName(preparedName);
+
+		// Inform shopkeeper registry:
+		if (this.isValid() && !preparedName.equals(oldName)) {
+			SKShopkeepersPlugin.getInstance().getShopkeeperRegistry().onShopkeeperNameChanged(this);
+		}
 	}
 
 	private String prepareName(@Nullable String name) {
@@ -1342,11 +1375,25 @@ public abstract class AbstractShopkeeper implements Shopkeeper {
 
 	// SNAPSHOTS
 
+	// The snapshots are stored by the shopkeeper storage, separately from the shopkeeper data.
+	// Previous versions stored the snapshots inside the shopkeeper data. When such data is loaded,
+	// the snapshots are moved into the snapshot storage.
 	public static final Property<List<? extends SKShopkeeperSnapshot>> SNAPSHOTS = new BasicProperty<List<? extends SKShopkeeperSnapshot>>()
 			.dataKeyAccessor("snapshots", SKShopkeeperSnapshot.LIST_SERIALIZER)
 			.useDefaultIfMissing()
 			.defaultValue(Collections.emptyList())
 			.build();
+	public static final Property<Integer> SNAPSHOT_COUNT = new BasicProperty<Integer>()
+			.dataKeyAccessor("snapshotCount", NumberSerializers.INTEGER)
+			.validator(IntegerValidators.NON_NEGATIVE)
+			.useDefaultIfMissing()
+			.defaultValue(0)
+			.build();
+	public static final Property<Boolean> SNAPSHOT_ITEMS_OUTDATED = new BasicProperty<Boolean>()
+			.dataKeyAccessor("snapshotItemsOutdated", BooleanSerializers.LENIENT)
+			.useDefaultIfMissing()
+			.defaultValue(false)
+			.build();
 
 	static {
 		ShopkeeperDataMigrator.registerMigration(new Migration(
@@ -1390,22 +1437,127 @@ public abstract class AbstractShopkeeper implements Shopkeeper {
 
 	private void loadSnapshots(ShopkeeperData shopkeeperData) throws InvalidDataException {
 		assert shopkeeperData != null;
-		List<? extends SKShopkeeperSnapshot> loadedSnapshots = shopkeeperData.get(SNAPSHOTS);
 		snapshots.clear();
+		snapshotItemsOutdated = false;
+		List<? extends SKShopkeeperSnapshot> inlineSnapshots = shopkeeperData.get(SNAPSHOTS);
+		if (!inlineSnapshots.isEmpty()) {
+			// The snapshots are stored inside the shopkeeper data: Move them into the snapshot
+			// storage with the next save.
+			snapshotsLoaded = true;
+			this.addLoadedSnapshots(inlineSnapshots);
+			this.onSnapshotsChanged();
+			return;
+		}
+
+		// The snapshots are loaded when they are first accessed:
+		snapshotCount = shopkeeperData.get(SNAPSHOT_COUNT);
+		snapshotsLoaded = (snapshotCount == 0);
+		snapshotItemsOutdated = !snapshotsLoaded && shopkeeperData.get(SNAPSHOT_ITEMS_OUTDATED);
+	}
+
+	private void addLoadedSnapshots(
+			List<? extends SKShopkeeperSnapshot> loadedSnapshots
+	) throws InvalidDataException {
+		assert snapshotsLoaded && snapshots.isEmpty();
 		try {
 			// Applies additional shopkeeper specific validations:
 			loadedSnapshots.forEach(this::_addSnapshot);
 		} catch (IllegalArgumentException e) {
-			int snapshotId = this.getSnapshots().size() + 1;
+			int snapshotId = snapshots.size() + 1;
 			ShopkeeperSnapshot snapshot = loadedSnapshots.get(snapshotId - 1);
 			String snapshotLogPrefix = "Snapshot " + snapshotId + " ('" + snapshot.getName() + "'): ";
 			throw new InvalidDataException(snapshotLogPrefix + e.getMessage(), e);
 		}
+		snapshotCount = snapshots.size();
 		this.checkSnapshotsCountLimit();
 	}
 
+	/**
+	 * Loads the snapshots from the snapshot storage, if they have not been loaded yet.
+	 * <p>
+	 * If item updates have been skipped while the snapshots were not loaded, the items of the
+	 * loaded snapshots are updated.
+	 * 
+	 * @return <code>true</code> if the snapshots are loaded, <code>false</code> if they could not
+	 *         be loaded
+	 */
+	private boolean ensureSnapshotsLoaded() {
+		if (snapshotsLoaded) return true;
+		assert snapshots.isEmpty();
+
+		int storedSnapshotCount = snapshotCount;
+		boolean migrated = false;
+		try {
+			List<? extends SKShopkeeperSnapshot> loadedSnapshots = SKShopkeepersPlugin.getInstance()
+					.getShopkeeperStorage().loadSnapshots(uniqueId);
+
+			// Migrate the snapshot data before it is validated:
+			int snapshotId = 1;
+			for (SKShopkeeperSnapshot snapshot : loadedSnapshots) {
+				String snapshotLogPrefix = this.getLogPrefix(snapshotId, snapshot);
+				migrated |= snapshot.getShopkeeperData().migrate(snapshotLogPrefix);
+				snapshotId++;
+			}
+
+			snapshotsLoaded = true;
+			this.addLoadedSnapshots(loadedSnapshots);
+		} catch (InvalidDataException e) {
+			Log.warning(this.getLogPrefix() + "Failed to load the snapshots!", e);
+			snapshots.clear();
+			snapshotsLoaded = false;
+			snapshotCount = storedSnapshotCount;
+			return false;
+		}
+
+		if (migrated) {
+			// Persist the migrated snapshot data:
+			this.onSnapshotsChanged();
+		} else if (snapshotCount != storedSnapshotCount) {
+			// Update the snapshot count stored inside the shopkeeper data:
+			Log.warning(this.getLogPrefix() + "Expected " + storedSnapshotCount
+					+ " snapshots, but found " + snapshotCount + "!");
+			this.markDirty();
+		}
+
+		if (snapshotItemsOutdated) {
+			snapshotItemsOutdated = false;
+			this.markDirty();
+			int updatedItems = this.updateSnapshotItems();
+			if (updatedItems > 0) {
+				Log.debug(DebugOptions.itemUpdates, () -> this.getLogPrefix() + "Updated "
+						+ updatedItems + " items of the loaded snapshots.");
+			}
+		}
+		return true;
+	}
+
+	// Drops the loaded snapshots again, so that they are reloaded when they are next accessed. Any
+	// changes to the snapshots must have already been passed to the snapshot storage.
+	private void releaseSnapshots() {
+		if (!snapshotsLoaded || snapshotCount == 0) return;
+		snapshots.clear();
+		snapshotsLoaded = false;
+	}
+
+	// Snapshots can only be modified after they have been loaded successfully, to not overwrite the
+	// stored snapshots.
+	private void ensureSnapshotsModifiable() {
+		Validate.State.isTrue(this.ensureSnapshotsLoaded(), "Failed to load the snapshots!");
+	}
+
+	// Persists the current snapshots with the next save.
+	private void onSnapshotsChanged() {
+		assert snapshotsLoaded;
+		snapshotCount = snapshots.size();
+		SKShopkeepersPlugin.getInstance().getShopkeeperStorage().onSnapshotsChanged(
+				uniqueId,
+				new ArrayList<>(snapshots)
+		);
+		this.markDirty();
+	}
+
 	private void checkSnapshotsCountLimit() {
-		int snapshotsCount = this.getSnapshots().size();
+		int snapshotsCount = snapshots.size();
 		if (snapshotsCount > SNAPSHOTS_WARNING_LIMIT) {
 			Log.warning(this.getLogPrefix() + "This shopkeeper has has more than "
 					+ SNAPSHOTS_WARNING_LIMIT + " snapshots (" + snapshotsCount + ")! "
@@ -1415,25 +1567,40 @@ public abstract class AbstractShopkeeper implements Shopkeeper {
 
 	private void saveSnapshots(ShopkeeperData shopkeeperData) {
 		assert shopkeeperData != null;
-		shopkeeperData.set(SNAPSHOTS, snapshotsView);
+		// The snapshots themselves are persisted by the shopkeeper storage when they change.
+		shopkeeperData.set(SNAPSHOT_COUNT, snapshotCount);
+		shopkeeperData.set(SNAPSHOT_ITEMS_OUTDATED, snapshotItemsOutdated);
+	}
+
+	/**
+	 * Gets the number of snapshots of this shopkeeper.
+	 * <p>
+	 * Unlike {@link #getSnapshots()}, this does not load the snapshots.
+	 * 
+	 * @return the number of snapshots
+	 */
+	public final int getSnapshotCount() {
+		return snapshotCount;
 	}
 
 	@Override
 	public final List<? extends SKShopkeeperSnapshot> getSnapshots() {
+		this.ensureSnapshotsLoaded();
 		return snapshotsView;
 	}
 
 	@Override
 	public final SKShopkeeperSnapshot getSnapshot(int index) {
-		return snapshotsView.get(index);
+		return this.getSnapshots().get(index);
 	}
 
 	@Override
 	public final int getSnapshotIndex(String name) {
 		String normalizedName = StringUtils.normalize(name);
 		if (StringUtils.isEmpty(normalizedName)) return -1;
-		for (int index = 0; index < snapshotsView.size(); index++) {
-			ShopkeeperSnapshot snapshot = snapshotsView.get(index);
+		List<? extends SKShopkeeperSnapshot> snapshots = this.getSnapshots();
+		for (int index = 0; index < snapshots.size(); index++) {
+			ShopkeeperSnapshot snapshot = snapshots.get(index);
 			String normalizedSnapshotName = StringUtils.normalize(snapshot.getName());
 			if (normalizedSnapshotName.equals(normalizedName)) {
 				return index;
@@ -1459,9 +1626,10 @@ public abstract class AbstractShopkeeper implements Shopkeeper {
 
 	@Override
 	public final void addSnapshot(ShopkeeperSnapshot snapshot) {
+		this.ensureSnapshotsModifiable();
 		this._addSnapshot(snapshot);
 		this.checkSnapshotsCountLimit();
-		this.markDirty();
+		this.onSnapshotsChanged();
 	}
 
 	private void _addSnapshot(ShopkeeperSnapshot snapshot) {
@@ -1486,15 +1654,19 @@ public abstract class AbstractShopkeeper implements Shopkeeper {
 
 	@Override
 	public final SKShopkeeperSnapshot removeSnapshot(int index) {
+		this.ensureSnapshotsModifiable();
 		SKShopkeeperSnapshot snapshot = snapshots.remove(index);
-		this.markDirty();
+		this.onSnapshotsChanged();
 		return snapshot;
 	}
 
 	@Override
 	public final void removeAllSnapshots() {
+		// The stored snapshots do not need to be loaded first:
 		snapshots.clear();
-		this.markDirty();
+		snapshotsLoaded = true;
+		snapshotItemsOutdated = false;
+		this.onSnapshotsChanged();
 	}
 
 	@Override
@@ -1693,8 +1865,12 @@ public abstract class AbstractShopkeeper implements Shopkeeper {
 	 * Ticks this shopkeeper.
 	 * <p>
 	 * This method is meant to only be used internally by the Shopkeepers plugin itself!
+	 * 
+	 * @param checkShopObject
+	 *            <code>true</code> if the periodic {@link AbstractShopObject#onCheck() check} of
+	 *            the shop object is due
 	 */
-	public final void tick() {
+	public final void tick(boolean checkShopObject) {
 		assert this.isTicking();
 
 		// An exception during onTickStart will abort the tick.
@@ -1704,6 +1880,11 @@ public abstract class AbstractShopkeeper implements Shopkeeper {
 
 		try {
 			this.onTick();
+
+			// Abort if the ticking has been stopped during onTick:
+			if (checkShopObject && this.isTicking()) {
+				shopObject.onCheck();
+			}
 		} finally {
 			// onTickEnd is always called, even if onTick was aborted by an exception.
 			this.onTickEnd();
@@ -1,25 +1,25 @@
 package com.nisovin.shopkeepers.shopkeeper.activation;
 
 import org.bukkit.Chunk;
-import org.bukkit.Location;
 import org.bukkit.World;
-import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
-import org.bukkit.event.player.PlayerJoinEvent;
-import org.bukkit.event.player.PlayerTeleportEvent;
 import org.bukkit.event.world.ChunkLoadEvent;
 import org.bukkit.event.world.ChunkUnloadEvent;
 import org.bukkit.event.world.WorldLoadEvent;
 import org.bukkit.event.world.WorldUnloadEvent;
 
 import com.nisovin.shopkeepers.util.java.Validate;
+import com.nisovin.shopkeepers.world.PlayerProximityIndex.ProximityListener;
 
 /**
  * Handles events related to chunk activations.
+ * <p>
+ * Also receives the chunks that come near players from the
+ * {@link com.nisovin.shopkeepers.world.PlayerProximityIndex}.
  */
-class ChunkActivationListener implements Listener {
+class ChunkActivationListener implements Listener, ProximityListener {
 
 	// TODO: Unload shopkeepers on HIGHEST priority instead, so that monitoring plugins can
 	// determine the actually unloaded (saved) entities / blocks? However, it is important to not
@@ -70,29 +70,16 @@ class ChunkActivationListener implements Listener {
 		chunkActivator.onWorldUnload(world);
 	}
 
-	// We react to player joins and teleports in order to quickly activate chunks around players
-	// that suddenly appear near shopkeepers:
+	// We react to chunks that come near players (e.g. due to player joins or teleports) in order to
+	// quickly activate chunks around players that suddenly appear near shopkeepers:
 
-	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-	void onPlayerJoin(PlayerJoinEvent event) {
-		// Check if the player is still online (some other plugin might have kicked the player
-		// during the event):
-		Player player = event.getPlayer();
-		if (!player.isOnline()) return; // Player is no longer online
-
-		// Activate the chunks around the player after the server has completely handled the join:
-		chunkActivator.activatePendingNearbyChunksDelayed(player);
+	@Override
+	public void onChunkNearPlayers(String worldName, int chunkX, int chunkZ) {
+		chunkActivator.activatePendingChunk(worldName, chunkX, chunkZ);
 	}
 
-	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-	void onPlayerTeleport(PlayerTeleportEvent event) {
-		// The target location can be null in some circumstances (e.g. when a player enters an end
-		// gateway, but there is no end world). We ignore the event in this case.
-		Location targetLocation = event.getTo();
-		if (targetLocation == null) return;
-
-		// Activate the chunks around the player after the teleport:
-		Player player = event.getPlayer();
-		chunkActivator.activatePendingNearbyChunksDelayed(player);
+	@Override
+	public void onChunkNoLongerNearPlayers(String worldName, int chunkX, int chunkZ) {
+		// The chunk remains active until it is unloaded.
 	}
 }
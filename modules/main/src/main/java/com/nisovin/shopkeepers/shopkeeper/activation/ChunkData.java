@@ -1,22 +1,24 @@
 package com.nisovin.shopkeepers.shopkeeper.activation;
 
-import org.bukkit.scheduler.BukkitTask;
-import org.checkerframework.checker.nullness.qual.Nullable;
-
 import com.nisovin.shopkeepers.api.util.ChunkCoords;
 import com.nisovin.shopkeepers.util.java.Validate;
 
 final class ChunkData {
 
+	private static final long NO_PENDING_ACTIVATION = -1L;
+
 	private final ChunkCoords chunkCoords;
 	// This flag differs from the chunk's current activation state during the processing of a
 	// request to de-/activate a chunk and its actual de-/activation. It does NOT indicate a pending
 	// delayed activation.
 	private boolean shouldBeActive;
 	private boolean active;
-	// TODO Use one task (or a small number of tasks) for all pending delayed chunk activations,
-	// instead of one task per chunk?
-	private @Nullable BukkitTask delayedActivationTask = null;
+	// The tick of the PendingChunkActivations at which the chunk is due for activation:
+	private long activationDueTick = NO_PENDING_ACTIVATION;
+	// Whether the chunk is contained in the due chunks of the PendingChunkActivations:
+	private boolean dueForActivation = false;
+	// Used for sorting the due chunks:
+	private long playerDistanceSq = 0L;
 
 	ChunkData(ChunkCoords chunkCoords) {
 		Validate.notNull(chunkCoords, "chunkCoords is null");
@@ -47,18 +49,37 @@ final class ChunkData {
 	}
 
 	public boolean isActivationDelayed() {
-		return (delayedActivationTask != null);
+		return (activationDueTick != NO_PENDING_ACTIVATION);
+	}
+
+	long getActivationDueTick() {
+		return activationDueTick;
 	}
 
-	void setDelayedActivationTask(@Nullable BukkitTask delayedActivationTask) {
-		this.delayedActivationTask = delayedActivationTask;
+	void setActivationDueTick(long activationDueTick) {
+		assert activationDueTick >= 0;
+		this.activationDueTick = activationDueTick;
 	}
 
+	// The PendingChunkActivations skip the chunk once it becomes due.
 	void cancelDelayedActivation() {
-		if (delayedActivationTask != null) {
-			delayedActivationTask.cancel();
-			delayedActivationTask = null;
-		}
+		activationDueTick = NO_PENDING_ACTIVATION;
+	}
+
+	boolean isDueForActivation() {
+		return dueForActivation;
+	}
+
+	void setDueForActivation(boolean dueForActivation) {
+		this.dueForActivation = dueForActivation;
+	}
+
+	long getPlayerDistanceSq() {
+		return playerDistanceSq;
+	}
+
+	void setPlayerDistanceSq(long playerDistanceSq) {
+		this.playerDistanceSq = playerDistanceSq;
 	}
 
 	// Checks if the chunk is loaded, but not yet active or pending activation:
@@ -0,0 +1,273 @@
+package com.nisovin.shopkeepers.shopkeeper.activation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
+import com.nisovin.shopkeepers.api.util.ChunkCoords;
+import com.nisovin.shopkeepers.config.Settings;
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * Activates pending chunks in bulk.
+ * <p>
+ * Instead of using one task per chunk, all pending chunk activations are processed by a single
+ * task that runs every tick: Loaded chunks become due for activation after a certain delay. The
+ * due chunks are sorted by their distance to the nearest player inside the same world and are then
+ * activated until the {@link Settings#chunkActivationBudgetMillis chunk activation budget} is used
+ * up. Any remaining chunks are activated during the subsequent ticks.
+ * <p>
+ * When many chunks are loaded at the same time, e.g. when a world is loaded or when many players
+ * teleport at the same time, this activates the chunks near players first, and spreads the
+ * activation of the remaining chunks across multiple ticks. Since the activated chunks add their
+ * shopkeepers to the spawn queue in this order, the shopkeepers near players are also spawned
+ * first.
+ */
+class PendingChunkActivations {
+
+	/**
+	 * The sorting order of the due chunks is updated in this interval (in ticks), even if no new
+	 * chunks became due, in order to account for player movements.
+	 */
+	private static final int RESORT_PERIOD_TICKS = 20;
+
+	private static final long NO_NEARBY_PLAYER = Long.MAX_VALUE;
+
+	private static final Comparator<ChunkData> BY_PLAYER_DISTANCE = Comparator.comparingLong(
+			ChunkData::getPlayerDistanceSq
+	);
+
+	private static final class PendingActivation {
+
+		final ChunkData chunkData;
+		final long dueTick;
+
+		PendingActivation(ChunkData chunkData, long dueTick) {
+			this.chunkData = chunkData;
+			this.dueTick = dueTick;
+		}
+	}
+
+	private final SKShopkeepersPlugin plugin;
+	private final ShopkeeperChunkActivator chunkActivator;
+
+	// Ordered by their due tick. Entries whose chunk is no longer pending activation, or has been
+	// rescheduled in the meantime, are skipped once they become due.
+	private final Queue<PendingActivation> delayedActivations = new ArrayDeque<>();
+	// The due chunks, sorted by their distance to the nearest player. Chunks whose activation has
+	// been cancelled in the meantime are skipped. Chunks whose activation has been cancelled and
+	// then rescheduled (e.g. chunks that have been unloaded and then loaded again) are skipped as
+	// well, until their new delayed activation becomes due.
+	private final List<ChunkData> dueChunks = new ArrayList<>();
+	private boolean dueChunksSorted = true;
+	private int ticksSinceSort = 0;
+	private long currentTick = 0L;
+
+	private @Nullable BukkitTask task = null;
+
+	// Reused during sorting:
+	private final Map<String, long[]> playerChunks = new HashMap<>();
+	private final Location sharedLocation = new Location(null, 0, 0, 0);
+
+	PendingChunkActivations(SKShopkeepersPlugin plugin, ShopkeeperChunkActivator chunkActivator) {
+		Validate.notNull(plugin, "plugin is null");
+		Validate.notNull(chunkActivator, "chunkActivator is null");
+		this.plugin = plugin;
+		this.chunkActivator = chunkActivator;
+	}
+
+	void onEnable() {
+		assert task == null;
+		task = Bukkit.getScheduler().runTaskTimer(plugin, this::processPendingActivations, 1L, 1L);
+	}
+
+	void onDisable() {
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+		delayedActivations.forEach(pendingActivation -> {
+			pendingActivation.chunkData.cancelDelayedActivation();
+		});
+		delayedActivations.clear();
+		dueChunks.forEach(chunkData -> {
+			chunkData.cancelDelayedActivation();
+			chunkData.setDueForActivation(false);
+		});
+		dueChunks.clear();
+		dueChunksSorted = true;
+		ticksSinceSort = 0;
+		currentTick = 0L;
+	}
+
+	/**
+	 * Gets the number of chunks that are currently pending activation.
+	 * <p>
+	 * This may include some chunks whose activation has already been cancelled again.
+	 * 
+	 * @return the number of pending chunk activations
+	 */
+	int getPendingCount() {
+		return delayedActivations.size() + dueChunks.size();
+	}
+
+	/**
+	 * Marks the given chunk as pending activation, and activates it once the given delay has
+	 * passed.
+	 * 
+	 * @param chunkData
+	 *            the chunk, not active and not already pending activation
+	 * @param delayTicks
+	 *            the delay in ticks, or <code>0</code> to activate the chunk as soon as possible
+	 */
+	void scheduleActivation(ChunkData chunkData, long delayTicks) {
+		assert chunkData != null && delayTicks >= 0;
+		assert !chunkData.isActive() && !chunkData.isActivationDelayed();
+		long dueTick = currentTick + delayTicks;
+		chunkData.setActivationDueTick(dueTick);
+		if (delayTicks == 0) {
+			this.addDueChunk(chunkData);
+		} else {
+			delayedActivations.add(new PendingActivation(chunkData, dueTick));
+		}
+	}
+
+	/**
+	 * Activates the given pending chunk as soon as possible, i.e. during the next processing of the
+	 * due chunks, instead of after its remaining delay.
+	 * 
+	 * @param chunkData
+	 *            the chunk, pending activation
+	 */
+	void expediteActivation(ChunkData chunkData) {
+		assert chunkData != null && chunkData.isActivationDelayed();
+		chunkData.setActivationDueTick(currentTick);
+		// Its entry in the delayed activations queue is skipped, since it no longer matches the
+		// chunk's due tick.
+		this.addDueChunk(chunkData);
+	}
+
+	private void addDueChunk(ChunkData chunkData) {
+		if (chunkData.isDueForActivation()) return; // Already contained
+		chunkData.setDueForActivation(true);
+		dueChunks.add(chunkData);
+		dueChunksSorted = false;
+	}
+
+	private void processPendingActivations() {
+		currentTick++;
+
+		// Collect the chunks that became due:
+		PendingActivation pendingActivation;
+		while ((pendingActivation = delayedActivations.peek()) != null) {
+			if (pendingActivation.dueTick > currentTick) break;
+			delayedActivations.poll();
+
+			ChunkData chunkData = pendingActivation.chunkData;
+			// Skip if the activation has been cancelled, expedited, or rescheduled:
+			if (chunkData.getActivationDueTick() != pendingActivation.dueTick) continue;
+			this.addDueChunk(chunkData);
+		}
+
+		if (dueChunks.isEmpty()) return;
+
+		ticksSinceSort++;
+		if (!dueChunksSorted || ticksSinceSort >= RESORT_PERIOD_TICKS) {
+			this.sortDueChunks();
+		}
+
+		// Activate the due chunks, starting with the chunks nearest to players, until the budget is
+		// used up. We always activate at least one chunk per tick.
+		long budgetNanos = TimeUnit.MILLISECONDS.toNanos(Settings.chunkActivationBudgetMillis);
+		long startNanos = System.nanoTime();
+		boolean activatedChunk = false;
+		int index = 0;
+		int size = dueChunks.size();
+		for (; index < size; index++) {
+			if (activatedChunk && budgetNanos > 0
+					&& (System.nanoTime() - startNanos) >= budgetNanos) {
+				break;
+			}
+
+			ChunkData chunkData = dueChunks.get(index);
+			chunkData.setDueForActivation(false);
+			// Skip if the activation has been cancelled in the meantime:
+			if (!chunkData.isActivationDelayed()) continue;
+			// Skip if the activation has been rescheduled in the meantime: The chunk is added again
+			// once its new delayed activation becomes due.
+			if (chunkData.getActivationDueTick() > currentTick) continue;
+
+			// Note: This might indirectly trigger the activation or deactivation of other chunks,
+			// but only appends chunks to the due chunks list.
+			chunkActivator.activateChunk(chunkData);
+			activatedChunk = true;
+		}
+
+		// Remove the processed chunks. Any chunks that became due during the activations were added
+		// to the end of the list and remain there.
+		if (index == dueChunks.size()) {
+			dueChunks.clear();
+		} else {
+			dueChunks.subList(0, index).clear();
+		}
+	}
+
+	private void sortDueChunks() {
+		dueChunksSorted = true;
+		ticksSinceSort = 0;
+
+		for (ChunkData chunkData : dueChunks) {
+			chunkData.setPlayerDistanceSq(this.getPlayerDistanceSq(chunkData.getChunkCoords()));
+		}
+		playerChunks.clear();
+
+		dueChunks.sort(BY_PLAYER_DISTANCE);
+	}
+
+	// Returns the squared chunk distance to the nearest player in the same world.
+	private long getPlayerDistanceSq(ChunkCoords chunkCoords) {
+		long[] worldPlayerChunks = playerChunks.computeIfAbsent(
+				chunkCoords.getWorldName(),
+				this::getPlayerChunks
+		);
+
+		int chunkX = chunkCoords.getChunkX();
+		int chunkZ = chunkCoords.getChunkZ();
+		long minDistanceSq = NO_NEARBY_PLAYER;
+		for (int i = 0; i < worldPlayerChunks.length; i += 2) {
+			long dx = worldPlayerChunks[i] - chunkX;
+			long dz = worldPlayerChunks[i + 1] - chunkZ;
+			long distanceSq = dx * dx + dz * dz;
+			if (distanceSq < minDistanceSq) {
+				minDistanceSq = distanceSq;
+			}
+		}
+		return minDistanceSq;
+	}
+
+	// The chunk x and z coordinates of the players inside the specified world, stored alternately.
+	private long[] getPlayerChunks(String worldName) {
+		List<? extends Player> players = plugin.getPlayerMap().getPlayers(worldName);
+		long[] worldPlayerChunks = new long[players.size() * 2];
+		int index = 0;
+		for (Player player : players) {
+			Location location = player.getLocation(sharedLocation);
+			worldPlayerChunks[index++] = location.getBlockX() >> 4;
+			worldPlayerChunks[index++] = location.getBlockZ() >> 4;
+		}
+		sharedLocation.setWorld(null); // Reset
+		return worldPlayerChunks;
+	}
+}
@@ -3,20 +3,15 @@ package com.nisovin.shopkeepers.shopkeeper.activation;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Queue;
 import java.util.function.Predicate;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
-import org.bukkit.Location;
 import org.bukkit.Server;
 import org.bukkit.World;
-import org.bukkit.entity.Player;
 import org.bukkit.event.HandlerList;
-import org.bukkit.scheduler.BukkitTask;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import com.nisovin.shopkeepers.SKShopkeepersPlugin;
@@ -27,8 +22,9 @@ import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopkeeper.registry.SKShopkeeperRegistry;
 import com.nisovin.shopkeepers.shopkeeper.spawning.ShopkeeperSpawner;
 import com.nisovin.shopkeepers.shopkeeper.ticking.ShopkeeperTicker;
-import com.nisovin.shopkeepers.util.bukkit.MutableChunkCoords;
 import com.nisovin.shopkeepers.util.bukkit.TextUtils;
+import com.nisovin.shopkeepers.util.bukkit.WorldChunkMap;
+import com.nisovin.shopkeepers.util.java.LongHashMap;
 import com.nisovin.shopkeepers.util.java.Validate;
 import com.nisovin.shopkeepers.util.logging.Log;
 import com.nisovin.shopkeepers.util.timer.Timer;
@@ -48,8 +44,9 @@ public class ShopkeeperChunkActivator {
 	 */
 	private static final long CHUNK_ACTIVATION_DELAY_TICKS = 20;
 	/**
-	 * The radius in chunks around the player that we immediately activate when a player freshly
-	 * joins, or teleports. A radius of {@code zero} only activates the player's own chunk.
+	 * The radius in chunks around players in which we immediately activate chunks that are pending
+	 * a delayed activation, e.g. when a player freshly joins, teleports, or approaches the chunk. A
+	 * radius of {@code zero} only activates the player's own chunk.
 	 * <p>
 	 * The actually used radius is the minimum of this setting and the server's
 	 * {@link Server#getViewDistance() view distance}.
@@ -59,16 +56,14 @@ public class ShopkeeperChunkActivator {
 	private static final Predicate<AbstractShopkeeper> SHOPKEEPER_IS_ACTIVE = AbstractShopkeeper::isActive;
 	private static final Predicate<AbstractShopkeeper> SHOPKEEPER_IS_INACTIVE = Unsafe.assertNonNull(SHOPKEEPER_IS_ACTIVE.negate());
 
-	private static final Location sharedLocation = new Location(null, 0, 0, 0);
-	private static final MutableChunkCoords sharedChunkCoords = new MutableChunkCoords();
-
 	private final SKShopkeepersPlugin plugin;
 	private final SKShopkeeperRegistry shopkeeperRegistry;
 	private final ShopkeeperTicker shopkeeperTicker;
 	private final ShopkeeperSpawner shopkeeperSpawner;
 	private final ChunkActivationListener listener = new ChunkActivationListener(Unsafe.initialized(this));
+	private final PendingChunkActivations pendingChunkActivations;
 
-	private final Map<ChunkCoords, ChunkData> chunks = new HashMap<>();
+	private final WorldChunkMap<ChunkData> chunks = new WorldChunkMap<>();
 
 	private boolean chunkActivationInProgress = false;
 	// This does not consider pending delayed chunk activation tasks, but only tracks actual
@@ -94,6 +89,7 @@ public class ShopkeeperChunkActivator {
 		this.shopkeeperRegistry = shopkeeperRegistry;
 		this.shopkeeperTicker = shopkeeperTicker;
 		this.shopkeeperSpawner = shopkeeperSpawner;
+		this.pendingChunkActivations = new PendingChunkActivations(plugin, Unsafe.initialized(this));
 	}
 
 	public void onEnable() {
@@ -104,10 +100,14 @@ public class ShopkeeperChunkActivator {
 		);
 
 		Bukkit.getPluginManager().registerEvents(listener, plugin);
+		plugin.getPlayerProximityIndex().addListener(immediateChunkActivationRadius, listener);
+		pendingChunkActivations.onEnable();
 	}
 
 	public void onDisable() {
 		HandlerList.unregisterAll(listener);
+		plugin.getPlayerProximityIndex().removeListener(listener);
+		pendingChunkActivations.onDisable();
 		chunkActivationTimings.reset();
 		this.ensureEmpty();
 	}
@@ -127,13 +127,11 @@ public class ShopkeeperChunkActivator {
 
 	private @Nullable ChunkData getChunkData(Chunk chunk) {
 		assert chunk != null;
-		sharedChunkCoords.set(chunk);
-		return this.getChunkData(sharedChunkCoords);
+		return chunks.get(chunk);
 	}
 
 	private @Nullable ChunkData getChunkData(String worldName, int chunkX, int chunkZ) {
-		sharedChunkCoords.set(worldName, chunkX, chunkZ);
-		return this.getChunkData(sharedChunkCoords);
+		return chunks.get(worldName, chunkX, chunkZ);
 	}
 
 	// Returns null if there is no data for the specified chunk, i.e. if there are no shopkeepers in
@@ -145,7 +143,12 @@ public class ShopkeeperChunkActivator {
 
 	private ChunkData getOrCreateChunkData(ChunkCoords chunkCoords) {
 		assert chunkCoords != null;
-		ChunkData chunkData = chunks.computeIfAbsent(chunkCoords, ChunkData::new);
+		ChunkData chunkData = chunks.computeIfAbsent(
+				chunkCoords.getWorldName(),
+				chunkCoords.getChunkX(),
+				chunkCoords.getChunkZ(),
+				chunkKey -> new ChunkData(chunkCoords)
+		);
 		assert chunkData != null;
 		return chunkData;
 	}
@@ -260,6 +263,10 @@ public class ShopkeeperChunkActivator {
 		return chunkActivationTimings;
 	}
 
+	public int getPendingChunkActivationsCount() {
+		return pendingChunkActivations.getPendingCount();
+	}
+
 	public boolean isChunkActive(ChunkCoords chunkCoords) {
 		ChunkData chunkData = this.getChunkData(chunkCoords);
 		if (chunkData == null) return false;
@@ -268,6 +275,13 @@ public class ShopkeeperChunkActivator {
 
 	void onChunkLoad(Chunk chunk) {
 		assert chunk != null;
+		// Load any shopkeepers whose loading has been deferred until their chunk is loaded:
+		shopkeeperRegistry.loadDeferredShopkeepers(
+				chunk.getWorld().getName(),
+				chunk.getX(),
+				chunk.getZ()
+		);
+
 		ChunkData chunkData = this.getChunkData(chunk);
 		if (chunkData == null) return; // There are no shopkeepers in this chunk
 
@@ -289,90 +303,19 @@ public class ShopkeeperChunkActivator {
 		}
 
 		// Delay the activation to not activate shopkeepers for chunks that are only loaded briefly:
-		new DelayedChunkActivationTask(chunkData).start();
-	}
-
-	private class DelayedChunkActivationTask implements Runnable {
-
-		private final ChunkData chunkData;
-
-		DelayedChunkActivationTask(ChunkData chunkData) {
-			assert chunkData != null;
-			this.chunkData = chunkData;
-		}
-
-		void start() {
-			assert !chunkData.isActive() && !chunkData.isActivationDelayed();
-			BukkitTask task = Bukkit.getScheduler().runTaskLater(
-					plugin,
-					this,
-					CHUNK_ACTIVATION_DELAY_TICKS
-			);
-			chunkData.setDelayedActivationTask(task);
-		}
-
-		@Override
-		public void run() {
-			assert chunkData.getChunkCoords().isChunkLoaded(); // We stop the task on chunk unloads
-			chunkData.setDelayedActivationTask(null);
-			activateChunk(chunkData);
-		}
-	}
-
-	void activatePendingNearbyChunksDelayed(Player player) {
-		assert player != null;
-		Bukkit.getScheduler().runTask(plugin, new ActivatePendingNearbyChunksTask(player));
-	}
-
-	private class ActivatePendingNearbyChunksTask implements Runnable {
-
-		private final Player player;
-
-		ActivatePendingNearbyChunksTask(Player player) {
-			assert player != null;
-			this.player = player;
-		}
-
-		@Override
-		public void run() {
-			if (!player.isOnline()) return; // Player is no longer online
-			activatePendingNearbyChunks(player);
-		}
+		pendingChunkActivations.scheduleActivation(chunkData, CHUNK_ACTIVATION_DELAY_TICKS);
 	}
 
-	// Activates nearby chunks if they are currently pending a delayed activation:
-	private void activatePendingNearbyChunks(Player player) {
-		World world = player.getWorld();
-		Location location = Unsafe.assertNonNull(player.getLocation(sharedLocation));
-		int chunkX = ChunkCoords.fromBlock(location.getBlockX());
-		int chunkZ = ChunkCoords.fromBlock(location.getBlockZ());
-		sharedLocation.setWorld(null); // Reset
-		this.activatePendingNearbyChunks(world, chunkX, chunkZ, immediateChunkActivationRadius);
-	}
+	// Activates the chunk as soon as possible if it is currently pending a delayed activation:
+	// Since many chunks can become near players at the same time (e.g. when many players teleport
+	// at the same time), these chunks are activated in bulk by the pending chunk activations, which
+	// prioritize the chunks nearest to players.
+	void activatePendingChunk(String worldName, int chunkX, int chunkZ) {
+		ChunkData chunkData = this.getChunkData(worldName, chunkX, chunkZ);
+		if (chunkData == null) return;
 
-	// Activates nearby chunks if they are currently pending a delayed activation:
-	private void activatePendingNearbyChunks(
-			World world,
-			int centerChunkX,
-			int centerChunkZ,
-			int chunkRadius
-	) {
-		assert world != null && chunkRadius >= 0;
-		String worldName = world.getName();
-		int minChunkX = centerChunkX - chunkRadius;
-		int maxChunkX = centerChunkX + chunkRadius;
-		int minChunkZ = centerChunkZ - chunkRadius;
-		int maxChunkZ = centerChunkZ + chunkRadius;
-		for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
-			for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
-				ChunkData chunkData = this.getChunkData(worldName, chunkX, chunkZ);
-				if (chunkData == null) continue;
-
-				// Activate the chunk if it is currently pending a delayed activation:
-				if (chunkData.isActivationDelayed()) {
-					this.activateChunk(chunkData);
-				}
-			}
+		if (chunkData.isActivationDelayed()) {
+			pendingChunkActivations.expediteActivation(chunkData);
 		}
 	}
 
@@ -391,7 +334,8 @@ public class ShopkeeperChunkActivator {
 		}
 	}
 
-	private void activateChunk(ChunkData chunkData) {
+	// Also called by PendingChunkActivations.
+	void activateChunk(ChunkData chunkData) {
 		assert chunkData != null;
 		// Note (SPIGOT-6980): On early versions of 1.18.2, chunks may report to not be loaded
 		// during ChunkLoadEvents, which breaks this and several similar assertions (not so bad),
@@ -596,15 +540,38 @@ public class ShopkeeperChunkActivator {
 		worlds.forEach(this::activateChunks);
 	}
 
+	// Unlike during plugin enable, the chunks of newly loaded worlds are activated in bulk across
+	// multiple ticks, starting with the chunks nearest to players.
 	void onWorldLoad(World world) {
 		assert world != null;
-		this.activateChunks(world);
+		String worldName = world.getName();
+		// Load any deferred shopkeepers in the already loaded chunks of the world:
+		shopkeeperRegistry.loadDeferredShopkeepersInLoadedChunks(worldName);
+
+		int shopkeeperCount = shopkeeperRegistry.getShopkeepersInWorld(worldName).size();
+		if (shopkeeperCount == 0) return; // There are no shopkeepers in this world
+
+		Log.debug(DebugOptions.shopkeeperActivation,
+				() -> "Scheduling the activation of " + shopkeeperCount
+						+ " shopkeepers in world '" + worldName + "'"
+		);
+
+		LongHashMap<ChunkData> worldChunks = chunks.getWorldChunks(worldName);
+		if (worldChunks == null) return;
+		worldChunks.forEachValue(chunkData -> {
+			if (chunkData.needsActivation()) {
+				pendingChunkActivations.scheduleActivation(chunkData, 0L);
+			}
+		});
 	}
 
 	// Activates all loaded chunks of the given world.
 	private void activateChunks(World world) {
 		assert world != null;
 		String worldName = world.getName();
+		// Load any deferred shopkeepers in the already loaded chunks of the world:
+		shopkeeperRegistry.loadDeferredShopkeepersInLoadedChunks(worldName);
+
 		int shopkeeperCount = shopkeeperRegistry.getShopkeepersInWorld(worldName).size();
 		if (shopkeeperCount == 0) return; // There are no shopkeepers in this world
 
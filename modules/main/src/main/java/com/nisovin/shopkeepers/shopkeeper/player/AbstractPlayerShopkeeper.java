@@ -89,6 +89,8 @@ public abstract class AbstractPlayerShopkeeper
 	// still need a container block in a world.
 	// Immutable, valid after successful initialization:
 	private BlockLocation container = BlockLocation.EMPTY;
+	// Rebuilt lazily when the container contents might have changed:
+	private final ContainerStockIndex containerStock = new ContainerStockIndex();
 	private boolean notifyOnTrades = NOTIFY_ON_TRADES.getDefaultValue();
 	private @Nullable UnmodifiableItemStack hireCost = null; // Null if not for hire
 
@@ -341,8 +343,17 @@ public abstract class AbstractPlayerShopkeeper
 
 	private void _setOwner(User owner) {
 		Validate.notNull(owner, "owner is null");
+		UUID oldOwnerUUID = this.owner.getUniqueId();
 		this.owner = owner;
 
+		// Inform the shopkeeper registry, which indexes the player shops by their owner:
+		if (this.isValid()) {
+			SKShopkeepersPlugin.getInstance().getShopkeeperRegistry().onPlayerShopOwnerChanged(
+					this,
+					oldOwnerUUID
+			);
+		}
+
 		// Inform the shop object:
 		this.getShopObject().onShopOwnerChanged();
 	}
@@ -587,6 +598,7 @@ public abstract class AbstractPlayerShopkeeper
 
 		// Ensure that we store an immutable BlockLocation:
 		this.container = newContainer.immutable();
+		containerStock.invalidate();
 
 		if (this.isValid()) {
 			// Enable the protection for the new container:
@@ -644,6 +656,44 @@ public abstract class AbstractPlayerShopkeeper
 		}
 	}
 
+	/**
+	 * Gets the {@link ContainerStockIndex} of the current contents of the shop container.
+	 * <p>
+	 * If the index has been {@link #invalidateContainerStock() invalidated}, it is rebuilt from the
+	 * current container contents. If the container is not found, the index is empty.
+	 * 
+	 * @return the container stock index
+	 */
+	public ContainerStockIndex getContainerStock() {
+		if (!containerStock.isValid()) {
+			containerStock.update(this.getContainerContents());
+		}
+		return containerStock;
+	}
+
+	/**
+	 * Invalidates the {@link #getContainerStock() container stock index}.
+	 * <p>
+	 * This needs to be called whenever the contents of the shop container might have changed.
+	 */
+	public void invalidateContainerStock() {
+		containerStock.invalidate();
+	}
+
+	/**
+	 * Updates the {@link #getContainerStock() container stock index} with the given new container
+	 * contents.
+	 * <p>
+	 * This avoids having to copy the container contents again when we already know the new
+	 * contents, e.g. after a trade.
+	 * 
+	 * @param contents
+	 *            the new container contents, not <code>null</code>
+	 */
+	public void updateContainerStock(@ReadOnly @Nullable ItemStack @ReadOnly [] contents) {
+		containerStock.update(contents);
+	}
+
 	@Override
 	public int getCurrencyInContainer() {
 		int totalCurrency = 0;
@@ -0,0 +1,111 @@
+package com.nisovin.shopkeepers.shopkeeper.player;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.api.util.UnmodifiableItemStack;
+import com.nisovin.shopkeepers.util.annotations.ReadOnly;
+import com.nisovin.shopkeepers.util.inventory.ItemUtils;
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * An index of the contents of a shop container, to efficiently look up the available stock of the
+ * items offered by a player shop.
+ * <p>
+ * The container items are grouped by their type. Stock lookups therefore only need to compare the
+ * offered item with the container items of the same type, instead of with every item in the
+ * container. This keeps the building of the trading recipes of shops with many offers and large
+ * containers cheap, even though it is repeated after every trade.
+ * <p>
+ * The index is not automatically kept in sync with the container. It needs to be
+ * {@link #invalidate() invalidated} whenever the container contents might have changed, and is
+ * then rebuilt the next time it is used.
+ */
+public final class ContainerStockIndex {
+
+	private final Map<Material, List<ItemStack>> itemsByType = new HashMap<>();
+	private boolean valid = false;
+
+	ContainerStockIndex() {
+	}
+
+	/**
+	 * Checks if this index reflects the current container contents.
+	 * 
+	 * @return <code>true</code> if the index is valid
+	 */
+	boolean isValid() {
+		return valid;
+	}
+
+	/**
+	 * Marks this index as outdated.
+	 */
+	void invalidate() {
+		valid = false;
+		itemsByType.clear();
+	}
+
+	/**
+	 * Rebuilds this index from the given container contents.
+	 * <p>
+	 * The index keeps references to the given item stacks. These are expected to not be modified
+	 * afterwards.
+	 * 
+	 * @param contents
+	 *            the container contents, not <code>null</code>
+	 */
+	void update(@ReadOnly @Nullable ItemStack @ReadOnly [] contents) {
+		Validate.notNull(contents, "contents is null");
+		itemsByType.clear();
+		for (ItemStack itemStack : contents) {
+			if (ItemUtils.isEmpty(itemStack)) continue;
+			assert itemStack != null;
+			itemsByType.computeIfAbsent(itemStack.getType(), type -> new ArrayList<>(4))
+					.add(itemStack);
+		}
+		valid = true;
+	}
+
+	/**
+	 * Gets the amount of container items that are {@link UnmodifiableItemStack#isSimilar(ItemStack)
+	 * similar} to the given item.
+	 * 
+	 * @param item
+	 *            the item, not <code>null</code>
+	 * @return the available amount
+	 */
+	public int getAvailableAmount(UnmodifiableItemStack item) {
+		Validate.notNull(item, "item is null");
+		List<ItemStack> candidates = itemsByType.get(item.getType());
+		if (candidates == null) return 0;
+		int amount = 0;
+		for (ItemStack itemStack : candidates) {
+			if (item.isSimilar(itemStack)) {
+				amount += itemStack.getAmount();
+			}
+		}
+		return amount;
+	}
+
+	/**
+	 * Checks if the container contains at least the specified amount of items that are
+	 * {@link UnmodifiableItemStack#isSimilar(ItemStack) similar} to the given item.
+	 * 
+	 * @param item
+	 *            the item, not <code>null</code>
+	 * @param amount
+	 *            the amount of items to check for
+	 * @return <code>true</code> if at least the specified amount of items is available
+	 */
+	public boolean containsAtLeast(UnmodifiableItemStack item, int amount) {
+		if (amount <= 0) return true;
+		return this.getAvailableAmount(item) >= amount;
+	}
+}
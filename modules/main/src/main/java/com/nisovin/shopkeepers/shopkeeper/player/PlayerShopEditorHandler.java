@@ -206,7 +206,7 @@ public abstract class PlayerShopEditorHandler extends EditorHandler {
 		// Get new item amount:
 		ItemStack clickedItem = event.getCurrentItem(); // Can be null
 		int currentItemAmount = 0;
-		boolean isCurrencyItem = currency.getItemData().matches(clickedItem);
+		boolean isCurrencyItem = currency.matches(clickedItem);
 		if (isCurrencyItem) {
 			assert clickedItem != null;
 			currentItemAmount = clickedItem.getAmount();
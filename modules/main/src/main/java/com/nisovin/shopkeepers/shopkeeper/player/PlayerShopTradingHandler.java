@@ -8,9 +8,11 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import com.nisovin.shopkeepers.api.ShopkeepersPlugin;
 import com.nisovin.shopkeepers.api.internal.util.Unsafe;
 import com.nisovin.shopkeepers.api.shopkeeper.player.PlayerShopkeeper;
+import com.nisovin.shopkeepers.api.ui.UISession;
 import com.nisovin.shopkeepers.config.Settings;
 import com.nisovin.shopkeepers.lang.Messages;
 import com.nisovin.shopkeepers.ui.SKDefaultUITypes;
+import com.nisovin.shopkeepers.ui.state.UIState;
 import com.nisovin.shopkeepers.ui.trading.Trade;
 import com.nisovin.shopkeepers.ui.trading.TradingContext;
 import com.nisovin.shopkeepers.ui.trading.TradingHandler;
@@ -55,6 +57,14 @@ public abstract class PlayerShopTradingHandler extends TradingHandler {
 		return true;
 	}
 
+	@Override
+	protected boolean openWindow(UISession uiSession, UIState uiState) {
+		// The container contents might have been changed in ways that we did not notice, e.g. by
+		// other plugins. Rebuild the container stock index when a player starts trading:
+		this.getShopkeeper().invalidateContainerStock();
+		return super.openWindow(uiSession, uiState);
+	}
+
 	@Override
 	protected boolean prepareTrade(Trade trade) {
 		if (!super.prepareTrade(trade)) return false;
@@ -116,6 +126,9 @@ public abstract class PlayerShopTradingHandler extends TradingHandler {
 		// Apply container content changes:
 		if (containerInventory != null && newContainerContents != null) {
 			containerInventory.setContents(Unsafe.castNonNull(newContainerContents));
+			// Update the container stock index for the subsequent update of the trading recipes,
+			// without having to copy the container contents again:
+			this.getShopkeeper().updateContainerStock(newContainerContents);
 		}
 	}
 
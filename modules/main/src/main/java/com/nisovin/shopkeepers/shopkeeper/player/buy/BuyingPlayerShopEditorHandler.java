@@ -103,7 +103,7 @@ public class BuyingPlayerShopEditorHandler extends PlayerShopEditorHandler {
 			// We can reuse the trading recipe draft's items without copying them first.
 			UnmodifiableItemStack priceItem = Unsafe.assertNonNull(recipe.getResultItem());
 			// Make sure that the item is actually currency, just in case:
-			if (!Currencies.getBase().getItemData().matches(priceItem)) {
+			if (!Currencies.getBase().matches(priceItem)) {
 				// Unexpected.
 				Log.debug(shopkeeper.getLogPrefix()
 						+ "Price item does not match the base currency!");
@@ -150,7 +150,7 @@ public class BuyingPlayerShopTradingHandler extends PlayerShopTradingHandler {
 		for (int k = 0; k < 2; k++) {
 			for (int slot = 0; slot < contents.length; slot++) {
 				ItemStack itemStack = contents[slot];
-				if (!baseCurrency.getItemData().matches(itemStack)) continue;
+				if (!baseCurrency.matches(itemStack)) continue;
 				assert itemStack != null;
 
 				// Second pass, or the ItemStack is a partial one:
@@ -194,7 +194,7 @@ public class BuyingPlayerShopTradingHandler extends PlayerShopTradingHandler {
 		for (int k = 0; k < 2; k++) {
 			for (int slot = 0; slot < contents.length; slot++) {
 				ItemStack itemStack = contents[slot];
-				if (!highCurrency.getItemData().matches(itemStack)) continue;
+				if (!highCurrency.matches(itemStack)) continue;
 				assert itemStack != null;
 
 				// Second pass, or the ItemStack is a partial one:
@@ -22,12 +22,12 @@ import com.nisovin.shopkeepers.shopkeeper.migration.MigrationPhase;
 import com.nisovin.shopkeepers.shopkeeper.migration.ShopkeeperDataMigrator;
 import com.nisovin.shopkeepers.shopkeeper.offers.SKPriceOffer;
 import com.nisovin.shopkeepers.shopkeeper.player.AbstractPlayerShopkeeper;
+import com.nisovin.shopkeepers.shopkeeper.player.ContainerStockIndex;
 import com.nisovin.shopkeepers.util.annotations.ReadOnly;
 import com.nisovin.shopkeepers.util.annotations.ReadWrite;
 import com.nisovin.shopkeepers.util.data.property.BasicProperty;
 import com.nisovin.shopkeepers.util.data.property.Property;
 import com.nisovin.shopkeepers.util.data.serialization.InvalidDataException;
-import com.nisovin.shopkeepers.util.inventory.InventoryUtils;
 import com.nisovin.shopkeepers.util.inventory.ItemUtils;
 import com.nisovin.shopkeepers.util.java.CollectionUtils;
 import com.nisovin.shopkeepers.util.java.Validate;
@@ -109,18 +109,14 @@ public class SKSellingPlayerShopkeeper
 	@Override
 	public List<? extends TradingRecipe> getTradingRecipes(@Nullable Player player) {
 		// Empty if the container is not found:
-		@Nullable ItemStack[] containerContents = this.getContainerContents();
+		ContainerStockIndex containerStock = this.getContainerStock();
 		List<? extends PriceOffer> offers = this.getOffers();
 		List<TradingRecipe> recipes = new ArrayList<>(offers.size());
 		offers.forEach(offer -> {
 			// Both the offer's and the trading recipe's items are immutable. So there is no need to
 			// copy the item.
 			UnmodifiableItemStack tradedItem = offer.getItem();
-			boolean outOfStock = !InventoryUtils.containsAtLeast(
-					containerContents,
-					tradedItem,
-					tradedItem.getAmount()
-			);
+			boolean outOfStock = !containerStock.containsAtLeast(tradedItem, tradedItem.getAmount());
 			TradingRecipe recipe = this.createSellingRecipe(
 					tradedItem,
 					offer.getPrice(),
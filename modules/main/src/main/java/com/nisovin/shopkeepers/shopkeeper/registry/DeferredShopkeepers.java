@@ -0,0 +1,306 @@
+package com.nisovin.shopkeepers.shopkeeper.registry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.api.util.ChunkCoords;
+import com.nisovin.shopkeepers.util.bukkit.WorldChunkMap;
+import com.nisovin.shopkeepers.util.java.LongHashMap;
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * Keeps track of the shopkeepers whose loading has been deferred until their chunk is loaded.
+ * <p>
+ * Only the ids, the names, and the locations of these shopkeepers are kept in memory. Their data
+ * remains inside the shopkeeper storage until the shopkeepers are actually loaded.
+ * <p>
+ * The deferred shopkeepers are indexed by their names and locations, so that name and location
+ * queries can load the matching deferred shopkeepers before they are answered.
+ */
+final class DeferredShopkeepers {
+
+	static final class DeferredShopkeeper {
+
+		private final int id;
+		private final UUID uniqueId;
+		private final String name;
+		private final ChunkCoords chunkCoords;
+		private final int x;
+		private final int y;
+		private final int z;
+		private boolean itemUpdatePending = false;
+
+		DeferredShopkeeper(
+				int id,
+				UUID uniqueId,
+				String name,
+				String worldName,
+				int x,
+				int y,
+				int z
+		) {
+			Validate.notNull(uniqueId, "uniqueId is null");
+			Validate.notNull(name, "name is null");
+			Validate.notEmpty(worldName, "worldName is null or empty");
+			this.id = id;
+			this.uniqueId = uniqueId;
+			this.name = name;
+			this.chunkCoords = ChunkCoords.fromBlock(worldName, x, z);
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+
+		int getId() {
+			return id;
+		}
+
+		UUID getUniqueId() {
+			return uniqueId;
+		}
+
+		String getName() {
+			return name;
+		}
+
+		ChunkCoords getChunkCoords() {
+			return chunkCoords;
+		}
+
+		String getWorldName() {
+			return chunkCoords.getWorldName();
+		}
+
+		int getX() {
+			return x;
+		}
+
+		int getY() {
+			return y;
+		}
+
+		int getZ() {
+			return z;
+		}
+
+		// Whether the items of the shopkeeper need to be updated once it is loaded.
+		boolean isItemUpdatePending() {
+			return itemUpdatePending;
+		}
+
+		void setItemUpdatePending(boolean itemUpdatePending) {
+			this.itemUpdatePending = itemUpdatePending;
+		}
+	}
+
+	private final Map<Integer, DeferredShopkeeper> shopkeepersById = new HashMap<>();
+	private final Map<UUID, DeferredShopkeeper> shopkeepersByUUID = new HashMap<>();
+	// List instead of Set: We don't expect there to be excessive amounts of shopkeepers inside a
+	// single chunk.
+	private final WorldChunkMap<List<DeferredShopkeeper>> shopkeepersByChunk = new WorldChunkMap<>();
+	private final ShopkeeperNameIndex<DeferredShopkeeper> nameIndex = new ShopkeeperNameIndex<>();
+	private final ShopkeeperSpatialIndex<DeferredShopkeeper> spatialIndex = new ShopkeeperSpatialIndex<>();
+
+	DeferredShopkeepers() {
+	}
+
+	int size() {
+		return shopkeepersById.size();
+	}
+
+	boolean isEmpty() {
+		return shopkeepersById.isEmpty();
+	}
+
+	Collection<? extends DeferredShopkeeper> getAll() {
+		return Collections.unmodifiableCollection(shopkeepersById.values());
+	}
+
+	@Nullable
+	DeferredShopkeeper get(int shopkeeperId) {
+		return shopkeepersById.get(shopkeeperId);
+	}
+
+	@Nullable
+	DeferredShopkeeper get(UUID shopkeeperUniqueId) {
+		return shopkeepersByUUID.get(shopkeeperUniqueId);
+	}
+
+	void add(DeferredShopkeeper shopkeeper) {
+		assert shopkeeper != null;
+		assert !shopkeepersById.containsKey(shopkeeper.getId());
+		assert !shopkeepersByUUID.containsKey(shopkeeper.getUniqueId());
+		shopkeepersById.put(shopkeeper.getId(), shopkeeper);
+		shopkeepersByUUID.put(shopkeeper.getUniqueId(), shopkeeper);
+		ChunkCoords chunkCoords = shopkeeper.getChunkCoords();
+		shopkeepersByChunk.computeIfAbsent(
+				chunkCoords.getWorldName(),
+				chunkCoords.getChunkX(),
+				chunkCoords.getChunkZ(),
+				chunkKey -> new ArrayList<>(1)
+		).add(shopkeeper);
+		nameIndex.addShopkeeper(shopkeeper, shopkeeper.getName());
+		spatialIndex.addShopkeeper(
+				shopkeeper,
+				shopkeeper.getWorldName(),
+				shopkeeper.getX(),
+				shopkeeper.getY(),
+				shopkeeper.getZ()
+		);
+	}
+
+	void remove(DeferredShopkeeper shopkeeper) {
+		assert shopkeeper != null;
+		if (!shopkeepersById.containsKey(shopkeeper.getId())) return; // Not contained
+		this.removeFromIndices(shopkeeper);
+
+		ChunkCoords chunkCoords = shopkeeper.getChunkCoords();
+		List<DeferredShopkeeper> chunkShopkeepers = shopkeepersByChunk.get(chunkCoords);
+		assert chunkShopkeepers != null;
+		chunkShopkeepers.remove(shopkeeper);
+		if (chunkShopkeepers.isEmpty()) {
+			shopkeepersByChunk.remove(chunkCoords);
+		}
+	}
+
+	// Removes and returns the shopkeepers of the specified chunk.
+	List<DeferredShopkeeper> removeChunk(String worldName, int chunkX, int chunkZ) {
+		List<DeferredShopkeeper> chunkShopkeepers = shopkeepersByChunk.remove(
+				worldName,
+				chunkX,
+				chunkZ
+		);
+		if (chunkShopkeepers == null) return new ArrayList<>(0);
+
+		chunkShopkeepers.forEach(this::removeFromIndices);
+		return chunkShopkeepers;
+	}
+
+	// Removes and returns the shopkeepers of all currently loaded chunks of the specified world.
+	List<DeferredShopkeeper> removeLoadedChunks(String worldName) {
+		List<DeferredShopkeeper> removed = new ArrayList<>();
+		World world = Bukkit.getWorld(worldName);
+		if (world == null) return removed; // The world is not loaded
+
+		LongHashMap<List<DeferredShopkeeper>> worldChunks = shopkeepersByChunk.getWorldChunks(
+				worldName
+		);
+		if (worldChunks == null) return removed;
+
+		// The chunks are removed after the iteration, since the map must not be modified during
+		// the iteration:
+		worldChunks.forEachValue(chunkShopkeepers -> {
+			ChunkCoords chunkCoords = chunkShopkeepers.get(0).getChunkCoords();
+			if (!world.isChunkLoaded(chunkCoords.getChunkX(), chunkCoords.getChunkZ())) return;
+
+			removed.addAll(chunkShopkeepers);
+		});
+		removed.forEach(this::remove);
+		return removed;
+	}
+
+	// Removes and returns all shopkeepers.
+	List<DeferredShopkeeper> removeAll() {
+		List<DeferredShopkeeper> removed = new ArrayList<>(shopkeepersById.values());
+		this.clear();
+		return removed;
+	}
+
+	// Removes and returns the shopkeepers with the given normalized name.
+	List<DeferredShopkeeper> removeByName(String normalizedName) {
+		return this.removeAll(new ArrayList<>(nameIndex.getShopkeepersByName(normalizedName)));
+	}
+
+	// Removes and returns the shopkeepers whose normalized name starts with the given normalized
+	// prefix.
+	List<DeferredShopkeeper> removeByNamePrefix(String normalizedPrefix) {
+		return this.removeAll(nameIndex.getShopkeepersByNamePrefix(normalizedPrefix)
+				.collect(Collectors.toList()));
+	}
+
+	// Removes and returns the shopkeepers inside the specified block area (all bounds inclusive).
+	List<DeferredShopkeeper> removeInArea(
+			String worldName,
+			int minX,
+			int minY,
+			int minZ,
+			int maxX,
+			int maxY,
+			int maxZ
+	) {
+		List<DeferredShopkeeper> shopkeepers = new ArrayList<>();
+		spatialIndex.visitShopkeepersInArea(
+				worldName,
+				minX,
+				minY,
+				minZ,
+				maxX,
+				maxY,
+				maxZ,
+				shopkeepers::add
+		);
+		return this.removeAll(shopkeepers);
+	}
+
+	// Removes and returns the shopkeepers within the specified radius.
+	List<DeferredShopkeeper> removeInRadius(
+			String worldName,
+			double x,
+			double y,
+			double z,
+			double radius
+	) {
+		return this.removeAll(spatialIndex.getShopkeepersInRadius(worldName, x, y, z, radius));
+	}
+
+	// Removes and returns the specified number of shopkeepers that are nearest to the specified
+	// position.
+	List<DeferredShopkeeper> removeNearest(
+			String worldName,
+			double x,
+			double y,
+			double z,
+			int count,
+			double maxDistance
+	) {
+		return this.removeAll(spatialIndex.getNearestShopkeepers(
+				worldName,
+				x,
+				y,
+				z,
+				count,
+				maxDistance
+		));
+	}
+
+	private List<DeferredShopkeeper> removeAll(List<DeferredShopkeeper> shopkeepers) {
+		shopkeepers.forEach(this::remove);
+		return shopkeepers;
+	}
+
+	// Does not remove the shopkeeper from the chunk map.
+	private void removeFromIndices(DeferredShopkeeper shopkeeper) {
+		shopkeepersById.remove(shopkeeper.getId());
+		shopkeepersByUUID.remove(shopkeeper.getUniqueId());
+		nameIndex.removeShopkeeper(shopkeeper);
+		spatialIndex.removeShopkeeper(shopkeeper);
+	}
+
+	void clear() {
+		shopkeepersById.clear();
+		shopkeepersByUUID.clear();
+		shopkeepersByChunk.clear();
+		nameIndex.clear();
+		spatialIndex.clear();
+	}
+}
@@ -32,20 +32,26 @@ import com.nisovin.shopkeepers.api.shopkeeper.ShopkeeperCreateException;
 import com.nisovin.shopkeepers.api.shopkeeper.ShopkeeperRegistry;
 import com.nisovin.shopkeepers.api.shopkeeper.player.PlayerShopkeeper;
 import com.nisovin.shopkeepers.api.util.ChunkCoords;
+import com.nisovin.shopkeepers.config.Settings;
+import com.nisovin.shopkeepers.items.BulkItemUpdate;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopType;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopkeeper.ShopkeeperData;
 import com.nisovin.shopkeepers.shopkeeper.activation.ShopkeeperChunkActivator;
+import com.nisovin.shopkeepers.shopkeeper.player.AbstractPlayerShopType;
 import com.nisovin.shopkeepers.shopkeeper.player.AbstractPlayerShopkeeper;
+import com.nisovin.shopkeepers.shopkeeper.registry.DeferredShopkeepers.DeferredShopkeeper;
 import com.nisovin.shopkeepers.shopkeeper.registry.ShopkeeperChunkMap.ChangeListener;
 import com.nisovin.shopkeepers.shopkeeper.spawning.ShopkeeperSpawner;
 import com.nisovin.shopkeepers.shopkeeper.ticking.ShopkeeperTicker;
+import com.nisovin.shopkeepers.shopobjects.AbstractShopObject;
 import com.nisovin.shopkeepers.shopobjects.AbstractShopObjectType;
+import com.nisovin.shopkeepers.shopobjects.ShopObjectData;
 import com.nisovin.shopkeepers.shopobjects.block.BlockShopObjectIds;
 import com.nisovin.shopkeepers.shopobjects.entity.EntityShopObjectIds;
 import com.nisovin.shopkeepers.storage.SKShopkeeperStorage;
+import com.nisovin.shopkeepers.util.bukkit.BlockLocation;
 import com.nisovin.shopkeepers.util.bukkit.LocationUtils;
-import com.nisovin.shopkeepers.util.bukkit.TextUtils;
 import com.nisovin.shopkeepers.util.data.serialization.InvalidDataException;
 import com.nisovin.shopkeepers.util.java.StringUtils;
 import com.nisovin.shopkeepers.util.java.Validate;
@@ -60,7 +66,6 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 	private final Collection<? extends AbstractShopkeeper> allShopkeepersView = Collections.unmodifiableCollection(shopkeepersByUUID.values());
 	private final Map<Integer, AbstractShopkeeper> shopkeepersById = new HashMap<>();
 
-	// TODO Shopkeepers by name TreeMap to speedup name lookups and prefix matching?
 	// TODO TreeMaps for shopkeeper owners by name and uuid to speedup prefix matching?
 
 	// Virtual shopkeepers:
@@ -68,7 +73,13 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 	private final Set<AbstractShopkeeper> virtualShopkeepers = new LinkedHashSet<>();
 	private final Collection<? extends AbstractShopkeeper> virtualShopkeepersView = Collections.unmodifiableCollection(virtualShopkeepers);
 
+	// Shopkeepers whose loading has been deferred until their chunk is loaded:
+	private final DeferredShopkeepers deferredShopkeepers = new DeferredShopkeepers();
+
 	private final ShopkeeperChunkMap chunkMap;
+	// Non-virtual shopkeepers, for queries by area and distance:
+	private final ShopkeeperSpatialIndex<AbstractShopkeeper> spatialIndex = new ShopkeeperSpatialIndex<>();
+	private final ShopkeeperNameIndex<AbstractShopkeeper> nameIndex = new ShopkeeperNameIndex<>();
 	private final ChangeListener chunkMapChangeListener = new ChangeListener() {
 		@Override
 		public void onShopkeeperAdded(
@@ -112,6 +123,9 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 
 	// Player shopkeepers:
 	private int playerShopCount = 0;
+	// The player shopkeepers by the unique id of their owner. Owners without shopkeepers are
+	// removed.
+	private final Map<UUID, Set<AbstractPlayerShopkeeper>> playerShopkeepersByOwner = new HashMap<>();
 	// Note: Already unmodifiable.
 	private final Set<? extends AbstractPlayerShopkeeper> allPlayerShopkeepersView = new AbstractSet<AbstractPlayerShopkeeper>() {
 		@Override
@@ -174,14 +188,22 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 
 	private void ensureEmpty() {
 		if (!shopkeepersByUUID.isEmpty() || !shopkeepersById.isEmpty()
-				|| !virtualShopkeepers.isEmpty() || playerShopCount != 0) {
+				|| !virtualShopkeepers.isEmpty() || playerShopCount != 0
+				|| !playerShopkeepersByOwner.isEmpty()) {
 			Log.warning("Some shopkeepers were not properly unregistered!");
 			shopkeepersByUUID.clear();
 			shopkeepersById.clear();
 			virtualShopkeepers.clear();
 			playerShopCount = 0;
+			playerShopkeepersByOwner.clear();
+		}
+		if (!deferredShopkeepers.isEmpty()) {
+			Log.warning("Some deferred shopkeepers were not properly removed!");
+			deferredShopkeepers.clear();
 		}
 		chunkMap.ensureEmpty();
+		spatialIndex.ensureEmpty();
+		nameIndex.ensureEmpty();
 	}
 
 	public ShopkeeperSpawner getShopkeeperSpawner() {
@@ -192,6 +214,10 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 		return chunkActivator;
 	}
 
+	public ShopkeeperTicker getShopkeeperTicker() {
+		return shopkeeperTicker;
+	}
+
 	// SHOPKEEPER CREATION
 
 	private SKShopkeeperStorage getShopkeeperStorage() {
@@ -269,11 +295,183 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 	}
 
 	private void validateUnusedShopkeeperIds(Shopkeeper shopkeeper) {
-		Validate.isTrue(this.getShopkeeperById(shopkeeper.getId()) == null,
-				() -> "There already exists a shopkeeper with the same id: " + shopkeeper.getId());
-		Validate.isTrue(this.getShopkeeperByUniqueId(shopkeeper.getUniqueId()) == null,
-				() -> "There already exists a shopkeeper with the same unique id: "
-						+ shopkeeper.getUniqueId());
+		// Note: We check the maps directly, because the query methods might load deferred
+		// shopkeepers.
+		int id = shopkeeper.getId();
+		UUID uniqueId = shopkeeper.getUniqueId();
+		Validate.isTrue(!this.isShopkeeperIdUsed(id),
+				() -> "There already exists a shopkeeper with the same id: " + id);
+		Validate.isTrue(!this.isShopkeeperUniqueIdUsed(uniqueId),
+				() -> "There already exists a shopkeeper with the same unique id: " + uniqueId);
+	}
+
+	private boolean isShopkeeperIdUsed(int id) {
+		return shopkeepersById.containsKey(id) || deferredShopkeepers.get(id) != null;
+	}
+
+	private boolean isShopkeeperUniqueIdUsed(UUID uniqueId) {
+		return shopkeepersByUUID.containsKey(uniqueId) || deferredShopkeepers.get(uniqueId) != null;
+	}
+
+	// DEFERRED LOADING
+
+	/**
+	 * Defers the loading of the shopkeeper with the given {@link ShopkeeperData} until its chunk
+	 * is loaded, if {@link Settings#lazyShopkeeperLoading lazy shopkeeper loading} is enabled and
+	 * the shopkeeper is eligible.
+	 * <p>
+	 * Only non-virtual admin shopkeepers whose shop objects are spawned by the Shopkeepers plugin
+	 * and whose chunk is currently not loaded are deferred. Player shopkeepers are always loaded
+	 * right away, because they protect their containers and count towards the shop limits of
+	 * their owners.
+	 * <p>
+	 * The data of deferred shopkeepers is expected to remain inside the storage. Once the
+	 * shopkeeper is required, it is loaded via {@link SKShopkeeperStorage#loadDeferredShopkeeper(int)}.
+	 * 
+	 * @param shopkeeperData
+	 *            the shopkeeper data, not <code>null</code>
+	 * @return <code>true</code> if the loading of the shopkeeper has been deferred,
+	 *         <code>false</code> if the shopkeeper needs to be loaded right away
+	 */
+	// Internal method: This is only supposed to be called by the built-in storage.
+	public boolean deferShopkeeper(ShopkeeperData shopkeeperData) {
+		Validate.notNull(shopkeeperData, "shopkeeperData is null");
+		if (!Settings.lazyShopkeeperLoading) return false;
+
+		int id;
+		UUID uniqueId;
+		String name;
+		BlockLocation location;
+		try {
+			AbstractShopType<?> shopType = shopkeeperData.get(AbstractShopkeeper.SHOP_TYPE);
+			if (shopType instanceof AbstractPlayerShopType) return false;
+
+			ShopObjectData shopObjectData = shopkeeperData.get(AbstractShopkeeper.SHOP_OBJECT_DATA);
+			AbstractShopObjectType<?> objectType = shopObjectData.get(AbstractShopObject.SHOP_OBJECT_TYPE);
+			// Virtual shop objects and shop objects that handle their spawning themselves (e.g.
+			// Citizens NPCs) are not bound to chunk activations:
+			if (!objectType.mustBeSpawned()) return false;
+
+			id = shopkeeperData.get(AbstractShopkeeper.ID);
+			uniqueId = shopkeeperData.get(AbstractShopkeeper.UNIQUE_ID);
+			name = shopkeeperData.get(AbstractShopkeeper.NAME);
+			location = shopkeeperData.get(AbstractShopkeeper.LOCATION);
+		} catch (InvalidDataException e) {
+			// Load the shopkeeper right away so that the issue is reported:
+			return false;
+		}
+
+		String worldName = location.getWorldName();
+		if (worldName == null) return false;
+
+		DeferredShopkeeper deferredShopkeeper = new DeferredShopkeeper(
+				id,
+				uniqueId,
+				name,
+				worldName,
+				location.getX(),
+				location.getY(),
+				location.getZ()
+		);
+		if (deferredShopkeeper.getChunkCoords().isChunkLoaded()) return false;
+
+		// Any id conflicts are reported when the shopkeeper is loaded:
+		if (this.isShopkeeperIdUsed(id) || this.isShopkeeperUniqueIdUsed(uniqueId)) return false;
+
+		deferredShopkeepers.add(deferredShopkeeper);
+
+		// Inform the storage about the used up id:
+		this.getShopkeeperStorage().onShopkeeperIdUsed(id);
+		return true;
+	}
+
+	/**
+	 * Gets the number of shopkeepers whose loading is currently deferred.
+	 * 
+	 * @return the number of deferred shopkeepers
+	 */
+	public int getDeferredShopkeeperCount() {
+		return deferredShopkeepers.size();
+	}
+
+	/**
+	 * Gets the total number of shopkeepers, including the shopkeepers whose loading is currently
+	 * deferred.
+	 * <p>
+	 * Unlike {@link #getAllShopkeepers()}, this does not load any deferred shopkeepers.
+	 * 
+	 * @return the total number of shopkeepers
+	 */
+	public int getShopkeeperCount() {
+		return shopkeepersByUUID.size() + deferredShopkeepers.size();
+	}
+
+	/**
+	 * Loads the deferred shopkeepers of the specified chunk.
+	 * 
+	 * @param worldName
+	 *            the world name
+	 * @param chunkX
+	 *            the chunk's x coordinate
+	 * @param chunkZ
+	 *            the chunk's z coordinate
+	 */
+	public void loadDeferredShopkeepers(String worldName, int chunkX, int chunkZ) {
+		if (deferredShopkeepers.isEmpty()) return;
+		this.loadDeferredShopkeepers(deferredShopkeepers.removeChunk(worldName, chunkX, chunkZ));
+	}
+
+	/**
+	 * Loads the deferred shopkeepers of all currently loaded chunks of the specified world.
+	 * 
+	 * @param worldName
+	 *            the world name
+	 */
+	public void loadDeferredShopkeepersInLoadedChunks(String worldName) {
+		if (deferredShopkeepers.isEmpty()) return;
+		this.loadDeferredShopkeepers(deferredShopkeepers.removeLoadedChunks(worldName));
+	}
+
+	private void loadAllDeferredShopkeepers() {
+		if (deferredShopkeepers.isEmpty()) return;
+		this.loadDeferredShopkeepers(deferredShopkeepers.removeAll());
+	}
+
+	private void loadDeferredShopkeeper(DeferredShopkeeper deferredShopkeeper) {
+		deferredShopkeepers.remove(deferredShopkeeper);
+		this.loadRemovedDeferredShopkeeper(deferredShopkeeper);
+	}
+
+	private void loadDeferredShopkeepers(List<? extends DeferredShopkeeper> shopkeepers) {
+		if (shopkeepers.isEmpty()) return;
+		Log.debug(() -> "Loading " + shopkeepers.size() + " deferred shopkeepers.");
+		shopkeepers.forEach(this::loadRemovedDeferredShopkeeper);
+	}
+
+	// The shopkeeper has already been removed from the deferred shopkeepers.
+	private void loadRemovedDeferredShopkeeper(DeferredShopkeeper deferredShopkeeper) {
+		int shopkeeperId = deferredShopkeeper.getId();
+		this.getShopkeeperStorage().loadDeferredShopkeeper(shopkeeperId);
+		if (deferredShopkeeper.isItemUpdatePending()) {
+			// Null if the shopkeeper could not be loaded:
+			@Nullable AbstractShopkeeper shopkeeper = shopkeepersById.get(shopkeeperId);
+			if (shopkeeper != null) {
+				BulkItemUpdate.updateDeferredShopkeeper(shopkeeper);
+			}
+		}
+	}
+
+	/**
+	 * Updates the items of the shopkeepers whose loading is currently deferred once they are
+	 * loaded.
+	 * <p>
+	 * This is used by the {@link BulkItemUpdate}, which only updates the already loaded
+	 * shopkeepers.
+	 */
+	public void updateItemsOfDeferredShopkeepersOnLoad() {
+		deferredShopkeepers.getAll().forEach(deferredShopkeeper -> {
+			deferredShopkeeper.setItemUpdatePending(true);
+		});
 	}
 
 	// ADD / REMOVE SHOPKEEPER
@@ -298,11 +496,23 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 			virtualShopkeepers.add(shopkeeper);
 		} else {
 			chunkMap.addShopkeeper(shopkeeper);
+			spatialIndex.addShopkeeper(
+					shopkeeper,
+					Unsafe.assertNonNull(shopkeeper.getWorldName()),
+					shopkeeper.getX(),
+					shopkeeper.getY(),
+					shopkeeper.getZ()
+			);
 		}
 
-		// Update player shop count:
+		// Add shopkeeper to the name index:
+		nameIndex.addShopkeeper(shopkeeper, shopkeeper.getName());
+
+		// Update player shop count and owner index:
 		if (shopkeeper instanceof PlayerShopkeeper) {
 			playerShopCount++;
+			AbstractPlayerShopkeeper playerShop = (AbstractPlayerShopkeeper) shopkeeper;
+			this.addPlayerShopkeeperByOwner(playerShop, playerShop.getOwnerUUID());
 		}
 
 		// Log a warning if either the shop type or the shop object type is disabled. The shopkeeper
@@ -381,11 +591,17 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 			virtualShopkeepers.remove(shopkeeper);
 		} else {
 			chunkMap.removeShopkeeper(shopkeeper);
+			spatialIndex.removeShopkeeper(shopkeeper);
 		}
 
-		// Update player shop count:
+		// Remove shopkeeper from the name index:
+		nameIndex.removeShopkeeper(shopkeeper);
+
+		// Update player shop count and owner index:
 		if (shopkeeper instanceof PlayerShopkeeper) {
 			playerShopCount--;
+			AbstractPlayerShopkeeper playerShop = (AbstractPlayerShopkeeper) shopkeeper;
+			this.removePlayerShopkeeperByOwner(playerShop, playerShop.getOwnerUUID());
 		}
 
 		if (cause == ShopkeeperRemoveEvent.Cause.DELETE) {
@@ -402,6 +618,15 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 
 		ChunkCoords oldChunk = Unsafe.assertNonNull(shopkeeper.getLastChunkCoords());
 
+		// Update the spatial index, even if the shopkeeper was moved within the same chunk:
+		spatialIndex.moveShopkeeper(
+				shopkeeper,
+				Unsafe.assertNonNull(shopkeeper.getWorldName()),
+				shopkeeper.getX(),
+				shopkeeper.getY(),
+				shopkeeper.getZ()
+		);
+
 		// Update the shopkeeper's location inside the chunk map:
 		if (!chunkMap.moveShopkeeper(shopkeeper)) {
 			// The shopkeeper's chunk did not change.
@@ -425,7 +650,10 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 		// a lot (reloads, world save respawns, etc.) in order to not create a backlog that would
 		// result in players waiting very long for shopkeepers to respawn. The same applies when
 		// deleting all shopkeepers.
-		new ArrayList<>(this.getAllShopkeepers()).forEach(this::unloadShopkeeper);
+		new ArrayList<>(allShopkeepersView).forEach(this::unloadShopkeeper);
+
+		// The deferred shopkeepers were never loaded:
+		deferredShopkeepers.clear();
 	}
 
 	public void deleteShopkeeper(AbstractShopkeeper shopkeeper) {
@@ -440,8 +668,24 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 
 	///// QUERYING
 
+	// Note: Since these queries are not restricted to specific chunks, they load all deferred
+	// shopkeepers.
+
 	@Override
 	public Collection<? extends AbstractShopkeeper> getAllShopkeepers() {
+		this.loadAllDeferredShopkeepers();
+		return allShopkeepersView;
+	}
+
+	/**
+	 * Gets all shopkeepers that are currently loaded.
+	 * <p>
+	 * Unlike {@link #getAllShopkeepers()}, this does not load any deferred shopkeepers, i.e. it
+	 * does not include the shopkeepers whose loading is currently deferred.
+	 * 
+	 * @return an unmodifiable view on the loaded shopkeepers
+	 */
+	public Collection<? extends AbstractShopkeeper> getLoadedShopkeepers() {
 		return allShopkeepersView;
 	}
 
@@ -452,11 +696,19 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 
 	@Override
 	public @Nullable AbstractShopkeeper getShopkeeperByUniqueId(UUID shopkeeperUniqueId) {
+		DeferredShopkeeper deferredShopkeeper = deferredShopkeepers.get(shopkeeperUniqueId);
+		if (deferredShopkeeper != null) {
+			this.loadDeferredShopkeeper(deferredShopkeeper);
+		}
 		return shopkeepersByUUID.get(shopkeeperUniqueId);
 	}
 
 	@Override
 	public @Nullable AbstractShopkeeper getShopkeeperById(int shopkeeperId) {
+		DeferredShopkeeper deferredShopkeeper = deferredShopkeepers.get(shopkeeperId);
+		if (deferredShopkeeper != null) {
+			this.loadDeferredShopkeeper(deferredShopkeeper);
+		}
 		return shopkeepersById.get(shopkeeperId);
 	}
 
@@ -472,70 +724,124 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 			UUID ownerUUID
 	) {
 		Validate.notNull(ownerUUID, "ownerUUID is null");
-		// TODO Improve? Maybe keep an index of player shops? Or even index by owner?
-		// Note: Already unmodifiable.
+		// Note: Already unmodifiable. This view reflects subsequent changes to the owner index.
 		return new AbstractSet<AbstractPlayerShopkeeper>() {
-			private Stream<? extends AbstractPlayerShopkeeper> createStream() {
-				return allPlayerShopkeepersView.stream()
-						.filter(shopkeeper -> shopkeeper.getOwnerUUID().equals(ownerUUID));
-			}
-
 			@Override
 			public Iterator<AbstractPlayerShopkeeper> iterator() {
-				if (allPlayerShopkeepersView.isEmpty()) {
-					// There are no player shops at all:
+				Set<AbstractPlayerShopkeeper> shopkeepers = playerShopkeepersByOwner.get(ownerUUID);
+				if (shopkeepers == null) {
 					return Collections.emptyIterator();
 				}
-				return Unsafe.cast(this.createStream().iterator());
+				return Collections.unmodifiableSet(shopkeepers).iterator();
 			}
 
 			@Override
 			public int size() {
-				if (allPlayerShopkeepersView.isEmpty()) {
-					// There are no player shops at all:
-					return 0;
-				}
-				return this.createStream().mapToInt(shopkeeper -> 1).sum();
+				Set<AbstractPlayerShopkeeper> shopkeepers = playerShopkeepersByOwner.get(ownerUUID);
+				return (shopkeepers != null) ? shopkeepers.size() : 0;
+			}
+
+			@Override
+			public boolean contains(@Nullable Object object) {
+				Set<AbstractPlayerShopkeeper> shopkeepers = playerShopkeepersByOwner.get(ownerUUID);
+				return (shopkeepers != null) && shopkeepers.contains(object);
 			}
 		};
 	}
 
+	private void addPlayerShopkeeperByOwner(AbstractPlayerShopkeeper shopkeeper, UUID ownerUUID) {
+		assert shopkeeper != null && ownerUUID != null;
+		Set<AbstractPlayerShopkeeper> ownerShopkeepers = playerShopkeepersByOwner.computeIfAbsent(
+				ownerUUID,
+				key -> new LinkedHashSet<>()
+		);
+		ownerShopkeepers.add(shopkeeper);
+	}
+
+	private void removePlayerShopkeeperByOwner(
+			AbstractPlayerShopkeeper shopkeeper,
+			UUID ownerUUID
+	) {
+		assert shopkeeper != null && ownerUUID != null;
+		Set<AbstractPlayerShopkeeper> ownerShopkeepers = playerShopkeepersByOwner.get(ownerUUID);
+		if (ownerShopkeepers == null) return;
+
+		ownerShopkeepers.remove(shopkeeper);
+		if (ownerShopkeepers.isEmpty()) {
+			playerShopkeepersByOwner.remove(ownerUUID);
+		}
+	}
+
+	/**
+	 * This is called by player shopkeepers when their owner has changed, e.g. when the shop is
+	 * transferred to another player.
+	 * <p>
+	 * This is not expected to be called for invalid shopkeepers.
+	 * 
+	 * @param shopkeeper
+	 *            the player shopkeeper, not <code>null</code>
+	 * @param oldOwnerUUID
+	 *            the unique id of the previous owner, not <code>null</code>
+	 */
+	public void onPlayerShopOwnerChanged(AbstractPlayerShopkeeper shopkeeper, UUID oldOwnerUUID) {
+		Validate.notNull(shopkeeper, "shopkeeper is null");
+		Validate.notNull(oldOwnerUUID, "oldOwnerUUID is null");
+		Validate.isTrue(shopkeeper.isValid(), "shopkeeper is not valid");
+
+		UUID newOwnerUUID = shopkeeper.getOwnerUUID();
+		if (newOwnerUUID.equals(oldOwnerUUID)) return;
+
+		this.removePlayerShopkeeperByOwner(shopkeeper, oldOwnerUUID);
+		this.addPlayerShopkeeperByOwner(shopkeeper, newOwnerUUID);
+	}
+
 	// BY NAME
 
+	// This is not expected to be called for invalid shopkeepers.
+	public void onShopkeeperNameChanged(AbstractShopkeeper shopkeeper) {
+		Validate.notNull(shopkeeper, "shopkeeper is null");
+		Validate.isTrue(shopkeeper.isValid(), "shopkeeper is not valid");
+		nameIndex.renameShopkeeper(shopkeeper, shopkeeper.getName());
+	}
+
+	// Note: The name and location queries first load the matching deferred shopkeepers, which are
+	// indexed by the names and locations stored in their data.
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This loads the deferred shopkeepers with the given name.
+	 */
 	@Override
 	public Stream<? extends AbstractShopkeeper> getShopkeepersByName(String shopName) {
-		String normalizedShopName = StringUtils.normalize(TextUtils.stripColor(shopName));
+		String normalizedShopName = ShopkeeperNameIndex.normalize(shopName);
 		if (StringUtils.isEmpty(normalizedShopName)) return Stream.empty();
 
-		// TODO Improve via (Tree)Map?
-		return this.getAllShopkeepers().stream().filter(shopkeeper -> {
-			String shopkeeperName = shopkeeper.getName(); // Can be empty
-			if (shopkeeperName.isEmpty()) return false; // Has no name, filter
-
-			shopkeeperName = TextUtils.stripColor(shopkeeperName);
-			shopkeeperName = StringUtils.normalize(shopkeeperName);
-			// Include shopkeeper if name matches:
-			return (shopkeeperName.equals(normalizedShopName));
-		});
+		if (!deferredShopkeepers.isEmpty()) {
+			this.loadDeferredShopkeepers(deferredShopkeepers.removeByName(normalizedShopName));
+		}
+		return nameIndex.getShopkeepersByName(normalizedShopName).stream();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The shopkeepers are sorted by their normalized names. This loads the deferred shopkeepers
+	 * whose names start with the given prefix.
+	 */
 	@Override
 	public Stream<? extends AbstractShopkeeper> getShopkeepersByNamePrefix(
 			String shopNamePrefix
 	) {
-		String normalizedShopNamePrefix = StringUtils.normalize(TextUtils.stripColor(shopNamePrefix));
+		String normalizedShopNamePrefix = ShopkeeperNameIndex.normalize(shopNamePrefix);
 		if (StringUtils.isEmpty(normalizedShopNamePrefix)) return Stream.empty();
 
-		// TODO Improve via TreeMap?
-		return this.getAllShopkeepers().stream().filter(shopkeeper -> {
-			String shopkeeperName = shopkeeper.getName(); // Can be empty
-			if (shopkeeperName.isEmpty()) return false; // Has no name, filter
-
-			shopkeeperName = TextUtils.stripColor(shopkeeperName);
-			shopkeeperName = StringUtils.normalize(shopkeeperName);
-			// Include shopkeeper if name matches:
-			return shopkeeperName.startsWith(normalizedShopNamePrefix);
-		});
+		if (!deferredShopkeepers.isEmpty()) {
+			this.loadDeferredShopkeepers(
+					deferredShopkeepers.removeByNamePrefix(normalizedShopNamePrefix)
+			);
+		}
+		return nameIndex.getShopkeepersByNamePrefix(normalizedShopNamePrefix);
 	}
 
 	// BY WORLD
@@ -618,17 +924,125 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 		int y = location.getBlockY();
 		int z = location.getBlockZ();
 
-		List<AbstractShopkeeper> shopkeepers = new ArrayList<>();
-		ChunkCoords chunkCoords = ChunkCoords.fromBlock(worldName, x, z);
-		this.getShopkeepersInChunk(chunkCoords).forEach(shopkeeper -> {
-			assert worldName.equals(shopkeeper.getWorldName());
-			if (shopkeeper.getX() == x && shopkeeper.getY() == y && shopkeeper.getZ() == z) {
-				shopkeepers.add(shopkeeper);
-			}
-		});
+		// Point query: The area only covers the specified block.
+		if (!deferredShopkeepers.isEmpty()) {
+			this.loadDeferredShopkeepers(deferredShopkeepers.removeInArea(
+					worldName,
+					x,
+					y,
+					z,
+					x,
+					y,
+					z
+			));
+		}
+
+		List<AbstractShopkeeper> shopkeepers = new ArrayList<>(1);
+		spatialIndex.visitShopkeepersInArea(worldName, x, y, z, x, y, z, shopkeepers::add);
 		return shopkeepers;
 	}
 
+	@Override
+	public Collection<? extends AbstractShopkeeper> getShopkeepersInArea(
+			String worldName,
+			int minX,
+			int minY,
+			int minZ,
+			int maxX,
+			int maxY,
+			int maxZ
+	) {
+		Validate.notEmpty(worldName, "worldName is null or empty");
+		int areaMinX = Math.min(minX, maxX);
+		int areaMinY = Math.min(minY, maxY);
+		int areaMinZ = Math.min(minZ, maxZ);
+		int areaMaxX = Math.max(minX, maxX);
+		int areaMaxY = Math.max(minY, maxY);
+		int areaMaxZ = Math.max(minZ, maxZ);
+		if (!deferredShopkeepers.isEmpty()) {
+			this.loadDeferredShopkeepers(deferredShopkeepers.removeInArea(
+					worldName,
+					areaMinX,
+					areaMinY,
+					areaMinZ,
+					areaMaxX,
+					areaMaxY,
+					areaMaxZ
+			));
+		}
+
+		List<AbstractShopkeeper> shopkeepers = new ArrayList<>();
+		spatialIndex.visitShopkeepersInArea(
+				worldName,
+				areaMinX,
+				areaMinY,
+				areaMinZ,
+				areaMaxX,
+				areaMaxY,
+				areaMaxZ,
+				shopkeepers::add
+		);
+		return Collections.unmodifiableList(shopkeepers);
+	}
+
+	@Override
+	public Collection<? extends AbstractShopkeeper> getShopkeepersInRadius(
+			Location location,
+			double radius
+	) {
+		World world = LocationUtils.getWorld(location);
+		Validate.isTrue(radius >= 0.0D, "radius cannot be negative");
+		String worldName = world.getName();
+		if (!deferredShopkeepers.isEmpty()) {
+			this.loadDeferredShopkeepers(deferredShopkeepers.removeInRadius(
+					worldName,
+					location.getX(),
+					location.getY(),
+					location.getZ(),
+					radius
+			));
+		}
+		return Collections.unmodifiableList(spatialIndex.getShopkeepersInRadius(
+				worldName,
+				location.getX(),
+				location.getY(),
+				location.getZ(),
+				radius
+		));
+	}
+
+	@Override
+	public List<? extends AbstractShopkeeper> getNearestShopkeepers(
+			Location location,
+			int count,
+			double maxDistance
+	) {
+		World world = LocationUtils.getWorld(location);
+		Validate.isTrue(count >= 0, "count cannot be negative");
+		Validate.isTrue(maxDistance >= 0.0D, "maxDistance cannot be negative");
+		String worldName = world.getName();
+		if (!deferredShopkeepers.isEmpty()) {
+			// The nearest shopkeepers are among the nearest loaded and the nearest deferred
+			// shopkeepers:
+			this.loadDeferredShopkeepers(deferredShopkeepers.removeNearest(
+					worldName,
+					location.getX(),
+					location.getY(),
+					location.getZ(),
+					count,
+					maxDistance
+			));
+		}
+		return Collections.unmodifiableList(spatialIndex.getNearestShopkeepers(
+				worldName,
+				location.getX(),
+				location.getY(),
+				location.getZ(),
+				count,
+				maxDistance
+		));
+	}
+
 	// BY SHOP OBJECT
 
 	public ShopObjectRegistry getShopObjectRegistry() {
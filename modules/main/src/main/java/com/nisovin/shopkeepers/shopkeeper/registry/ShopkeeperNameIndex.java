@@ -0,0 +1,140 @@
+package com.nisovin.shopkeepers.shopkeeper.registry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.util.bukkit.TextUtils;
+import com.nisovin.shopkeepers.util.java.StringUtils;
+import com.nisovin.shopkeepers.util.logging.Log;
+
+/**
+ * An index of the shopkeepers by their normalized name, for exact and prefix name lookups.
+ * <p>
+ * The names are normalized by stripping their colors and normalizing them via
+ * {@link StringUtils#normalize(String)}. Shopkeepers without name are not indexed. Since the
+ * normalized names are sorted, prefix lookups only inspect the names that start with the given
+ * prefix, and provide the matching shopkeepers in the order of their names.
+ * <p>
+ * The names of the shopkeepers are passed to the index when shopkeepers are added or renamed. The
+ * index is therefore independent of actual shopkeeper instances.
+ * 
+ * @param <S>
+ *            the shopkeeper type
+ */
+final class ShopkeeperNameIndex<S> {
+
+	/**
+	 * Gets the normalized name that is used to index the shopkeepers, and that name queries are
+	 * expected to use.
+	 * 
+	 * @param name
+	 *            the name
+	 * @return the normalized name, can be empty
+	 */
+	static String normalize(String name) {
+		return StringUtils.normalize(TextUtils.stripColor(name));
+	}
+
+	// List instead of Set: We don't expect there to be many shopkeepers with the same name.
+	private final NavigableMap<String, List<S>> shopkeepersByName = new TreeMap<>();
+	// The normalized names under which the shopkeepers are currently indexed:
+	private final Map<S, String> indexedNames = new HashMap<>();
+
+	ShopkeeperNameIndex() {
+	}
+
+	void addShopkeeper(S shopkeeper, String name) {
+		assert shopkeeper != null && !indexedNames.containsKey(shopkeeper);
+		String normalizedName = normalize(name);
+		if (normalizedName.isEmpty()) return; // Has no name, not indexed
+
+		indexedNames.put(shopkeeper, normalizedName);
+		shopkeepersByName.computeIfAbsent(normalizedName, key -> new ArrayList<>(1))
+				.add(shopkeeper);
+	}
+
+	void removeShopkeeper(S shopkeeper) {
+		assert shopkeeper != null;
+		String normalizedName = indexedNames.remove(shopkeeper);
+		if (normalizedName == null) return; // Not indexed
+
+		List<S> shopkeepers = shopkeepersByName.get(normalizedName);
+		assert shopkeepers != null;
+		shopkeepers.remove(shopkeeper);
+		if (shopkeepers.isEmpty()) {
+			shopkeepersByName.remove(normalizedName);
+		}
+	}
+
+	// Updates the index after the shopkeeper's name has changed.
+	void renameShopkeeper(S shopkeeper, String name) {
+		assert shopkeeper != null;
+		String normalizedName = normalize(name);
+		if (normalizedName.equals(indexedNames.get(shopkeeper))) return; // Index is up-to-date
+
+		this.removeShopkeeper(shopkeeper);
+		this.addShopkeeper(shopkeeper, name);
+	}
+
+	void clear() {
+		indexedNames.clear();
+		shopkeepersByName.clear();
+	}
+
+	void ensureEmpty() {
+		if (!indexedNames.isEmpty() || !shopkeepersByName.isEmpty()) {
+			Log.warning("Some shopkeepers were not properly removed from the name index!");
+			this.clear();
+		}
+	}
+
+	// QUERIES
+
+	/**
+	 * Gets the shopkeepers with the given normalized name.
+	 * 
+	 * @param normalizedName
+	 *            the {@link #normalize(String) normalized} name
+	 * @return an unmodifiable view on the shopkeepers, not <code>null</code>
+	 */
+	List<? extends S> getShopkeepersByName(String normalizedName) {
+		List<S> shopkeepers = shopkeepersByName.get(normalizedName);
+		if (shopkeepers == null) return Collections.emptyList();
+		return Collections.unmodifiableList(shopkeepers);
+	}
+
+	/**
+	 * Gets the shopkeepers whose normalized name starts with the given normalized prefix, sorted
+	 * by their normalized names.
+	 * <p>
+	 * The returned stream is lazily evaluated, and is not safe to be used after the index has been
+	 * modified.
+	 * 
+	 * @param normalizedPrefix
+	 *            the {@link #normalize(String) normalized} name prefix, not empty
+	 * @return the shopkeepers, not <code>null</code>
+	 */
+	Stream<? extends S> getShopkeepersByNamePrefix(String normalizedPrefix) {
+		assert !normalizedPrefix.isEmpty();
+		return this.getNamesWithPrefix(normalizedPrefix).values().stream()
+				.flatMap(List::stream);
+	}
+
+	// All names that start with the given prefix are sorted directly after the prefix, and before
+	// the first name that is greater than the prefix but does not start with it.
+	private NavigableMap<String, List<S>> getNamesWithPrefix(String prefix) {
+		@Nullable String upperBound = StringUtils.getPrefixUpperBound(prefix);
+		if (upperBound == null) {
+			return shopkeepersByName.tailMap(prefix, true);
+		}
+		return shopkeepersByName.subMap(prefix, true, upperBound, false);
+	}
+}
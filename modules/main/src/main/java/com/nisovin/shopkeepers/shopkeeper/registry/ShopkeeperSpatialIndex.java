@@ -0,0 +1,392 @@
+package com.nisovin.shopkeepers.shopkeeper.registry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.api.internal.util.Unsafe;
+import com.nisovin.shopkeepers.util.java.LongHashMap;
+import com.nisovin.shopkeepers.util.logging.Log;
+
+/**
+ * A per-world spatial index of the non-virtual shopkeepers, for queries by area, radius, and
+ * distance.
+ * <p>
+ * Each world is divided into a uniform grid of square cells in the x-z plane. The cells are
+ * identified by their packed cell coordinates, and only the non-empty cells are stored. Queries
+ * only inspect the cells that overlap the queried area, or, if there are fewer non-empty cells
+ * than that, all non-empty cells of the world.
+ * <p>
+ * Unlike the {@link ShopkeeperChunkMap}, the index also needs to be updated when a shopkeeper is
+ * moved within the same chunk.
+ * <p>
+ * The index stores the positions of the shopkeepers itself, so that queries do not need to look up
+ * the locations of the inspected shopkeepers. This also allows the index to be used independently
+ * of actual shopkeeper instances.
+ * 
+ * @param <S>
+ *            the shopkeeper type
+ */
+final class ShopkeeperSpatialIndex<S> {
+
+	// Cells of 4x4 chunks: Shopkeepers are usually clustered in a few areas, so coarser cells keep
+	// the number of inspected cells for large query radii low, while still only containing a
+	// moderate number of shopkeepers each.
+	private static final int CELL_SIZE_BITS = 6;
+	private static final int CELL_SIZE = 1 << CELL_SIZE_BITS;
+
+	static long getCellKey(int cellX, int cellZ) {
+		return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+	}
+
+	static int toCellCoord(int blockCoord) {
+		return blockCoord >> CELL_SIZE_BITS;
+	}
+
+	/**
+	 * Consumes the shopkeepers that match a query.
+	 * 
+	 * @param <S>
+	 *            the shopkeeper type
+	 */
+	@FunctionalInterface
+	interface ShopkeeperVisitor<S> {
+
+		void visit(S shopkeeper);
+	}
+
+	private static final class Entry<S> {
+
+		private final S shopkeeper;
+		private final String worldName;
+		private final int x;
+		private final int y;
+		private final int z;
+		private final long cellKey;
+
+		Entry(S shopkeeper, String worldName, int x, int y, int z) {
+			this.shopkeeper = shopkeeper;
+			this.worldName = worldName;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.cellKey = getCellKey(toCellCoord(x), toCellCoord(z));
+		}
+
+		// The squared distance between the given position and the center of the shopkeeper's
+		// block.
+		double getDistanceSquared(double x, double y, double z) {
+			double dx = this.x + 0.5D - x;
+			double dy = this.y + 0.5D - y;
+			double dz = this.z + 0.5D - z;
+			return dx * dx + dy * dy + dz * dz;
+		}
+	}
+
+	private static final class WorldIndex<S> {
+
+		// List instead of Set: We don't expect there to be excessive amounts of shopkeepers inside
+		// a single cell.
+		private final LongHashMap<List<Entry<S>>> cells = new LongHashMap<>();
+		private int shopkeeperCount = 0;
+		// The bounds of the non-empty cells. These are only extended but not shrunk when
+		// shopkeepers are removed, which is fine since they only limit the nearest neighbor search.
+		private int minCellX = Integer.MAX_VALUE;
+		private int maxCellX = Integer.MIN_VALUE;
+		private int minCellZ = Integer.MAX_VALUE;
+		private int maxCellZ = Integer.MIN_VALUE;
+
+		void add(Entry<S> entry) {
+			cells.computeIfAbsent(entry.cellKey, key -> new ArrayList<>(4)).add(entry);
+			shopkeeperCount++;
+			int cellX = toCellCoord(entry.x);
+			int cellZ = toCellCoord(entry.z);
+			minCellX = Math.min(minCellX, cellX);
+			maxCellX = Math.max(maxCellX, cellX);
+			minCellZ = Math.min(minCellZ, cellZ);
+			maxCellZ = Math.max(maxCellZ, cellZ);
+		}
+
+		void remove(Entry<S> entry) {
+			List<Entry<S>> cell = cells.get(entry.cellKey);
+			if (cell == null || !cell.remove(entry)) return;
+			shopkeeperCount--;
+			if (cell.isEmpty()) {
+				cells.remove(entry.cellKey);
+			}
+		}
+
+		@Nullable
+		List<Entry<S>> getCell(int cellX, int cellZ) {
+			return cells.get(getCellKey(cellX, cellZ));
+		}
+	}
+
+	private final Map<String, WorldIndex<S>> worlds = new HashMap<>();
+	private final Map<S, Entry<S>> entries = new HashMap<>();
+
+	ShopkeeperSpatialIndex() {
+	}
+
+	int getSize() {
+		return entries.size();
+	}
+
+	void addShopkeeper(S shopkeeper, String worldName, int x, int y, int z) {
+		assert shopkeeper != null && worldName != null;
+		assert !entries.containsKey(shopkeeper);
+		Entry<S> entry = new Entry<>(shopkeeper, worldName, x, y, z);
+		worlds.computeIfAbsent(worldName, name -> new WorldIndex<>()).add(entry);
+		entries.put(shopkeeper, entry);
+	}
+
+	void removeShopkeeper(S shopkeeper) {
+		assert shopkeeper != null;
+		Entry<S> entry = entries.remove(shopkeeper);
+		if (entry == null) return; // Not indexed
+
+		WorldIndex<S> worldIndex = worlds.get(entry.worldName);
+		if (worldIndex == null) return;
+		worldIndex.remove(entry);
+		if (worldIndex.shopkeeperCount == 0) {
+			worlds.remove(entry.worldName);
+		}
+	}
+
+	// Updates the indexed position of the shopkeeper after it has been moved.
+	void moveShopkeeper(S shopkeeper, String worldName, int x, int y, int z) {
+		assert shopkeeper != null && worldName != null;
+		Entry<S> entry = entries.get(shopkeeper);
+		if (entry != null && entry.worldName.equals(worldName)
+				&& entry.x == x && entry.y == y && entry.z == z) {
+			// The shopkeeper has not actually moved.
+			return;
+		}
+
+		this.removeShopkeeper(shopkeeper);
+		this.addShopkeeper(shopkeeper, worldName, x, y, z);
+	}
+
+	void clear() {
+		entries.clear();
+		worlds.clear();
+	}
+
+	void ensureEmpty() {
+		if (!entries.isEmpty() || !worlds.isEmpty()) {
+			Log.warning("Some shopkeepers were not properly removed from the spatial index!");
+			this.clear();
+		}
+	}
+
+	// QUERIES
+
+	/**
+	 * Visits the shopkeepers inside the specified block area (all bounds inclusive).
+	 */
+	void visitShopkeepersInArea(
+			String worldName,
+			int minX,
+			int minY,
+			int minZ,
+			int maxX,
+			int maxY,
+			int maxZ,
+			ShopkeeperVisitor<? super S> visitor
+	) {
+		this.visitEntriesInArea(
+				worldName,
+				minX,
+				minY,
+				minZ,
+				maxX,
+				maxY,
+				maxZ,
+				entry -> visitor.visit(entry.shopkeeper)
+		);
+	}
+
+	private void visitEntriesInArea(
+			String worldName,
+			int minX,
+			int minY,
+			int minZ,
+			int maxX,
+			int maxY,
+			int maxZ,
+			Consumer<Entry<S>> visitor
+	) {
+		WorldIndex<S> worldIndex = worlds.get(worldName);
+		if (worldIndex == null) return;
+		if (minX > maxX || minY > maxY || minZ > maxZ) return;
+
+		int minCellX = toCellCoord(minX);
+		int maxCellX = toCellCoord(maxX);
+		int minCellZ = toCellCoord(minZ);
+		int maxCellZ = toCellCoord(maxZ);
+		long areaCells = ((long) maxCellX - minCellX + 1) * ((long) maxCellZ - minCellZ + 1);
+		if (areaCells <= worldIndex.cells.size()) {
+			for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+				for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+					List<Entry<S>> cell = worldIndex.getCell(cellX, cellZ);
+					if (cell == null) continue;
+					visitCell(cell, minX, minY, minZ, maxX, maxY, maxZ, visitor);
+				}
+			}
+		} else {
+			// Inspecting all non-empty cells is cheaper:
+			worldIndex.cells.forEachValue(cell -> {
+				visitCell(cell, minX, minY, minZ, maxX, maxY, maxZ, visitor);
+			});
+		}
+	}
+
+	private static <S> void visitCell(
+			List<Entry<S>> cell,
+			int minX,
+			int minY,
+			int minZ,
+			int maxX,
+			int maxY,
+			int maxZ,
+			Consumer<Entry<S>> visitor
+	) {
+		for (Entry<S> entry : cell) {
+			if (entry.x < minX || entry.x > maxX) continue;
+			if (entry.y < minY || entry.y > maxY) continue;
+			if (entry.z < minZ || entry.z > maxZ) continue;
+			visitor.accept(entry);
+		}
+	}
+
+	/**
+	 * Gets the shopkeepers within the specified distance of the given position.
+	 * <p>
+	 * The distance is measured to the centers of the shopkeepers' blocks.
+	 */
+	List<S> getShopkeepersInRadius(
+			String worldName,
+			double x,
+			double y,
+			double z,
+			double radius
+	) {
+		if (!(radius >= 0.0D)) return Collections.emptyList(); // Also handles NaN
+		double radiusSquared = radius * radius;
+		List<S> shopkeepers = new ArrayList<>();
+		this.visitEntriesInArea(
+				worldName,
+				toBlockCoord(x - radius),
+				toBlockCoord(y - radius),
+				toBlockCoord(z - radius),
+				toBlockCoord(x + radius),
+				toBlockCoord(y + radius),
+				toBlockCoord(z + radius),
+				entry -> {
+					if (entry.getDistanceSquared(x, y, z) <= radiusSquared) {
+						shopkeepers.add(entry.shopkeeper);
+					}
+				}
+		);
+		return shopkeepers;
+	}
+
+	private static int toBlockCoord(double coord) {
+		// Clamps to the int range:
+		return (int) Math.floor(coord);
+	}
+
+	// The distance between the given coordinate and the nearest border of the given cell along the
+	// same axis.
+	private static double getCellBorderDistance(double coord, int cellCoord) {
+		double cellMin = cellCoord * (double) CELL_SIZE;
+		return Math.min(coord - cellMin, cellMin + CELL_SIZE - coord);
+	}
+
+	/**
+	 * Gets up to the specified number of shopkeepers that are closest to the given position,
+	 * ordered by increasing distance.
+	 * <p>
+	 * The distance is measured to the centers of the shopkeepers' blocks.
+	 * <p>
+	 * This searches the cells in rings of increasing distance around the position, and stops once
+	 * the remaining cells cannot contain any closer shopkeepers.
+	 */
+	List<S> getNearestShopkeepers(
+			String worldName,
+			double x,
+			double y,
+			double z,
+			int count,
+			double maxDistance
+	) {
+		if (count <= 0 || !(maxDistance >= 0.0D)) return Collections.emptyList();
+		WorldIndex<S> worldIndex = worlds.get(worldName);
+		if (worldIndex == null) return Collections.emptyList();
+
+		double maxDistanceSquared = maxDistance * maxDistance;
+		// Max-heap of the closest shopkeepers found so far:
+		Comparator<Entry<S>> byDistance = Comparator.comparingDouble(
+				entry -> entry.getDistanceSquared(x, y, z)
+		);
+		PriorityQueue<Entry<S>> closest = new PriorityQueue<>(count + 1, byDistance.reversed());
+
+		int centerCellX = toCellCoord(toBlockCoord(x));
+		int centerCellZ = toCellCoord(toBlockCoord(z));
+		// The horizontal distance from the position to the nearest border of its cell:
+		double cellBorderDistance = Math.max(0.0D, Math.min(
+				getCellBorderDistance(x, centerCellX),
+				getCellBorderDistance(z, centerCellZ)
+		));
+		// The number of rings that are required to cover all non-empty cells:
+		int maxRing = Math.max(
+				Math.max(centerCellX - worldIndex.minCellX, worldIndex.maxCellX - centerCellX),
+				Math.max(centerCellZ - worldIndex.minCellZ, worldIndex.maxCellZ - centerCellZ)
+		);
+		int visited = 0;
+		for (int ring = 0; ring <= maxRing && visited < worldIndex.shopkeeperCount; ring++) {
+			// Any shopkeeper inside this or any subsequent ring is at least this far away
+			// (horizontally):
+			double ringDistance = (ring == 0) ? 0.0D
+					: (ring - 1) * (double) CELL_SIZE + cellBorderDistance;
+			double ringDistanceSquared = ringDistance * ringDistance;
+			if (ringDistanceSquared > maxDistanceSquared) break;
+			if (closest.size() == count) {
+				Entry<S> farthest = Unsafe.assertNonNull(closest.peek());
+				if (ringDistanceSquared > farthest.getDistanceSquared(x, y, z)) break;
+			}
+
+			for (int cellX = centerCellX - ring; cellX <= centerCellX + ring; cellX++) {
+				// Only the border cells of the ring:
+				boolean border = (cellX == centerCellX - ring || cellX == centerCellX + ring);
+				int step = border ? 1 : Math.max(1, 2 * ring);
+				for (int cellZ = centerCellZ - ring; cellZ <= centerCellZ + ring; cellZ += step) {
+					List<Entry<S>> cell = worldIndex.getCell(cellX, cellZ);
+					if (cell == null) continue;
+
+					for (Entry<S> entry : cell) {
+						visited++;
+						if (entry.getDistanceSquared(x, y, z) > maxDistanceSquared) continue;
+						closest.add(entry);
+						if (closest.size() > count) {
+							closest.poll(); // Remove the farthest
+						}
+					}
+				}
+			}
+		}
+
+		List<Entry<S>> sorted = new ArrayList<>(closest);
+		sorted.sort(byDistance);
+		List<S> result = new ArrayList<>(sorted.size());
+		sorted.forEach(entry -> result.add(entry.shopkeeper));
+		return result;
+	}
+}
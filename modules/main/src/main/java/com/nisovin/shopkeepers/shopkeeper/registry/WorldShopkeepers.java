@@ -3,7 +3,6 @@ package com.nisovin.shopkeepers.shopkeeper.registry;
 import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -15,12 +14,15 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import com.nisovin.shopkeepers.api.internal.util.Unsafe;
 import com.nisovin.shopkeepers.api.util.ChunkCoords;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
+import com.nisovin.shopkeepers.util.bukkit.WorldChunkMap;
+import com.nisovin.shopkeepers.util.java.LongHashMap;
 import com.nisovin.shopkeepers.util.java.Validate;
 
 final class WorldShopkeepers {
 
 	private final String worldName;
-	private final Map<ChunkCoords, ChunkShopkeepers> shopkeepersByChunk = new HashMap<>();
+	// Keyed by chunk key:
+	private final LongHashMap<ChunkShopkeepers> shopkeepersByChunk = new LongHashMap<>();
 	// Unmodifiable entries:
 	private final Map<ChunkCoords, List<? extends AbstractShopkeeper>> shopkeeperViewsByChunk = new LinkedHashMap<>();
 	// Unmodifiable map with unmodifiable entries:
@@ -54,12 +56,16 @@ final class WorldShopkeepers {
 		return worldName;
 	}
 
+	private static long getChunkKey(ChunkCoords chunkCoords) {
+		return WorldChunkMap.getChunkKey(chunkCoords.getChunkX(), chunkCoords.getChunkZ());
+	}
+
 	// Returns null if there are no shopkeepers in the specified chunk:
 	@Nullable
 	ChunkShopkeepers getChunkShopkeepers(ChunkCoords chunkCoords) {
 		assert chunkCoords != null;
 		assert chunkCoords.getWorldName().equals(this.getWorldName());
-		return shopkeepersByChunk.get(chunkCoords);
+		return shopkeepersByChunk.get(getChunkKey(chunkCoords));
 	}
 
 	ChunkShopkeepers addShopkeeper(AbstractShopkeeper shopkeeper) {
@@ -68,10 +74,10 @@ final class WorldShopkeepers {
 		ChunkCoords chunkCoords = Unsafe.assertNonNull(shopkeeper.getChunkCoords());
 		assert chunkCoords.getWorldName().equals(this.getWorldName());
 		ChunkShopkeepers chunkShopkeepers = shopkeepersByChunk.computeIfAbsent(
-				chunkCoords,
-				chkCoords -> {
-					ChunkShopkeepers newChunkShopkeepers = new ChunkShopkeepers(chkCoords);
-					shopkeeperViewsByChunk.put(chkCoords, newChunkShopkeepers.getShopkeepers());
+				getChunkKey(chunkCoords),
+				chunkKey -> {
+					ChunkShopkeepers newChunkShopkeepers = new ChunkShopkeepers(chunkCoords);
+					shopkeeperViewsByChunk.put(chunkCoords, newChunkShopkeepers.getShopkeepers());
 					return newChunkShopkeepers;
 				}
 		);
@@ -86,12 +92,13 @@ final class WorldShopkeepers {
 		assert shopkeeper != null;
 		ChunkCoords chunkCoords = Unsafe.assertNonNull(shopkeeper.getLastChunkCoords());
 		assert chunkCoords.getWorldName().equals(this.getWorldName());
-		ChunkShopkeepers chunkShopkeepers = Unsafe.assertNonNull(shopkeepersByChunk.get(chunkCoords));
+		long chunkKey = getChunkKey(chunkCoords);
+		ChunkShopkeepers chunkShopkeepers = Unsafe.assertNonNull(shopkeepersByChunk.get(chunkKey));
 		assert chunkShopkeepers.getShopkeepers().contains(shopkeeper);
 		chunkShopkeepers.removeShopkeeper(shopkeeper);
 		shopkeeperCount -= 1;
 		if (chunkShopkeepers.getShopkeepers().isEmpty()) {
-			shopkeepersByChunk.remove(chunkCoords);
+			shopkeepersByChunk.remove(chunkKey);
 			shopkeeperViewsByChunk.remove(chunkCoords);
 		}
 		return chunkShopkeepers;
@@ -1,14 +1,20 @@
 package com.nisovin.shopkeepers.shopkeeper.spawning;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
-import org.bukkit.plugin.Plugin;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
 
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
+import com.nisovin.shopkeepers.debug.metrics.MetricsRegistry;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopkeeper.spawning.ShopkeeperSpawnState.State;
 import com.nisovin.shopkeepers.shopobjects.AbstractShopObject;
 import com.nisovin.shopkeepers.util.java.Validate;
 import com.nisovin.shopkeepers.util.taskqueue.TaskQueue;
+import com.nisovin.shopkeepers.util.timer.Histogram;
 
 /**
  * A queue for load balancing the spawning of shopkeepers.
@@ -17,30 +23,50 @@ import com.nisovin.shopkeepers.util.taskqueue.TaskQueue;
  * drops when chunks with lots of shopkeepers are activated, we use this queue to distribute the
  * spawning of shopkeepers over several ticks.
  * <p>
+ * The shopkeepers are spawned in the order of their distance to the nearest player in the same
+ * world, so that the shopkeepers that players are most likely to see are spawned first, e.g. after
+ * a server restart or when many chunks are activated at the same time. Since players move, the
+ * priorities of the pending shopkeepers are periodically updated.
+ * <p>
  * Shopkeepers may already be ticked while they are still pending to be spawned. Shop objects can
  * use {@link AbstractShopObject#isSpawningScheduled()} to check if they are currently still pending
  * to be spawned.
  */
 public class ShopkeeperSpawnQueue extends TaskQueue<AbstractShopkeeper> {
 
-	// With this configuration we can spawn around 40 shopkeepers per second.
-	// A more frequently running task has a higher general overhead.
-	private static final int SPAWN_TASK_PERIOD_TICKS = 3;
+	// A more frequently running task has a higher general overhead. But since the task is skipped
+	// when there are no pending spawns, we can run it every tick in order to reduce the latency of
+	// spawns.
+	private static final int SPAWN_TASK_PERIOD_TICKS = 1;
 	// On my test setup, and without any GC taking place, the spawning of a shopkeeper seems to take
-	// between 0.05-0.25ms, with an average of around 0.1ms.
-	private static final int SPAWNS_PER_EXECUTION = 6;
+	// between 0.05-0.25ms, with an average of around 0.1ms. With this budget we can therefore spawn
+	// around 100 shopkeepers per second, and less if the spawning of shopkeepers takes longer, e.g.
+	// when the server is under load.
+	private static final long SPAWN_BUDGET_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+	private static final int PRIORITY_UPDATE_PERIOD_TICKS = 20;
+
+	// Shopkeepers in worlds without players are spawned last:
+	private static final long NO_NEARBY_PLAYER = Long.MAX_VALUE;
 
+	private final SKShopkeepersPlugin plugin;
 	private final Consumer<? super AbstractShopkeeper> spawner;
+	private final Histogram spawnTimings;
 
-	ShopkeeperSpawnQueue(Plugin plugin, Consumer<? super AbstractShopkeeper> spawner) {
-		super(plugin, SPAWN_TASK_PERIOD_TICKS, SPAWNS_PER_EXECUTION);
+	// Reused when determining priorities:
+	private final Location sharedLocation = new Location(null, 0, 0, 0);
+
+	ShopkeeperSpawnQueue(SKShopkeepersPlugin plugin, Consumer<? super AbstractShopkeeper> spawner) {
+		super(plugin, SPAWN_TASK_PERIOD_TICKS, SPAWN_BUDGET_NANOS);
 		Validate.notNull(spawner, "spawner is null");
+		this.plugin = plugin;
 		this.spawner = spawner;
+		this.spawnTimings = plugin.getMetricsRegistry().getHistogram(MetricsRegistry.SPAWNING);
 	}
 
-	private static class SpawnerTask implements Runnable {
+	private class SpawnerTask implements Runnable {
 
 		private final Runnable parentTask;
+		private int ticksSincePriorityUpdate = 0;
 
 		SpawnerTask(Runnable parentTask) {
 			assert parentTask != null;
@@ -49,7 +75,16 @@ public class ShopkeeperSpawnQueue extends TaskQueue<AbstractShopkeeper> {
 
 		@Override
 		public void run() {
+			if (++ticksSincePriorityUpdate >= PRIORITY_UPDATE_PERIOD_TICKS) {
+				ticksSincePriorityUpdate = 0;
+				updatePriorities();
+			}
+			// Skip recording the timings of executions without pending spawns:
+			if (getPendingCount() == 0) return;
+
+			long startNanos = System.nanoTime();
 			parentTask.run();
+			spawnTimings.record(System.nanoTime() - startNanos);
 		}
 	}
 
@@ -84,6 +119,31 @@ public class ShopkeeperSpawnQueue extends TaskQueue<AbstractShopkeeper> {
 		this.resetQueued(shopkeeper);
 	}
 
+	// Returns the squared block distance to the nearest player in the same world.
+	@Override
+	protected long getPriority(AbstractShopkeeper shopkeeper) {
+		String worldName = shopkeeper.getWorldName();
+		if (worldName == null) return NO_NEARBY_PLAYER; // Not expected: Virtual shopkeeper
+
+		List<? extends Player> players = plugin.getPlayerMap().getPlayers(worldName);
+		if (players.isEmpty()) return NO_NEARBY_PLAYER;
+
+		int x = shopkeeper.getX();
+		int z = shopkeeper.getZ();
+		long minDistanceSq = NO_NEARBY_PLAYER;
+		for (Player player : players) {
+			Location playerLocation = player.getLocation(sharedLocation);
+			long dx = playerLocation.getBlockX() - x;
+			long dz = playerLocation.getBlockZ() - z;
+			long distanceSq = dx * dx + dz * dz;
+			if (distanceSq < minDistanceSq) {
+				minDistanceSq = distanceSq;
+			}
+		}
+		sharedLocation.setWorld(null); // Reset
+		return minDistanceSq;
+	}
+
 	@Override
 	protected Runnable createTask() {
 		return new SpawnerTask(super.createTask());
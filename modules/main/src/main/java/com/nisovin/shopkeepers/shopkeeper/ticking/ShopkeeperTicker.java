@@ -2,20 +2,27 @@ package com.nisovin.shopkeepers.shopkeeper.ticking;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.bukkit.scheduler.BukkitRunnable;
 
 import com.nisovin.shopkeepers.SKShopkeepersPlugin;
+import com.nisovin.shopkeepers.config.Settings;
 import com.nisovin.shopkeepers.debug.DebugOptions;
+import com.nisovin.shopkeepers.debug.metrics.MetricsRegistry;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.util.java.CyclicCounter;
 import com.nisovin.shopkeepers.util.java.Validate;
 import com.nisovin.shopkeepers.util.logging.Log;
+import com.nisovin.shopkeepers.util.timer.Timer;
+import com.nisovin.shopkeepers.util.timer.Timings;
 
 public class ShopkeeperTicker {
 
@@ -27,19 +34,17 @@ public class ShopkeeperTicker {
 	/**
 	 * The number of ticking groups.
 	 * <p>
-	 * For load balancing purposes, we tick more frequently, but then only process a subset of all
-	 * active shopkeepers each time. Each of these subsets is called a "ticking group".
+	 * For load balancing purposes, the active shopkeepers are split into subsets, called "ticking
+	 * groups". Every Minecraft tick, the shopkeepers of the next ticking group are enqueued for
+	 * ticking. There is one ticking group per tick of the {@link #TICKING_PERIOD_TICKS ticking
+	 * period}, so that every shopkeeper is enqueued once per ticking period.
 	 * <p>
-	 * This number is chosen as a balance between {@code 1} group (all shopkeepers are ticked within
-	 * the same tick; no load balancing), and the maximum of {@code 20} groups (groups are as small
-	 * as possible for the tick rate of once every second, i.e. once every {@code 20} ticks; best
-	 * load balancing; but this is associated with a large overhead due to having to do some
-	 * processing each Minecraft tick).
-	 * <p>
-	 * With {@code 4} ticking groups, one fourth of the active shopkeepers are processed every
-	 * {@code 5} ticks.
+	 * The enqueued shopkeepers are then ticked until the configured
+	 * {@link Settings#shopkeeperTickBudgetMillis tick budget} is used up. Any shopkeepers that
+	 * could not be ticked within the budget remain enqueued and are ticked during the subsequent
+	 * Minecraft ticks.
 	 */
-	public static final int TICKING_GROUPS = 4;
+	public static final int TICKING_GROUPS = TICKING_PERIOD_TICKS;
 	private static final CyclicCounter tickingGroupCounter = new CyclicCounter(TICKING_GROUPS);
 
 	public static int nextTickingGroup() {
@@ -84,6 +89,13 @@ public class ShopkeeperTicker {
 	}
 
 	private final CyclicCounter activeTickingGroup = new CyclicCounter(TICKING_GROUPS);
+	// Incremented once per ticking period:
+	private long tickingCycle = 0L;
+	// The enqueued shopkeepers that have not been ticked yet, in order, mapped to the ticking cycle
+	// in which they were enqueued. A shopkeeper that is still enqueued when its ticking group is
+	// enqueued again retains its position.
+	private final Map<AbstractShopkeeper, Long> queuedShopkeepers = new LinkedHashMap<>();
+	private final Timer tickTimings;
 	private boolean currentlyTicking = false;
 	private boolean dirty;
 
@@ -97,6 +109,9 @@ public class ShopkeeperTicker {
 	public ShopkeeperTicker(SKShopkeepersPlugin plugin) {
 		Validate.notNull(plugin, "plugin is null");
 		this.plugin = plugin;
+		this.tickTimings = new Timer(
+				plugin.getMetricsRegistry().getHistogram(MetricsRegistry.TICKING)
+		);
 	}
 
 	public void onEnable() {
@@ -106,6 +121,8 @@ public class ShopkeeperTicker {
 		// (avoids possible confusion for users).
 		tickingGroupCounter.reset();
 		activeTickingGroup.setValue(0);
+		tickingCycle = 0L;
+		tickTimings.reset();
 
 		// Start shopkeeper ticking task:
 		this.startShopkeeperTickTask();
@@ -121,6 +138,7 @@ public class ShopkeeperTicker {
 			currentlyTicking = false;
 			dirty = false;
 			tickingGroups.forEach(TickingGroup::clear);
+			queuedShopkeepers.clear();
 			pendingTickingChanges.clear();
 		} else {
 			this.ensureEmpty();
@@ -134,6 +152,10 @@ public class ShopkeeperTicker {
 			Log.warning("Some ticking shopkeepers were not properly unregistered!");
 			tickingGroups.forEach(TickingGroup::clear);
 		}
+		if (!queuedShopkeepers.isEmpty()) {
+			Log.warning("Some enqueued ticking shopkeepers were not properly unregistered!");
+			queuedShopkeepers.clear();
+		}
 		if (!pendingTickingChanges.isEmpty()) {
 			Log.warning("Unexpected pending shopkeeper ticking changes!");
 			pendingTickingChanges.clear();
@@ -213,6 +235,28 @@ public class ShopkeeperTicker {
 		TickingGroup tickingGroup = this.getTickingGroup(shopkeeper);
 		assert tickingGroup != null;
 		tickingGroup.removeShopkeeper(shopkeeper);
+		queuedShopkeepers.remove(shopkeeper);
+	}
+
+	/**
+	 * Gets the timings of the shopkeeper ticking, per Minecraft tick.
+	 * 
+	 * @return the timings
+	 */
+	public Timings getTickTimings() {
+		return tickTimings;
+	}
+
+	/**
+	 * Gets the number of shopkeepers that are currently enqueued for ticking.
+	 * <p>
+	 * If this number remains larger than the size of a single ticking group, the configured tick
+	 * budget is insufficient to tick all active shopkeepers once per ticking period.
+	 * 
+	 * @return the number of enqueued shopkeepers
+	 */
+	public int getQueuedShopkeepersCount() {
+		return queuedShopkeepers.size();
 	}
 
 	// TICKING
@@ -223,7 +267,7 @@ public class ShopkeeperTicker {
 
 	private final class ShopkeeperTickTask extends BukkitRunnable {
 
-		private static final int PERIOD = TICKING_PERIOD_TICKS / TICKING_GROUPS;
+		private static final int PERIOD = TICKING_PERIOD_TICKS / TICKING_GROUPS; // 1
 
 		void start() {
 			this.runTaskTimer(plugin, PERIOD, PERIOD);
@@ -236,11 +280,35 @@ public class ShopkeeperTicker {
 	}
 
 	private void tickShopkeepers() {
+		tickTimings.start();
 		dirty = false;
 
+		// Enqueue the shopkeepers of the active ticking group:
+		int tickingGroupIndex = activeTickingGroup.getAndIncrement();
+		if (tickingGroupIndex == 0) {
+			tickingCycle++;
+		}
+		Long cycle = tickingCycle;
+		this.getTickingGroup(tickingGroupIndex).getShopkeepers().forEach(shopkeeper -> {
+			queuedShopkeepers.putIfAbsent(shopkeeper, cycle);
+		});
+
+		// Tick the enqueued shopkeepers until the tick budget is used up. We always tick at least one
+		// shopkeeper to ensure progress:
+		long budgetNanos = TimeUnit.MILLISECONDS.toNanos(Settings.shopkeeperTickBudgetMillis);
 		currentlyTicking = true;
-		TickingGroup tickingGroup = this.getTickingGroup(activeTickingGroup.getValue());
-		tickingGroup.getShopkeepers().forEach(this::tickShopkeeper);
+		Iterator<Entry<AbstractShopkeeper, Long>> queueIterator = queuedShopkeepers.entrySet().iterator();
+		boolean first = true;
+		while (queueIterator.hasNext()) {
+			if (!first && budgetNanos > 0 && tickTimings.getElapsedTimeNanos() >= budgetNanos) {
+				break;
+			}
+			first = false;
+
+			Entry<AbstractShopkeeper, Long> queuedShopkeeper = queueIterator.next();
+			queueIterator.remove();
+			this.tickShopkeeper(queuedShopkeeper.getKey(), queuedShopkeeper.getValue());
+		}
 		currentlyTicking = false;
 
 		// Process pending shopkeeper ticking registration changes:
@@ -258,19 +326,24 @@ public class ShopkeeperTicker {
 			plugin.getShopkeeperStorage().saveDelayed();
 		}
 
-		// Update the active ticking group:
-		activeTickingGroup.getAndIncrement();
+		tickTimings.stop();
 	}
 
-	private void tickShopkeeper(AbstractShopkeeper shopkeeper) {
+	private void tickShopkeeper(AbstractShopkeeper shopkeeper, long cycle) {
 		assert shopkeeper != null;
 		// Skip if the shopkeeper is no longer ticking (e.g. if it got removed or deactivated while
 		// it was pending to be ticked):
 		if (!shopkeeper.isTicking()) return;
 
+		// Check if the periodic shop object check is due. The shopkeeper id is used as offset to
+		// spread the checks of different shopkeepers across the check period:
+		int checkPeriod = shopkeeper.getShopObject().getCheckPeriod();
+		boolean checkShopObject = (checkPeriod > 0
+				&& Math.floorMod(cycle + shopkeeper.getId(), (long) checkPeriod) == 0);
+
 		// Tick the shopkeeper:
 		try {
-			shopkeeper.tick();
+			shopkeeper.tick(checkShopObject);
 		} catch (Throwable e) {
 			Log.severe(shopkeeper.getLogPrefix() + "Error during ticking!", e);
 		}
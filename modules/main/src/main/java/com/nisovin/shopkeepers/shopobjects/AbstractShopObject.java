@@ -460,9 +460,9 @@ public abstract class AbstractShopObject implements ShopObject {
 	 * {@link AbstractShopObjectType#mustBeSpawned() manually}.
 	 * <p>
 	 * If the checks to perform are potentially costly performance-wise, or not required to happen
-	 * every second, the shop object may decide to run them only every X invocations. For debugging
-	 * purposes, the shop object can indicate tick activity by calling
-	 * {@link #indicateTickActivity()} whenever it is doing actual work.
+	 * every second, the shop object should instead declare a {@link #getCheckPeriod() check period}
+	 * and perform them in {@link #onCheck()}. For debugging purposes, the shop object can indicate
+	 * tick activity by calling {@link #indicateTickActivity()} whenever it is doing actual work.
 	 * <p>
 	 * The ticking of shop objects in active chunks may be spread across multiple ticks and might
 	 * therefore not happen for all shopkeepers within the same tick.
@@ -476,6 +476,31 @@ public abstract class AbstractShopObject implements ShopObject {
 	public void onTick() {
 	}
 
+	/**
+	 * Gets the number of shopkeeper ticks between the periodic {@link #onCheck() checks} of this
+	 * shop object.
+	 * <p>
+	 * The checks of all shop objects are scheduled centrally by the shopkeeper ticker, which also
+	 * spreads the checks of different shop objects with the same check period across the period.
+	 * The check period can change dynamically, e.g. to throttle the checks of a shop object.
+	 * 
+	 * @return the check period in shopkeeper ticks (i.e. roughly in seconds), or <code>0</code> if
+	 *         this shop object does not require periodic checks
+	 */
+	public int getCheckPeriod() {
+		return 0;
+	}
+
+	/**
+	 * This is called during a shopkeeper tick, after {@link #onTick()}, once every
+	 * {@link #getCheckPeriod() check period}.
+	 * <p>
+	 * This can for example be used to check if everything is still okay with the shop object, in
+	 * the same way as described for {@link #onTick()}, but at a lower rate.
+	 */
+	public void onCheck() {
+	}
+
 	/**
 	 * This is called at the end of a shopkeeper tick.
 	 */
@@ -15,8 +15,6 @@ import com.nisovin.shopkeepers.debug.DebugOptions;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopobjects.ShopkeeperMetadata;
 import com.nisovin.shopkeepers.shopobjects.block.AbstractBlockShopObject;
-import com.nisovin.shopkeepers.util.java.CyclicCounter;
-import com.nisovin.shopkeepers.util.java.RateLimiter;
 import com.nisovin.shopkeepers.util.logging.Log;
 
 /**
@@ -29,20 +27,10 @@ import com.nisovin.shopkeepers.util.logging.Log;
 public abstract class BaseBlockShopObject extends AbstractBlockShopObject {
 
 	private static final int CHECK_PERIOD_SECONDS = 10;
-	private static final CyclicCounter nextCheckingOffset = new CyclicCounter(
-			1,
-			CHECK_PERIOD_SECONDS + 1
-	);
 	private static final long RESPAWN_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(3);
 
 	private final BaseBlockShops blockShops;
 
-	// Initial threshold between [1, CHECK_PERIOD_SECONDS] for load balancing:
-	private final RateLimiter checkLimiter = new RateLimiter(
-			CHECK_PERIOD_SECONDS,
-			nextCheckingOffset.getAndIncrement()
-	);
-
 	private @Nullable Block block = null;
 	private long lastFailedRespawnAttemptMillis = 0;
 
@@ -206,12 +194,13 @@ public abstract class BaseBlockShopObject extends AbstractBlockShopObject {
 	// TICKING
 
 	@Override
-	public void onTick() {
-		super.onTick();
-		if (!checkLimiter.request()) {
-			return;
-		}
+	public int getCheckPeriod() {
+		return CHECK_PERIOD_SECONDS;
+	}
 
+	@Override
+	public void onCheck() {
+		super.onCheck();
 		if (this.isSpawningScheduled()) {
 			Log.debug(DebugOptions.regularTickActivities, () -> shopkeeper.getLogPrefix()
 					+ "Spawning is scheduled. Skipping block check.");
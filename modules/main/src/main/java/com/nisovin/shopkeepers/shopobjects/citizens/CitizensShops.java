@@ -414,7 +414,8 @@ public class CitizensShops {
 
 		SKShopkeeperRegistry shopkeeperRegistry = plugin.getShopkeeperRegistry();
 		List<Shopkeeper> invalidShopkeepers = new ArrayList<>();
-		shopkeeperRegistry.getAllShopkeepers().forEach(shopkeeper -> {
+		// Citizens shopkeepers are never deferred: Avoids loading any deferred shopkeepers.
+		shopkeeperRegistry.getLoadedShopkeepers().forEach(shopkeeper -> {
 			if (!(shopkeeper.getShopObject() instanceof SKCitizensShopObject)) {
 				return;
 			}
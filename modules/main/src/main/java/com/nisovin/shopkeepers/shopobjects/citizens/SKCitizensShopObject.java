@@ -36,8 +36,6 @@ import com.nisovin.shopkeepers.util.data.property.value.PropertyValue;
 import com.nisovin.shopkeepers.util.data.serialization.InvalidDataException;
 import com.nisovin.shopkeepers.util.data.serialization.java.DataContainerSerializers;
 import com.nisovin.shopkeepers.util.data.serialization.java.UUIDSerializers;
-import com.nisovin.shopkeepers.util.java.CyclicCounter;
-import com.nisovin.shopkeepers.util.java.RateLimiter;
 import com.nisovin.shopkeepers.util.logging.Log;
 
 import net.citizensnpcs.api.CitizensAPI;
@@ -93,10 +91,6 @@ public class SKCitizensShopObject extends AbstractEntityShopObject implements Ci
 
 	public static final String CREATION_DATA_NPC_UUID_KEY = "CitizensNpcUUID";
 	private static final int CHECK_PERIOD_SECONDS = 10;
-	private static final CyclicCounter nextCheckingOffset = new CyclicCounter(
-			1,
-			CHECK_PERIOD_SECONDS + 1
-	);
 
 	protected final CitizensShops citizensShops;
 
@@ -113,12 +107,6 @@ public class SKCitizensShopObject extends AbstractEntityShopObject implements Ci
 	// If false, this will not remove the NPC on deletion:
 	private boolean destroyNPC = true;
 
-	// Initial threshold between [1, CHECK_PERIOD_SECONDS] for load balancing:
-	private final RateLimiter checkLimiter = new RateLimiter(
-			CHECK_PERIOD_SECONDS,
-			nextCheckingOffset.getAndIncrement()
-	);
-
 	private @Nullable Entity entity = null;
 
 	protected SKCitizensShopObject(
@@ -673,17 +661,18 @@ public class SKCitizensShopObject extends AbstractEntityShopObject implements Ci
 	}
 
 	@Override
-	public void onTick() {
-		super.onTick();
+	public int getCheckPeriod() {
+		return CHECK_PERIOD_SECONDS;
+	}
+
+	@Override
+	public void onCheck() {
+		super.onCheck();
 		// TODO If the NPC is moved to a different world, and the previous chunk is unloaded, it may
 		// take up to 10 seconds before the NPC can be interacted with again because it is no longer
 		// part of the active shopkeepers.
 		// TODO Actually, the NPC is no longer considered a shopkeeper during these 10 seconds! This
 		// could result is all kinds of issues.
-		if (!checkLimiter.request()) {
-			return;
-		}
-
 		NPC npc = this.getNPC();
 		if (npc == null) {
 			// The NPC is not available currently.
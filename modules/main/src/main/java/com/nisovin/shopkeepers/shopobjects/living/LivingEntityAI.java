@@ -3,7 +3,6 @@ package com.nisovin.shopkeepers.shopobjects.living;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -11,16 +10,25 @@ import java.util.Set;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
-import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 import org.bukkit.entity.LivingEntity;
-import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
-import org.bukkit.event.player.PlayerJoinEvent;
-import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockPhysicsEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.LeavesDecayEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.scheduler.BukkitTask;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -29,14 +37,17 @@ import com.nisovin.shopkeepers.api.internal.util.Unsafe;
 import com.nisovin.shopkeepers.api.util.ChunkCoords;
 import com.nisovin.shopkeepers.compat.NMSManager;
 import com.nisovin.shopkeepers.config.Settings;
+import com.nisovin.shopkeepers.debug.metrics.MetricsRegistry;
 import com.nisovin.shopkeepers.util.bukkit.EntityUtils;
-import com.nisovin.shopkeepers.util.bukkit.MutableChunkCoords;
+import com.nisovin.shopkeepers.util.bukkit.WorldChunkMap;
 import com.nisovin.shopkeepers.util.bukkit.WorldUtils;
 import com.nisovin.shopkeepers.util.java.CyclicCounter;
 import com.nisovin.shopkeepers.util.java.RateLimiter;
 import com.nisovin.shopkeepers.util.java.Validate;
 import com.nisovin.shopkeepers.util.timer.Timer;
 import com.nisovin.shopkeepers.util.timer.Timings;
+import com.nisovin.shopkeepers.world.PlayerProximityIndex;
+import com.nisovin.shopkeepers.world.PlayerProximityIndex.ProximityListener;
 
 /**
  * Handles the gravity and AI behavior, e.g. looking at nearby players, of
@@ -51,27 +62,13 @@ import com.nisovin.shopkeepers.util.timer.Timings;
  * {@link #updateLocation(SKLivingShopObject)} in order for their gravity and AI activation to still
  * function correctly.
  */
-public class LivingEntityAI implements Listener {
+public class LivingEntityAI {
 
 	/**
 	 * The range at which shopkeeper mobs look at players.
 	 */
 	public static final float LOOK_RANGE = 6.0F;
 
-	/**
-	 * Determines how often AI activations are rechecked (every X ticks).
-	 * <p>
-	 * We also separately react to player joins and teleports in order to quickly activate the AI of
-	 * nearby shopkeepers in those cases. Note that this only has an effect if the nearby chunks
-	 * were already loaded and their shopkeepers were already spawned. However, if this is not the
-	 * case, the chunk will be marked as active by default anyway already once the shopkeepers are
-	 * spawned (which can happen deferred to chunk loading, due to the deferred chunk activation and
-	 * the spawn queue).
-	 */
-	// 30 ticks is quick enough to fluently react even to players flying in creative mode with
-	// default flying speed.
-	public static final int AI_ACTIVATION_TICK_RATE = 30;
-
 	/**
 	 * The range in chunks around players in which AI is active.
 	 * <p>
@@ -83,6 +80,8 @@ public class LivingEntityAI implements Listener {
 	// Players can see shop entities from further away, so we use a large enough range for the
 	// activation of falling checks (configurable in the config, default 4).
 	// TODO Take view/tracking distances into account? (spigot-config specific though..)
+	// Note: The chunks near players are determined via the PlayerProximityIndex, which updates the
+	// chunk activations incrementally whenever players cross chunk borders.
 
 	// Entities won't fall, if their distance-to-ground is smaller than this:
 	private static final double DISTANCE_TO_GROUND_THRESHOLD = 0.01D;
@@ -109,7 +108,6 @@ public class LivingEntityAI implements Listener {
 
 	// Temporarily re-used objects:
 	private static final Location sharedLocation = new Location(null, 0, 0, 0);
-	private static final MutableChunkCoords sharedChunkCoords = new MutableChunkCoords();
 
 	private final SKShopkeepersPlugin plugin;
 	/**
@@ -133,6 +131,21 @@ public class LivingEntityAI implements Listener {
 	 * the gravity of mobs).
 	 */
 	private boolean customGravityEnabled;
+	private int gravityChunkRange;
+	/**
+	 * Whether we cache the ground checks of entities that rest on the ground.
+	 * <p>
+	 * See {@link Settings#gravityGroundCache}.
+	 */
+	private boolean gravityGroundCacheEnabled;
+	private final GroundCacheInvalidator groundCacheInvalidator = new GroundCacheInvalidator();
+	// Receive the chunk activations from the PlayerProximityIndex:
+	private final ProximityListener aiActivationListener = new ActivationListener(
+			ActivationType.AI
+	);
+	private final ProximityListener gravityActivationListener = new ActivationListener(
+			ActivationType.GRAVITY
+	);
 
 	private static class EntityData {
 
@@ -145,12 +158,39 @@ public class LivingEntityAI implements Listener {
 		);
 		public boolean falling = false;
 		public double distanceToGround = 0.0D;
+		// Whether the entity was found to rest on the ground at the cached location. Until the
+		// entity moves or a block inside the cached block column changes, we can skip the ground
+		// check.
+		public boolean groundCached = false;
+		private double groundCacheX;
+		private double groundCacheY;
+		private double groundCacheZ;
 
 		public EntityData(SKLivingShopObject<?> shopObject, ChunkData chunkData) {
 			this.shopObject = shopObject;
 			this.chunkData = chunkData;
 		}
 
+		public void cacheGround(Location location) {
+			groundCached = true;
+			groundCacheX = location.getX();
+			groundCacheY = location.getY();
+			groundCacheZ = location.getZ();
+		}
+
+		public boolean isGroundCached(Location location) {
+			return groundCached
+					&& groundCacheX == location.getX()
+					&& groundCacheY == location.getY()
+					&& groundCacheZ == location.getZ();
+		}
+
+		public boolean isGroundCachedInColumn(int blockX, int blockZ) {
+			return groundCached
+					&& Location.locToBlock(groundCacheX) == blockX
+					&& Location.locToBlock(groundCacheZ) == blockZ;
+		}
+
 		public boolean isAffectedByGravity() {
 			switch (shopObject.getEntityType()) {
 			case SHULKER:
@@ -166,17 +206,17 @@ public class LivingEntityAI implements Listener {
 		private final ChunkCoords chunkCoords;
 		// We don't expect there to be many entities within a single chunk, so using a list is okay:
 		private final List<EntityData> entities = new ArrayList<>();
-		// Active by default for fast initial reactions in case players are nearby:
 		public boolean activeGravity;
-		public boolean activeAI = true;
+		public boolean activeAI;
 
-		public ChunkData(ChunkCoords chunkCoords, boolean activeGravity) {
+		public ChunkData(ChunkCoords chunkCoords, boolean activeGravity, boolean activeAI) {
 			this.chunkCoords = chunkCoords;
 			this.activeGravity = activeGravity;
+			this.activeAI = activeAI;
 		}
 	}
 
-	private final Map<ChunkCoords, ChunkData> chunks = new LinkedHashMap<>();
+	private final WorldChunkMap<ChunkData> chunks = new WorldChunkMap<>();
 	// Index for fast removal: Shop object -> EntityData
 	private final Map<SKLivingShopObject<?>, EntityData> shopObjects = new HashMap<>();
 
@@ -191,15 +231,14 @@ public class LivingEntityAI implements Listener {
 	private int activeGravityEntityCount = 0;
 
 	private final Timer totalTimings = new Timer();
-	// Note: This only captures the periodic full activation updates, and not the player-specific
-	// activations triggered
-	// by player joins and teleports.
-	private final Timer activationTimings = new Timer();
-	private final Timer gravityTimings = new Timer();
-	private final Timer aiTimings = new Timer();
+	private final Timer gravityTimings;
+	private final Timer aiTimings;
 
 	public LivingEntityAI(SKShopkeepersPlugin plugin) {
 		this.plugin = plugin;
+		MetricsRegistry metricsRegistry = plugin.getMetricsRegistry();
+		this.gravityTimings = new Timer(metricsRegistry.getHistogram(MetricsRegistry.GRAVITY));
+		this.aiTimings = new Timer(metricsRegistry.getHistogram(MetricsRegistry.AI));
 	}
 
 	public void onEnable() {
@@ -208,9 +247,19 @@ public class LivingEntityAI implements Listener {
 		maxFallingDistancePerUpdate = Settings.mobBehaviorTickPeriod * MAX_FALLING_DISTANCE_PER_TICK;
 		gravityCollisionCheckRange = maxFallingDistancePerUpdate + 0.1D;
 		customGravityEnabled = _isCustomGravityEnabled();
+		gravityGroundCacheEnabled = customGravityEnabled && Settings.gravityGroundCache;
+		gravityChunkRange = Settings.gravityChunkRange;
+		assert gravityChunkRange >= 0;
 
-		// Register listener:
-		Bukkit.getPluginManager().registerEvents(this, plugin);
+		// Register listeners:
+		PlayerProximityIndex playerProximityIndex = plugin.getPlayerProximityIndex();
+		playerProximityIndex.addListener(AI_ACTIVATION_CHUNK_RANGE, aiActivationListener);
+		if (customGravityEnabled) {
+			playerProximityIndex.addListener(gravityChunkRange, gravityActivationListener);
+		}
+		if (gravityGroundCacheEnabled) {
+			Bukkit.getPluginManager().registerEvents(groundCacheInvalidator, plugin);
+		}
 
 		// Start task:
 		this.startTask();
@@ -218,7 +267,11 @@ public class LivingEntityAI implements Listener {
 
 	public void onDisable() {
 		assert !currentlyRunning;
-		HandlerList.unregisterAll(this); // Unregister listener
+		// Unregister listeners:
+		PlayerProximityIndex playerProximityIndex = plugin.getPlayerProximityIndex();
+		playerProximityIndex.removeListener(aiActivationListener);
+		playerProximityIndex.removeListener(gravityActivationListener);
+		HandlerList.unregisterAll(groundCacheInvalidator);
 		this.stopTask();
 		chunks.clear();
 		shopObjects.clear();
@@ -242,15 +295,21 @@ public class LivingEntityAI implements Listener {
 		// Determine entity chunk (asserts that the entity won't move!):
 		// We assert that the chunk is loaded (checked above by isValid call).
 		Location entityLocation = Unsafe.assertNonNull(entity.getLocation(sharedLocation));
-		sharedChunkCoords.set(entityLocation);
+		String worldName = Unsafe.assertNonNull(entityLocation.getWorld()).getName();
+		int chunkX = ChunkCoords.fromBlock(entityLocation.getBlockX());
+		int chunkZ = ChunkCoords.fromBlock(entityLocation.getBlockZ());
 		sharedLocation.setWorld(null); // Reset
 
 		// Add chunk entry:
-		ChunkData chunkData = chunks.get(sharedChunkCoords);
+		ChunkData chunkData = chunks.get(worldName, chunkX, chunkZ);
 		if (chunkData == null) {
-			ChunkCoords chunkCoords = new ChunkCoords(sharedChunkCoords); // Copy
-			chunkData = new ChunkData(chunkCoords, customGravityEnabled);
-			chunks.put(chunkCoords, chunkData);
+			ChunkCoords chunkCoords = new ChunkCoords(worldName, chunkX, chunkZ);
+			chunkData = new ChunkData(
+					chunkCoords,
+					this.isNearPlayers(chunkCoords, ActivationType.GRAVITY),
+					this.isNearPlayers(chunkCoords, ActivationType.AI)
+			);
+			chunks.put(worldName, chunkX, chunkZ, chunkData);
 
 			// Update chunk statistics:
 			if (chunkData.activeAI) {
@@ -323,7 +382,6 @@ public class LivingEntityAI implements Listener {
 		activeGravityEntityCount = 0;
 
 		totalTimings.reset();
-		activationTimings.reset();
 		gravityTimings.reset();
 		aiTimings.reset();
 	}
@@ -352,10 +410,6 @@ public class LivingEntityAI implements Listener {
 		return totalTimings;
 	}
 
-	public Timings getActivationTimings() {
-		return activationTimings;
-	}
-
 	public Timings getGravityTimings() {
 		return gravityTimings;
 	}
@@ -388,8 +442,6 @@ public class LivingEntityAI implements Listener {
 
 	private class TickTask implements Runnable {
 
-		private final RateLimiter aiActivationLimiter = new RateLimiter(AI_ACTIVATION_TICK_RATE);
-
 		TickTask() {
 		}
 
@@ -409,12 +461,6 @@ public class LivingEntityAI implements Listener {
 			gravityTimings.startPaused();
 			aiTimings.startPaused();
 
-			// Freshly determine active chunks/entities (near players) every AI_ACTIVATION_TICK_RATE
-			// ticks:
-			if (aiActivationLimiter.request(Settings.mobBehaviorTickPeriod)) {
-				updateChunkActivations();
-			}
-
 			// Process entities:
 			processEntities();
 
@@ -429,122 +475,80 @@ public class LivingEntityAI implements Listener {
 
 	// CHUNK ACTIVATIONS
 
-	private void updateChunkActivations() {
-		activationTimings.start();
-
-		// Deactivate all chunks:
-		chunks.values().forEach(chunkData -> {
-			chunkData.activeAI = false;
-			chunkData.activeGravity = false;
-		});
-		activeAIChunksCount = 0;
-		activeGravityChunksCount = 0;
-
-		// Activate chunks around online players:
-		for (Player player : Bukkit.getOnlinePlayers()) {
-			assert player != null;
-			this.activateNearbyChunks(player);
-		}
-
-		activationTimings.stop();
-	}
-
-	// Note: This only activates chunks around the player, but does not deactivate any chunks that
-	// have previously been activated by the player. The periodic full activation update deactivates
-	// all chunks that no longer require activation.
-	private void activateNearbyChunks(Player player) {
-		World world = player.getWorld();
-		Location location = Unsafe.assertNonNull(player.getLocation(sharedLocation));
-		// Note: On some Paper versions with their async chunk loading, the player's current chunk
-		// may sometimes not be loaded yet. We therefore avoid accessing (and thereby loading) that
-		// chunk here, but instead only use its coordinates. The subsequent activation of nearby
-		// chunks only considers loaded chunks.
-		int chunkX = ChunkCoords.fromBlock(location.getBlockX());
-		int chunkZ = ChunkCoords.fromBlock(location.getBlockZ());
-
-		this.activateNearbyChunks(
-				world,
-				chunkX,
-				chunkZ,
-				AI_ACTIVATION_CHUNK_RANGE,
-				ActivationType.AI
-		);
-		if (customGravityEnabled) {
-			assert Settings.gravityChunkRange >= 0;
-			this.activateNearbyChunks(
-					world,
-					chunkX,
-					chunkZ,
-					Settings.gravityChunkRange,
-					ActivationType.GRAVITY
-			);
-		}
-		sharedLocation.setWorld(null); // Reset
+	private enum ActivationType {
+		GRAVITY,
+		AI;
 	}
 
-	private void activateNearbyChunksDelayed(Player player) {
-		if (!player.isOnline()) return; // Player is no longer online
-		Bukkit.getScheduler().runTask(plugin, new ActivateNearbyChunksDelayedTask(player));
-	}
+	private class ActivationListener implements ProximityListener {
 
-	private class ActivateNearbyChunksDelayedTask implements Runnable {
+		private final ActivationType activationType;
 
-		private final Player player;
+		ActivationListener(ActivationType activationType) {
+			assert activationType != null;
+			this.activationType = activationType;
+		}
 
-		ActivateNearbyChunksDelayedTask(Player player) {
-			assert player != null;
-			this.player = player;
+		@Override
+		public void onChunkNearPlayers(String worldName, int chunkX, int chunkZ) {
+			setChunkActive(worldName, chunkX, chunkZ, activationType, true);
 		}
 
 		@Override
-		public void run() {
-			if (!player.isOnline()) return; // Player is no longer online
-			activateNearbyChunks(player);
+		public void onChunkNoLongerNearPlayers(String worldName, int chunkX, int chunkZ) {
+			setChunkActive(worldName, chunkX, chunkZ, activationType, false);
 		}
 	}
 
-	private enum ActivationType {
-		GRAVITY,
-		AI;
+	private boolean isNearPlayers(ChunkCoords chunkCoords, ActivationType activationType) {
+		int chunkRange;
+		switch (activationType) {
+		case GRAVITY:
+			if (!customGravityEnabled) return false;
+			chunkRange = gravityChunkRange;
+			break;
+		case AI:
+			chunkRange = AI_ACTIVATION_CHUNK_RANGE;
+			break;
+		default:
+			throw new IllegalStateException("Unexpected activation type: " + activationType);
+		}
+		return plugin.getPlayerProximityIndex().isNearPlayers(
+				chunkRange,
+				chunkCoords.getWorldName(),
+				chunkCoords.getChunkX(),
+				chunkCoords.getChunkZ()
+		);
 	}
 
-	private void activateNearbyChunks(
-			World world,
-			int centerChunkX,
-			int centerChunkZ,
-			int chunkRadius,
-			ActivationType activationType
+	private void setChunkActive(
+			String worldName,
+			int chunkX,
+			int chunkZ,
+			ActivationType activationType,
+			boolean active
 	) {
-		assert world != null && chunkRadius >= 0 && activationType != null;
-		String worldName = world.getName();
-		int minChunkX = centerChunkX - chunkRadius;
-		int maxChunkX = centerChunkX + chunkRadius;
-		int minChunkZ = centerChunkZ - chunkRadius;
-		int maxChunkZ = centerChunkZ + chunkRadius;
-		for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
-			for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
-				sharedChunkCoords.set(worldName, chunkX, chunkZ);
-				ChunkData chunkData = chunks.get(sharedChunkCoords);
-				if (chunkData == null) continue;
-
-				switch (activationType) {
-				case GRAVITY:
-					if (!chunkData.activeGravity) {
-						chunkData.activeGravity = true;
-						activeGravityChunksCount++;
-					}
-					break;
-				case AI:
-					if (!chunkData.activeAI) {
-						chunkData.activeAI = true;
-						activeAIChunksCount++;
-					}
-					break;
-				default:
-					throw new IllegalStateException("Unexpected activation type: "
-							+ activationType);
-				}
+		assert worldName != null && activationType != null;
+		// Note: Player movements do not occur while the AI task is running.
+		assert !currentlyRunning;
+		ChunkData chunkData = chunks.get(worldName, chunkX, chunkZ);
+		if (chunkData == null) return; // No shopkeeper entities in this chunk
+
+		switch (activationType) {
+		case GRAVITY:
+			if (chunkData.activeGravity != active) {
+				chunkData.activeGravity = active;
+				activeGravityChunksCount += (active ? 1 : -1);
+			}
+			break;
+		case AI:
+			if (chunkData.activeAI != active) {
+				chunkData.activeAI = active;
+				activeAIChunksCount += (active ? 1 : -1);
 			}
+			break;
+		default:
+			throw new IllegalStateException("Unexpected activation type: " + activationType);
 		}
 	}
 
@@ -560,7 +564,7 @@ public class LivingEntityAI implements Listener {
 			return;
 		}
 
-		chunks.values().forEach(this::processEntities);
+		chunks.forEachValue(this::processEntities);
 	}
 
 	private void processEntities(ChunkData chunkData) {
@@ -639,6 +643,17 @@ public class LivingEntityAI implements Listener {
 			LivingEntity entity = Unsafe.assertNonNull(entityData.shopObject.getEntity());
 			Location entityLocation = Unsafe.assertNonNull(entity.getLocation(sharedLocation));
 
+			// Skip the ground check if the entity still rests at the same location as during the
+			// last check and the blocks below it have not changed since then:
+			if (entityData.isGroundCached(entityLocation)) {
+				assert !entityData.falling;
+				sharedLocation.setWorld(null); // Reset
+				// Prevents SPIGOT-3948 / MC-130725
+				NMSManager.getProvider().setOnGround(entity, true);
+				return;
+			}
+			entityData.groundCached = false;
+
 			// The entity may be able to stand on certain types of fluids:
 			Set<? extends Material> collidableFluids = EntityUtils.getCollidableFluids(
 					entity.getType()
@@ -665,9 +680,12 @@ public class LivingEntityAI implements Listener {
 					gravityCollisionCheckRange,
 					collidableFluids
 			);
-			sharedLocation.setWorld(null); // Reset
 			boolean falling = (entityData.distanceToGround >= DISTANCE_TO_GROUND_THRESHOLD);
 			entityData.falling = falling;
+			if (!falling && gravityGroundCacheEnabled) {
+				entityData.cacheGround(entityLocation);
+			}
+			sharedLocation.setWorld(null); // Reset
 
 			// Tick falling:
 			if (falling) {
@@ -710,39 +728,122 @@ public class LivingEntityAI implements Listener {
 		sharedLocation.setWorld(null); // Reset
 	}
 
-	// ENTITY AI
+	// Invalidates the cached ground checks of the entities inside the block column of the given
+	// block.
+	private void invalidateGroundCache(Block block) {
+		if (chunks.isEmpty()) return;
+		int blockX = block.getX();
+		int blockZ = block.getZ();
+		ChunkData chunkData = chunks.get(
+				block.getWorld().getName(),
+				ChunkCoords.fromBlock(blockX),
+				ChunkCoords.fromBlock(blockZ)
+		);
+		if (chunkData == null) return;
 
-	// Gets run every behavior update while in range of players:
-	private void processAI(EntityData entityData) {
-		// Only tick AI if not currently falling:
-		if (entityData.falling) return;
+		for (EntityData entityData : chunkData.entities) {
+			if (entityData.isGroundCachedInColumn(blockX, blockZ)) {
+				entityData.groundCached = false;
+			}
+		}
+	}
 
-		entityData.shopObject.tickAI();
+	private void invalidateGroundCache(List<? extends Block> blocks) {
+		for (Block block : blocks) {
+			this.invalidateGroundCache(block);
+		}
 	}
 
-	// EVENT HANDLERS
+	/**
+	 * Invalidates the cached ground checks of entities when blocks inside their block columns
+	 * change.
+	 * <p>
+	 * Only registered if the {@link Settings#gravityGroundCache ground cache} is enabled.
+	 */
+	private class GroundCacheInvalidator implements Listener {
+
+		GroundCacheInvalidator() {
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onBlockPhysics(BlockPhysicsEvent event) {
+			invalidateGroundCache(event.getBlock());
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onBlockPlace(BlockPlaceEvent event) {
+			invalidateGroundCache(event.getBlock());
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onBlockBreak(BlockBreakEvent event) {
+			invalidateGroundCache(event.getBlock());
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onBlockBurn(BlockBurnEvent event) {
+			invalidateGroundCache(event.getBlock());
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onBlockFade(BlockFadeEvent event) {
+			invalidateGroundCache(event.getBlock());
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onLeavesDecay(LeavesDecayEvent event) {
+			invalidateGroundCache(event.getBlock());
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onBlockFromTo(BlockFromToEvent event) {
+			invalidateGroundCache(event.getToBlock());
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onEntityChangeBlock(EntityChangeBlockEvent event) {
+			invalidateGroundCache(event.getBlock());
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onBlockExplode(BlockExplodeEvent event) {
+			invalidateGroundCache(event.blockList());
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onEntityExplode(EntityExplodeEvent event) {
+			invalidateGroundCache(event.blockList());
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onBlockPistonExtend(BlockPistonExtendEvent event) {
+			this.onPistonMovesBlocks(event.getBlocks(), event.getDirection());
+		}
 
-	// By reacting to player joins and teleports we can very quickly activate chunks around players
-	// that suddenly appear near shopkeepers.
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onBlockPistonRetract(BlockPistonRetractEvent event) {
+			this.onPistonMovesBlocks(event.getBlocks(), event.getDirection());
+		}
 
-	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-	void onPlayerJoin(PlayerJoinEvent event) {
-		// Activate chunks around the player after the server has completely handled the join.
-		// Note: This also checks if the player is still online (some other plugin might have kicked
-		// the player during the event) and otherwise ignores the request.
-		Player player = event.getPlayer();
-		this.activateNearbyChunksDelayed(player);
+		// The moved blocks also affect the block columns they are moved into. Since the reported
+		// direction of retracting pistons differs between server versions, we invalidate both
+		// neighboring block columns.
+		private void onPistonMovesBlocks(List<? extends Block> blocks, BlockFace direction) {
+			for (Block block : blocks) {
+				invalidateGroundCache(block);
+				invalidateGroundCache(block.getRelative(direction));
+				invalidateGroundCache(block.getRelative(direction.getOppositeFace()));
+			}
+		}
 	}
 
-	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-	void onPlayerTeleport(PlayerTeleportEvent event) {
-		// The target location can be null in some circumstances (e.g. when a player enters an end
-		// gateway, but there is no end world). We ignore the event in this case.
-		Location targetLocation = event.getTo();
-		if (targetLocation == null) return;
+	// ENTITY AI
 
-		// Activate chunks around the player after the teleport:
-		Player player = event.getPlayer();
-		this.activateNearbyChunksDelayed(player);
+	// Gets run every behavior update while in range of players:
+	private void processAI(EntityData entityData) {
+		// Only tick AI if not currently falling:
+		if (entityData.falling) return;
+
+		entityData.shopObject.tickAI();
 	}
 }
@@ -25,10 +25,12 @@ import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.entity.EntityDropItemEvent;
 import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.entity.EntityKnockbackEvent;
 import org.bukkit.event.entity.EntityPickupItemEvent;
 import org.bukkit.event.entity.EntityPortalEvent;
 import org.bukkit.event.entity.EntityPotionEffectEvent;
 import org.bukkit.event.entity.EntityPotionEffectEvent.Action;
+import org.bukkit.event.entity.EntityRemoveEvent;
 import org.bukkit.event.entity.EntityTargetEvent;
 import org.bukkit.event.entity.EntityTeleportEvent;
 import org.bukkit.event.entity.EntityTransformEvent;
@@ -447,4 +449,43 @@ class LivingEntityShopListener implements Listener {
 			event.setCancelled(true);
 		}
 	}
+
+	// EVENT-DRIVEN ENTITY CHECKS
+
+	// Requests a check of the given entity during the next shopkeeper tick, if it is a shopkeeper
+	// entity and event-driven entity checks are enabled.
+	private void requestCheck(Entity entity) {
+		if (!Settings.livingShopEventDrivenChecks) return;
+		AbstractShopkeeper shopkeeper = shopkeeperRegistry.getShopkeeperByEntity(entity);
+		if (shopkeeper == null) return;
+
+		ShopObject shopObject = shopkeeper.getShopObject();
+		if (shopObject instanceof SKLivingShopObject<?>) {
+			((SKLivingShopObject<?>) shopObject).requestCheck();
+		}
+	}
+
+	// Respawn the entity if it was removed, e.g. by another plugin:
+	@EventHandler(priority = EventPriority.MONITOR)
+	void onEntityRemove(EntityRemoveEvent event) {
+		this.requestCheck(event.getEntity());
+	}
+
+	// Teleport the entity back if another plugin forcefully teleported it:
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onEntityTeleportMonitor(EntityTeleportEvent event) {
+		this.requestCheck(event.getEntity());
+	}
+
+	// Teleport the entity back if it was pushed out of place:
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onEntityKnockback(EntityKnockbackEvent event) {
+		this.requestCheck(event.getEntity());
+	}
+
+	// Restore the default potion effects if they were removed, expired, or changed:
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onEntityPotionEffectMonitor(EntityPotionEffectEvent event) {
+		this.requestCheck(event.getEntity());
+	}
 }
@@ -66,8 +66,6 @@ import com.nisovin.shopkeepers.util.data.property.value.PropertyValue;
 import com.nisovin.shopkeepers.util.data.serialization.InvalidDataException;
 import com.nisovin.shopkeepers.util.inventory.ItemUtils;
 import com.nisovin.shopkeepers.util.inventory.PotionUtils;
-import com.nisovin.shopkeepers.util.java.CyclicCounter;
-import com.nisovin.shopkeepers.util.java.RateLimiter;
 import com.nisovin.shopkeepers.util.logging.Log;
 
 public class SKLivingShopObject<E extends LivingEntity>
@@ -88,14 +86,13 @@ public class SKLivingShopObject<E extends LivingEntity>
 
 	protected static final int CHECK_PERIOD_SECONDS = 10;
 	protected static final int CHECK_PERIOD_TICKS = Ticks.PER_SECOND * CHECK_PERIOD_SECONDS;
-	private static final CyclicCounter nextCheckingOffset = new CyclicCounter(
-			1,
-			CHECK_PERIOD_SECONDS + 1
-	);
 	// If the entity could not be respawned this amount of times, we throttle its tick rate (i.e.
 	// the rate at which we attempt to respawn it):
 	protected static final int MAX_RESPAWN_ATTEMPTS = 5;
 	protected static final int THROTTLED_CHECK_PERIOD_SECONDS = 60;
+	// If event-driven entity checks are enabled, spawned entities are only checked periodically at
+	// this slow rate, as a safety net for changes that we do not detect via events:
+	protected static final int SAFETY_NET_CHECK_PERIOD_SECONDS = 60;
 
 	private static final Location sharedLocation = new Location(null, 0, 0, 0);
 
@@ -114,9 +111,8 @@ public class SKLivingShopObject<E extends LivingEntity>
 	private static long lastSpawnDebugMillis = 0L;
 	private static final long SPAWN_DEBUG_THROTTLE_MILLIS = TimeUnit.MINUTES.toMillis(5);
 
-	// Initial threshold between [1, CHECK_PERIOD_SECONDS] for load balancing:
-	private final int checkingOffset = nextCheckingOffset.getAndIncrement();
-	private final RateLimiter checkLimiter = new RateLimiter(CHECK_PERIOD_SECONDS, checkingOffset);
+	private int checkPeriod = CHECK_PERIOD_SECONDS;
+	private boolean checkRequested = false;
 	private boolean skipRespawnAttemptsIfPeaceful = false;
 
 	protected SKLivingShopObject(
@@ -584,36 +580,68 @@ public class SKLivingShopObject<E extends LivingEntity>
 	// TICKING
 
 	@Override
-	public void onTick() {
-		super.onTick();
-		if (checkLimiter.request()) {
-			if (this.isSpawningScheduled()) {
-				Log.debug(DebugOptions.regularTickActivities, () -> shopkeeper.getLogPrefix()
-						+ "Spawning is scheduled. Skipping entity check.");
-				return;
-			}
+	public int getCheckPeriod() {
+		// Missing entities are still checked at the regular rate, so that we keep attempting to
+		// respawn them:
+		if (Settings.livingShopEventDrivenChecks && this.isSpawned()) {
+			return Math.max(checkPeriod, SAFETY_NET_CHECK_PERIOD_SECONDS);
+		}
+		return checkPeriod;
+	}
 
-			this.check();
+	/**
+	 * Requests that the entity is checked during the next shopkeeper tick, e.g. because we detected
+	 * an event that might have affected the entity.
+	 * <p>
+	 * This is used if {@link Settings#livingShopEventDrivenChecks event-driven entity checks} are
+	 * enabled.
+	 */
+	void requestCheck() {
+		checkRequested = true;
+	}
 
-			// Indicate ticking activity for visualization:
-			this.indicateTickActivity();
+	@Override
+	public void onCheck() {
+		super.onCheck();
+		this.checkEntity(); // Also resets any pending check request
+	}
+
+	@Override
+	public void onTickEnd() {
+		super.onTickEnd();
+		// Requested checks are handled at the end of the tick, so that they are skipped if the
+		// periodic check already checked the entity during this tick:
+		if (checkRequested && shopkeeper.isTicking()) {
+			this.checkEntity();
+		}
+	}
+
+	private void checkEntity() {
+		checkRequested = false;
+		if (this.isSpawningScheduled()) {
+			Log.debug(DebugOptions.regularTickActivities, () -> shopkeeper.getLogPrefix()
+					+ "Spawning is scheduled. Skipping entity check.");
+			return;
 		}
+
+		this.check();
+
+		// Indicate ticking activity for visualization:
+		this.indicateTickActivity();
 	}
 
 	private boolean isTickRateThrottled() {
-		return (checkLimiter.getThreshold() == THROTTLED_CHECK_PERIOD_SECONDS);
+		return (checkPeriod == THROTTLED_CHECK_PERIOD_SECONDS);
 	}
 
 	private void throttleTickRate() {
 		if (this.isTickRateThrottled()) return; // Already throttled
 		Log.debug("Throttling tick rate");
-		checkLimiter.setThreshold(THROTTLED_CHECK_PERIOD_SECONDS);
-		checkLimiter.setRemainingThreshold(THROTTLED_CHECK_PERIOD_SECONDS + checkingOffset);
+		checkPeriod = THROTTLED_CHECK_PERIOD_SECONDS;
 	}
 
 	private void resetTickRate() {
-		checkLimiter.setThreshold(CHECK_PERIOD_SECONDS);
-		checkLimiter.setRemainingThreshold(checkingOffset);
+		checkPeriod = CHECK_PERIOD_SECONDS;
 	}
 
 	private void check() {
@@ -0,0 +1,343 @@
+package com.nisovin.shopkeepers.spigot.text;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.text.FormattingText;
+import com.nisovin.shopkeepers.text.PlaceholderText;
+import com.nisovin.shopkeepers.text.PlainText;
+import com.nisovin.shopkeepers.text.Text;
+import com.nisovin.shopkeepers.text.TextBuilder;
+import com.nisovin.shopkeepers.util.java.LRUCache;
+import com.nisovin.shopkeepers.util.java.Validate;
+import com.nisovin.shopkeepers.util.text.MessageArguments;
+
+/**
+ * The compiled form of a {@link Text} message with placeholders.
+ * <p>
+ * The message is split into static segments and placeholders. The static segments are converted
+ * once when the template is compiled, and the placeholders are bound by index. Preparing a message
+ * from the template only converts the placeholder arguments and combines them with the
+ * pre-converted static segments. Unlike {@link Text#setPlaceholderArguments(MessageArguments)},
+ * this does not modify the original message.
+ * <p>
+ * The {@link PreparedMessage prepared messages} are cached by the resolved values of their
+ * placeholder arguments, so that repeated messages with the same arguments are only converted
+ * once.
+ * <p>
+ * Only messages that consist of plain, formatting, and placeholder Texts, such as the messages
+ * produced by {@link Text#parse(String)}, can be compiled. Other messages are copied and converted
+ * as a whole each time a message is prepared from them.
+ * <p>
+ * Message templates are not thread-safe.
+ * <p>
+ * Use {@link SpigotText#compileMessage(Text)} to create a message template.
+ */
+public final class MessageTemplate {
+
+	// The number of prepared messages that are cached per message template:
+	private static final int CACHE_SIZE = 16;
+
+	// Reused by the message preparations of each thread, so that binding the placeholder arguments
+	// does not allocate new buffers for each prepared message:
+	private static final ThreadLocal<ArgumentBinder> ARGUMENT_BINDER = ThreadLocal.withInitial(
+			ArgumentBinder::new
+	);
+
+	/**
+	 * Binds the placeholder arguments of a message by their placeholder index.
+	 */
+	private static final class ArgumentBinder {
+
+		// The placeholder arguments, by placeholder index. Null for placeholders without argument.
+		private final List<@Nullable Text> arguments = new ArrayList<>();
+		// The cache key for the bound arguments:
+		private final List<@Nullable Object> cacheKey = new ArrayList<>();
+		// Whether the binder is currently used, e.g. if the resolution of a placeholder argument
+		// prepares another message:
+		private boolean inUse = false;
+
+		void bind(@Nullable Object argument) {
+			if (argument == null) {
+				arguments.add(null);
+				cacheKey.add(null);
+				return;
+			}
+
+			// Resolve the argument once, so that it is converted with the same value that is
+			// used for the cache key:
+			Object resolved = argument;
+			if (argument instanceof Supplier) {
+				resolved = ((Supplier<?>) argument).get();
+			}
+
+			Text text = Text.of(resolved);
+			Validate.isTrue(text.getParent() == null, "placeholder argument is a non-root Text");
+			// Build unbuilt argument:
+			if (text instanceof TextBuilder) {
+				((TextBuilder) text).build(); // No effect if already built
+			}
+			arguments.add(text);
+			cacheKey.add(getCacheKey(resolved, text));
+		}
+
+		void clear() {
+			arguments.clear();
+			cacheKey.clear();
+		}
+	}
+
+	// Other arguments are converted to a plain Text of their String representation. Texts are
+	// identified by their detailed String representation, which includes their text features,
+	// such as hover events, and their placeholder arguments.
+	private static Object getCacheKey(@Nullable Object resolvedArgument, Text text) {
+		if (resolvedArgument instanceof Text) {
+			return new TextKey(text.toString());
+		} else {
+			return String.valueOf(resolvedArgument);
+		}
+	}
+
+	// Distinguishes Text arguments from other arguments with the same String representation.
+	private static final class TextKey {
+
+		private final String text;
+
+		TextKey(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public int hashCode() {
+			return text.hashCode();
+		}
+
+		@Override
+		public boolean equals(@Nullable Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof TextKey)) return false;
+			return text.equals(((TextKey) obj).text);
+		}
+	}
+
+	/**
+	 * A static segment or a placeholder of a compiled message.
+	 */
+	static final class Segment {
+
+		// The Text of a static segment, or null for a placeholder:
+		private final @Nullable Text text;
+		// The index of the placeholder's argument, or -1 for a static segment:
+		private final int placeholderIndex;
+		// The plain text of a static segment, or the formatted placeholder key of a placeholder:
+		private final String plainText;
+		// The pre-converted static segment, or null if Spigot is not available. Typed as Object to
+		// avoid class loading issues if Spigot is not available.
+		private @Nullable Object compiled = null;
+
+		private Segment(Text text) {
+			this.text = text;
+			this.placeholderIndex = -1;
+			this.plainText = text.toPlainText();
+		}
+
+		private Segment(int placeholderIndex, String formattedPlaceholderKey) {
+			this.text = null;
+			this.placeholderIndex = placeholderIndex;
+			this.plainText = formattedPlaceholderKey;
+		}
+
+		@Nullable Text getText() {
+			return text;
+		}
+
+		int getPlaceholderIndex() {
+			return placeholderIndex;
+		}
+
+		String getPlainText() {
+			return plainText;
+		}
+
+		@Nullable Object getCompiled() {
+			return compiled;
+		}
+
+		void setCompiled(Object compiled) {
+			this.compiled = compiled;
+		}
+	}
+
+	private final Text message;
+	// The placeholder keys, by placeholder index:
+	private final List<? extends String> placeholderKeys;
+	// Null if the message could not be compiled:
+	private final @Nullable List<? extends Segment> segments;
+	// The prepared messages, by the placeholder argument values:
+	private final Map<List<@Nullable Object>, PreparedMessage> cache = new LRUCache<>(CACHE_SIZE);
+
+	MessageTemplate(Text message) {
+		assert message != null;
+		this.message = message;
+
+		List<String> placeholderKeys = new ArrayList<>();
+		@Nullable List<Segment> segments = new ArrayList<>();
+		@Nullable TextBuilder segmentRoot = null;
+		@Nullable TextBuilder segmentLast = null;
+		for (Text text = message; text != null; text = text.getNext()) {
+			if (text instanceof PlaceholderText) {
+				if (segmentRoot != null) {
+					segments.add(new Segment(segmentRoot.build()));
+					segmentRoot = null;
+					segmentLast = null;
+				}
+
+				PlaceholderText placeholderText = (PlaceholderText) text;
+				String placeholderKey = placeholderText.getPlaceholderKey();
+				int placeholderIndex = placeholderKeys.indexOf(placeholderKey);
+				if (placeholderIndex == -1) {
+					placeholderIndex = placeholderKeys.size();
+					placeholderKeys.add(placeholderKey);
+				}
+				segments.add(new Segment(
+						placeholderIndex,
+						placeholderText.getFormattedPlaceholderKey()
+				));
+				continue;
+			}
+
+			// The static segments are copied without their subsequent Texts:
+			@Nullable TextBuilder segmentText;
+			if (text.getChild() != null) {
+				segmentText = null;
+			} else if (text instanceof PlainText) {
+				segmentText = Text.text(((PlainText) text).getText());
+			} else if (text instanceof FormattingText) {
+				segmentText = Text.formatting(((FormattingText) text).getFormattingCode());
+			} else {
+				segmentText = null;
+			}
+			if (segmentText == null) {
+				// The message cannot be compiled:
+				placeholderKeys.clear();
+				segments = null;
+				break;
+			}
+
+			if (segmentLast == null) {
+				segmentRoot = segmentText;
+			} else {
+				segmentLast.next(segmentText);
+			}
+			segmentLast = segmentText;
+		}
+		if (segments != null && segmentRoot != null) {
+			segments.add(new Segment(segmentRoot.build()));
+		}
+
+		this.placeholderKeys = placeholderKeys;
+		this.segments = segments;
+		if (segments != null) {
+			SpigotText.compileSegments(segments);
+		}
+	}
+
+	/**
+	 * Checks if the message could be compiled.
+	 * <p>
+	 * Messages that could not be compiled are copied and converted as a whole each time a message
+	 * is prepared from them.
+	 * 
+	 * @return <code>true</code> if the message is compiled
+	 */
+	public boolean isCompiled() {
+		return (segments != null);
+	}
+
+	/**
+	 * Gets the placeholder keys of the message, in the order of their first occurrence.
+	 * <p>
+	 * The index of a placeholder key inside the returned list is the index by which the
+	 * placeholder is bound to its argument. This is empty if the message could not be
+	 * {@link #isCompiled() compiled}.
+	 * 
+	 * @return an unmodifiable view on the placeholder keys, not <code>null</code>
+	 */
+	public List<? extends String> getPlaceholderKeys() {
+		return Collections.unmodifiableList(placeholderKeys);
+	}
+
+	/**
+	 * Prepares the message with the given placeholder arguments.
+	 * <p>
+	 * Placeholders without argument are sent as their formatted placeholder key.
+	 * 
+	 * @param arguments
+	 *            the placeholder arguments, not <code>null</code>
+	 * @return the prepared message, not <code>null</code>
+	 */
+	public PreparedMessage prepare(MessageArguments arguments) {
+		Validate.notNull(arguments, "arguments is null");
+		List<? extends Segment> segments = this.segments;
+		if (segments == null) {
+			// Convert a copy, to not modify the original message:
+			Text messageCopy = message.copy();
+			messageCopy.setPlaceholderArguments(arguments);
+			return SpigotText.prepareMessage(messageCopy);
+		}
+
+		ArgumentBinder binder = ARGUMENT_BINDER.get();
+		if (binder.inUse) {
+			// Nested message preparation:
+			binder = new ArgumentBinder();
+		}
+		binder.inUse = true;
+		try {
+			for (String placeholderKey : placeholderKeys) {
+				binder.bind(arguments.get(placeholderKey));
+			}
+
+			PreparedMessage preparedMessage = cache.get(binder.cacheKey);
+			if (preparedMessage == null) {
+				preparedMessage = this.prepare(segments, binder.arguments);
+				// Copy the key, since the binder's key is reused:
+				cache.put(new ArrayList<>(binder.cacheKey), preparedMessage);
+			}
+			return preparedMessage;
+		} finally {
+			binder.clear();
+			binder.inUse = false;
+		}
+	}
+
+	private PreparedMessage prepare(
+			List<? extends Segment> segments,
+			List<? extends @Nullable Text> arguments
+	) {
+		boolean empty = true;
+		for (@Nullable Text argument : arguments) {
+			// Like Text#isPlainTextEmpty, placeholders without argument are ignored:
+			if (argument != null && !argument.isPlainTextEmpty()) {
+				empty = false;
+				break;
+			}
+		}
+		if (empty) {
+			for (Segment segment : segments) {
+				if (segment.getText() != null && !segment.getPlainText().isEmpty()) {
+					empty = false;
+					break;
+				}
+			}
+		}
+
+		// Skip sending if the (plain) message is empty: Allows disabling of messages.
+		if (empty) return PreparedMessage.EMPTY;
+		return SpigotText.prepareMessage(segments, arguments);
+	}
+}
@@ -0,0 +1,47 @@
+package com.nisovin.shopkeepers.spigot.text;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.text.Text;
+
+/**
+ * A {@link Text} message that has been converted once into the form in which it is sent, so that
+ * it can be sent to several recipients without having to convert it again for each recipient.
+ * <p>
+ * The prepared message captures the state of the {@link Text}, including its currently set
+ * placeholder arguments, at the time of its preparation. Subsequent changes to the {@link Text}
+ * do not affect the prepared message.
+ * <p>
+ * Use {@link SpigotText#prepareMessage(Text)} to create a prepared message.
+ */
+public final class PreparedMessage {
+
+	// A message that is not sent:
+	static final PreparedMessage EMPTY = new PreparedMessage(true, null, null);
+
+	// Whether the (plain) message is empty, i.e. the message is not sent.
+	private final boolean empty;
+	// The Spigot component, or null if Spigot is not available or the message is empty. Typed as
+	// Object to avoid class loading issues if Spigot is not available.
+	private final @Nullable Object component;
+	// The plain text, if Spigot is not available, or null otherwise.
+	private final @Nullable String plainText;
+
+	PreparedMessage(boolean empty, @Nullable Object component, @Nullable String plainText) {
+		this.empty = empty;
+		this.component = component;
+		this.plainText = plainText;
+	}
+
+	boolean isEmpty() {
+		return empty;
+	}
+
+	@Nullable Object getComponent() {
+		return component;
+	}
+
+	@Nullable String getPlainText() {
+		return plainText;
+	}
+}
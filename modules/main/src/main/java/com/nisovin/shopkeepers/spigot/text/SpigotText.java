@@ -1,6 +1,8 @@
 package com.nisovin.shopkeepers.spigot.text;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
@@ -46,6 +48,94 @@ public final class SpigotText {
 		}
 	}
 
+	/**
+	 * Converts the given message once, so that it can be sent to several recipients.
+	 * <p>
+	 * Note: This is not intended to be called directly, but only via TextUtils.
+	 * 
+	 * @param message
+	 *            the message, not <code>null</code>
+	 * @return the prepared message, not <code>null</code>
+	 * @see PreparedMessage
+	 */
+	public static PreparedMessage prepareMessage(Text message) {
+		Validate.notNull(message, "message is null");
+		if (message.isPlainTextEmpty()) {
+			return PreparedMessage.EMPTY;
+		}
+
+		if (SpigotFeatures.isSpigotAvailable()) {
+			return new PreparedMessage(false, Internal.prepareMessage(message), null);
+		} else {
+			return new PreparedMessage(false, null, message.toPlainText());
+		}
+	}
+
+	/**
+	 * Compiles the given message into a {@link MessageTemplate}.
+	 * <p>
+	 * Note: This is not intended to be called directly, but only via TextUtils.
+	 * 
+	 * @param message
+	 *            the message, not <code>null</code>
+	 * @return the message template, not <code>null</code>
+	 */
+	public static MessageTemplate compileMessage(Text message) {
+		Validate.notNull(message, "message is null");
+		return new MessageTemplate(message);
+	}
+
+	// Pre-converts the static segments of the given message template, if Spigot is available.
+	static void compileSegments(List<? extends MessageTemplate.Segment> segments) {
+		if (SpigotFeatures.isSpigotAvailable()) {
+			Internal.compileSegments(segments);
+		}
+	}
+
+	// Combines the pre-converted static segments with the given placeholder arguments, which are
+	// indexed by the placeholder indices of the segments. Placeholders without argument are sent
+	// as their formatted placeholder key.
+	static PreparedMessage prepareMessage(
+			List<? extends MessageTemplate.Segment> segments,
+			List<? extends @Nullable Text> arguments
+	) {
+		assert segments != null && arguments != null;
+		if (SpigotFeatures.isSpigotAvailable()) {
+			return new PreparedMessage(false, Internal.prepareMessage(segments, arguments), null);
+		} else {
+			// Fallback: Plain text.
+			StringBuilder plainText = new StringBuilder();
+			for (MessageTemplate.Segment segment : segments) {
+				@Nullable Text argument = null;
+				if (segment.getText() == null) {
+					argument = arguments.get(segment.getPlaceholderIndex());
+				}
+				if (argument != null) {
+					plainText.append(argument.toPlainText());
+				} else {
+					plainText.append(segment.getPlainText());
+				}
+			}
+			return new PreparedMessage(false, null, plainText.toString());
+		}
+	}
+
+	// Note: This is not intended to be called directly, but only via TextUtils.
+	public static void sendMessage(CommandSender recipient, PreparedMessage message) {
+		Validate.notNull(recipient, "recipient is null");
+		Validate.notNull(message, "message is null");
+		// Skip sending if the (plain) message is empty: Allows disabling of messages.
+		if (message.isEmpty()) return;
+
+		Object component = message.getComponent();
+		if (component != null) {
+			Internal.sendPreparedMessage(recipient, component);
+		} else {
+			String plainMessage = Unsafe.assertNonNull(message.getPlainText());
+			TextUtils.sendMessage(recipient, plainMessage);
+		}
+	}
+
 	// Separate class that gets only accessed if Spigot is present. Avoids class loading issues.
 	private static final class Internal {
 
@@ -53,6 +143,22 @@ public final class SpigotText {
 
 		public static void sendMessage(CommandSender recipient, Text message) {
 			assert recipient != null && message != null;
+			BaseComponent component = prepareMessage(message);
+			recipient.spigot().sendMessage(component);
+		}
+
+		public static void sendPreparedMessage(
+				CommandSender recipient,
+				Object preparedComponent
+		) {
+			assert recipient != null && preparedComponent instanceof BaseComponent;
+			// Spigot serializes the component when it is sent, without modifying it. The same
+			// component can therefore be sent to several recipients.
+			recipient.spigot().sendMessage((BaseComponent) preparedComponent);
+		}
+
+		public static BaseComponent prepareMessage(Text message) {
+			assert message != null;
 			BaseComponent component = toSpigot(message);
 			if (Debug.isDebugging(DebugOptions.textComponents)) {
 				Log.info("Text: " + message);
@@ -61,7 +167,94 @@ public final class SpigotText {
 				Log.info("Component: " + component);
 				Bukkit.getConsoleSender().spigot().sendMessage(component);
 			}
-			recipient.spigot().sendMessage(component);
+			return component;
+		}
+
+		// COMPILED MESSAGES
+
+		private static final class CompiledSegment {
+
+			// The text style with which the segment has been converted:
+			private final TextStyle startStyle;
+			// The text style after the segment:
+			private final TextStyle endStyle;
+			private final List<? extends BaseComponent> components;
+
+			CompiledSegment(
+					TextStyle startStyle,
+					TextStyle endStyle,
+					List<? extends BaseComponent> components
+			) {
+				this.startStyle = startStyle;
+				this.endStyle = endStyle;
+				this.components = components;
+			}
+		}
+
+		public static void compileSegments(List<? extends MessageTemplate.Segment> segments) {
+			assert segments != null;
+			// The static segments are converted with the text style that results from the
+			// preceding static segments, i.e. assuming that the placeholder arguments do not
+			// change the text style.
+			TextStyle textStyle = new TextStyle();
+			for (MessageTemplate.Segment segment : segments) {
+				Text text = segment.getText();
+				if (text == null) continue; // Placeholder
+
+				TextStyle startStyle = textStyle.copy();
+				BaseComponent root = new TextComponent();
+				toSpigot(text, null, root, textStyle);
+				@Nullable List<BaseComponent> components = Unsafe.cast(root.getExtra());
+				segment.setCompiled(new CompiledSegment(
+						startStyle,
+						textStyle.copy(),
+						(components != null) ? components : Collections.emptyList()
+				));
+			}
+		}
+
+		public static BaseComponent prepareMessage(
+				List<? extends MessageTemplate.Segment> segments,
+				List<? extends @Nullable Text> arguments
+		) {
+			assert segments != null && arguments != null;
+			BaseComponent root = new TextComponent();
+			TextStyle textStyle = new TextStyle();
+			for (MessageTemplate.Segment segment : segments) {
+				Text text = segment.getText();
+				if (text == null) {
+					// Placeholder: The argument inherits the current text style.
+					TextComponent component = newTextComponent(root, textStyle);
+					@Nullable Text argument = arguments.get(segment.getPlaceholderIndex());
+					if (argument == null) {
+						component.setText(segment.getPlainText());
+					} else {
+						// This modifies the passed TextStyle to contain the last encountered
+						// style:
+						toSpigot(argument, component, component, textStyle);
+					}
+					continue;
+				}
+
+				CompiledSegment compiled = (CompiledSegment) Unsafe.assertNonNull(
+						segment.getCompiled()
+				);
+				if (textStyle.isSameStyle(compiled.startStyle)) {
+					// Copy the components, since they are added to a new parent component:
+					for (BaseComponent component : compiled.components) {
+						root.addExtra(component.duplicate());
+					}
+					textStyle.setStyle(compiled.endStyle);
+				} else {
+					// A preceding placeholder argument changed the text style:
+					toSpigot(text, null, root, textStyle);
+				}
+			}
+
+			if (Debug.isDebugging(DebugOptions.textComponents)) {
+				Log.info("Component: " + root);
+			}
+			return root;
 		}
 
 		// CONVERSION
@@ -99,6 +292,32 @@ public final class SpigotText {
 				}
 			}
 
+			public TextStyle copy() {
+				TextStyle copy = new TextStyle();
+				copy.setStyle(this);
+				return copy;
+			}
+
+			public void setStyle(TextStyle other) {
+				assert other != null;
+				color = other.color;
+				bold = other.bold;
+				italic = other.italic;
+				underlined = other.underlined;
+				strikethrough = other.strikethrough;
+				obfuscated = other.obfuscated;
+			}
+
+			public boolean isSameStyle(TextStyle other) {
+				assert other != null;
+				return Objects.equals(color, other.color)
+						&& Objects.equals(bold, other.bold)
+						&& Objects.equals(italic, other.italic)
+						&& Objects.equals(underlined, other.underlined)
+						&& Objects.equals(strikethrough, other.strikethrough)
+						&& Objects.equals(obfuscated, other.obfuscated);
+			}
+
 			private void reset() {
 				color = null;
 				bold = null;
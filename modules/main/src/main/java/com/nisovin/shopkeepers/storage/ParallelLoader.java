@@ -0,0 +1,157 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * Runs independent loading tasks on a pool of worker threads, and passes their results in order to
+ * a consumer on the calling thread.
+ * <p>
+ * This allows the calling (main) thread to already process the results of the first tasks while
+ * the workers are still busy with the subsequent tasks. If only a single thread is used, the tasks
+ * are run directly on the calling thread.
+ */
+final class ParallelLoader implements AutoCloseable {
+
+	/**
+	 * Consumes the results of the loading tasks.
+	 * 
+	 * @param <T>
+	 *            the type of the results
+	 */
+	@FunctionalInterface
+	interface ResultConsumer<T> {
+
+		/**
+		 * Consumes the given result.
+		 * 
+		 * @param result
+		 *            the result
+		 * @return <code>true</code> to continue, or <code>false</code> to abort the processing of
+		 *         the remaining results
+		 */
+		boolean accept(T result);
+	}
+
+	/**
+	 * Gets the number of threads to use for the given configured thread count.
+	 * 
+	 * @param configuredThreads
+	 *            the configured number of threads, or <code>0</code> to use the number of available
+	 *            processors
+	 * @return the number of threads, at least <code>1</code>
+	 */
+	static int getThreadCount(int configuredThreads) {
+		if (configuredThreads > 0) return configuredThreads;
+		return Math.max(1, Runtime.getRuntime().availableProcessors());
+	}
+
+	private final int threads;
+	private @Nullable ExecutorService executor = null; // Lazily set up
+
+	/**
+	 * Creates a new {@link ParallelLoader}.
+	 * 
+	 * @param threads
+	 *            the number of worker threads, has to be positive
+	 */
+	ParallelLoader(int threads) {
+		Validate.isTrue(threads > 0, "threads has to be positive");
+		this.threads = threads;
+	}
+
+	private ExecutorService getExecutor() {
+		ExecutorService executor = this.executor;
+		if (executor == null) {
+			AtomicInteger threadCounter = new AtomicInteger();
+			executor = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(
+						runnable,
+						"Shopkeepers-Loader-" + threadCounter.incrementAndGet()
+				);
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.executor = executor;
+		}
+		return executor;
+	}
+
+	/**
+	 * Runs the given tasks and passes their results in the order of the tasks to the given
+	 * consumer.
+	 * <p>
+	 * If a task fails with an exception, the processing is aborted and the exception is rethrown.
+	 * 
+	 * @param <T>
+	 *            the type of the results
+	 * @param tasks
+	 *            the tasks, not <code>null</code>
+	 * @param consumer
+	 *            the consumer of the results, not <code>null</code>
+	 * @return <code>true</code> if all results have been processed, <code>false</code> if the
+	 *         consumer aborted the processing
+	 * @throws Exception
+	 *             if a task fails
+	 */
+	<T> boolean process(
+			List<? extends Callable<T>> tasks,
+			ResultConsumer<? super T> consumer
+	) throws Exception {
+		Validate.notNull(tasks, "tasks is null");
+		Validate.notNull(consumer, "consumer is null");
+		if (threads == 1 || tasks.size() <= 1) {
+			for (Callable<T> task : tasks) {
+				if (!consumer.accept(task.call())) return false;
+			}
+			return true;
+		}
+
+		ExecutorService executor = this.getExecutor();
+		List<Future<T>> futures = new ArrayList<>(tasks.size());
+		try {
+			for (Callable<T> task : tasks) {
+				futures.add(executor.submit(task));
+			}
+
+			for (Future<T> future : futures) {
+				T result;
+				try {
+					result = future.get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw e;
+				}
+				if (!consumer.accept(result)) return false;
+			}
+			return true;
+		} finally {
+			// Cancel any remaining tasks if we abort the processing:
+			futures.forEach(future -> future.cancel(false));
+		}
+	}
+
+	@Override
+	public void close() {
+		ExecutorService executor = this.executor;
+		if (executor != null) {
+			executor.shutdownNow();
+			this.executor = null;
+		}
+	}
+}
@@ -1,17 +1,23 @@
 package com.nisovin.shopkeepers.storage;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
 import org.bukkit.Bukkit;
@@ -30,10 +36,13 @@ import com.nisovin.shopkeepers.api.shopkeeper.ShopkeeperRegistry;
 import com.nisovin.shopkeepers.api.storage.ShopkeeperStorage;
 import com.nisovin.shopkeepers.config.Settings;
 import com.nisovin.shopkeepers.debug.Debug;
+import com.nisovin.shopkeepers.debug.metrics.MetricsRegistry;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
+import com.nisovin.shopkeepers.shopkeeper.SKShopkeeperSnapshot;
 import com.nisovin.shopkeepers.shopkeeper.ShopkeeperData;
 import com.nisovin.shopkeepers.shopkeeper.registry.SKShopkeeperRegistry;
 import com.nisovin.shopkeepers.storage.migration.RawDataMigrations;
+import com.nisovin.shopkeepers.util.bukkit.ConfigUtils;
 import com.nisovin.shopkeepers.util.bukkit.PermissionUtils;
 import com.nisovin.shopkeepers.util.bukkit.PluginUtils;
 import com.nisovin.shopkeepers.util.bukkit.SchedulerUtils;
@@ -41,8 +50,10 @@ import com.nisovin.shopkeepers.util.bukkit.SingletonTask;
 import com.nisovin.shopkeepers.util.data.container.DataContainer;
 import com.nisovin.shopkeepers.util.data.persistence.DataStore;
 import com.nisovin.shopkeepers.util.data.persistence.InvalidDataFormatException;
+import com.nisovin.shopkeepers.util.data.persistence.bukkit.BukkitBinaryDataStore;
 import com.nisovin.shopkeepers.util.data.persistence.bukkit.BukkitConfigDataStore;
 import com.nisovin.shopkeepers.util.data.serialization.InvalidDataException;
+import com.nisovin.shopkeepers.util.java.Box;
 import com.nisovin.shopkeepers.util.java.ConversionUtils;
 import com.nisovin.shopkeepers.util.java.FileUtils;
 import com.nisovin.shopkeepers.util.java.Retry;
@@ -68,15 +79,35 @@ import com.nisovin.shopkeepers.util.logging.Log;
  * <li>It is not safe to externally edit the save file while the plugin is running, because the
  * plugin might still store unsaved shopkeeper data in memory or overwrite the save file with new
  * contents at any time.
+ * <li>If {@link Settings#saveSegmentSize} is positive, the shopkeeper data is split into several
+ * segment files by ranges of shopkeeper ids, and each save only rewrites the segments that contain
+ * changed or deleted shopkeepers. The save file then only stores the data version. When the segment
+ * size is changed, or segmenting is enabled or disabled, the next save is a full save that migrates
+ * the data to the new file layout.
+ * <li>The save files are either stored as Yaml or in a compact binary format, depending on
+ * {@link Settings#saveFormat}. If the save files on disk are in a different format, the next save
+ * converts all data to the configured format.
+ * <li>If {@link Settings#saveJournal} is enabled, saves append the data of the changed and deleted
+ * shopkeepers to a journal instead of rewriting the save files. Once the journal has reached a
+ * certain number of entries, the next save is a full save that compacts the journal into the save
+ * files. When the shopkeeper data is loaded, the journal is replayed on top of the data of the save
+ * files.
  * </ul>
  */
 public class SKShopkeeperStorage implements ShopkeeperStorage {
 
 	private static final String DATA_FOLDER = "data";
-	private static final String SAVE_FILE_NAME = "save.yml";
+	private static final String SAVE_FILE_NAME = "save";
+	private static final String SEGMENTS_FOLDER = "segments";
+	private static final String SNAPSHOTS_FOLDER = "snapshots";
+	private static final String JOURNAL_FILE_NAME = "save.journal";
 
 	private static final String DATA_VERSION_KEY = "data-version";
 
+	// Keys of the data inside journal entries:
+	private static final String JOURNAL_SAVED_KEY = "saved";
+	private static final String JOURNAL_DELETED_KEY = "deleted";
+
 	private static final List<@Nullable String> HEADER = Collections.unmodifiableList(Arrays.asList(
 			"This file is not intended to be manually modified! If you want to manually edit this"
 					+ " file anyway, ensure that the server is not running currently and that you"
@@ -92,7 +123,9 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 
 	private final SKShopkeepersPlugin plugin;
 
-	private final Path saveFile;
+	private final Path segmentsDirectory;
+	private final ShopkeeperDataJournal journal;
+	private final ShopkeeperSnapshotStore snapshotStore;
 
 	/* Data */
 	/*
@@ -105,10 +138,16 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 	private int maxUsedShopkeeperId = 0;
 	private int nextShopkeeperId = 1;
 
+	// The number of entries inside the journal:
+	private int journalEntryCount = 0;
+
 	/* Unsaved changes */
 	// Whether we got an explicit save request. This triggers a write to the save file, even if
 	// there have been no changes to the shopkeeper data itself.
 	private boolean pendingSaveRequest = false;
+	// Whether the next save needs to rewrite all save files, even if they did not contain any
+	// changed shopkeepers, for example because the data version or the file layout has changed.
+	private boolean pendingFullSave = false;
 	// Shopkeepers that had changes to their data that we did not yet apply to the storage's memory.
 	// These shopkeepers may no longer be loaded. This does not include shopkeepers that were
 	// deleted. This Set is swapped with another, empty Set when the shopkeepers are saved, so that
@@ -124,9 +163,15 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 	// Shopkeepers that got deleted during the last async save. Their data is removed from memory
 	// after the current save completes, and removed from the save file by the subsequent save.
 	private final Set<AbstractShopkeeper> shopkeepersToDelete = new LinkedHashSet<>();
+	// The latest snapshots of shopkeepers (by their unique id) whose snapshots have changed, but
+	// which have not yet been handed to a save. An empty list indicates that the shopkeeper's
+	// snapshot file needs to be deleted.
+	private final Map<UUID, List<? extends SKShopkeeperSnapshot>> pendingSnapshots = new LinkedHashMap<>();
 
 	/* Loading */
 	private boolean currentlyLoading = false;
+	// Whether any of the loaded save files was migrated by a raw data migration:
+	private boolean rawDataMigrated = false;
 
 	/* Saving */
 	private final SaveTask saveTask;
@@ -139,7 +184,13 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 	public SKShopkeeperStorage(SKShopkeepersPlugin plugin) {
 		DataVersion.init();
 		this.plugin = plugin;
-		this.saveFile = Unsafe.initialized(this)._getSaveFile();
+		this.segmentsDirectory = Unsafe.initialized(this)._getDataFolder().resolve(SEGMENTS_FOLDER);
+		this.journal = new ShopkeeperDataJournal(
+				Unsafe.initialized(this)._getDataFolder().resolve(JOURNAL_FILE_NAME)
+		);
+		this.snapshotStore = new ShopkeeperSnapshotStore(
+				Unsafe.initialized(this)._getDataFolder().resolve(SNAPSHOTS_FOLDER)
+		);
 		this.saveTask = new SaveTask(plugin);
 	}
 
@@ -151,8 +202,8 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		return this.getPluginDataFolder().resolve(DATA_FOLDER);
 	}
 
-	private Path _getSaveFile() {
-		return this._getDataFolder().resolve(SAVE_FILE_NAME);
+	private Path _getSaveFile(SaveFormat format) {
+		return this._getDataFolder().resolve(SAVE_FILE_NAME + format.getFileExtension());
 	}
 
 	public void onEnable() {
@@ -190,10 +241,12 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		this.clearSaveData();
 		savingDisabled = false;
 		pendingSaveRequest = false;
+		pendingFullSave = false;
 		dirtyShopkeepers.clear();
 		unsavedShopkeepers.clear();
 		unsavedDeletedShopkeepers.clear();
 		shopkeepersToDelete.clear();
+		pendingSnapshots.clear();
 		delayedSaveTask = null;
 	}
 
@@ -335,6 +388,7 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		saveData.clear();
 		maxUsedShopkeeperId = 0;
 		nextShopkeeperId = 1;
+		journalEntryCount = 0;
 	}
 
 	// Returns true on success, and false if there was some severe issue during loading.
@@ -353,7 +407,11 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		currentlyLoading = true;
 		boolean result;
 		try {
-			result = this.doReload();
+			try (ParallelLoader loader = new ParallelLoader(
+					ParallelLoader.getThreadCount(Settings.loadThreads)
+			)) {
+				result = this.doReload(loader);
+			}
 		} catch (Exception e) {
 			Log.severe(
 					"Something unexpected went wrong during the loading of the saved shopkeepers data!",
@@ -369,93 +427,189 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 	// TODO Move parts of this into the ShopkeeperRegistry (resolves the currently existing cyclic
 	// dependency between the storage and the registry).
 	// Returns true on success, and false if there was some severe issue during loading.
-	private boolean doReload() {
+	private boolean doReload(ParallelLoader loader) {
 		// Unload all currently loaded shopkeepers:
 		SKShopkeeperRegistry shopkeeperRegistry = this.getShopkeeperRegistry();
 		shopkeeperRegistry.unloadAllShopkeepers();
 		this.clearSaveData();
 
-		Path saveFile = this.saveFile;
-		if (!Files.exists(saveFile)) {
-			var tempSaveFile = FileUtils.getTempSibling(saveFile);
-			if (Files.exists(tempSaveFile)) {
-				// Load from temporary save file instead:
-				Log.warning("Found no save file, but an existing temporary save file ("
-						+ PluginUtils.relativize(plugin, tempSaveFile) + ")!"
-						+ " This might indicate an issue during a previous saving attempt!"
-						+ " We try to load the Shopkeepers data from this temporary save file"
-						+ " instead!");
-				saveFile = tempSaveFile;
-			} else {
-				// No save file exists yet -> No shopkeeper data available.
-				// We silently set up the data version and abort:
-				saveData.set(DATA_VERSION_KEY, DataVersion.current().toString());
-				return true;
+		// The configured save format is preferred if there are save files in different formats:
+		SaveFormat saveFormat = Settings.saveFormat;
+		List<SaveFormat> saveFormats = new ArrayList<>();
+		saveFormats.add(saveFormat);
+		for (SaveFormat format : SaveFormat.values()) {
+			if (format != saveFormat) {
+				saveFormats.add(format);
 			}
 		}
 
-		boolean rawDataMigrated = false;
+		// Whether the file layout on disk does not match the configured file layout:
+		boolean fileLayoutChanged = false;
 
-		// Load the save data:
-		try (Reader reader = Files.newBufferedReader(saveFile, StandardCharsets.UTF_8)) {
-			var content = FileUtils.read(reader);
+		@Nullable Path saveFile = null;
+		SaveFormat saveFileFormat = saveFormat;
+		for (SaveFormat format : saveFormats) {
+			Path formatSaveFile = this.findSaveFile(format);
+			if (formatSaveFile == null) continue;
 
-			// Apply string-based migrations:
-			var migratedContent = RawDataMigrations.applyMigrations(content);
-			rawDataMigrated = !content.equals(migratedContent);
+			if (format != saveFormat) {
+				fileLayoutChanged = true;
+			}
+			if (saveFile == null) {
+				saveFile = formatSaveFile;
+				saveFileFormat = format;
+			}
+		}
 
-			if (rawDataMigrated) {
-				var now = LocalDateTime.now();
-				var backupSaveFile = saveFile.resolveSibling(
-						now.format(FileUtils.DATE_TIME_FORMATTER) + "_" + saveFile.getFileName()
-								+ ".backup"
+		// Segment files by format:
+		Map<SaveFormat, Map<Integer, Path>> segmentFiles = new LinkedHashMap<>();
+		try {
+			for (SaveFormat format : saveFormats) {
+				Map<Integer, Path> formatSegmentFiles = SaveSegments.findSegmentFiles(
+						segmentsDirectory,
+						format
 				);
-				Log.info("Shopkeeper data migrated. Writing backup to "
-						+ PluginUtils.relativize(plugin, backupSaveFile));
+				if (formatSegmentFiles.isEmpty()) continue;
 
-				try {
-					// Error if a file already exists at the destination:
-					Files.copy(saveFile, backupSaveFile);
-				} catch (Exception e) {
-					Log.severe("Failed to write backup file!", e);
-					return false; // Disable without save
+				if (format != saveFormat) {
+					fileLayoutChanged = true;
 				}
+				segmentFiles.put(format, formatSegmentFiles);
 			}
+		} catch (Exception e) {
+			Log.severe("Failed to find the save segment files!", e);
+			return false; // Disable without save
+		}
 
-			// If a migration was applied, write the intermediate result to disk for debugging
-			// purposes (e.g. if the subsequent loading fails):
-			if (Debug.isDebugging() && rawDataMigrated) {
-				var migratedSaveFile = saveFile.resolveSibling(saveFile.getFileName() + ".migrated");
-				Log.info("Writing migrated save file to "
-						+ PluginUtils.relativize(plugin, migratedSaveFile));
-				try {
-					FileUtils.writeSafely(
-							migratedSaveFile,
-							migratedContent,
-							StandardCharsets.UTF_8,
-							Log.getLogger(),
-							getPluginDataFolder()
+		if (saveFile == null && segmentFiles.isEmpty() && !journal.exists()) {
+			// No save file exists yet -> No shopkeeper data available.
+			// We silently set up the data version and abort:
+			saveData.set(DATA_VERSION_KEY, DataVersion.current().toString());
+			return true;
+		}
+
+		rawDataMigrated = false;
+
+		// Load the save data:
+		if (saveFile != null) {
+			try {
+				if (saveFileFormat == SaveFormat.YAML) {
+					String content = this.readSaveFile(saveFile);
+					if (content == null) {
+						return false; // Disable without save
+					}
+
+					// Since Bukkit 1.16.5, this automatically clears the save data before loading
+					// the new entries:
+					saveData.loadFromString(content);
+				} else {
+					DataContainer data = this.parseBinarySaveFile(
+							saveFile,
+							Files.readAllBytes(saveFile),
+							null
 					);
+					if (data == null) {
+						return false; // Disable without save
+					}
+
+					saveData.clear();
+					saveData.setAll(data.getValues());
+				}
+			} catch (InvalidDataFormatException e) {
+				Log.severe("Failed to load the save file! Note: Server downgrades or manually "
+						+ "editing the save file are not supported!", e);
+				return false; // Disable without save
+			} catch (Exception e) {
+				Log.severe("Failed to load the save file!", e);
+				return false; // Disable without save
+			}
+		}
+
+		SaveSegments saveSegments = this.getSaveSegments();
+		if (saveSegments != null) {
+			// The save file is only expected to contain the data version:
+			if (saveData.getKeys().stream().anyMatch(key -> !key.equals(DATA_VERSION_KEY))) {
+				fileLayoutChanged = true;
+			}
+		} else if (!segmentFiles.isEmpty()) {
+			fileLayoutChanged = true;
+			if (saveData.getKeys().stream().anyMatch(key -> !key.equals(DATA_VERSION_KEY))) {
+				// The save file already contains the shopkeeper data: The segment files are left
+				// over from a save that was interrupted before it could delete them, and their data
+				// is older than the data inside the save file. Merging them would restore outdated
+				// or deleted shopkeepers.
+				Log.warning("Ignoring and deleting stale save segment files.");
+				segmentFiles.clear();
+				try {
+					SaveSegments.deleteSegmentFiles(segmentsDirectory, null, saveFormat);
 				} catch (Exception e) {
-					Log.warning("Failed to write migrated save file ("
-							+ PluginUtils.relativize(plugin, migratedSaveFile)
-							+ "). This file is only written for debugging purposes."
-							+ " Continuing the data loading ...", e);
+					// The next full save tries to delete them again:
+					Log.warning("Failed to delete the stale save segment files!", e);
 				}
 			}
+		}
 
-			// Since Bukkit 1.16.5, this automatically clears the save data before loading the new
-			// entries:
-			saveData.loadFromString(migratedContent);
-		} catch (InvalidDataFormatException e) {
-			Log.severe("Failed to load the save file! Note: Server downgrades or manually "
-					+ "editing the save file are not supported!", e);
-			return false; // Disable without save
+		// Load the save segments:
+		// The segment files are read in parallel, including any raw data migrations. Parsing the
+		// data deserializes the contained item stacks and is therefore done on the main thread.
+		// The segments in the configured save format are merged last, so that their data replaces
+		// the data of any other segments.
+		List<SaveFormat> segmentFormats = new ArrayList<>(segmentFiles.keySet());
+		Collections.reverse(segmentFormats);
+		String saveDataVersion = saveData.getString(DATA_VERSION_KEY);
+		List<Integer> segments = new ArrayList<>();
+		List<Callable<@Nullable SegmentFileContent>> segmentTasks = new ArrayList<>();
+		for (SaveFormat format : segmentFormats) {
+			Map<Integer, Path> formatSegmentFiles = Unsafe.assertNonNull(segmentFiles.get(format));
+			formatSegmentFiles.forEach((segment, segmentFile) -> {
+				segments.add(segment);
+				segmentTasks.add(() -> this.readSegmentFile(segmentFile, format));
+			});
+		}
+
+		Box<Boolean> segmentLayoutChanged = new Box<>(false);
+		Iterator<Integer> segmentIterator = segments.iterator();
+		boolean segmentsLoaded;
+		try {
+			segmentsLoaded = loader.process(segmentTasks, segmentContent -> {
+				int segment = segmentIterator.next();
+				if (segmentContent == null) {
+					return false; // Disable without save
+				}
+				DataContainer segmentData = this.parseSegmentFile(segmentContent, saveDataVersion);
+				if (segmentData == null) {
+					return false; // Disable without save
+				}
+
+				// The data version is only stored inside the save file:
+				segmentData.remove(DATA_VERSION_KEY);
+				if (!SaveSegments.mergeSegment(saveSegments, segment, segmentData, saveData)) {
+					segmentLayoutChanged.setValue(true);
+				}
+				return true;
+			});
 		} catch (Exception e) {
-			Log.severe("Failed to load the save file!", e);
+			Log.severe("Failed to load the save segment files!", e);
+			return false; // Disable without save
+		}
+		if (!segmentsLoaded) {
+			return false; // Disable without save
+		}
+		if (Unsafe.assertNonNull(segmentLayoutChanged.getValue())) {
+			fileLayoutChanged = true;
+		}
+
+		// Replay the journal on top of the loaded save data:
+		if (!this.loadJournal()) {
 			return false; // Disable without save
 		}
 
+		if (fileLayoutChanged) {
+			Log.info("The layout of the shopkeeper save files has changed. The next save migrates"
+					+ " all shopkeeper data to the new layout.");
+			this.requestFullSave();
+		}
+
 		// Insert the data version as the first (top) entry:
 		// Explicitly setting the 'missing' data version value here ensures that the data version
 		// will be the first entry in the save file, even if it is missing in the save file
@@ -538,14 +692,16 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 
 			// Mark the storage as dirty so that the new data version is saved to disk even if none
 			// of the loaded shopkeepers is marked as dirty:
-			this.requestSave();
+			this.requestFullSave();
 		}
 
 		if (forceSaveAllShopkeepers) {
 			Log.info("The saved data of all shopkeepers is updated.");
-			this.requestSave();
+			this.requestFullSave();
 		}
 
+		// The shopkeeper data is prepared and loaded on the main thread: The data migrations
+		// operate on item stacks (see ItemMigration), which is not thread-safe.
 		for (String key : keys) {
 			if (key.equals(DATA_VERSION_KEY)) continue; // Skip the data version entry
 
@@ -556,11 +712,276 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 			// immediately look into. However, we do not abort the enabling of the plugin if
 			// individual shopkeepers cannot be loaded, because this would disable the protection of
 			// all player shop containers on the server (which is even worse).
-			this.loadShopkeeper(key, forceSaveAllShopkeepers);
+			PreparedShopkeeper preparedShopkeeper = this.prepareShopkeeper(key);
+			this.loadShopkeeper(preparedShopkeeper, forceSaveAllShopkeepers, true);
 		}
 		return true;
 	}
 
+	// The content of a segment file that has been read, but not yet parsed.
+	private static final class SegmentFileContent {
+
+		final Path file;
+		// The Yaml content, with any raw data migrations already applied, or null for binary files:
+		final @Nullable String yamlContent;
+		// The binary data, or null for Yaml files:
+		final byte @Nullable [] binaryData;
+
+		SegmentFileContent(Path file, @Nullable String yamlContent, byte @Nullable [] binaryData) {
+			this.file = file;
+			this.yamlContent = yamlContent;
+			this.binaryData = binaryData;
+		}
+	}
+
+	// Reads the given segment file. This may be invoked on a worker thread. It only reads the file
+	// and applies the raw data migrations, but does not parse the data.
+	// Returns null if there was some severe issue that should prevent the loading.
+	private @Nullable SegmentFileContent readSegmentFile(Path segmentFile, SaveFormat format) {
+		try {
+			if (format == SaveFormat.YAML) {
+				String content = this.readSaveFile(segmentFile);
+				if (content == null) return null;
+
+				return new SegmentFileContent(segmentFile, content, null);
+			} else {
+				return new SegmentFileContent(segmentFile, null, Files.readAllBytes(segmentFile));
+			}
+		} catch (Exception e) {
+			Log.severe("Failed to load the save segment file ("
+					+ PluginUtils.relativize(plugin, segmentFile) + ")!", e);
+			return null;
+		}
+	}
+
+	// Parses the data of the given segment file. This deserializes the contained item stacks and
+	// therefore needs to be invoked on the main thread.
+	// Returns null if there was some severe issue that should prevent the loading.
+	private @Nullable DataContainer parseSegmentFile(
+			SegmentFileContent segmentContent,
+			@Nullable String dataVersion
+	) {
+		Path segmentFile = segmentContent.file;
+		try {
+			String yamlContent = segmentContent.yamlContent;
+			if (yamlContent != null) {
+				BukkitConfigDataStore segmentData = BukkitConfigDataStore.ofNewYamlConfig();
+				segmentData.loadFromString(yamlContent);
+				return segmentData;
+			} else {
+				byte[] binaryData = Unsafe.assertNonNull(segmentContent.binaryData);
+				return this.parseBinarySaveFile(segmentFile, binaryData, dataVersion);
+			}
+		} catch (InvalidDataFormatException e) {
+			Log.severe("Failed to load the save segment file ("
+					+ PluginUtils.relativize(plugin, segmentFile) + ")! Note: Server"
+					+ " downgrades or manually editing the save files are not supported!", e);
+			return null;
+		} catch (Exception e) {
+			Log.severe("Failed to load the save segment file ("
+					+ PluginUtils.relativize(plugin, segmentFile) + ")!", e);
+			return null;
+		}
+	}
+
+	// Returns the save file, or its temporary save file, in the given format, or null if there is
+	// no such save file.
+	private @Nullable Path findSaveFile(SaveFormat format) {
+		Path saveFile = this._getSaveFile(format);
+		if (Files.exists(saveFile)) return saveFile;
+
+		var tempSaveFile = FileUtils.getTempSibling(saveFile);
+		if (!Files.exists(tempSaveFile)) return null;
+
+		// Load from temporary save file instead:
+		Log.warning("Found no save file, but an existing temporary save file ("
+				+ PluginUtils.relativize(plugin, tempSaveFile) + ")!"
+				+ " This might indicate an issue during a previous saving attempt!"
+				+ " We try to load the Shopkeepers data from this temporary save file"
+				+ " instead!");
+		return tempSaveFile;
+	}
+
+	// Reads the content of the given Yaml save file and applies any raw data migrations.
+	// Returns null if there was some severe issue that should prevent the loading.
+	private @Nullable String readSaveFile(Path saveFile) throws Exception {
+		String content;
+		try (Reader reader = Files.newBufferedReader(saveFile, StandardCharsets.UTF_8)) {
+			content = FileUtils.read(reader);
+		}
+		return this.applyRawDataMigrations(saveFile, content);
+	}
+
+	// Parses the given data of the given binary save file.
+	// The raw data migrations operate on the Yaml representation of the data. If the data has been
+	// saved by a different data version, we therefore convert the data to Yaml to apply them. The
+	// data version of save segments is stored inside the save file and is therefore passed in
+	// separately.
+	// Returns null if there was some severe issue that should prevent the loading.
+	private @Nullable DataContainer parseBinarySaveFile(
+			Path saveFile,
+			byte[] binaryData,
+			@Nullable String dataVersion
+	) throws Exception {
+		BukkitBinaryDataStore data = new BukkitBinaryDataStore();
+		data.loadFromBytes(binaryData);
+
+		String fileDataVersion = (dataVersion != null) ? dataVersion : data.getString(DATA_VERSION_KEY);
+		if (DataVersion.current().toString().equals(fileDataVersion)) {
+			return data;
+		}
+
+		BukkitConfigDataStore yamlData = BukkitConfigDataStore.ofNewYamlConfig();
+		yamlData.setAll(data.getValues());
+		String content = yamlData.saveToString();
+		String migratedContent = this.applyRawDataMigrations(saveFile, content);
+		if (migratedContent == null) return null;
+		if (migratedContent == content) return data; // Not migrated
+
+		yamlData.loadFromString(migratedContent);
+		return yamlData;
+	}
+
+	// Applies any raw data migrations to the given content of the given save file.
+	// Returns the given content instance if no migration was applied.
+	// Returns null if there was some severe issue that should prevent the loading.
+	private @Nullable String applyRawDataMigrations(
+			Path saveFile,
+			String content
+	) throws Exception {
+		// Apply string-based migrations:
+		var migratedContent = RawDataMigrations.applyMigrations(content);
+		boolean migrated = !content.equals(migratedContent);
+		if (!migrated) return content;
+
+		rawDataMigrated = true;
+		if (!this.writeBackup(saveFile)) {
+			return null; // Disable without save
+		}
+
+		// If a migration was applied, write the intermediate result to disk for debugging purposes
+		// (e.g. if the subsequent loading fails):
+		if (Debug.isDebugging()) {
+			var migratedSaveFile = saveFile.resolveSibling(saveFile.getFileName() + ".migrated");
+			Log.info("Writing migrated save file to "
+					+ PluginUtils.relativize(plugin, migratedSaveFile));
+			try {
+				FileUtils.writeSafely(
+						migratedSaveFile,
+						migratedContent,
+						StandardCharsets.UTF_8,
+						Log.getLogger(),
+						getPluginDataFolder()
+				);
+			} catch (Exception e) {
+				Log.warning("Failed to write migrated save file ("
+						+ PluginUtils.relativize(plugin, migratedSaveFile)
+						+ "). This file is only written for debugging purposes."
+						+ " Continuing the data loading ...", e);
+			}
+		}
+
+		return migratedContent;
+	}
+
+	// Returns false if the backup could not be written.
+	private boolean writeBackup(Path saveFile) {
+		var now = LocalDateTime.now();
+		var backupSaveFile = saveFile.resolveSibling(
+				now.format(FileUtils.DATE_TIME_FORMATTER) + "_" + saveFile.getFileName()
+						+ ".backup"
+		);
+		Log.info("Shopkeeper data migrated. Writing backup to "
+				+ PluginUtils.relativize(plugin, backupSaveFile));
+
+		try {
+			// Error if a file already exists at the destination:
+			Files.copy(saveFile, backupSaveFile);
+		} catch (Exception e) {
+			Log.severe("Failed to write backup file!", e);
+			return false;
+		}
+		return true;
+	}
+
+	// Applies the journal entries to the loaded save data.
+	// Returns false if there was some severe issue that should prevent the loading.
+	private boolean loadJournal() {
+		List<String> journalEntries;
+		try {
+			journalEntries = journal.read();
+		} catch (Exception e) {
+			Log.severe("Failed to read the shopkeeper data journal ("
+					+ PluginUtils.relativize(plugin, journal.getFile()) + ")!", e);
+			return false;
+		}
+
+		if (journalEntries.isEmpty()) {
+			if (journal.exists()) {
+				// Remove the empty journal:
+				try {
+					journal.delete();
+				} catch (Exception e) {
+					Log.warning("Failed to delete the empty shopkeeper data journal ("
+							+ PluginUtils.relativize(plugin, journal.getFile()) + ")!", e);
+				}
+			}
+			return true;
+		}
+
+		Log.info("Restoring " + journalEntries.size()
+				+ " shopkeeper data changes from the journal ...");
+		boolean backupWritten = false;
+		for (String journalEntry : journalEntries) {
+			try {
+				// Apply string-based migrations:
+				var migratedJournalEntry = RawDataMigrations.applyMigrations(journalEntry);
+				if (!journalEntry.equals(migratedJournalEntry)) {
+					rawDataMigrated = true;
+					if (!backupWritten) {
+						if (!this.writeBackup(journal.getFile())) {
+							return false;
+						}
+						backupWritten = true;
+					}
+				}
+
+				this.applyJournalEntry(migratedJournalEntry);
+			} catch (InvalidDataFormatException e) {
+				Log.severe("Failed to load the shopkeeper data journal! Note: Server downgrades or"
+						+ " manually editing the save files are not supported!", e);
+				return false;
+			} catch (Exception e) {
+				Log.severe("Failed to load the shopkeeper data journal!", e);
+				return false;
+			}
+		}
+		journalEntryCount = journalEntries.size();
+
+		if (!Settings.saveJournal) {
+			// Compact the journal with the next save:
+			this.requestFullSave();
+		}
+		return true;
+	}
+
+	private void applyJournalEntry(String journalEntry) throws InvalidDataFormatException {
+		BukkitConfigDataStore entryData = BukkitConfigDataStore.ofNewYamlConfig();
+		entryData.loadFromString(journalEntry);
+
+		DataContainer savedData = entryData.getContainer(JOURNAL_SAVED_KEY);
+		if (savedData != null) {
+			savedData.getKeys().forEach(key -> {
+				saveData.set(key, savedData.get(key));
+			});
+		}
+
+		entryData.getConfig().getStringList(JOURNAL_DELETED_KEY).forEach(key -> {
+			assert key != null;
+			saveData.remove(key);
+		});
+	}
+
 	private @Nullable ShopkeeperData getShopkeeperData(int shopkeeperId) {
 		DataContainer shopkeeperDataContainer = saveData.getContainer(String.valueOf(shopkeeperId));
 		if (shopkeeperDataContainer == null) {
@@ -581,22 +1002,51 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		return shopkeeperData;
 	}
 
-	private void loadShopkeeper(String key, boolean forceSave) {
+	// The data of a shopkeeper that is ready to be loaded.
+	private static final class PreparedShopkeeper {
+
+		final String key;
+		final int shopkeeperId; // 0 if the id is invalid
+		final @Nullable ShopkeeperData shopkeeperData; // Null if the preparation failed
+		final boolean migrated;
+		final @Nullable String failureReason;
+		final @Nullable Throwable failureCause;
+
+		PreparedShopkeeper(String key, int shopkeeperId, ShopkeeperData shopkeeperData, boolean migrated) {
+			this.key = key;
+			this.shopkeeperId = shopkeeperId;
+			this.shopkeeperData = shopkeeperData;
+			this.migrated = migrated;
+			this.failureReason = null;
+			this.failureCause = null;
+		}
+
+		PreparedShopkeeper(
+				String key,
+				int shopkeeperId,
+				String failureReason,
+				@Nullable Throwable failureCause
+		) {
+			this.key = key;
+			this.shopkeeperId = shopkeeperId;
+			this.shopkeeperData = null;
+			this.migrated = false;
+			this.failureReason = failureReason;
+			this.failureCause = failureCause;
+		}
+	}
+
+	// Copies and migrates the data of the specified shopkeeper.
+	private PreparedShopkeeper prepareShopkeeper(String key) {
 		Integer idInt = ConversionUtils.parseInt(key);
 		if (idInt == null || idInt <= 0) {
-			this.failedToLoadShopkeeper(key, "Invalid id: " + key);
-			return;
+			return new PreparedShopkeeper(key, 0, "Invalid id: " + key, null);
 		}
 
 		int shopkeeperId = idInt.intValue();
-		if (shopkeeperId > maxUsedShopkeeperId) {
-			maxUsedShopkeeperId = shopkeeperId;
-		}
-
 		ShopkeeperData shopkeeperData = this.getShopkeeperData(shopkeeperId);
 		if (shopkeeperData == null) {
-			this.failedToLoadShopkeeper(key, "Invalid shopkeeper data!");
-			return;
+			return new PreparedShopkeeper(key, shopkeeperId, "Invalid shopkeeper data!", null);
 		}
 
 		// Perform data migrations:
@@ -604,12 +1054,44 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		try {
 			migrated = shopkeeperData.migrate(AbstractShopkeeper.getLogPrefix(shopkeeperId));
 		} catch (InvalidDataException e) {
-			this.failedToLoadShopkeeper(key, "Shopkeeper data migration failed!", e);
+			return new PreparedShopkeeper(key, shopkeeperId, "Shopkeeper data migration failed!", e);
+		} catch (Exception e) {
+			return new PreparedShopkeeper(key, shopkeeperId, "Unexpected error!", e);
+		}
+		return new PreparedShopkeeper(key, shopkeeperId, shopkeeperData, migrated);
+	}
+
+	private void loadShopkeeper(
+			PreparedShopkeeper preparedShopkeeper,
+			boolean forceSave,
+			boolean allowDeferral
+	) {
+		String key = preparedShopkeeper.key;
+		int shopkeeperId = preparedShopkeeper.shopkeeperId;
+		if (shopkeeperId > maxUsedShopkeeperId) {
+			maxUsedShopkeeperId = shopkeeperId;
+		}
+
+		ShopkeeperData shopkeeperData = preparedShopkeeper.shopkeeperData;
+		if (shopkeeperData == null) {
+			this.failedToLoadShopkeeper(
+					key,
+					StringUtils.getOrEmpty(preparedShopkeeper.failureReason),
+					preparedShopkeeper.failureCause
+			);
 			return;
 		}
 
-		// Load the shopkeeper:
 		SKShopkeeperRegistry shopkeeperRegistry = this.getShopkeeperRegistry();
+
+		// Unless the shopkeeper data needs to be saved again, the loading of the shopkeeper can be
+		// deferred until its chunk is loaded. Its data remains inside the save data until then.
+		if (allowDeferral && !preparedShopkeeper.migrated && !forceSave
+				&& shopkeeperRegistry.deferShopkeeper(shopkeeperData)) {
+			return;
+		}
+
+		// Load the shopkeeper:
 		AbstractShopkeeper shopkeeper;
 		try {
 			shopkeeper = shopkeeperRegistry.loadShopkeeper(shopkeeperData);
@@ -626,11 +1108,26 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		// dirty:
 		// During plugin enable, after the shopkeepers have been loaded, a save is triggered if the
 		// storage has been marked as dirty.
-		if (migrated || forceSave) {
+		if (preparedShopkeeper.migrated || forceSave) {
 			shopkeeper.markDirty();
 		}
 	}
 
+	/**
+	 * Loads the shopkeeper whose loading has previously been
+	 * {@link SKShopkeeperRegistry#deferShopkeeper(ShopkeeperData) deferred} by the
+	 * {@link SKShopkeeperRegistry}.
+	 * <p>
+	 * If the shopkeeper cannot be loaded, a warning is logged and its data is kept.
+	 * 
+	 * @param shopkeeperId
+	 *            the shopkeeper id
+	 */
+	public void loadDeferredShopkeeper(int shopkeeperId) {
+		PreparedShopkeeper preparedShopkeeper = this.prepareShopkeeper(String.valueOf(shopkeeperId));
+		this.loadShopkeeper(preparedShopkeeper, false, false);
+	}
+
 	private void failedToLoadShopkeeper(String idKey, String reason) {
 		this.failedToLoadShopkeeper(idKey, reason, null);
 	}
@@ -643,6 +1140,63 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		Log.warning("Failed to load shopkeeper '" + idKey + "': " + reason, throwable);
 	}
 
+	// SNAPSHOTS
+
+	/**
+	 * Loads the snapshots of the specified shopkeeper from the snapshot storage.
+	 * <p>
+	 * This takes any snapshot changes into account that have not yet been persisted.
+	 * 
+	 * @param shopkeeperUniqueId
+	 *            the shopkeeper's unique id, not <code>null</code>
+	 * @return the snapshots, empty if there are no stored snapshots for the shopkeeper
+	 * @throws InvalidDataException
+	 *             if the snapshots cannot be read or are invalid
+	 */
+	public List<? extends SKShopkeeperSnapshot> loadSnapshots(
+			UUID shopkeeperUniqueId
+	) throws InvalidDataException {
+		Validate.notNull(shopkeeperUniqueId, "shopkeeperUniqueId is null");
+		// Snapshots that have not yet been persisted:
+		List<? extends SKShopkeeperSnapshot> unsavedSnapshots = pendingSnapshots.get(
+				shopkeeperUniqueId
+		);
+		if (unsavedSnapshots == null) {
+			// Snapshots that are currently being saved: Not modified while the save is running.
+			unsavedSnapshots = saveTask.savingSnapshots.get(shopkeeperUniqueId);
+		}
+		if (unsavedSnapshots != null) {
+			return unsavedSnapshots;
+		}
+
+		try {
+			return snapshotStore.read(shopkeeperUniqueId);
+		} catch (IOException e) {
+			throw new InvalidDataException("Could not read the snapshot file!", e);
+		}
+	}
+
+	/**
+	 * Informs this storage that the snapshots of the specified shopkeeper have changed.
+	 * <p>
+	 * The snapshots are written to the shopkeeper's snapshot file with the next save. The caller
+	 * is expected to also mark the shopkeeper as dirty, so that a subsequent save is triggered.
+	 * 
+	 * @param shopkeeperUniqueId
+	 *            the shopkeeper's unique id, not <code>null</code>
+	 * @param snapshots
+	 *            the shopkeeper's current snapshots, not <code>null</code>, not modified
+	 *            afterwards
+	 */
+	public void onSnapshotsChanged(
+			UUID shopkeeperUniqueId,
+			List<? extends SKShopkeeperSnapshot> snapshots
+	) {
+		Validate.notNull(shopkeeperUniqueId, "shopkeeperUniqueId is null");
+		Validate.notNull(snapshots, "snapshots is null");
+		pendingSnapshots.put(shopkeeperUniqueId, snapshots);
+	}
+
 	// SHOPKEEPER DATA CHANGES
 
 	// Note: This does not take into account any unsaved data that a save in progress might
@@ -671,6 +1225,9 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 			// We do not take the unsavedDeletedShopkeepers into account while they are being saved.
 		}
 
+		// Changed snapshots:
+		if (!pendingSnapshots.isEmpty()) return true;
+
 		return false;
 	}
 
@@ -684,6 +1241,13 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 	 */
 	public void deleteShopkeeper(AbstractShopkeeper shopkeeper) {
 		Validate.notNull(shopkeeper, "shopkeeper is null");
+		// Delete the shopkeeper's snapshots with the next save:
+		// This is independent of any save that is currently in progress.
+		UUID uniqueId = shopkeeper.getUniqueId();
+		if (shopkeeper.getSnapshotCount() > 0 || pendingSnapshots.containsKey(uniqueId)) {
+			pendingSnapshots.put(uniqueId, Collections.emptyList());
+		}
+
 		// If the save task is currently running (and not in its synchronous post-processing
 		// callback), we defer the deletion of the shopkeeper's data:
 		if (saveTask.isRunning() && !saveTask.isPostProcessing()) {
@@ -801,6 +1365,18 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		pendingSaveRequest = true;
 	}
 
+	private void requestFullSave() {
+		this.requestSave();
+		pendingFullSave = true;
+	}
+
+	// Returns null if the shopkeeper data is not split into segments.
+	private @Nullable SaveSegments getSaveSegments() {
+		int segmentSize = Settings.saveSegmentSize;
+		if (segmentSize <= 0) return null;
+		return new SaveSegments(segmentsDirectory, segmentSize, Settings.saveFormat);
+	}
+
 	@Override
 	public void save() {
 		if (Settings.saveInstantly) {
@@ -871,6 +1447,31 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		Set<AbstractShopkeeper> savingDirtyShopkeepers = new LinkedHashSet<>();
 		// The shopkeepers that we were not able to save for some reason:
 		private final Set<AbstractShopkeeper> failedToSave = new LinkedHashSet<>();
+		// The save segments used by the current save, or null if the shopkeeper data is not split
+		// into segments:
+		private @Nullable SaveSegments savingSegments = null;
+		// The segments that contain changes and that therefore need to be written by the current
+		// save. Only used if the current save is not a full save.
+		private final Set<Integer> savingDirtySegments = new HashSet<>();
+		// The format of the save files written by the current save:
+		private SaveFormat savingFormat = SaveFormat.YAML;
+		// Whether the current save rewrites all save files:
+		private boolean savingFullSave = false;
+		// During full saves: The segments that still contain shopkeeper data.
+		private final Set<Integer> savingUsedSegments = new HashSet<>();
+		// The shopkeepers (their ids) whose data has changed or that have been deleted since their
+		// data has last been persisted:
+		private final Set<Integer> savingChangedShopkeepers = new HashSet<>();
+		// The snapshots (by shopkeeper unique id) that are written by the current save. This Map
+		// is only modified synchronously while no save is running.
+		final Map<UUID, List<? extends SKShopkeeperSnapshot>> savingSnapshots = new LinkedHashMap<>();
+		// Whether the current save only appends the changes to the journal:
+		private boolean savingJournal = false;
+		// Whether the current save is a full save that compacts the existing journal:
+		private boolean savingCompactJournal = false;
+		// Set during the execution:
+		private boolean journalAppended = false;
+		private boolean journalCompacted = false;
 
 		/* Last save */
 		// These variables get replaced during the next save.
@@ -907,6 +1508,8 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 
 		@Override
 		protected void prepare() {
+			long startNanos = System.nanoTime();
+
 			// Stop any active delayed save task:
 			if (delayedSaveTask != null) {
 				delayedSaveTask.cancel();
@@ -933,21 +1536,67 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 			// Save the data of dirty shopkeepers:
 			assert failedToSave.isEmpty();
 			savingDirtyShopkeepers.forEach(this::saveShopkeeper);
+
+			// Changed snapshots:
+			assert savingSnapshots.isEmpty();
+			savingSnapshots.putAll(pendingSnapshots);
+			pendingSnapshots.clear();
+
+			// Determine the shopkeepers whose changes need to be persisted:
+			assert savingChangedShopkeepers.isEmpty();
+			savingDirtyShopkeepers.forEach(shopkeeper -> {
+				if (failedToSave.contains(shopkeeper)) return;
+				savingChangedShopkeepers.add(shopkeeper.getId());
+			});
+			// Shopkeepers whose data we failed to persist during previous saves:
+			savingChangedShopkeepers.addAll(unsavedShopkeepers);
+			savingChangedShopkeepers.addAll(unsavedDeletedShopkeepers);
+
+			// Determine the save files that need to be written:
+			savingFullSave = pendingFullSave;
+			pendingFullSave = false;
+			if (journalEntryCount > 0) {
+				if (!Settings.saveJournal
+						|| journalEntryCount >= Settings.saveJournalCompactionThreshold) {
+					// Compact the journal:
+					savingFullSave = true;
+				}
+			}
+			savingJournal = Settings.saveJournal && !savingFullSave;
+			savingCompactJournal = savingFullSave && journalEntryCount > 0;
+
+			savingFormat = Settings.saveFormat;
+			savingSegments = getSaveSegments();
+			assert savingDirtySegments.isEmpty();
+			SaveSegments segments = savingSegments;
+			if (segments != null && !savingFullSave && !savingJournal) {
+				savingChangedShopkeepers.forEach(shopkeeperId -> {
+					savingDirtySegments.add(segments.getSegment(shopkeeperId));
+				});
+			}
+
+			plugin.getMetricsRegistry().getHistogram(MetricsRegistry.SAVE_PREPARATION)
+					.record(System.nanoTime() - startNanos);
 		}
 
+		// Captures a snapshot of the shopkeeper's current data and stores it inside the save data.
+		// The snapshot is saved into a new detached data container that is only referenced by the
+		// save data afterwards. Since the shopkeeper only inserts immutable data (see
+		// AbstractShopkeeper#save), the snapshot is not affected by subsequent changes to the
+		// shopkeeper and can therefore safely be serialized on the async worker thread. This keeps
+		// the work on the main thread limited to collecting references to the shopkeeper's current
+		// state: All the actual serialization of the data, including the serialization of item
+		// stacks, happens during the (async) execution of the save.
 		private void saveShopkeeper(AbstractShopkeeper shopkeeper) {
 			// Note: The shopkeeper might no longer be valid (loaded).
 			assert shopkeeper.isDirty();
 			String key = String.valueOf(shopkeeper.getId());
-			Object previousData = saveData.get(key);
-			// This replaces the previous shopkeeper data:
-			ShopkeeperData newData = ShopkeeperData.ofNonNull(saveData.createContainer(key));
+			ShopkeeperData newData = ShopkeeperData.ofNonNull(DataContainer.create());
 			try {
 				shopkeeper.save(newData, false); // May reference externally stored data
 			} catch (Exception e) {
 				// Error while saving shopkeeper data:
-				// Restore previous shopkeeper data and then skip this shopkeeper.
-				saveData.set(key, previousData);
+				// Skip this shopkeeper. The save data still contains the previous shopkeeper data.
 				Log.warning(shopkeeper.getLogPrefix() + "Saving failed!", e);
 				// We remember the shopkeeper and keep it marked as dirty, so that the next save of
 				// all shopkeepers attempts to save it again.
@@ -960,6 +1609,9 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 			// Remove the separately stored shopkeeper id from the shopkeeper data:
 			newData.set(AbstractShopkeeper.ID.getUnvalidatedSaver(), null);
 
+			// This replaces the previous shopkeeper data:
+			saveData.set(key, Unsafe.assertNonNull(newData.serialize()));
+
 			// We transferred the shopkeeper's data into the storage. Reset the shopkeeper's dirty
 			// flag:
 			shopkeeper.onSave();
@@ -968,29 +1620,47 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		// Can be run async or sync.
 		@Override
 		protected void execute() {
+			long startNanos = System.nanoTime();
 			savingSucceeded = this.saveToFile(saveData);
+			// The histogram is thread-safe:
+			plugin.getMetricsRegistry().getHistogram(MetricsRegistry.SAVE_WRITE)
+					.record(System.nanoTime() - startNanos);
 		}
 
 		// Returns true if the saving was successful.
 		private boolean saveToFile(DataStore saveData) {
 			try {
-				// Serialize data to String:
-				// TODO Do this on the main thread? Bukkit's serialization API is not strictly
-				// thread-safe ...
-				// However, this should usually not be an issue if the serialized objects inside the
-				// save data are not accessed externally, and do not rely on external state during
-				// serialization.
-				String data;
+				// Serialize data to Strings:
+				// Bukkit's serialization API is not strictly thread-safe. However, the save data
+				// only contains snapshots of the shopkeeper data (see saveShopkeeper) that are not
+				// modified while the save is in progress, and the item stacks inside these
+				// snapshots are not modified either. We therefore serialize the data on the async
+				// worker thread.
+				@Nullable String journalEntry = null;
+				Map<Path, byte @Nullable []> files;
 				try {
-					data = saveData.saveToString();
+					// If we compact the journal, we first also append the current changes to the
+					// journal: If the save files are written, but we fail to delete the journal,
+					// the journal still ends with the latest data of all shopkeepers.
+					if ((savingJournal || savingCompactJournal)
+							&& !savingChangedShopkeepers.isEmpty()) {
+						journalEntry = this.serializeJournalEntry(saveData);
+					}
+					// The snapshot files are written first, so that the shopkeeper data never
+					// refers to snapshots that have not yet been persisted:
+					files = this.serializeSnapshotFiles();
+					if (!savingJournal) {
+						files.putAll(this.serializeSaveFiles(saveData));
+					}
 				} catch (Exception e) {
 					throw new ShopkeeperStorageSaveException(
 							"Could not serialize shopkeeper data!", e
 					);
 				}
 
+				final @Nullable String finalJournalEntry = journalEntry;
 				Retry.retry((VoidCallable) () -> {
-					this.doSaveToFile(data);
+					this.doSaveToFiles(finalJournalEntry, files);
 				}, SAVING_MAX_ATTEMPTS, (attemptNumber, exception, retry) -> {
 					// Saving failed:
 					assert exception != null;
@@ -1026,9 +1696,207 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 			}
 		}
 
+		// Files without content are deleted.
+		private Map<Path, byte @Nullable []> serializeSnapshotFiles() {
+			Map<Path, byte @Nullable []> files = new LinkedHashMap<>();
+			savingSnapshots.forEach((shopkeeperUniqueId, snapshots) -> {
+				Path snapshotFile = snapshotStore.getFile(shopkeeperUniqueId);
+				byte @Nullable [] content = ShopkeeperSnapshotStore.serialize(snapshots);
+				// Skip the deletion if there is no snapshot file:
+				if (content == null && !Files.exists(snapshotFile)
+						&& !Files.exists(FileUtils.getTempSibling(snapshotFile))) {
+					return;
+				}
+				files.put(snapshotFile, content);
+			});
+			return files;
+		}
+
+		/**
+		 * Serializes the data of all save files that need to be written by the current save.
+		 * <p>
+		 * If the shopkeeper data is not split into segments, this serializes all data into the save
+		 * file. Otherwise, this only serializes the segments that contain changes, or all segments
+		 * and the save file for full saves.
+		 * 
+		 * @param saveData
+		 *            the save data
+		 * @return the serialized contents by save file, in the order in which the files need to be
+		 *         written, a <code>null</code> content indicates that the file needs to be deleted
+		 */
+		private Map<Path, byte @Nullable []> serializeSaveFiles(DataStore saveData) {
+			Map<Path, byte @Nullable []> files = new LinkedHashMap<>();
+			Path saveFile = _getSaveFile(savingFormat);
+			SaveSegments segments = savingSegments;
+			if (segments == null) {
+				if (savingFormat == SaveFormat.YAML) {
+					files.put(saveFile, saveData.saveToString().getBytes(StandardCharsets.UTF_8));
+				} else {
+					files.put(saveFile, this.serializeSaveFile(saveData.getValues()));
+				}
+				return files;
+			}
+
+			// Group the data of the segments that need to be written:
+			Map<String, Object> shopkeeperValues = saveData.getValuesCopy();
+			shopkeeperValues.remove(DATA_VERSION_KEY);
+			Map<Integer, @Nullable Map<String, Object>> segmentValues = segments.groupBySegment(
+					shopkeeperValues,
+					savingFullSave ? null : savingDirtySegments
+			);
+
+			segmentValues.forEach((segment, values) -> {
+				Path segmentFile = segments.getSegmentFile(segment);
+				if (values == null) {
+					// All shopkeepers of the segment have been deleted:
+					files.put(segmentFile, null);
+					return;
+				}
+
+				if (savingFullSave) {
+					savingUsedSegments.add(segment);
+				}
+				files.put(segmentFile, this.serializeSaveFile(values));
+			});
+
+			// The save file only stores the data version. We write it last, so that it only stops
+			// storing the shopkeeper data once the segments have been written.
+			if (savingFullSave) {
+				Map<String, Object> saveFileValues = new LinkedHashMap<>();
+				saveFileValues.put(
+						DATA_VERSION_KEY,
+						Unsafe.assertNonNull(saveData.get(DATA_VERSION_KEY))
+				);
+				files.put(saveFile, this.serializeSaveFile(saveFileValues));
+			}
+			return files;
+		}
+
+		private byte[] serializeSaveFile(Map<? extends String, ?> values) {
+			if (savingFormat == SaveFormat.YAML) {
+				var config = ConfigUtils.newYamlConfig();
+				config.options().setHeader(HEADER);
+				ConfigUtils.setAll(config, values);
+				return config.saveToString().getBytes(StandardCharsets.UTF_8);
+			} else {
+				BukkitBinaryDataStore data = new BukkitBinaryDataStore();
+				data.setAll(values);
+				return data.saveToBytes();
+			}
+		}
+
+		/**
+		 * Serializes the data of the changed and deleted shopkeepers into a journal entry.
+		 * 
+		 * @param saveData
+		 *            the save data
+		 * @return the journal entry
+		 */
+		private String serializeJournalEntry(DataStore saveData) {
+			Map<String, Object> savedValues = new LinkedHashMap<>();
+			List<String> deletedKeys = new ArrayList<>();
+			savingChangedShopkeepers.forEach(shopkeeperId -> {
+				String key = String.valueOf(shopkeeperId);
+				Object value = saveData.get(key);
+				if (value != null) {
+					savedValues.put(key, value);
+				} else {
+					deletedKeys.add(key);
+				}
+			});
+
+			var entryConfig = ConfigUtils.newYamlConfig();
+			if (!savedValues.isEmpty()) {
+				entryConfig.set(JOURNAL_SAVED_KEY, savedValues);
+			}
+			if (!deletedKeys.isEmpty()) {
+				entryConfig.set(JOURNAL_DELETED_KEY, deletedKeys);
+			}
+			return entryConfig.saveToString();
+		}
+
 		/**
 		 * Writes the given properly formatted shopkeeper data to disk.
 		 * <p>
+		 * If a journal entry is given, it is first appended to the journal. Each file is then
+		 * written via {@link #doSaveToFile(Path, byte[])}. Files without content are deleted. Full
+		 * saves additionally delete any segment files that are no longer used, and the compacted
+		 * journal.
+		 * 
+		 * @param journalEntry
+		 *            the journal entry to append, or <code>null</code>
+		 * @param files
+		 *            the formatted data by file
+		 * @throws ShopkeeperStorageSaveException
+		 *             if something goes wrong
+		 */
+		private void doSaveToFiles(
+				@Nullable String journalEntry,
+				Map<Path, byte @Nullable []> files
+		) throws ShopkeeperStorageSaveException {
+			assert files != null;
+			// Skipped if the journal entry has already been appended during a previous attempt:
+			if (journalEntry != null && !journalAppended) {
+				try {
+					journal.append(journalEntry);
+					journalAppended = true;
+				} catch (Exception e) {
+					throw new ShopkeeperStorageSaveException(e.getMessage(), e);
+				}
+			}
+
+			for (Map.Entry<Path, byte @Nullable []> file : files.entrySet()) {
+				Path path = file.getKey();
+				byte[] data = file.getValue();
+				if (data != null) {
+					this.doSaveToFile(path, data);
+				} else {
+					try {
+						FileUtils.deleteIfExists(path);
+						FileUtils.deleteIfExists(FileUtils.getTempSibling(path));
+						FileUtils.fsyncParentDirectory(path);
+					} catch (Exception e) {
+						throw new ShopkeeperStorageSaveException(e.getMessage(), e);
+					}
+				}
+			}
+
+			if (savingFullSave) {
+				// Delete the save files and segment files that are no longer used:
+				try {
+					for (SaveFormat format : SaveFormat.values()) {
+						if (format == savingFormat) continue;
+						Path otherSaveFile = _getSaveFile(format);
+						boolean deleted = FileUtils.deleteIfExists(otherSaveFile);
+						deleted |= FileUtils.deleteIfExists(FileUtils.getTempSibling(otherSaveFile));
+						if (deleted) {
+							FileUtils.fsyncParentDirectory(otherSaveFile);
+						}
+					}
+					SaveSegments.deleteSegmentFiles(
+							segmentsDirectory,
+							(savingSegments != null) ? savingUsedSegments : null,
+							savingFormat
+					);
+				} catch (Exception e) {
+					throw new ShopkeeperStorageSaveException(e.getMessage(), e);
+				}
+			}
+
+			if (savingCompactJournal) {
+				// The save files now contain all changes of the journal:
+				try {
+					journal.delete();
+					journalCompacted = true;
+				} catch (Exception e) {
+					throw new ShopkeeperStorageSaveException(e.getMessage(), e);
+				}
+			}
+		}
+
+		/**
+		 * Writes the given properly formatted shopkeeper data to the specified file.
+		 * <p>
 		 * Saving procedure:
 		 * <ul>
 		 * <li>If there already is a temporary save file:
@@ -1047,18 +1915,19 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		 * disk).
 		 * </ul>
 		 * 
+		 * @param file
+		 *            the file to write
 		 * @param data
 		 *            the formatted data
 		 * @throws ShopkeeperStorageSaveException
 		 *             if something goes wrong
 		 */
-		private void doSaveToFile(String data) throws ShopkeeperStorageSaveException {
-			assert data != null;
+		private void doSaveToFile(Path file, byte[] data) throws ShopkeeperStorageSaveException {
+			assert file != null && data != null;
 			try {
 				FileUtils.writeSafely(
-						saveFile,
+						file,
 						data,
-						StandardCharsets.UTF_8,
 						Log.getLogger(),
 						getPluginDataFolder()
 				);
@@ -1123,6 +1992,36 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 			// Cleanup the Set of processed dirty shopkeepers:
 			savingDirtyShopkeepers.clear();
 
+			// Snapshots that we failed to persist are written again by the next save, unless they
+			// have changed again in the meantime:
+			if (!savingSucceeded) {
+				savingSnapshots.forEach(pendingSnapshots::putIfAbsent);
+			}
+			savingSnapshots.clear();
+
+			// Cleanup the save segments state:
+			if (!savingSucceeded && savingFullSave) {
+				// The next save needs to be a full save again:
+				pendingFullSave = true;
+			}
+			savingSegments = null;
+			savingDirtySegments.clear();
+			savingUsedSegments.clear();
+			savingFullSave = false;
+
+			// Update the journal state:
+			if (journalAppended) {
+				journalEntryCount++;
+			}
+			if (journalCompacted) {
+				journalEntryCount = 0;
+			}
+			savingChangedShopkeepers.clear();
+			savingJournal = false;
+			savingCompactJournal = false;
+			journalAppended = false;
+			journalCompacted = false;
+
 			// Remove the data of shopkeepers that have been deleted in the meantime:
 			shopkeepersToDelete.forEach(SKShopkeeperStorage.this::deleteShopkeeper);
 			shopkeepersToDelete.clear();
@@ -1169,6 +2068,27 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 				// Deleted shopkeepers:
 				sb.append(", ").append(unsavedDeletedShopkeepers.size()).append(" deleted");
 
+				// Snapshot files:
+				if (!savingSnapshots.isEmpty()) {
+					sb.append(", ").append(savingSnapshots.size()).append(" snapshot files");
+				}
+
+				// Journal:
+				if (savingJournal) {
+					sb.append(", journaled");
+				} else if (savingCompactJournal) {
+					sb.append(", compacted journal");
+				}
+
+				// Written save segments:
+				if (savingSegments != null && !savingJournal) {
+					if (savingFullSave) {
+						sb.append(", all segments");
+					} else {
+						sb.append(", ").append(savingDirtySegments.size()).append(" segments");
+					}
+				}
+
 				// Failed to save:
 				if (!failedToSave.isEmpty()) {
 					sb.append(", ").append(failedToSave.size()).append(" failed to save");
@@ -0,0 +1,31 @@
+package com.nisovin.shopkeepers.storage;
+
+/**
+ * The available storage formats of the shopkeeper save files.
+ */
+public enum SaveFormat {
+
+	/**
+	 * Human-readable Yaml files.
+	 */
+	YAML(".yml"),
+	/**
+	 * Compact binary files that are faster to load and save.
+	 */
+	BINARY(".dat");
+
+	private final String fileExtension;
+
+	private SaveFormat(String fileExtension) {
+		this.fileExtension = fileExtension;
+	}
+
+	/**
+	 * Gets the file extension of save files in this format.
+	 * 
+	 * @return the file extension, including the leading dot
+	 */
+	public String getFileExtension() {
+		return fileExtension;
+	}
+}
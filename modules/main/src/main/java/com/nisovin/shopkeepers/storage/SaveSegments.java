@@ -0,0 +1,291 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.api.internal.util.Unsafe;
+import com.nisovin.shopkeepers.util.data.container.DataContainer;
+import com.nisovin.shopkeepers.util.java.ConversionUtils;
+import com.nisovin.shopkeepers.util.java.FileUtils;
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * Maps shopkeeper data keys to the segment files that store their data when the shopkeeper data is
+ * split into several files.
+ * <p>
+ * Shopkeepers are assigned to segments by ranges of their ids: With a segment size of {@code n},
+ * segment {@code 0} stores the shopkeepers with ids {@code 1} to {@code n}, segment {@code 1} the
+ * shopkeepers with ids {@code n + 1} to {@code 2n}, etc. Keys that do not represent a valid
+ * shopkeeper id (e.g. the data of shopkeepers that failed to load) are stored inside segment
+ * {@code 0}.
+ */
+final class SaveSegments {
+
+	private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+	private final Path directory;
+	private final int segmentSize;
+	private final SaveFormat format;
+
+	/**
+	 * Creates a new {@link SaveSegments}.
+	 * 
+	 * @param directory
+	 *            the directory that contains the segment files, not <code>null</code>
+	 * @param segmentSize
+	 *            the max number of shopkeepers per segment, has to be positive
+	 * @param format
+	 *            the format of the segment files, not <code>null</code>
+	 */
+	SaveSegments(Path directory, int segmentSize, SaveFormat format) {
+		Validate.notNull(directory, "directory is null");
+		Validate.isTrue(segmentSize > 0, "segmentSize has to be positive");
+		Validate.notNull(format, "format is null");
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.format = format;
+	}
+
+	/**
+	 * Gets the max number of shopkeepers per segment.
+	 * 
+	 * @return the segment size
+	 */
+	int getSegmentSize() {
+		return segmentSize;
+	}
+
+	/**
+	 * Gets the format of the segment files.
+	 * 
+	 * @return the format
+	 */
+	SaveFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * Gets the index of the segment that stores the data for the given shopkeeper id.
+	 * 
+	 * @param shopkeeperId
+	 *            the shopkeeper id
+	 * @return the segment index
+	 */
+	int getSegment(int shopkeeperId) {
+		if (shopkeeperId <= 0) return 0;
+		return (shopkeeperId - 1) / segmentSize;
+	}
+
+	/**
+	 * Gets the index of the segment that stores the data for the given data key.
+	 * 
+	 * @param key
+	 *            the data key
+	 * @return the segment index
+	 */
+	int getSegment(String key) {
+		Integer id = ConversionUtils.parseInt(key);
+		if (id == null) return 0;
+		return this.getSegment(id.intValue());
+	}
+
+	/**
+	 * Groups the given shopkeeper data by the segments that need to be written.
+	 * <p>
+	 * If only the given dirty segments need to be written, the data of all other segments is
+	 * skipped, and dirty segments that no longer contain any data (e.g. because all of their
+	 * shopkeepers have been deleted) are mapped to <code>null</code> to indicate that their segment
+	 * files need to be deleted.
+	 * 
+	 * @param shopkeeperValues
+	 *            the shopkeeper data by data key, not <code>null</code>
+	 * @param dirtySegments
+	 *            the segments that need to be written, or <code>null</code> to write all segments
+	 * @return the shopkeeper data by segment, sorted by segment index, not <code>null</code>
+	 */
+	Map<Integer, @Nullable Map<String, Object>> groupBySegment(
+			Map<? extends String, ?> shopkeeperValues,
+			@Nullable Set<? extends Integer> dirtySegments
+	) {
+		Validate.notNull(shopkeeperValues, "shopkeeperValues is null");
+		Map<Integer, @Nullable Map<String, Object>> segmentValues = new TreeMap<>();
+		if (dirtySegments != null) {
+			dirtySegments.forEach(segment -> segmentValues.put(segment, null));
+		}
+
+		shopkeeperValues.forEach((key, value) -> {
+			int segment = this.getSegment(key);
+			if (dirtySegments != null && !dirtySegments.contains(segment)) return;
+
+			Map<String, Object> values = segmentValues.get(segment);
+			if (values == null) {
+				values = new LinkedHashMap<>();
+				segmentValues.put(segment, values);
+			}
+			values.put(key, Unsafe.assertNonNull(value));
+		});
+		return segmentValues;
+	}
+
+	/**
+	 * Merges the shopkeeper data of a segment file into the given save data.
+	 * <p>
+	 * The merged data replaces any data that is already stored for the same keys.
+	 * 
+	 * @param saveSegments
+	 *            the current segment layout, or <code>null</code> if the shopkeeper data is no
+	 *            longer split into segments
+	 * @param segment
+	 *            the index of the segment file
+	 * @param segmentData
+	 *            the data of the segment file, not <code>null</code>
+	 * @param saveData
+	 *            the save data to merge into, not <code>null</code>
+	 * @return <code>true</code> if the merged data matches the current segment layout,
+	 *         <code>false</code> if the segment file needs to be rewritten
+	 */
+	static boolean mergeSegment(
+			@Nullable SaveSegments saveSegments,
+			int segment,
+			DataContainer segmentData,
+			DataContainer saveData
+	) {
+		Validate.notNull(segmentData, "segmentData is null");
+		Validate.notNull(saveData, "saveData is null");
+		boolean matchesLayout = (saveSegments != null);
+		for (String key : segmentData.getKeys()) {
+			if (saveSegments != null && saveSegments.getSegment(key) != segment) {
+				matchesLayout = false;
+			}
+			saveData.set(key, segmentData.get(key));
+		}
+		return matchesLayout;
+	}
+
+	/**
+	 * Gets the path of the file that stores the data of the specified segment.
+	 * 
+	 * @param segment
+	 *            the segment index
+	 * @return the segment file path
+	 */
+	Path getSegmentFile(int segment) {
+		return getSegmentFile(directory, segment, format);
+	}
+
+	private static Path getSegmentFile(Path directory, int segment, SaveFormat format) {
+		return directory.resolve(segment + format.getFileExtension());
+	}
+
+	/**
+	 * Finds all segment files of the given format inside the given directory.
+	 * <p>
+	 * If there is no regular segment file for a segment, but a temporary segment file (e.g. from a
+	 * previous failed saving attempt), the temporary file is returned instead.
+	 * 
+	 * @param directory
+	 *            the segments directory
+	 * @param format
+	 *            the format of the segment files
+	 * @return the segment files by their segment index, sorted by segment index, not
+	 *         <code>null</code>, empty if the directory does not exist
+	 * @throws IOException
+	 *             if the directory cannot be read
+	 */
+	static Map<Integer, Path> findSegmentFiles(
+			Path directory,
+			SaveFormat format
+	) throws IOException {
+		Map<Integer, Path> segmentFiles = new TreeMap<>();
+		if (!Files.isDirectory(directory)) return segmentFiles;
+
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				String fileName = String.valueOf(file.getFileName());
+				boolean temp = fileName.endsWith(TEMP_FILE_EXTENSION);
+				if (temp) {
+					fileName = fileName.substring(0, fileName.length() - TEMP_FILE_EXTENSION.length());
+				}
+				Integer segment = getSegmentIndex(fileName, format);
+				if (segment == null) continue;
+
+				if (temp) {
+					// Only use the temporary file if there is no regular segment file:
+					if (Files.exists(getSegmentFile(directory, segment, format))) continue;
+				}
+				segmentFiles.put(segment, file);
+			}
+		}
+		return segmentFiles;
+	}
+
+	private static @Nullable Integer getSegmentIndex(String fileName, SaveFormat format) {
+		String fileExtension = format.getFileExtension();
+		if (!fileName.endsWith(fileExtension)) return null;
+		String indexString = fileName.substring(0, fileName.length() - fileExtension.length());
+		Integer segment = ConversionUtils.parseInt(indexString);
+		if (segment == null || segment < 0) return null;
+		return segment;
+	}
+
+	/**
+	 * Deletes all segment files (including any temporary segment files) inside the given directory,
+	 * except the files of the specified segments in the specified format.
+	 * 
+	 * @param directory
+	 *            the segments directory
+	 * @param keep
+	 *            the segments to keep, or <code>null</code> to delete all segments
+	 * @param keepFormat
+	 *            the format of the segment files to keep
+	 * @throws IOException
+	 *             if the operation fails
+	 */
+	static void deleteSegmentFiles(
+			Path directory,
+			@Nullable Set<? extends Integer> keep,
+			SaveFormat keepFormat
+	) throws IOException {
+		if (!Files.isDirectory(directory)) return;
+
+		boolean deleted = false;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				String fileName = String.valueOf(file.getFileName());
+				boolean temp = fileName.endsWith(TEMP_FILE_EXTENSION);
+				if (temp) {
+					fileName = fileName.substring(0, fileName.length() - TEMP_FILE_EXTENSION.length());
+				}
+				@Nullable SaveFormat fileFormat = null;
+				Integer segment = null;
+				for (SaveFormat format : SaveFormat.values()) {
+					segment = getSegmentIndex(fileName, format);
+					if (segment != null) {
+						fileFormat = format;
+						break;
+					}
+				}
+				if (segment == null) continue;
+				// Temporary files are also deleted for the kept segments:
+				if (!temp && keep != null && fileFormat == keepFormat && keep.contains(segment)) {
+					continue;
+				}
+
+				FileUtils.deleteIfExists(file);
+				deleted = true;
+			}
+		}
+
+		if (deleted) {
+			FileUtils.fsync(directory);
+		}
+	}
+}
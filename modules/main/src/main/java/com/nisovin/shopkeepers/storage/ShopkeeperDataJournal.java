@@ -0,0 +1,207 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.nisovin.shopkeepers.util.java.FileUtils;
+import com.nisovin.shopkeepers.util.java.ThrowableUtils;
+import com.nisovin.shopkeepers.util.java.Validate;
+import com.nisovin.shopkeepers.util.logging.Log;
+
+/**
+ * An append-only journal of shopkeeper data changes.
+ * <p>
+ * Each journal entry stores the serialized data of a batch of changed and deleted shopkeepers. The
+ * entries are applied in order on top of the data of the save files in order to restore the latest
+ * state of the shopkeeper data.
+ * <p>
+ * Entry format: The length of the payload ({@code int}), the UTF-8 encoded payload, and a CRC32
+ * checksum of the payload ({@code long}). Incomplete or corrupted entries at the end of the journal,
+ * e.g. due to a crash during a previous append, are detected and truncated when the journal is
+ * read.
+ * <p>
+ * This class is not thread-safe. The shopkeeper storage ensures that there is at most one thread
+ * doing file IO at the same time.
+ */
+final class ShopkeeperDataJournal {
+
+	private final Path file;
+
+	/**
+	 * Creates a new {@link ShopkeeperDataJournal}.
+	 * 
+	 * @param file
+	 *            the journal file, not <code>null</code>
+	 */
+	ShopkeeperDataJournal(Path file) {
+		Validate.notNull(file, "file is null");
+		this.file = file;
+	}
+
+	/**
+	 * Gets the journal file.
+	 * 
+	 * @return the journal file
+	 */
+	Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Checks if the journal file exists.
+	 * 
+	 * @return <code>true</code> if the journal file exists
+	 */
+	boolean exists() {
+		return Files.exists(file);
+	}
+
+	/**
+	 * Reads the payloads of all valid entries of the journal.
+	 * <p>
+	 * If the journal ends with an incomplete or corrupted entry, a warning is logged and the
+	 * journal file is truncated to its last valid entry, so that subsequently appended entries are
+	 * not lost.
+	 * 
+	 * @return the entry payloads, in the order in which they have been appended, not
+	 *         <code>null</code>, empty if the journal file does not exist
+	 * @throws IOException
+	 *             if the journal cannot be read
+	 */
+	List<String> read() throws IOException {
+		List<String> payloads = new ArrayList<>();
+		if (!this.exists()) return payloads;
+
+		long validLength = 0L;
+		boolean corrupted = false;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+				InputStream channelInput = Channels.newInputStream(channel);
+				DataInputStream input = new DataInputStream(new BufferedInputStream(channelInput))) {
+			long fileLength = channel.size();
+			while (validLength < fileLength) {
+				try {
+					int length = input.readInt();
+					if (length < 0 || length > fileLength - validLength) {
+						corrupted = true;
+						break;
+					}
+					byte[] payload = new byte[length];
+					input.readFully(payload);
+					long checksum = input.readLong();
+					if (checksum != checksum(payload)) {
+						corrupted = true;
+						break;
+					}
+
+					payloads.add(new String(payload, StandardCharsets.UTF_8));
+					validLength += Integer.BYTES + length + Long.BYTES;
+				} catch (EOFException e) {
+					corrupted = true;
+					break;
+				}
+			}
+		}
+
+		if (corrupted) {
+			Log.warning("The shopkeeper data journal (" + file.getFileName() + ") contains an"
+					+ " incomplete or corrupted entry! This might indicate an issue during a"
+					+ " previous saving attempt! Only the first " + payloads.size()
+					+ " entries are restored.");
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				channel.truncate(validLength);
+				channel.force(true);
+			}
+		}
+		return payloads;
+	}
+
+	/**
+	 * Appends an entry with the given payload to the journal and ensures that it is persisted to
+	 * disk.
+	 * <p>
+	 * If the append fails, the journal is truncated to its previous length, so that no partially
+	 * written entry remains.
+	 * 
+	 * @param payload
+	 *            the payload, not <code>null</code>
+	 * @throws IOException
+	 *             if the operation fails
+	 */
+	void append(String payload) throws IOException {
+		Validate.notNull(payload, "payload is null");
+		byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream entryBytes = new ByteArrayOutputStream(
+				Integer.BYTES + payloadBytes.length + Long.BYTES
+		);
+		try (DataOutputStream entry = new DataOutputStream(entryBytes)) {
+			entry.writeInt(payloadBytes.length);
+			entry.write(payloadBytes);
+			entry.writeLong(checksum(payloadBytes));
+		}
+
+		boolean created = !this.exists();
+		FileUtils.createParentDirectories(file);
+		try (FileChannel channel = FileChannel.open(
+				file,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE
+		)) {
+			long previousLength = channel.size();
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap(entryBytes.toByteArray());
+				channel.position(previousLength);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(true);
+			} catch (IOException e) {
+				// Remove the partially written entry:
+				try {
+					channel.truncate(previousLength);
+					channel.force(true);
+				} catch (IOException e2) {
+					e.addSuppressed(e2);
+				}
+				throw new IOException("Could not append to the shopkeeper data journal ("
+						+ file.getFileName() + "): " + ThrowableUtils.getDescription(e), e);
+			}
+		}
+
+		if (created) {
+			FileUtils.fsyncParentDirectory(file);
+		}
+	}
+
+	/**
+	 * Deletes the journal file, if it exists.
+	 * 
+	 * @throws IOException
+	 *             if the operation fails
+	 */
+	void delete() throws IOException {
+		if (FileUtils.deleteIfExists(file)) {
+			FileUtils.fsyncParentDirectory(file);
+		}
+	}
+
+	private static long checksum(byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,320 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.api.internal.util.Unsafe;
+import com.nisovin.shopkeepers.shopkeeper.SKShopkeeperSnapshot;
+import com.nisovin.shopkeepers.util.annotations.ReadOnly;
+import com.nisovin.shopkeepers.util.bukkit.ConfigUtils;
+import com.nisovin.shopkeepers.util.data.container.DataContainer;
+import com.nisovin.shopkeepers.util.data.persistence.InvalidDataFormatException;
+import com.nisovin.shopkeepers.util.data.persistence.bukkit.BukkitConfigDataStore;
+import com.nisovin.shopkeepers.util.data.serialization.InvalidDataException;
+import com.nisovin.shopkeepers.util.java.FileUtils;
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * Stores the {@link SKShopkeeperSnapshot snapshots} of shopkeepers separately from the shopkeeper
+ * data.
+ * <p>
+ * The snapshots of each shopkeeper are stored inside a separate file, so that they only need to be
+ * written when they change, and only need to be read when they are actually used.
+ * <p>
+ * The snapshots of a shopkeeper are usually very similar to each other. The data of each snapshot
+ * is therefore split into its top-level entries: Scalar values are stored inline, whereas the
+ * sub-trees, such as the trade offers or the shop object data, are stored inside a shared section
+ * of the file, identified by the hash of their content. Sub-trees that are the same for multiple
+ * snapshots are therefore only stored once.
+ * <p>
+ * The serialization and writing of the snapshots is thread-safe, so that it can be performed by
+ * the asynchronous save task.
+ */
+final class ShopkeeperSnapshotStore {
+
+	private static final String FILE_EXTENSION = ".yml";
+
+	private static final String OBJECTS_KEY = "objects";
+	private static final String SNAPSHOTS_KEY = "snapshots";
+	// The key of the shopkeeper data inside the serialized snapshots (see SKShopkeeperSnapshot):
+	private static final String DATA_KEY = "data";
+	private static final String REFS_KEY = "refs";
+
+	// The hashes are truncated to 128 bits.
+	private static final int HASH_BYTES = 16;
+
+	private final Path directory;
+
+	/**
+	 * Creates a new {@link ShopkeeperSnapshotStore}.
+	 * 
+	 * @param directory
+	 *            the directory that contains the snapshot files, not <code>null</code>
+	 */
+	ShopkeeperSnapshotStore(Path directory) {
+		Validate.notNull(directory, "directory is null");
+		this.directory = directory;
+	}
+
+	/**
+	 * Gets the file that stores the snapshots of the specified shopkeeper.
+	 * 
+	 * @param shopkeeperUniqueId
+	 *            the shopkeeper's unique id
+	 * @return the file, not <code>null</code>
+	 */
+	Path getFile(UUID shopkeeperUniqueId) {
+		return directory.resolve(shopkeeperUniqueId.toString() + FILE_EXTENSION);
+	}
+
+	/**
+	 * Reads the snapshots of the specified shopkeeper.
+	 * 
+	 * @param shopkeeperUniqueId
+	 *            the shopkeeper's unique id
+	 * @return the snapshots, empty if there is no snapshot file for the shopkeeper
+	 * @throws IOException
+	 *             if the snapshot file cannot be read
+	 * @throws InvalidDataException
+	 *             if the snapshot data is invalid
+	 */
+	List<SKShopkeeperSnapshot> read(UUID shopkeeperUniqueId)
+			throws IOException, InvalidDataException {
+		Path file = this.getFile(shopkeeperUniqueId);
+		if (!Files.exists(file)) {
+			// A previous write might have been interrupted before its temporary file was renamed:
+			file = FileUtils.getTempSibling(file);
+			if (!Files.exists(file)) return new ArrayList<>();
+		}
+
+		String content = Files.readString(file, StandardCharsets.UTF_8);
+		return deserialize(content);
+	}
+
+	/**
+	 * Serializes the given snapshots into the format of the snapshot files.
+	 * 
+	 * @param snapshots
+	 *            the snapshots
+	 * @return the serialized snapshots, or <code>null</code> if there are no snapshots and the
+	 *         snapshot file can be deleted
+	 */
+	static byte @Nullable [] serialize(@ReadOnly List<? extends SKShopkeeperSnapshot> snapshots) {
+		if (snapshots.isEmpty()) return null;
+
+		MessageDigest digest = createDigest();
+		Map<String, Object> objects = new LinkedHashMap<>();
+		List<Object> snapshotsData = new ArrayList<>(snapshots.size());
+		for (SKShopkeeperSnapshot snapshot : snapshots) {
+			Object serializedSnapshot = SKShopkeeperSnapshot.SERIALIZER.serialize(snapshot);
+			Map<String, Object> snapshotData = DataContainer.ofNonNull(
+					Unsafe.assertNonNull(serializedSnapshot)
+			).getValuesCopy();
+			DataContainer shopkeeperData = DataContainer.ofNonNull(
+					Unsafe.assertNonNull(snapshotData.get(DATA_KEY))
+			);
+
+			Map<String, Object> inlineData = new LinkedHashMap<>();
+			Map<String, Object> refs = new LinkedHashMap<>();
+			shopkeeperData.getValues().forEach((key, value) -> {
+				if (isScalar(value)) {
+					inlineData.put(key, value);
+					return;
+				}
+
+				Object serializedValue = value;
+				if (value instanceof DataContainer) {
+					serializedValue = Unsafe.assertNonNull(((DataContainer) value).serialize());
+				}
+				String hash = hash(digest, serializedValue);
+				objects.putIfAbsent(hash, serializedValue);
+				refs.put(key, hash);
+			});
+
+			snapshotData.put(DATA_KEY, inlineData);
+			if (!refs.isEmpty()) {
+				snapshotData.put(REFS_KEY, refs);
+			}
+			snapshotsData.add(snapshotData);
+		}
+
+		BukkitConfigDataStore dataStore = BukkitConfigDataStore.ofNewYamlConfig();
+		dataStore.set(OBJECTS_KEY, objects);
+		dataStore.set(SNAPSHOTS_KEY, snapshotsData);
+		return dataStore.saveToString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static boolean isScalar(Object value) {
+		return value instanceof String || value instanceof Number || value instanceof Boolean;
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported!", e);
+		}
+	}
+
+	// Hashes the structure and values of the given data tree, without serializing it to Yaml first.
+	private static String hash(MessageDigest digest, Object value) {
+		digest.reset();
+		updateDigest(digest, value);
+		byte[] hash = digest.digest();
+		return HexFormat.of().formatHex(hash, 0, HASH_BYTES);
+	}
+
+	// Each value is prefixed with a tag that identifies its type, and each string, map, and list
+	// with its length, so that different data trees do not produce the same digest input.
+	private static void updateDigest(MessageDigest digest, @Nullable Object value) {
+		if (value == null) {
+			digest.update((byte) 'N');
+		} else if (value instanceof String) {
+			digest.update((byte) 'S');
+			updateDigest(digest, (String) value);
+		} else if (value instanceof Boolean) {
+			digest.update((byte) (((Boolean) value) ? 'T' : 'F'));
+		} else if (value instanceof Number) {
+			// Numbers of different types are not equal, even if they have the same value:
+			digest.update((byte) '#');
+			updateDigest(digest, value.getClass().getName());
+			updateDigest(digest, value.toString());
+		} else if (value instanceof DataContainer) {
+			updateDigest(digest, ((DataContainer) value).getValues());
+		} else if (value instanceof ConfigurationSection) {
+			updateDigest(digest, ((ConfigurationSection) value).getValues(false));
+		} else if (value instanceof ConfigurationSerializable) {
+			// Includes the type key of the serializable:
+			updateDigest(digest, ConfigUtils.serialize((ConfigurationSerializable) value));
+		} else if (value instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			digest.update((byte) 'M');
+			updateDigest(digest, map.size());
+			map.forEach((key, entryValue) -> {
+				updateDigest(digest, String.valueOf(key));
+				updateDigest(digest, entryValue);
+			});
+		} else if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			digest.update((byte) 'L');
+			updateDigest(digest, list.size());
+			list.forEach(element -> updateDigest(digest, element));
+		} else {
+			digest.update((byte) 'O');
+			updateDigest(digest, value.getClass().getName());
+			updateDigest(digest, value.toString());
+		}
+	}
+
+	private static void updateDigest(MessageDigest digest, String string) {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		updateDigest(digest, bytes.length);
+		digest.update(bytes);
+	}
+
+	private static void updateDigest(MessageDigest digest, int value) {
+		digest.update((byte) (value >>> 24));
+		digest.update((byte) (value >>> 16));
+		digest.update((byte) (value >>> 8));
+		digest.update((byte) value);
+	}
+
+	/**
+	 * Deserializes the snapshots from the format of the snapshot files.
+	 * 
+	 * @param content
+	 *            the serialized snapshots
+	 * @return the snapshots, not <code>null</code>
+	 * @throws InvalidDataException
+	 *             if the data is invalid
+	 */
+	static List<SKShopkeeperSnapshot> deserialize(String content) throws InvalidDataException {
+		BukkitConfigDataStore dataStore = BukkitConfigDataStore.ofNewYamlConfig();
+		try {
+			dataStore.loadFromString(content);
+		} catch (InvalidDataFormatException e) {
+			throw new InvalidDataException(e.getMessage(), e);
+		}
+
+		@Nullable DataContainer objects = dataStore.getContainer(OBJECTS_KEY);
+		List<?> snapshotsData = dataStore.getList(SNAPSHOTS_KEY);
+		if (snapshotsData == null) return new ArrayList<>();
+
+		List<SKShopkeeperSnapshot> snapshots = new ArrayList<>(snapshotsData.size());
+		for (Object snapshotDataObject : snapshotsData) {
+			int snapshotNumber = snapshots.size() + 1;
+			DataContainer snapshotDataContainer = DataContainer.of(snapshotDataObject);
+			if (snapshotDataContainer == null) {
+				throw new InvalidDataException("Shopkeeper snapshot " + snapshotNumber
+						+ " is invalid: Data is not a container!");
+			}
+
+			Map<String, Object> snapshotData = snapshotDataContainer.getValuesCopy();
+			@Nullable DataContainer refs = DataContainer.of(snapshotData.remove(REFS_KEY));
+			@Nullable DataContainer inlineData = DataContainer.of(snapshotData.get(DATA_KEY));
+			Map<String, Object> shopkeeperData = new LinkedHashMap<>();
+			if (inlineData != null) {
+				shopkeeperData.putAll(inlineData.getValues());
+			}
+			if (refs != null) {
+				for (String key : refs.getKeys()) {
+					String hash = String.valueOf(refs.get(key));
+					Object object = (objects != null) ? objects.get(hash) : null;
+					if (object == null) {
+						throw new InvalidDataException("Shopkeeper snapshot " + snapshotNumber
+								+ " is invalid: Missing data object '" + hash + "' for key '" + key
+								+ "'!");
+					}
+					// Copied, because the snapshots are not supposed to share their data:
+					shopkeeperData.put(key, copyTree(object));
+				}
+			}
+			snapshotData.put(DATA_KEY, shopkeeperData);
+
+			try {
+				snapshots.add(SKShopkeeperSnapshot.SERIALIZER.deserialize(snapshotData));
+			} catch (InvalidDataException e) {
+				throw new InvalidDataException("Shopkeeper snapshot " + snapshotNumber
+						+ " is invalid: " + e.getMessage(), e);
+			}
+		}
+		return snapshots;
+	}
+
+	// Copies the config sections, maps, and lists of the given data tree. Other values are not
+	// copied.
+	private static Object copyTree(Object value) {
+		if (value instanceof ConfigurationSection) {
+			// Creates new maps for the section and all of its sub-sections:
+			return copyTree(ConfigUtils.convertSectionsToMaps((ConfigurationSection) value));
+		} else if (value instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			Map<Object, Object> mapCopy = new LinkedHashMap<>(map.size());
+			map.forEach((key, entryValue) -> {
+				mapCopy.put(key, (entryValue != null) ? copyTree(entryValue) : null);
+			});
+			return mapCopy;
+		} else if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			List<@Nullable Object> listCopy = new ArrayList<>(list.size());
+			list.forEach(element -> listCopy.add((element != null) ? copyTree(element) : null));
+			return listCopy;
+		} else {
+			return value;
+		}
+	}
+}
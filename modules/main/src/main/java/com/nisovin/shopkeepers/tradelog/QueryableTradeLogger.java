@@ -0,0 +1,25 @@
+package com.nisovin.shopkeepers.tradelog;
+
+import com.nisovin.shopkeepers.tradelog.query.TradeLogQuery;
+import com.nisovin.shopkeepers.tradelog.query.TradeLogQueryResult;
+
+/**
+ * A {@link TradeLogger} whose logged trades can be queried.
+ */
+public interface QueryableTradeLogger extends TradeLogger {
+
+	/**
+	 * Queries the logged trades.
+	 * <p>
+	 * This blocks until the query has completed and is therefore meant to be invoked
+	 * asynchronously. It is safe to invoke this concurrently to the logging of trades and to other
+	 * queries. Trades that have not yet been written to storage are not included in the result.
+	 * 
+	 * @param query
+	 *            the query, not <code>null</code>
+	 * @return the query result, not <code>null</code>
+	 * @throws Exception
+	 *             if the query fails
+	 */
+	public TradeLogQueryResult queryTrades(TradeLogQuery query) throws Exception;
+}
@@ -26,4 +26,12 @@ public interface TradeLogger {
 	 * any pending writes to complete.
 	 */
 	public void flush();
+
+	/**
+	 * {@link #flush() Flushes} any buffered trade records and then releases any resources that are
+	 * held by this trade logger, such as open database connections.
+	 * <p>
+	 * The trade logger is not expected to log any more trades afterwards.
+	 */
+	public void close();
 }
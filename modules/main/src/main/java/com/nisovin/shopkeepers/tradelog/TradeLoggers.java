@@ -2,6 +2,7 @@ package com.nisovin.shopkeepers.tradelog;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.bukkit.Bukkit;
 import org.bukkit.event.EventHandler;
@@ -16,8 +17,12 @@ import com.nisovin.shopkeepers.api.internal.util.Unsafe;
 import com.nisovin.shopkeepers.config.Settings;
 import com.nisovin.shopkeepers.tradelog.csv.CsvTradeLogger;
 import com.nisovin.shopkeepers.tradelog.data.TradeRecord;
+import com.nisovin.shopkeepers.tradelog.query.TradeLogQuery;
+import com.nisovin.shopkeepers.tradelog.query.TradeLogQueryResult;
 import com.nisovin.shopkeepers.tradelog.sqlite.SQLiteTradeLogger;
+import com.nisovin.shopkeepers.util.bukkit.SchedulerUtils;
 import com.nisovin.shopkeepers.util.java.Validate;
+import com.nisovin.shopkeepers.util.logging.Log;
 import com.nisovin.shopkeepers.util.trading.MergedTrades;
 import com.nisovin.shopkeepers.util.trading.TradeMerger;
 import com.nisovin.shopkeepers.util.trading.TradeMerger.MergeMode;
@@ -83,11 +88,67 @@ public class TradeLoggers implements Listener {
 		// Process any pending previous trades:
 		Unsafe.assertNonNull(tradeMerger).onDisable();
 
-		// Wait for any pending writes to complete:
-		loggers.forEach(TradeLogger::flush);
+		// Wait for any pending writes to complete and release any resources:
+		loggers.forEach(TradeLogger::close);
 		loggers.clear();
 	}
 
+	/**
+	 * Gets the active trade logger that supports queries.
+	 * 
+	 * @return the queryable trade logger, or <code>null</code> if trade logging is disabled or the
+	 *         configured storage does not support queries
+	 */
+	public @Nullable QueryableTradeLogger getQueryableTradeLogger() {
+		for (TradeLogger logger : loggers) {
+			if (logger instanceof QueryableTradeLogger) {
+				return (QueryableTradeLogger) logger;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Asynchronously queries the logged trades.
+	 * <p>
+	 * The given callbacks are invoked on the server's main thread once the query has completed.
+	 * They are omitted if the plugin is disabled in the meantime.
+	 * 
+	 * @param query
+	 *            the query, not <code>null</code>
+	 * @param onSuccess
+	 *            the callback that receives the query result, not <code>null</code>
+	 * @param onFailure
+	 *            the callback that is invoked if the query fails, not <code>null</code>
+	 * @return <code>false</code> if there is no {@link #getQueryableTradeLogger() queryable trade
+	 *         logger} or the query could not be started
+	 */
+	public boolean queryTrades(
+			TradeLogQuery query,
+			Consumer<? super TradeLogQueryResult> onSuccess,
+			Consumer<? super Exception> onFailure
+	) {
+		Validate.notNull(query, "query is null");
+		Validate.notNull(onSuccess, "onSuccess is null");
+		Validate.notNull(onFailure, "onFailure is null");
+		QueryableTradeLogger logger = this.getQueryableTradeLogger();
+		if (logger == null) return false;
+
+		// Queries may need to read large amounts of logged trades, so we never run them on the main
+		// thread:
+		return SchedulerUtils.runAsyncTaskOrOmit(plugin, () -> {
+			TradeLogQueryResult result;
+			try {
+				result = logger.queryTrades(query);
+			} catch (Exception e) {
+				Log.severe("Failed to query the trade log: " + query, e);
+				SchedulerUtils.runTaskOrOmit(plugin, () -> onFailure.accept(e));
+				return;
+			}
+			SchedulerUtils.runTaskOrOmit(plugin, () -> onSuccess.accept(result));
+		}) != null;
+	}
+
 	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
 	void onTradeCompleted(ShopkeeperTradeCompletedEvent event) {
 		if (loggers.isEmpty()) return; // Nothing to log
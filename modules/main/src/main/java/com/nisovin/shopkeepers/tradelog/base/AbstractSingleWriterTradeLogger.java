@@ -182,6 +182,27 @@ public abstract class AbstractSingleWriterTradeLogger implements TradeLogger {
 		saveTask.awaitExecutions();
 	}
 
+	@Override
+	public final void close() {
+		this.flush();
+
+		// Stop logging any further trades:
+		enabled = false;
+		this.cancelDelayedSave();
+		pending.clear();
+
+		this.onClose();
+	}
+
+	/**
+	 * Override this to release any resources, such as open files or database connections, when
+	 * this trade logger is {@link #close() closed}.
+	 * <p>
+	 * This is invoked on the server's main thread after all pending writes have completed.
+	 */
+	protected void onClose() {
+	}
+
 	private boolean hasPending() {
 		return !pending.isEmpty();
 	}
@@ -397,12 +418,20 @@ public abstract class AbstractSingleWriterTradeLogger implements TradeLogger {
 			return trades.get(nextUnsaved);
 		}
 
-		// May return a sublist view:
-		private List<? extends TradeRecord> getUnsavedTrades() {
+		/**
+		 * Gets all remaining unsaved {@link TradeRecord}s of this batch.
+		 * <p>
+		 * This can be used to persist all remaining trades at once, e.g. within a single
+		 * transaction. Call {@link #onTradesSuccessfullySaved(int)} once the trade records have
+		 * been successfully persisted to move the cursor forward.
+		 * 
+		 * @return an unmodifiable view on the unsaved trades, not <code>null</code>
+		 */
+		public List<? extends TradeRecord> getUnsavedTrades() {
 			if (!this.hasUnsavedTrades()) {
 				return Collections.emptyList();
 			} else {
-				return trades.subList(nextUnsaved, trades.size());
+				return Collections.unmodifiableList(trades.subList(nextUnsaved, trades.size()));
 			}
 		}
 
@@ -413,6 +442,19 @@ public abstract class AbstractSingleWriterTradeLogger implements TradeLogger {
 		public void onTradeSuccessfullySaved() {
 			nextUnsaved++;
 		}
+
+		/**
+		 * This must be called after successfully persisting the given number of the
+		 * {@link #getUnsavedTrades() unsaved trades}.
+		 * 
+		 * @param count
+		 *            the number of persisted trades
+		 */
+		public void onTradesSuccessfullySaved(int count) {
+			Validate.isTrue(count >= 0 && nextUnsaved + count <= trades.size(),
+					"count is out of bounds");
+			nextUnsaved += count;
+		}
 	}
 
 	/**
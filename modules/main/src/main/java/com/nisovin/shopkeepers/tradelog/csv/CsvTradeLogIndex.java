@@ -0,0 +1,317 @@
+package com.nisovin.shopkeepers.tradelog.csv;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.api.internal.util.Unsafe;
+import com.nisovin.shopkeepers.tradelog.data.TradeRecord;
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * The per-day sidecar index of a CSV trade log file.
+ * <p>
+ * For every trade record that is appended to a CSV log file, a corresponding entry is appended to
+ * the index file next to it. Each entry stores the byte offset and length of the record, its
+ * timestamp, and the unique ids of the shop and the trading player. Queries can therefore find the
+ * records of a specific shop or player by only reading the compact index, and then read the
+ * matching records directly at their offsets.
+ * <p>
+ * The index is only written on a best-effort basis: Entries might be missing, for example if the
+ * log file has been written by an earlier plugin version, or if the index could not be written.
+ * When reading the index, we therefore verify that its entries cover the log file without gaps,
+ * and read any records that are not covered by the index directly from the log file.
+ */
+final class CsvTradeLogIndex {
+
+	private static final String INDEX_FILE_EXTENSION = ".idx";
+	private static final char SEPARATOR = ',';
+
+	/**
+	 * An entry of the index.
+	 */
+	static final class Entry {
+
+		private final long offset;
+		private final int length;
+		private final long epochSecond;
+		private final UUID shopUniqueId;
+		private final UUID playerUniqueId;
+
+		Entry(long offset, int length, long epochSecond, UUID shopUniqueId, UUID playerUniqueId) {
+			Validate.notNull(shopUniqueId, "shopUniqueId is null");
+			Validate.notNull(playerUniqueId, "playerUniqueId is null");
+			this.offset = offset;
+			this.length = length;
+			this.epochSecond = epochSecond;
+			this.shopUniqueId = shopUniqueId;
+			this.playerUniqueId = playerUniqueId;
+		}
+
+		long getOffset() {
+			return offset;
+		}
+
+		// Including the record separator.
+		int getLength() {
+			return length;
+		}
+
+		long getEpochSecond() {
+			return epochSecond;
+		}
+
+		UUID getShopUniqueId() {
+			return shopUniqueId;
+		}
+
+		UUID getPlayerUniqueId() {
+			return playerUniqueId;
+		}
+	}
+
+	/**
+	 * Creates the index entry for a CSV record that has not been indexed.
+	 */
+	@FunctionalInterface
+	interface RecordIndexer {
+
+		/**
+		 * Creates the index entry for the given CSV record.
+		 * 
+		 * @param record
+		 *            the CSV record, without the record separator
+		 * @param offset
+		 *            the byte offset of the record
+		 * @param length
+		 *            the byte length of the record, including the record separator
+		 * @return the index entry
+		 * @throws RuntimeException
+		 *             if the record cannot be parsed
+		 */
+		Entry index(String record, long offset, int length);
+	}
+
+	static Path getIndexFile(Path logFile) {
+		String fileName = logFile.getFileName().toString();
+		int extensionIndex = fileName.lastIndexOf('.');
+		if (extensionIndex != -1) {
+			fileName = fileName.substring(0, extensionIndex);
+		}
+		return logFile.resolveSibling(fileName + INDEX_FILE_EXTENSION);
+	}
+
+	static String formatEntry(long offset, int length, TradeRecord trade) {
+		return new StringBuilder()
+				.append(offset).append(SEPARATOR)
+				.append(length).append(SEPARATOR)
+				.append(trade.getTimestamp().getEpochSecond()).append(SEPARATOR)
+				.append(trade.getShop().getUniqueId()).append(SEPARATOR)
+				.append(trade.getPlayer().getUniqueId()).append('\n')
+				.toString();
+	}
+
+	private static @Nullable Entry parseEntry(String line) {
+		String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+		if (fields.length != 5) return null;
+		try {
+			return new Entry(
+					Long.parseLong(fields[0]),
+					Integer.parseInt(fields[1]),
+					Long.parseLong(fields[2]),
+					UUID.fromString(fields[3]),
+					UUID.fromString(fields[4])
+			);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Appends the given formatted entries to the index of the given log file.
+	 * 
+	 * @param logFile
+	 *            the log file
+	 * @param entries
+	 *            the {@link #formatEntry(long, int, TradeRecord) formatted entries}
+	 * @throws IOException
+	 *             if the index cannot be written
+	 */
+	static void appendEntries(Path logFile, List<? extends String> entries) throws IOException {
+		if (entries.isEmpty()) return;
+		// No DSYNC: Any entries that get lost are recovered from the log file when the index is
+		// read.
+		Files.write(
+				getIndexFile(logFile),
+				String.join("", entries).getBytes(StandardCharsets.US_ASCII),
+				StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND
+		);
+	}
+
+	/**
+	 * Reads the index of the given log file, and passes the entries that match the given filter to
+	 * the given consumer, in the order of the records inside the log file.
+	 * <p>
+	 * Any records that are not covered by the index are read and indexed from the log file. A
+	 * partially written record at the end of the log file is ignored.
+	 * 
+	 * @param logFile
+	 *            the log file
+	 * @param indexer
+	 *            indexes the records that are not covered by the index
+	 * @param filter
+	 *            the filter
+	 * @param consumer
+	 *            the consumer of the matching entries
+	 * @throws IOException
+	 *             if the log file cannot be read
+	 */
+	static void read(
+			Path logFile,
+			RecordIndexer indexer,
+			Predicate<? super Entry> filter,
+			Consumer<? super Entry> consumer
+	) throws IOException {
+		long logFileSize;
+		long headerEnd;
+		try {
+			logFileSize = Files.size(logFile);
+			headerEnd = readHeaderEnd(logFile);
+		} catch (NoSuchFileException e) {
+			return;
+		}
+		if (headerEnd < 0) return; // No complete header yet
+
+		// The end of the last record that is covered by the index without gaps:
+		long indexedEnd = headerEnd;
+		Path indexFile = getIndexFile(logFile);
+		if (Files.exists(indexFile)) {
+			try (InputStream in = new BufferedInputStream(Files.newInputStream(indexFile))) {
+				ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+				int b;
+				while ((b = in.read()) != -1) {
+					if (b != '\n') {
+						line.write(b);
+						continue;
+					}
+
+					Entry entry = parseEntry(line.toString(StandardCharsets.US_ASCII.name()));
+					line.reset();
+					// Stop at the first malformed entry or gap:
+					if (entry == null || entry.getOffset() != indexedEnd) break;
+					// Ignore entries for records that are not (fully) present in the log file:
+					if (entry.getOffset() + entry.getLength() > logFileSize) break;
+
+					indexedEnd = entry.getOffset() + entry.getLength();
+					if (filter.test(entry)) {
+						consumer.accept(entry);
+					}
+				}
+			}
+		}
+
+		if (indexedEnd >= logFileSize) return;
+
+		// Index the remaining records from the log file:
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(logFile))) {
+			skipFully(in, indexedEnd);
+			ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+			long recordStart = indexedEnd;
+			long position = indexedEnd;
+			int b;
+			while (position < logFileSize && (b = in.read()) != -1) {
+				position++;
+				if (b != '\n') {
+					line.write(b);
+					continue;
+				}
+
+				String record = line.toString(StandardCharsets.UTF_8.name());
+				line.reset();
+				int length = (int) (position - recordStart);
+				Entry entry;
+				try {
+					entry = indexer.index(record, recordStart, length);
+				} catch (RuntimeException e) {
+					entry = null; // Skip malformed records
+				}
+				recordStart = position;
+				if (entry != null && filter.test(entry)) {
+					consumer.accept(entry);
+				}
+			}
+		}
+	}
+
+	// Returns -1 if the log file does not contain a complete header line yet.
+	private static long readHeaderEnd(Path logFile) throws IOException {
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(logFile))) {
+			long position = 0;
+			int b;
+			while ((b = in.read()) != -1) {
+				position++;
+				if (b == '\n') return position;
+			}
+			return -1;
+		}
+	}
+
+	private static void skipFully(InputStream in, long bytes) throws IOException {
+		long remaining = bytes;
+		while (remaining > 0) {
+			long skipped = in.skip(remaining);
+			if (skipped <= 0) {
+				throw new EOFException("Unexpected end of file!");
+			}
+			remaining -= skipped;
+		}
+	}
+
+	/**
+	 * Reads the record of the given entry from the log file.
+	 * 
+	 * @param logFile
+	 *            the open log file
+	 * @param entry
+	 *            the index entry
+	 * @return the CSV record, without the record separator
+	 * @throws IOException
+	 *             if the record cannot be read
+	 */
+	static String readRecord(SeekableByteChannel logFile, Entry entry) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(entry.getLength());
+		logFile.position(entry.getOffset());
+		while (buffer.hasRemaining()) {
+			if (logFile.read(buffer) == -1) {
+				throw new EOFException("Unexpected end of file!");
+			}
+		}
+		// Omit the record separator:
+		return new String(
+				buffer.array(),
+				0,
+				entry.getLength() - 1,
+				Unsafe.assertNonNull(StandardCharsets.UTF_8)
+		);
+	}
+
+	private CsvTradeLogIndex() {
+	}
+}
@@ -2,38 +2,57 @@ package com.nisovin.shopkeepers.tradelog.csv;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
 
 import org.bukkit.plugin.Plugin;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import com.nisovin.shopkeepers.api.internal.util.Unsafe;
 import com.nisovin.shopkeepers.api.util.UnmodifiableItemStack;
+import com.nisovin.shopkeepers.tradelog.QueryableTradeLogger;
 import com.nisovin.shopkeepers.tradelog.TradeLogStorageType;
 import com.nisovin.shopkeepers.tradelog.base.AbstractFileTradeLogger;
 import com.nisovin.shopkeepers.tradelog.data.PlayerRecord;
 import com.nisovin.shopkeepers.tradelog.data.ShopRecord;
 import com.nisovin.shopkeepers.tradelog.data.TradeRecord;
+import com.nisovin.shopkeepers.tradelog.query.LoggedTrade;
+import com.nisovin.shopkeepers.tradelog.query.LoggedTrade.LoggedItem;
+import com.nisovin.shopkeepers.tradelog.query.TradeLogQuery;
+import com.nisovin.shopkeepers.tradelog.query.TradeLogQueryResult;
 import com.nisovin.shopkeepers.util.csv.CsvFormatter;
+import com.nisovin.shopkeepers.util.csv.CsvParser;
 import com.nisovin.shopkeepers.util.java.FileUtils;
 import com.nisovin.shopkeepers.util.java.StringUtils;
 import com.nisovin.shopkeepers.util.logging.Log;
 
 /**
  * Logs trades to CSV files.
+ * <p>
+ * Each log file is accompanied by a {@link CsvTradeLogIndex sidecar index} that allows queries to
+ * quickly find the trades of specific shops and players.
  */
-public class CsvTradeLogger extends AbstractFileTradeLogger {
+public class CsvTradeLogger extends AbstractFileTradeLogger implements QueryableTradeLogger {
 
 	private static final String FILE_NAME_PREFIX = "trades-";
+	private static final String FILE_NAME_SUFFIX = ".csv";
 	private static final List<? extends String> CSV_HEADER = Collections.unmodifiableList(Arrays.asList(
 			"time",
 			"player_uuid",
@@ -58,12 +77,28 @@ public class CsvTradeLogger extends AbstractFileTradeLogger {
 			"trade_count"
 	));
 
+	private static final int COLUMN_TIME = CSV_HEADER.indexOf("time");
+	private static final int COLUMN_PLAYER_UUID = CSV_HEADER.indexOf("player_uuid");
+	private static final int COLUMN_PLAYER_NAME = CSV_HEADER.indexOf("player_name");
+	private static final int COLUMN_SHOP_UUID = CSV_HEADER.indexOf("shop_uuid");
+	private static final int COLUMN_SHOP_TYPE = CSV_HEADER.indexOf("shop_type");
+	private static final int COLUMN_SHOP_OWNER_UUID = CSV_HEADER.indexOf("shop_owner_uuid");
+	private static final int COLUMN_SHOP_OWNER_NAME = CSV_HEADER.indexOf("shop_owner_name");
+	private static final int COLUMN_ITEM1_TYPE = CSV_HEADER.indexOf("item1_type");
+	private static final int COLUMN_ITEM1_AMOUNT = CSV_HEADER.indexOf("item1_amount");
+	private static final int COLUMN_ITEM2_TYPE = CSV_HEADER.indexOf("item2_type");
+	private static final int COLUMN_ITEM2_AMOUNT = CSV_HEADER.indexOf("item2_amount");
+	private static final int COLUMN_RESULT_ITEM_TYPE = CSV_HEADER.indexOf("result_item_type");
+	private static final int COLUMN_RESULT_ITEM_AMOUNT = CSV_HEADER.indexOf("result_item_amount");
+	private static final int COLUMN_TRADE_COUNT = CSV_HEADER.indexOf("trade_count");
+
 	// TODO This uses the system locale and timezone currently. Config option(s) to change the
 	// locale and timezone? Or always store in UTC?
+	private static final ZoneId ZONE = Unsafe.assertNonNull(ZoneId.systemDefault());
 	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd")
-			.withZone(Unsafe.assertNonNull(ZoneId.systemDefault()));
+			.withZone(ZONE);
 	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss")
-			.withZone(Unsafe.assertNonNull(ZoneId.systemDefault()));
+			.withZone(ZONE);
 
 	// Note: Even though the CSV format allows quoted fields to span across multiple lines, we want
 	// each CSV record to only span a single line. However, even though we do not want fields to
@@ -81,10 +116,33 @@ public class CsvTradeLogger extends AbstractFileTradeLogger {
 
 	private Path getLogFile(Instant timestamp) {
 		assert timestamp != null;
-		String fileName = FILE_NAME_PREFIX + DATE_FORMAT.format(timestamp) + ".csv";
+		String fileName = FILE_NAME_PREFIX + DATE_FORMAT.format(timestamp) + FILE_NAME_SUFFIX;
 		return tradeLogsFolder.resolve(fileName);
 	}
 
+	private Path getLogFile(LocalDate date) {
+		assert date != null;
+		String fileName = FILE_NAME_PREFIX + DATE_FORMAT.format(date) + FILE_NAME_SUFFIX;
+		return tradeLogsFolder.resolve(fileName);
+	}
+
+	// Returns null if the file is not a log file.
+	private static @Nullable LocalDate getLogFileDate(Path file) {
+		String fileName = file.getFileName().toString();
+		if (!fileName.startsWith(FILE_NAME_PREFIX) || !fileName.endsWith(FILE_NAME_SUFFIX)) {
+			return null;
+		}
+		String date = fileName.substring(
+				FILE_NAME_PREFIX.length(),
+				fileName.length() - FILE_NAME_SUFFIX.length()
+		);
+		try {
+			return LocalDate.parse(date, DATE_FORMAT);
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
 	private String toCSVRecord(TradeRecord trade) {
 		Instant timestamp = trade.getTimestamp();
 		PlayerRecord player = trade.getPlayer();
@@ -222,6 +280,8 @@ public class CsvTradeLogger extends AbstractFileTradeLogger {
 			// instead of a regular file.
 		}
 
+		// The index entries of the written trade records:
+		List<String> indexEntries = new ArrayList<>();
 		boolean done = false;
 		try (Writer writer = FileUtils.newUnbufferedWriter(
 				logFile,
@@ -249,17 +309,25 @@ public class CsvTradeLogger extends AbstractFileTradeLogger {
 				writer.flush();
 			}
 
+			// The byte offset of the next record:
+			long recordOffset = Files.size(logFile);
+
 			// Instead of closing and reopening the log file for each trade, we log all consecutive
 			// trades that need to be logged to the same log file before we close it again:
 			do {
 				// Write the new trade record:
-				writer.write(this.toCSVRecord(trade));
+				String record = this.toCSVRecord(trade);
+				writer.write(record);
 				writer.flush();
 
 				// If we did not throw an IOException up until this point, we assume that the trade
 				// has been successfully written to the trade log.
 				saveContext.onTradeSuccessfullySaved();
 
+				int recordLength = record.getBytes(StandardCharsets.UTF_8).length;
+				indexEntries.add(CsvTradeLogIndex.formatEntry(recordOffset, recordLength, trade));
+				recordOffset += recordLength;
+
 				// Get the next trade to save:
 				trade = saveContext.getNextUnsavedTrade();
 				if (trade == null) break; // There are no more trades to save
@@ -282,6 +350,9 @@ public class CsvTradeLogger extends AbstractFileTradeLogger {
 				// retry of the trade log attempt.
 				Log.severe("Failed to close the CSV trade log file!", e);
 			}
+		} finally {
+			// Update the index for all successfully written trades:
+			this.updateIndex(logFile, indexEntries);
 		}
 
 		// Recursively log the remaining trades to their target log files:
@@ -289,4 +360,141 @@ public class CsvTradeLogger extends AbstractFileTradeLogger {
 			this.writeTrades(saveContext);
 		}
 	}
+
+	private void updateIndex(Path logFile, List<? extends String> indexEntries) {
+		try {
+			CsvTradeLogIndex.appendEntries(logFile, indexEntries);
+		} catch (IOException e) {
+			// The index is only used to speed up queries: Records that are missing inside the index
+			// are read from the log file instead.
+			Log.warning(logPrefix + "Failed to update the index of the CSV trade log file!", e);
+		}
+	}
+
+	// QUERIES
+
+	@Override
+	public TradeLogQueryResult queryTrades(TradeLogQuery query) throws IOException {
+		UUID uniqueId = query.getUniqueId();
+		Instant since = query.getSince();
+		Predicate<CsvTradeLogIndex.Entry> filter = entry -> {
+			if (since != null && entry.getEpochSecond() < since.getEpochSecond()) return false;
+			switch (query.getTarget()) {
+			case SHOP:
+				return entry.getShopUniqueId().equals(uniqueId);
+			case PLAYER:
+			default:
+				return entry.getPlayerUniqueId().equals(uniqueId);
+			}
+		};
+
+		long skip = query.getOffset();
+		int pageSize = query.getPageSize();
+		List<LoggedTrade> trades = new ArrayList<>(pageSize);
+		// Newest log files first:
+		for (LocalDate date : this.getLogFileDates(since)) {
+			Path logFile = this.getLogFile(date);
+			List<CsvTradeLogIndex.Entry> entries = new ArrayList<>();
+			CsvTradeLogIndex.read(
+					logFile,
+					(record, offset, length) -> this.indexRecord(date, record, offset, length),
+					filter,
+					entries::add
+			);
+			if (entries.size() <= skip) {
+				skip -= entries.size();
+				continue;
+			}
+
+			// Newest records first:
+			try (SeekableByteChannel channel = Files.newByteChannel(logFile)) {
+				for (int i = entries.size() - 1 - (int) skip; i >= 0; i--) {
+					if (trades.size() == pageSize) {
+						return new TradeLogQueryResult(query, trades, true);
+					}
+					String record = CsvTradeLogIndex.readRecord(channel, entries.get(i));
+					trades.add(this.toLoggedTrade(date, CsvParser.parseRecord(record)));
+				}
+			}
+			skip = 0;
+		}
+		return new TradeLogQueryResult(query, trades, false);
+	}
+
+	// Ordered from newest to oldest.
+	private List<LocalDate> getLogFileDates(@Nullable Instant since) throws IOException {
+		List<LocalDate> dates = new ArrayList<>();
+		if (!Files.isDirectory(tradeLogsFolder)) return dates;
+
+		LocalDate sinceDate = (since != null) ? since.atZone(ZONE).toLocalDate() : null;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(tradeLogsFolder)) {
+			for (Path file : files) {
+				LocalDate date = getLogFileDate(file);
+				if (date == null) continue;
+				if (sinceDate != null && date.isBefore(sinceDate)) continue;
+				dates.add(date);
+			}
+		}
+		dates.sort(Collections.reverseOrder());
+		return dates;
+	}
+
+	private Instant getTimestamp(LocalDate date, String time) {
+		LocalTime localTime = LocalTime.parse(time, TIME_FORMAT);
+		return date.atTime(localTime).atZone(ZONE).toInstant();
+	}
+
+	private CsvTradeLogIndex.Entry indexRecord(
+			LocalDate date,
+			String record,
+			long offset,
+			int length
+	) {
+		List<String> fields = CsvParser.parseRecord(record);
+		return new CsvTradeLogIndex.Entry(
+				offset,
+				length,
+				this.getTimestamp(date, fields.get(COLUMN_TIME)).getEpochSecond(),
+				UUID.fromString(fields.get(COLUMN_SHOP_UUID)),
+				UUID.fromString(fields.get(COLUMN_PLAYER_UUID))
+		);
+	}
+
+	private LoggedTrade toLoggedTrade(LocalDate date, List<String> fields) {
+		@Nullable PlayerRecord shopOwner = null;
+		String shopOwnerUUID = fields.get(COLUMN_SHOP_OWNER_UUID);
+		if (!shopOwnerUUID.isEmpty()) {
+			shopOwner = PlayerRecord.of(
+					UUID.fromString(shopOwnerUUID),
+					fields.get(COLUMN_SHOP_OWNER_NAME)
+			);
+		}
+
+		@Nullable LoggedItem item2 = null;
+		String item2Type = fields.get(COLUMN_ITEM2_TYPE);
+		if (!item2Type.isEmpty()) {
+			item2 = new LoggedItem(item2Type, Integer.parseInt(fields.get(COLUMN_ITEM2_AMOUNT)));
+		}
+
+		return new LoggedTrade(
+				this.getTimestamp(date, fields.get(COLUMN_TIME)),
+				PlayerRecord.of(
+						UUID.fromString(fields.get(COLUMN_PLAYER_UUID)),
+						fields.get(COLUMN_PLAYER_NAME)
+				),
+				UUID.fromString(fields.get(COLUMN_SHOP_UUID)),
+				fields.get(COLUMN_SHOP_TYPE),
+				shopOwner,
+				new LoggedItem(
+						fields.get(COLUMN_ITEM1_TYPE),
+						Integer.parseInt(fields.get(COLUMN_ITEM1_AMOUNT))
+				),
+				item2,
+				new LoggedItem(
+						fields.get(COLUMN_RESULT_ITEM_TYPE),
+						Integer.parseInt(fields.get(COLUMN_RESULT_ITEM_AMOUNT))
+				),
+				Integer.parseInt(fields.get(COLUMN_TRADE_COUNT))
+		);
+	}
 }
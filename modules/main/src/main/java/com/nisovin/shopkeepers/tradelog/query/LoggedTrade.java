@@ -0,0 +1,201 @@
+package com.nisovin.shopkeepers.tradelog.query;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.tradelog.data.PlayerRecord;
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * A trade as it has been read back from the trade log.
+ * <p>
+ * Unlike the original {@link com.nisovin.shopkeepers.tradelog.data.TradeRecord}, this only provides
+ * the types and amounts of the traded items, but not their metadata.
+ */
+public final class LoggedTrade {
+
+	/**
+	 * The type and amount of a traded item.
+	 */
+	public static final class LoggedItem {
+
+		private final String type;
+		private final int amount;
+
+		/**
+		 * Creates a new {@link LoggedItem}.
+		 * 
+		 * @param type
+		 *            the name of the item type, not <code>null</code> or empty
+		 * @param amount
+		 *            the item amount
+		 */
+		public LoggedItem(String type, int amount) {
+			Validate.notEmpty(type, "type is null or empty");
+			this.type = type;
+			this.amount = amount;
+		}
+
+		/**
+		 * Gets the name of the item type.
+		 * 
+		 * @return the item type
+		 */
+		public String getType() {
+			return type;
+		}
+
+		/**
+		 * Gets the item amount.
+		 * 
+		 * @return the amount
+		 */
+		public int getAmount() {
+			return amount;
+		}
+	}
+
+	private final Instant timestamp;
+	private final PlayerRecord player;
+	private final UUID shopUniqueId;
+	private final String shopTypeId;
+	private final @Nullable PlayerRecord shopOwner;
+	private final LoggedItem item1;
+	private final @Nullable LoggedItem item2;
+	private final LoggedItem resultItem;
+	private final int tradeCount;
+
+	/**
+	 * Creates a new {@link LoggedTrade}.
+	 * 
+	 * @param timestamp
+	 *            the timestamp, not <code>null</code>
+	 * @param player
+	 *            the trading player, not <code>null</code>
+	 * @param shopUniqueId
+	 *            the shop's unique id, not <code>null</code>
+	 * @param shopTypeId
+	 *            the shop type id, not <code>null</code>
+	 * @param shopOwner
+	 *            the shop owner, or <code>null</code> for admin shops
+	 * @param item1
+	 *            the first item, not <code>null</code>
+	 * @param item2
+	 *            the second item, can be <code>null</code>
+	 * @param resultItem
+	 *            the result item, not <code>null</code>
+	 * @param tradeCount
+	 *            the number of merged equal trades, positive
+	 */
+	public LoggedTrade(
+			Instant timestamp,
+			PlayerRecord player,
+			UUID shopUniqueId,
+			String shopTypeId,
+			@Nullable PlayerRecord shopOwner,
+			LoggedItem item1,
+			@Nullable LoggedItem item2,
+			LoggedItem resultItem,
+			int tradeCount
+	) {
+		Validate.notNull(timestamp, "timestamp is null");
+		Validate.notNull(player, "player is null");
+		Validate.notNull(shopUniqueId, "shopUniqueId is null");
+		Validate.notNull(shopTypeId, "shopTypeId is null");
+		Validate.notNull(item1, "item1 is null");
+		Validate.notNull(resultItem, "resultItem is null");
+		Validate.isTrue(tradeCount > 0, "tradeCount has to be positive");
+		this.timestamp = timestamp;
+		this.player = player;
+		this.shopUniqueId = shopUniqueId;
+		this.shopTypeId = shopTypeId;
+		this.shopOwner = shopOwner;
+		this.item1 = item1;
+		this.item2 = item2;
+		this.resultItem = resultItem;
+		this.tradeCount = tradeCount;
+	}
+
+	/**
+	 * Gets the timestamp of the trade.
+	 * 
+	 * @return the timestamp
+	 */
+	public Instant getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Gets the trading player.
+	 * 
+	 * @return the trading player
+	 */
+	public PlayerRecord getPlayer() {
+		return player;
+	}
+
+	/**
+	 * Gets the unique id of the shop.
+	 * 
+	 * @return the shop's unique id
+	 */
+	public UUID getShopUniqueId() {
+		return shopUniqueId;
+	}
+
+	/**
+	 * Gets the shop type id.
+	 * 
+	 * @return the shop type id
+	 */
+	public String getShopTypeId() {
+		return shopTypeId;
+	}
+
+	/**
+	 * Gets the shop owner at the time of the trade.
+	 * 
+	 * @return the shop owner, or <code>null</code> for admin shops
+	 */
+	public @Nullable PlayerRecord getShopOwner() {
+		return shopOwner;
+	}
+
+	/**
+	 * Gets the first item.
+	 * 
+	 * @return the first item
+	 */
+	public LoggedItem getItem1() {
+		return item1;
+	}
+
+	/**
+	 * Gets the second item.
+	 * 
+	 * @return the second item, or <code>null</code>
+	 */
+	public @Nullable LoggedItem getItem2() {
+		return item2;
+	}
+
+	/**
+	 * Gets the result item.
+	 * 
+	 * @return the result item
+	 */
+	public LoggedItem getResultItem() {
+		return resultItem;
+	}
+
+	/**
+	 * Gets the number of equal trades that have been merged into this logged trade.
+	 * 
+	 * @return the trade count
+	 */
+	public int getTradeCount() {
+		return tradeCount;
+	}
+}
@@ -0,0 +1,180 @@
+package com.nisovin.shopkeepers.tradelog.query;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * An immutable query for the logged trades of a specific shop or player.
+ * <p>
+ * The matching trades are ordered from newest to oldest and returned in pages of a fixed size.
+ */
+public final class TradeLogQuery {
+
+	/**
+	 * The kind of entity whose trades are queried.
+	 */
+	public enum Target {
+		/**
+		 * Queries the trades of a specific shop.
+		 */
+		SHOP,
+		/**
+		 * Queries the trades of a specific trading player.
+		 */
+		PLAYER;
+	}
+
+	/**
+	 * Creates a query for the trades of the specified shop.
+	 * 
+	 * @param shopUniqueId
+	 *            the shop's unique id, not <code>null</code>
+	 * @param since
+	 *            the earliest timestamp of the trades to include, or <code>null</code> to include
+	 *            all trades
+	 * @param page
+	 *            the page, starting at <code>1</code>
+	 * @param pageSize
+	 *            the maximum number of trades per page, has to be positive
+	 * @return the query
+	 */
+	public static TradeLogQuery ofShop(
+			UUID shopUniqueId,
+			@Nullable Instant since,
+			int page,
+			int pageSize
+	) {
+		return new TradeLogQuery(Target.SHOP, shopUniqueId, since, page, pageSize);
+	}
+
+	/**
+	 * Creates a query for the trades of the specified trading player.
+	 * 
+	 * @param playerUniqueId
+	 *            the player's unique id, not <code>null</code>
+	 * @param since
+	 *            the earliest timestamp of the trades to include, or <code>null</code> to include
+	 *            all trades
+	 * @param page
+	 *            the page, starting at <code>1</code>
+	 * @param pageSize
+	 *            the maximum number of trades per page, has to be positive
+	 * @return the query
+	 */
+	public static TradeLogQuery ofPlayer(
+			UUID playerUniqueId,
+			@Nullable Instant since,
+			int page,
+			int pageSize
+	) {
+		return new TradeLogQuery(Target.PLAYER, playerUniqueId, since, page, pageSize);
+	}
+
+	private final Target target;
+	private final UUID uniqueId;
+	// Trade logs only store the time with a precision of seconds (CSV), so we truncate this:
+	private final @Nullable Instant since;
+	private final int page;
+	private final int pageSize;
+
+	private TradeLogQuery(
+			Target target,
+			UUID uniqueId,
+			@Nullable Instant since,
+			int page,
+			int pageSize
+	) {
+		Validate.notNull(target, "target is null");
+		Validate.notNull(uniqueId, "uniqueId is null");
+		Validate.isTrue(page >= 1, "page has to be positive");
+		Validate.isTrue(pageSize >= 1, "pageSize has to be positive");
+		this.target = target;
+		this.uniqueId = uniqueId;
+		this.since = (since != null) ? since.truncatedTo(ChronoUnit.SECONDS) : null;
+		this.page = page;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Gets the kind of entity whose trades are queried.
+	 * 
+	 * @return the target
+	 */
+	public Target getTarget() {
+		return target;
+	}
+
+	/**
+	 * Gets the unique id of the shop or player whose trades are queried.
+	 * 
+	 * @return the unique id
+	 */
+	public UUID getUniqueId() {
+		return uniqueId;
+	}
+
+	/**
+	 * Gets the earliest timestamp of the trades to include.
+	 * <p>
+	 * This is truncated to seconds.
+	 * 
+	 * @return the earliest timestamp, or <code>null</code> to include all trades
+	 */
+	public @Nullable Instant getSince() {
+		return since;
+	}
+
+	/**
+	 * Gets the page to retrieve.
+	 * 
+	 * @return the page, starting at <code>1</code>
+	 */
+	public int getPage() {
+		return page;
+	}
+
+	/**
+	 * Gets the maximum number of trades per page.
+	 * 
+	 * @return the page size
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Gets the number of matching trades to skip before the requested page.
+	 * 
+	 * @return the offset
+	 */
+	public long getOffset() {
+		return (long) (page - 1) * pageSize;
+	}
+
+	/**
+	 * Checks if the given timestamp is not before the {@link #getSince() earliest timestamp} of
+	 * this query.
+	 * 
+	 * @param timestamp
+	 *            the timestamp, not <code>null</code>
+	 * @return <code>true</code> if the timestamp is included by this query
+	 */
+	public boolean includes(Instant timestamp) {
+		Instant since = this.since;
+		return since == null || !timestamp.isBefore(since);
+	}
+
+	@Override
+	public String toString() {
+		return "TradeLogQuery [target=" + target
+				+ ", uniqueId=" + uniqueId
+				+ ", since=" + since
+				+ ", page=" + page
+				+ ", pageSize=" + pageSize + "]";
+	}
+}
@@ -0,0 +1,69 @@
+package com.nisovin.shopkeepers.tradelog.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * The result of a {@link TradeLogQuery}: A single page of matching trades.
+ */
+public final class TradeLogQueryResult {
+
+	private final TradeLogQuery query;
+	private final List<? extends LoggedTrade> trades;
+	private final boolean hasMore;
+
+	/**
+	 * Creates a new {@link TradeLogQueryResult}.
+	 * 
+	 * @param query
+	 *            the query, not <code>null</code>
+	 * @param trades
+	 *            the trades of the requested page, ordered from newest to oldest, not
+	 *            <code>null</code>
+	 * @param hasMore
+	 *            <code>true</code> if there are more (older) matching trades after the requested
+	 *            page
+	 */
+	public TradeLogQueryResult(
+			TradeLogQuery query,
+			List<? extends LoggedTrade> trades,
+			boolean hasMore
+	) {
+		Validate.notNull(query, "query is null");
+		Validate.notNull(trades, "trades is null");
+		Validate.isTrue(trades.size() <= query.getPageSize(), "trades exceed the page size");
+		this.query = query;
+		this.trades = Collections.unmodifiableList(new ArrayList<>(trades));
+		this.hasMore = hasMore;
+	}
+
+	/**
+	 * Gets the query.
+	 * 
+	 * @return the query
+	 */
+	public TradeLogQuery getQuery() {
+		return query;
+	}
+
+	/**
+	 * Gets the trades of the requested page.
+	 * 
+	 * @return an unmodifiable view on the trades, ordered from newest to oldest
+	 */
+	public List<? extends LoggedTrade> getTrades() {
+		return trades;
+	}
+
+	/**
+	 * Checks if there are more (older) matching trades after the requested page.
+	 * 
+	 * @return <code>true</code> if there are more trades
+	 */
+	public boolean hasMore() {
+		return hasMore;
+	}
+}
@@ -3,87 +3,290 @@ package com.nisovin.shopkeepers.tradelog.sqlite;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import org.bukkit.plugin.Plugin;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import com.nisovin.shopkeepers.api.util.UnmodifiableItemStack;
+import com.nisovin.shopkeepers.tradelog.QueryableTradeLogger;
 import com.nisovin.shopkeepers.tradelog.TradeLogStorageType;
 import com.nisovin.shopkeepers.tradelog.base.AbstractFileTradeLogger;
 import com.nisovin.shopkeepers.tradelog.data.PlayerRecord;
 import com.nisovin.shopkeepers.tradelog.data.ShopRecord;
 import com.nisovin.shopkeepers.tradelog.data.TradeRecord;
+import com.nisovin.shopkeepers.tradelog.query.LoggedTrade;
+import com.nisovin.shopkeepers.tradelog.query.LoggedTrade.LoggedItem;
+import com.nisovin.shopkeepers.tradelog.query.TradeLogQuery;
+import com.nisovin.shopkeepers.tradelog.query.TradeLogQueryResult;
+import com.nisovin.shopkeepers.util.java.LRUCache;
 import com.nisovin.shopkeepers.util.logging.Log;
 
 /**
  * Logs trades to an SQLite database.
+ * <p>
+ * The players, shops, and items that are involved in the trades are stored only once inside
+ * separate dictionary tables and referenced by the logged trades via their ids. The view
+ * 'trade_view' joins these tables and provides the logged trades in the same flat format that was
+ * used by earlier versions.
  */
-public class SQLiteTradeLogger extends AbstractFileTradeLogger {
+public class SQLiteTradeLogger extends AbstractFileTradeLogger implements QueryableTradeLogger {
 
 	private static final String FILE_NAME = "trades.db";
-	private static final String TABLE_NAME = "trade";
+
+	// The schema version is stored as the database's user version:
+	// 0: A single flat trade table that stores all player, shop, and item data inside each row.
+	// 1: Players, shops, and items are stored in separate dictionary tables.
+	private static final int SCHEMA_VERSION = 1;
+
+	private static final String PLAYER_TABLE = "player";
+	private static final String SHOP_TABLE = "shop";
+	private static final String ITEM_TABLE = "item";
+	private static final String TRADE_TABLE = "trade";
+	private static final String TRADE_VIEW = "trade_view";
+	// The flat trade table of schema version 0 is renamed to this during the migration:
+	private static final String LEGACY_TRADE_TABLE = "trade_legacy";
+
+	// Timestamps are stored as ISO 8601 UTC date times with a fixed number of fraction digits.
+	// Unlike Instant#toString, which omits trailing zero fraction digits, this ensures that the
+	// lexicographic order of the stored timestamps matches their chronological order.
+	private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter
+			.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSSSSSSS'Z'")
+			.withZone(ZoneOffset.UTC);
+
+	// Joins the trade table with the dictionary tables:
+	private static final String TRADE_JOINS = "FROM " + TRADE_TABLE + " t "
+			+ "JOIN " + PLAYER_TABLE + " p ON p.id = t.player_id "
+			+ "JOIN " + SHOP_TABLE + " s ON s.id = t.shop_id "
+			+ "LEFT JOIN " + PLAYER_TABLE + " o ON o.id = s.owner_id "
+			+ "JOIN " + ITEM_TABLE + " i1 ON i1.id = t.item_1_id "
+			+ "LEFT JOIN " + ITEM_TABLE + " i2 ON i2.id = t.item_2_id "
+			+ "JOIN " + ITEM_TABLE + " r ON r.id = t.result_item_id";
+
 	// Note: SQLite does not have rigid data types, but storage classes and type affinity. The data
 	// types specified here are not enforced by SQLite or us, but only used to document the expected
 	// structure of the data.
-	private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
-			+ "timestamp VARCHAR(30) NOT NULL, " // ISO 8601 UTC date time with fractional seconds
-			+ "player_uuid CHARACTER(36) NOT NULL, "
-			+ "player_name VARCHAR(16) NOT NULL, "
-			+ "shop_uuid CHARACTER(36) NOT NULL, "
-			+ "shop_type VARCHAR(32) NOT NULL, "
-			+ "shop_world VARCHAR(32), " // Null for virtual shops
-			+ "shop_x INTEGER NOT NULL, " // 0 for virtual shops
-			+ "shop_y INTEGER NOT NULL, "
-			+ "shop_z INTEGER NOT NULL, "
-			+ "shop_owner_uuid CHARACTER(36), " // Shop owner, null for admin shops
-			+ "shop_owner_name VARCHAR(16), "
-			+ "item_1_type VARCHAR(64) NOT NULL, "
-			+ "item_1_amount TINYINT UNSIGNED NOT NULL, "
-			+ "item_1_metadata TEXT NOT NULL, " // Empty string if the item has no metadata
-			+ "item_2_type VARCHAR(64), " // Second item is optional and can thus be null
-			+ "item_2_amount TINYINT UNSIGNED, "
-			+ "item_2_metadata TEXT, "
-			+ "result_item_type VARCHAR(64) NOT NULL, "
-			+ "result_item_amount TINYINT UNSIGNED NOT NULL, "
-			+ "result_item_metadata TEXT NOT NULL, "
-			+ "trade_count SMALLINT UNSIGNED NOT NULL"
-			+ ");";
-	private static final String INSERT_TRADE = "INSERT INTO " + TABLE_NAME
-			+ "(timestamp, "
+	private static final List<String> CREATE_SCHEMA = Collections.unmodifiableList(Arrays.asList(
+			"CREATE TABLE IF NOT EXISTS " + PLAYER_TABLE + " ("
+					+ "id INTEGER PRIMARY KEY, "
+					+ "uuid CHARACTER(36) NOT NULL, "
+					+ "name VARCHAR(16) NOT NULL"
+					+ ");",
+			"CREATE INDEX IF NOT EXISTS " + PLAYER_TABLE + "_uuid ON " + PLAYER_TABLE + "(uuid);",
+			"CREATE TABLE IF NOT EXISTS " + SHOP_TABLE + " ("
+					+ "id INTEGER PRIMARY KEY, "
+					+ "uuid CHARACTER(36) NOT NULL, "
+					+ "type VARCHAR(32) NOT NULL, "
+					+ "world VARCHAR(32), " // Null for virtual shops
+					+ "x INTEGER NOT NULL, " // 0 for virtual shops
+					+ "y INTEGER NOT NULL, "
+					+ "z INTEGER NOT NULL, "
+					+ "owner_id INTEGER REFERENCES " + PLAYER_TABLE + "(id)" // Null for admin shops
+					+ ");",
+			"CREATE INDEX IF NOT EXISTS " + SHOP_TABLE + "_uuid ON " + SHOP_TABLE + "(uuid);",
+			"CREATE TABLE IF NOT EXISTS " + ITEM_TABLE + " ("
+					+ "id INTEGER PRIMARY KEY, "
+					+ "hash INTEGER NOT NULL, " // Hash of the type and metadata, for fast lookups
+					+ "type VARCHAR(64) NOT NULL, "
+					+ "metadata TEXT NOT NULL" // Empty string if the item has no metadata
+					+ ");",
+			"CREATE INDEX IF NOT EXISTS " + ITEM_TABLE + "_hash ON " + ITEM_TABLE + "(hash);",
+			"CREATE TABLE IF NOT EXISTS " + TRADE_TABLE + " ("
+					+ "timestamp CHARACTER(30) NOT NULL, " // See TIMESTAMP_FORMAT
+					+ "player_id INTEGER NOT NULL REFERENCES " + PLAYER_TABLE + "(id), "
+					+ "shop_id INTEGER NOT NULL REFERENCES " + SHOP_TABLE + "(id), "
+					+ "item_1_id INTEGER NOT NULL REFERENCES " + ITEM_TABLE + "(id), "
+					+ "item_1_amount TINYINT UNSIGNED NOT NULL, "
+					// Second item is optional and can thus be null:
+					+ "item_2_id INTEGER REFERENCES " + ITEM_TABLE + "(id), "
+					+ "item_2_amount TINYINT UNSIGNED, "
+					+ "result_item_id INTEGER NOT NULL REFERENCES " + ITEM_TABLE + "(id), "
+					+ "result_item_amount TINYINT UNSIGNED NOT NULL, "
+					+ "trade_count SMALLINT UNSIGNED NOT NULL"
+					+ ");",
+			// Speed up the typical queries for the trades of specific shops or players, or within a
+			// certain time range. The timestamp column allows these queries to filter and sort the
+			// trades of a shop or player via the index:
+			"CREATE INDEX IF NOT EXISTS " + TRADE_TABLE + "_shop_id ON " + TRADE_TABLE
+					+ "(shop_id, timestamp);",
+			"CREATE INDEX IF NOT EXISTS " + TRADE_TABLE + "_player_id ON " + TRADE_TABLE
+					+ "(player_id, timestamp);",
+			"CREATE INDEX IF NOT EXISTS " + TRADE_TABLE + "_timestamp ON " + TRADE_TABLE + "(timestamp);",
+			"CREATE VIEW IF NOT EXISTS " + TRADE_VIEW + " AS SELECT "
+					+ "t.timestamp AS timestamp, "
+					+ "p.uuid AS player_uuid, p.name AS player_name, "
+					+ "s.uuid AS shop_uuid, s.type AS shop_type, s.world AS shop_world, "
+					+ "s.x AS shop_x, s.y AS shop_y, s.z AS shop_z, "
+					+ "o.uuid AS shop_owner_uuid, o.name AS shop_owner_name, "
+					+ "i1.type AS item_1_type, t.item_1_amount AS item_1_amount, "
+					+ "i1.metadata AS item_1_metadata, "
+					+ "i2.type AS item_2_type, t.item_2_amount AS item_2_amount, "
+					+ "i2.metadata AS item_2_metadata, "
+					+ "r.type AS result_item_type, t.result_item_amount AS result_item_amount, "
+					+ "r.metadata AS result_item_metadata, "
+					+ "t.trade_count AS trade_count "
+					+ TRADE_JOINS + ";"
+	));
+
+	private static final String SELECT_PLAYER = "SELECT id FROM " + PLAYER_TABLE
+			+ " WHERE uuid = ? AND name = ?";
+	private static final String INSERT_PLAYER = "INSERT INTO " + PLAYER_TABLE
+			+ "(uuid, name) VALUES(?, ?)";
+	// 'IS' also matches null values:
+	private static final String SELECT_SHOP = "SELECT id FROM " + SHOP_TABLE
+			+ " WHERE uuid = ? AND type = ? AND world IS ? AND x = ? AND y = ? AND z = ?"
+			+ " AND owner_id IS ?";
+	private static final String INSERT_SHOP = "INSERT INTO " + SHOP_TABLE
+			+ "(uuid, type, world, x, y, z, owner_id) VALUES(?, ?, ?, ?, ?, ?, ?)";
+	private static final String SELECT_ITEM = "SELECT id FROM " + ITEM_TABLE
+			+ " WHERE hash = ? AND type = ? AND metadata = ?";
+	private static final String INSERT_ITEM = "INSERT INTO " + ITEM_TABLE
+			+ "(hash, type, metadata) VALUES(?, ?, ?)";
+	private static final String INSERT_TRADE = "INSERT INTO " + TRADE_TABLE
+			+ "(timestamp, player_id, shop_id, "
+			+ "item_1_id, item_1_amount, "
+			+ "item_2_id, item_2_amount, "
+			+ "result_item_id, result_item_amount, "
+			+ "trade_count) "
+			+ "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+	private static final String SELECT_LEGACY_TRADES = "SELECT "
+			+ "timestamp, "
 			+ "player_uuid, player_name, "
 			+ "shop_uuid, shop_type, shop_world, shop_x, shop_y, shop_z, "
 			+ "shop_owner_uuid, shop_owner_name, "
 			+ "item_1_type, item_1_amount, item_1_metadata, "
 			+ "item_2_type, item_2_amount, item_2_metadata, "
 			+ "result_item_type, result_item_amount, result_item_metadata, "
-			+ "trade_count) "
-			+ "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+			+ "trade_count, "
+			+ "rowid "
+			+ "FROM " + LEGACY_TRADE_TABLE + " ORDER BY rowid LIMIT ?";
+	private static final String DELETE_LEGACY_TRADES = "DELETE FROM " + LEGACY_TRADE_TABLE
+			+ " WHERE rowid <= ?";
+	private static final int MIGRATION_BATCH_SIZE = 1000;
+
+	// The shop or player is looked up via its uuid index first. The trades of the matching shop or
+	// player ids are then filtered and sorted via the composite trade indices. Since all timestamps
+	// have the same fixed-width format, they can be compared as Strings.
+	private static final String SELECT_TRADES = "SELECT "
+			+ "t.timestamp AS timestamp, "
+			+ "p.uuid AS player_uuid, p.name AS player_name, "
+			+ "s.uuid AS shop_uuid, s.type AS shop_type, "
+			+ "o.uuid AS shop_owner_uuid, o.name AS shop_owner_name, "
+			+ "i1.type AS item_1_type, t.item_1_amount AS item_1_amount, "
+			+ "i2.type AS item_2_type, t.item_2_amount AS item_2_amount, "
+			+ "r.type AS result_item_type, t.result_item_amount AS result_item_amount, "
+			+ "t.trade_count AS trade_count "
+			+ TRADE_JOINS + " "
+			+ "WHERE t.%1$s_id IN (SELECT id FROM %1$s WHERE uuid = ?) AND t.timestamp >= ? "
+			+ "ORDER BY t.timestamp DESC LIMIT ? OFFSET ?";
+	private static final String SELECT_SHOP_TRADES = String.format(SELECT_TRADES, SHOP_TABLE);
+	private static final String SELECT_PLAYER_TRADES = String.format(SELECT_TRADES, PLAYER_TABLE);
+
+	// The number of recently used players, shops, and items whose ids are cached:
+	private static final int ID_CACHE_SIZE = 1000;
 
 	private final String connectionURL;
 
 	private volatile @Nullable String setupFailureReason = null;
 
+	// The connection is kept open and reused across writes. It is only used by the single writer,
+	// the async setup, and when the trade logger is closed. The lock guards against any overlap of
+	// these.
+	private final Object connectionLock = new Object();
+	private @Nullable Connection connection = null;
+	// Prepared statements by their SQL:
+	private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+	// The ids of recently used players, shops, and items, by their data. These avoid database
+	// lookups for the players, shops, and items that are involved in the trades over and over.
+	// These are cleared whenever a transaction fails, since they might then contain the ids of
+	// rolled back rows.
+	private final Map<String, Long> playerIds = new LRUCache<>(ID_CACHE_SIZE);
+	private final Map<String, Long> shopIds = new LRUCache<>(ID_CACHE_SIZE);
+	private final Map<String, Long> itemIds = new LRUCache<>(ID_CACHE_SIZE);
+
 	public SQLiteTradeLogger(Plugin plugin) {
 		super(plugin, TradeLogStorageType.SQLITE);
 
 		this.connectionURL = "jdbc:sqlite:" + tradeLogsFolder.resolve(FILE_NAME);
-
-		this.createTable();
 	}
 
+	// Opens a new connection if there is no open connection yet.
 	private Connection getConnection() throws SQLException {
-		return DriverManager.getConnection(connectionURL);
+		assert Thread.holdsLock(connectionLock);
+		Connection connection = this.connection;
+		if (connection != null) return connection;
+
+		connection = DriverManager.getConnection(connectionURL);
+		try (Statement statement = connection.createStatement()) {
+			// With write-ahead logging, commits only append to the log file, and readers (e.g.
+			// external tools that query the trade log) do not block the writer:
+			statement.execute("PRAGMA journal_mode=WAL;");
+		} catch (SQLException e) {
+			this.closeQuietly(connection);
+			throw e;
+		}
+		// Each batch of trades is inserted within a single transaction:
+		connection.setAutoCommit(false);
+		this.connection = connection;
+		return connection;
+	}
+
+	private PreparedStatement getStatement(String sql) throws SQLException {
+		assert Thread.holdsLock(connectionLock);
+		PreparedStatement statement = statements.get(sql);
+		if (statement == null) {
+			statement = this.getConnection().prepareStatement(sql);
+			statements.put(sql, statement);
+		}
+		return statement;
+	}
+
+	private void closeConnection() {
+		assert Thread.holdsLock(connectionLock);
+		statements.values().forEach(this::closeQuietly);
+		statements.clear();
+
+		// The cached ids might refer to rows of a rolled back transaction:
+		playerIds.clear();
+		shopIds.clear();
+		itemIds.clear();
+
+		Connection connection = this.connection;
+		if (connection != null) {
+			this.connection = null;
+			this.closeQuietly(connection);
+		}
+	}
+
+	// Any exceptions are logged but otherwise ignored.
+	private void closeQuietly(AutoCloseable closeable) {
+		try {
+			closeable.close();
+		} catch (Exception e) {
+			Log.severe(logPrefix + "Failed to close database resource!", e);
+		}
 	}
 
 	@Override
 	protected void asyncSetup() {
 		super.asyncSetup();
 
-		this.createTable();
+		this.setupDatabase();
 	}
 
 	@Override
@@ -94,106 +297,475 @@ public class SQLiteTradeLogger extends AbstractFileTradeLogger {
 		}
 	}
 
-	private void createTable() {
-		try (	Connection connection = getConnection();
-				Statement statement = connection.createStatement()) {
-			statement.execute(CREATE_TABLE);
-		} catch (SQLException e) {
-			setupFailureReason = "Could not create table '" + TABLE_NAME + "'.";
-			Log.severe(logPrefix + setupFailureReason, e);
+	private void setupDatabase() {
+		synchronized (connectionLock) {
+			try {
+				Connection connection = this.getConnection();
+				int schemaVersion = this.getSchemaVersion(connection);
+				if (schemaVersion > SCHEMA_VERSION) {
+					setupFailureReason = "Unsupported database schema version: " + schemaVersion;
+					Log.severe(logPrefix + setupFailureReason);
+					this.closeConnection();
+					return;
+				}
+
+				if (schemaVersion == 0 && this.tableExists(connection, TRADE_TABLE)) {
+					// Move the old trade table out of the way:
+					try (Statement statement = connection.createStatement()) {
+						statement.execute("ALTER TABLE " + TRADE_TABLE
+								+ " RENAME TO " + LEGACY_TRADE_TABLE + ";");
+						// Remove the indices of the old trade table (they would otherwise clash
+						// with the indices of the new trade table):
+						statement.execute("DROP INDEX IF EXISTS " + TRADE_TABLE + "_shop_uuid;");
+						statement.execute("DROP INDEX IF EXISTS " + TRADE_TABLE + "_player_uuid;");
+						statement.execute("DROP INDEX IF EXISTS " + TRADE_TABLE + "_timestamp;");
+					}
+				}
+
+				try (Statement statement = connection.createStatement()) {
+					for (String sql : CREATE_SCHEMA) {
+						statement.execute(sql);
+					}
+				}
+
+				// The schema version is updated together with the renaming of the legacy trade
+				// table, so that an interrupted migration is resumed on the next setup:
+				if (schemaVersion != SCHEMA_VERSION) {
+					try (Statement statement = connection.createStatement()) {
+						statement.execute("PRAGMA user_version = " + SCHEMA_VERSION + ";");
+					}
+				}
+				connection.commit();
+
+				if (this.tableExists(connection, LEGACY_TRADE_TABLE)) {
+					this.migrateLegacyTrades(connection);
+				}
+			} catch (SQLException e) {
+				this.closeConnection(); // Also rolls back any uncommitted migration batch
+				setupFailureReason = "Could not set up the database.";
+				Log.severe(logPrefix + setupFailureReason, e);
+			}
+		}
+	}
+
+	private int getSchemaVersion(Connection connection) throws SQLException {
+		try (	Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery("PRAGMA user_version;")) {
+			return resultSet.next() ? resultSet.getInt(1) : 0;
+		}
+	}
+
+	private boolean tableExists(Connection connection, String tableName) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(
+				"SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?"
+		)) {
+			statement.setString(1, tableName);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				return resultSet.next();
+			}
+		}
+	}
+
+	// Moves the trades of the flat legacy trade table into the new tables, and then removes the
+	// legacy trade table. The trades are moved in batches, each within its own transaction, so
+	// that large trade logs do not result in a single huge transaction. If the migration is
+	// interrupted, the already moved trades have been removed from the legacy trade table and the
+	// migration continues with the remaining trades during the next setup.
+	private void migrateLegacyTrades(Connection connection) throws SQLException {
+		Log.info(logPrefix + "Migrating the logged trades to the new database schema. "
+				+ "This may take a while ...");
+		long startNanos = System.nanoTime();
+		int migrated = 0;
+		PreparedStatement selectStatement = this.getStatement(SELECT_LEGACY_TRADES);
+		PreparedStatement deleteStatement = this.getStatement(DELETE_LEGACY_TRADES);
+		PreparedStatement insertStatement = this.getStatement(INSERT_TRADE);
+		selectStatement.setInt(1, MIGRATION_BATCH_SIZE);
+		int batchSize;
+		do {
+			batchSize = 0;
+			long lastRowId = 0L;
+			try (ResultSet row = selectStatement.executeQuery()) {
+				while (row.next()) {
+					batchSize++;
+					lastRowId = row.getLong("rowid");
+					this.migrateLegacyTrade(insertStatement, row);
+				}
+			}
+			if (batchSize == 0) break;
+
+			insertStatement.executeBatch();
+			deleteStatement.setLong(1, lastRowId);
+			deleteStatement.executeUpdate();
+			connection.commit();
+			migrated += batchSize;
+		} while (batchSize == MIGRATION_BATCH_SIZE);
+
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("DROP TABLE " + LEGACY_TRADE_TABLE + ";");
+		}
+		connection.commit();
+
+		long durationMillis = (System.nanoTime() - startNanos) / 1_000_000L;
+		Log.info(logPrefix + "Migrated " + migrated + " trades (" + durationMillis + " ms). "
+				+ "Consider running 'VACUUM' on the database to reclaim the freed disk space.");
+	}
+
+	private void migrateLegacyTrade(PreparedStatement insertStatement, ResultSet row)
+			throws SQLException {
+		long playerId = this.getPlayerId(
+				getString(row, "player_uuid"),
+				getString(row, "player_name")
+		);
+		@Nullable Long shopOwnerId = null;
+		String shopOwnerUUID = row.getString("shop_owner_uuid");
+		if (shopOwnerUUID != null) {
+			shopOwnerId = this.getPlayerId(
+					shopOwnerUUID,
+					getString(row, "shop_owner_name")
+			);
+		}
+		long shopId = this.getShopId(
+				getString(row, "shop_uuid"),
+				getString(row, "shop_type"),
+				row.getString("shop_world"),
+				row.getInt("shop_x"),
+				row.getInt("shop_y"),
+				row.getInt("shop_z"),
+				shopOwnerId
+		);
+
+		long item1Id = this.getItemId(
+				getString(row, "item_1_type"),
+				getString(row, "item_1_metadata")
+		);
+		@Nullable Long item2Id = null;
+		@Nullable Integer item2Amount = null;
+		String item2Type = row.getString("item_2_type");
+		if (item2Type != null) {
+			item2Id = this.getItemId(item2Type, getString(row, "item_2_metadata"));
+			item2Amount = row.getInt("item_2_amount");
+		}
+		long resultItemId = this.getItemId(
+				getString(row, "result_item_type"),
+				getString(row, "result_item_metadata")
+		);
+
+		this.addTrade(
+				insertStatement,
+				// Normalize the timestamp to the fixed-width format:
+				formatTimestamp(Instant.parse(getString(row, "timestamp"))),
+				playerId,
+				shopId,
+				item1Id,
+				row.getInt("item_1_amount"),
+				item2Id,
+				item2Amount,
+				resultItemId,
+				row.getInt("result_item_amount"),
+				row.getInt("trade_count")
+		);
+	}
+
+	private static String formatTimestamp(Instant timestamp) {
+		return TIMESTAMP_FORMAT.format(timestamp);
+	}
+
+	private static String getString(ResultSet resultSet, String column) throws SQLException {
+		String value = resultSet.getString(column);
+		if (value == null) {
+			throw new SQLException("Missing value for column '" + column + "'!");
+		}
+		return value;
+	}
+
+	@Override
+	protected void onClose() {
+		synchronized (connectionLock) {
+			this.closeConnection();
 		}
 	}
 
 	@Override
 	protected void writeTrades(SaveContext saveContext) throws Exception {
-		TradeRecord trade = saveContext.getNextUnsavedTrade();
-		if (trade == null) return; // There are no unsaved trades
-
-		boolean done = false;
-		// TODO Keep the connection open? Cache the PreparedStatement?
-		try (	Connection connection = this.getConnection();
-				PreparedStatement insertStatement = connection.prepareStatement(INSERT_TRADE)) {
-			do {
-				this.insertTrade(insertStatement, trade);
-
-				// Trade successfully saved:
-				saveContext.onTradeSuccessfullySaved();
-
-				// Get the next trade to insert:
-				trade = saveContext.getNextUnsavedTrade();
-				if (trade == null) break; // There are no more trades to save
-			} while (true);
-
-			// We are about to close the connection:
-			done = true;
-		} catch (SQLException e) {
-			if (!done) {
+		List<? extends TradeRecord> trades = saveContext.getUnsavedTrades();
+		if (trades.isEmpty()) return; // There are no unsaved trades
+
+		int tradeCount = trades.size();
+		synchronized (connectionLock) {
+			try {
+				Connection connection = this.getConnection();
+				PreparedStatement insertStatement = this.getStatement(INSERT_TRADE);
+				for (TradeRecord trade : trades) {
+					this.addTrade(insertStatement, trade);
+				}
+
+				// All trades of the batch are inserted within a single transaction. If the
+				// transaction fails, none of the trades are inserted and the whole remaining batch
+				// is retried.
+				insertStatement.executeBatch();
+				connection.commit();
+			} catch (SQLException e) {
+				// Discard the connection (this also rolls back the transaction): The next attempt
+				// opens a new connection.
+				this.closeConnection();
 				throw e;
-			} else {
-				// Since all inserts completed successfully, we assume that the trades have been
-				// successfully saved. We therefore ignore any exceptions raised during the closing
-				// of the connection: The exception is still logged, but it does not trigger a retry
-				// of the trade log attempt.
-				Log.severe("Failed to close the database connection!", e);
 			}
 		}
+
+		// Trades successfully saved:
+		saveContext.onTradesSuccessfullySaved(tradeCount);
 	}
 
-	private void insertTrade(PreparedStatement insertStatement, TradeRecord trade)
+	private void addTrade(PreparedStatement insertStatement, TradeRecord trade)
 			throws SQLException {
 		Instant timestamp = trade.getTimestamp();
 		PlayerRecord player = trade.getPlayer();
+		long playerId = this.getPlayerId(player);
 
 		ShopRecord shop = trade.getShop();
 		PlayerRecord shopOwner = shop.getOwner();
-		@Nullable String shopOwnerId = null;
-		@Nullable String shopOwnerName = null;
+		@Nullable Long shopOwnerId = null;
 		if (shopOwner != null) {
-			shopOwnerId = shopOwner.getUniqueId().toString();
-			shopOwnerName = shopOwner.getName();
+			shopOwnerId = this.getPlayerId(shopOwner);
 		}
+		long shopId = this.getShopId(
+				shop.getUniqueId().toString(),
+				shop.getTypeId(),
+				shop.getWorldName(),
+				shop.getX(),
+				shop.getY(),
+				shop.getZ(),
+				shopOwnerId
+		);
 
 		UnmodifiableItemStack resultItem = trade.getResultItem();
 		UnmodifiableItemStack item1 = trade.getItem1();
 		UnmodifiableItemStack item2 = trade.getItem2(); // Can be null
-		@Nullable String item2Type = null;
+		@Nullable Long item2Id = null;
 		@Nullable Integer item2Amount = null;
-		@Nullable String item2Metadata = null;
 		if (item2 != null) {
-			item2Type = item2.getType().name();
+			item2Id = this.getItemId(item2);
 			item2Amount = item2.getAmount();
-			item2Metadata = this.getItemMetadata(item2);
 		}
 
-		insertStatement.setString(1, timestamp.toString()); // timestamp as ISO UTC
+		this.addTrade(
+				insertStatement,
+				formatTimestamp(timestamp),
+				playerId,
+				shopId,
+				this.getItemId(item1),
+				item1.getAmount(),
+				item2Id,
+				item2Amount,
+				this.getItemId(resultItem),
+				resultItem.getAmount(),
+				trade.getTradeCount()
+		);
+	}
 
-		insertStatement.setString(2, player.getUniqueId().toString()); // player_uuid
-		insertStatement.setString(3, player.getName()); // player_name
+	private void addTrade(
+			PreparedStatement insertStatement,
+			String timestamp,
+			long playerId,
+			long shopId,
+			long item1Id,
+			int item1Amount,
+			@Nullable Long item2Id,
+			@Nullable Integer item2Amount,
+			long resultItemId,
+			int resultItemAmount,
+			int tradeCount
+	) throws SQLException {
+		insertStatement.setString(1, timestamp); // timestamp
+		insertStatement.setLong(2, playerId); // player_id
+		insertStatement.setLong(3, shopId); // shop_id
+		insertStatement.setLong(4, item1Id); // item_1_id
+		insertStatement.setInt(5, item1Amount); // item_1_amount
+		insertStatement.setObject(6, item2Id, Types.INTEGER); // item_2_id
+		insertStatement.setObject(7, item2Amount, Types.TINYINT); // item_2_amount
+		insertStatement.setLong(8, resultItemId); // result_item_id
+		insertStatement.setInt(9, resultItemAmount); // result_item_amount
+		insertStatement.setInt(10, tradeCount); // trade_count
+		insertStatement.addBatch();
+	}
 
-		insertStatement.setString(4, shop.getUniqueId().toString()); // shop_uuid
-		insertStatement.setString(5, shop.getTypeId()); // shop_type
-		insertStatement.setString(6, shop.getWorldName()); // shop_world
-		insertStatement.setInt(7, shop.getX()); // shop_x
-		insertStatement.setInt(8, shop.getY()); // shop_y
-		insertStatement.setInt(9, shop.getZ()); // shop_z
+	// QUERIES
 
-		insertStatement.setString(10, shopOwnerId); // shop_owner_uuid
-		insertStatement.setString(11, shopOwnerName); // shop_owner_name
+	@Override
+	public TradeLogQueryResult queryTrades(TradeLogQuery query) throws SQLException {
+		String sql;
+		switch (query.getTarget()) {
+		case SHOP:
+			sql = SELECT_SHOP_TRADES;
+			break;
+		case PLAYER:
+		default:
+			sql = SELECT_PLAYER_TRADES;
+			break;
+		}
 
-		insertStatement.setString(12, item1.getType().name()); // item_1_type
-		insertStatement.setInt(13, item1.getAmount()); // item_1_amount
-		insertStatement.setString(14, this.getItemMetadata(item1)); // item_1_metadata
+		Instant since = query.getSince();
+		String sinceTimestamp = (since != null) ? formatTimestamp(since) : "";
+
+		int pageSize = query.getPageSize();
+		List<LoggedTrade> trades = new ArrayList<>(pageSize);
+		boolean hasMore = false;
+		// Queries use their own short-lived connection: With write-ahead logging, they neither
+		// block nor are blocked by the writer.
+		try (	Connection connection = DriverManager.getConnection(connectionURL);
+				PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setString(1, query.getUniqueId().toString());
+			statement.setString(2, sinceTimestamp);
+			// We query one additional trade to determine if there are more pages:
+			statement.setInt(3, pageSize + 1);
+			statement.setLong(4, query.getOffset());
+			try (ResultSet row = statement.executeQuery()) {
+				while (row.next()) {
+					if (trades.size() == pageSize) {
+						hasMore = true;
+						break;
+					}
+					trades.add(toLoggedTrade(row));
+				}
+			}
+		}
+		return new TradeLogQueryResult(query, trades, hasMore);
+	}
 
-		insertStatement.setString(15, item2Type); // item_2_type
-		insertStatement.setObject(16, item2Amount, Types.TINYINT); // item_2_amount
-		insertStatement.setString(17, item2Metadata); // item_2_metadata
+	private static LoggedTrade toLoggedTrade(ResultSet row) throws SQLException {
+		@Nullable PlayerRecord shopOwner = null;
+		String shopOwnerUUID = row.getString("shop_owner_uuid");
+		if (shopOwnerUUID != null) {
+			shopOwner = PlayerRecord.of(
+					UUID.fromString(shopOwnerUUID),
+					getString(row, "shop_owner_name")
+			);
+		}
 
-		insertStatement.setString(18, resultItem.getType().name()); // result_item_type
-		insertStatement.setInt(19, resultItem.getAmount()); // result_item_amount
-		insertStatement.setString(20, this.getItemMetadata(resultItem)); // result_item_metadata
+		@Nullable LoggedItem item2 = null;
+		String item2Type = row.getString("item_2_type");
+		if (item2Type != null) {
+			item2 = new LoggedItem(item2Type, row.getInt("item_2_amount"));
+		}
 
-		insertStatement.setInt(21, trade.getTradeCount()); // trade_count
+		return new LoggedTrade(
+				Instant.parse(getString(row, "timestamp")),
+				PlayerRecord.of(
+						UUID.fromString(getString(row, "player_uuid")),
+						getString(row, "player_name")
+				),
+				UUID.fromString(getString(row, "shop_uuid")),
+				getString(row, "shop_type"),
+				shopOwner,
+				new LoggedItem(getString(row, "item_1_type"), row.getInt("item_1_amount")),
+				item2,
+				new LoggedItem(
+						getString(row, "result_item_type"),
+						row.getInt("result_item_amount")
+				),
+				row.getInt("trade_count")
+		);
+	}
+
+	// DICTIONARY TABLES
+
+	private long getPlayerId(PlayerRecord player) throws SQLException {
+		return this.getPlayerId(player.getUniqueId().toString(), player.getName());
+	}
+
+	private long getPlayerId(String playerUUID, String playerName) throws SQLException {
+		String key = playerUUID + ":" + playerName;
+		return this.getOrInsertId(playerIds, key, SELECT_PLAYER, INSERT_PLAYER,
+				playerUUID, playerName
+		);
+	}
 
-		insertStatement.executeUpdate();
+	private long getShopId(
+			String shopUUID,
+			String shopType,
+			@Nullable String shopWorld,
+			int shopX,
+			int shopY,
+			int shopZ,
+			@Nullable Long shopOwnerId
+	) throws SQLException {
+		String key = shopUUID + ":" + shopType + ":" + shopWorld + ":" + shopX + ":" + shopY + ":"
+				+ shopZ + ":" + shopOwnerId;
+		return this.getOrInsertId(shopIds, key, SELECT_SHOP, INSERT_SHOP,
+				shopUUID, shopType, shopWorld, shopX, shopY, shopZ, shopOwnerId
+		);
+	}
+
+	private long getItemId(UnmodifiableItemStack itemStack) throws SQLException {
+		return this.getItemId(itemStack.getType().name(), this.getItemMetadata(itemStack));
+	}
+
+	private long getItemId(String itemType, String itemMetadata) throws SQLException {
+		String key = itemType + "\n" + itemMetadata;
+		Long itemId = itemIds.get(key);
+		if (itemId != null) return itemId;
+
+		// The hash avoids comparing the potentially long metadata of all items with the same type:
+		long hash = hash(key);
+		return this.getOrInsertId(itemIds, key, SELECT_ITEM, INSERT_ITEM,
+				hash, itemType, itemMetadata
+		);
+	}
+
+	// 64-bit FNV-1a hash.
+	private static long hash(String value) {
+		long hash = 0xcbf29ce484222325L;
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	// The select and insert statements are expected to use the same parameters.
+	private long getOrInsertId(
+			Map<String, Long> cache,
+			String key,
+			String selectSQL,
+			String insertSQL,
+			@Nullable Object... values
+	) throws SQLException {
+		Long cachedId = cache.get(key);
+		if (cachedId != null) return cachedId;
+
+		long id;
+		PreparedStatement selectStatement = this.getStatement(selectSQL);
+		setParameters(selectStatement, values);
+		try (ResultSet resultSet = selectStatement.executeQuery()) {
+			id = resultSet.next() ? resultSet.getLong(1) : 0L;
+		}
+
+		if (id == 0L) {
+			PreparedStatement insertStatement = this.getStatement(insertSQL);
+			setParameters(insertStatement, values);
+			insertStatement.executeUpdate();
+			id = this.getLastInsertId();
+		}
+
+		cache.put(key, id);
+		return id;
+	}
+
+	private static void setParameters(PreparedStatement statement, @Nullable Object... values)
+			throws SQLException {
+		for (int i = 0; i < values.length; i++) {
+			statement.setObject(i + 1, values[i]);
+		}
+	}
+
+	private long getLastInsertId() throws SQLException {
+		PreparedStatement statement = this.getStatement("SELECT last_insert_rowid()");
+		try (ResultSet resultSet = statement.executeQuery()) {
+			if (!resultSet.next()) {
+				throw new SQLException("Could not determine the id of the inserted row!");
+			}
+			return resultSet.getLong(1);
+		}
 	}
 }
@@ -25,6 +25,7 @@ import com.nisovin.shopkeepers.config.Settings;
 import com.nisovin.shopkeepers.currency.Currencies;
 import com.nisovin.shopkeepers.lang.Messages;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
+import com.nisovin.shopkeepers.spigot.text.PreparedMessage;
 import com.nisovin.shopkeepers.text.ClickEventText.Action;
 import com.nisovin.shopkeepers.text.Text;
 import com.nisovin.shopkeepers.util.bukkit.PermissionUtils;
@@ -235,7 +236,8 @@ public class TradeNotifications implements Listener {
 			shopOwner = ((PlayerShopkeeper) tradeContext.getShopkeeper()).getOwner();
 		}
 
-		Lazy<Text> tradeNotification = new Lazy<>(
+		// The notification is only converted once and then sent to all recipients:
+		Lazy<PreparedMessage> tradeNotification = new Lazy<>(
 				() -> this.getTradeNotificationMessage(tradeContext)
 		);
 		for (Player player : Bukkit.getOnlinePlayers()) {
@@ -256,7 +258,7 @@ public class TradeNotifications implements Listener {
 		}
 	}
 
-	private Text getTradeNotificationMessage(TradeContext tradeContext) {
+	private PreparedMessage getTradeNotificationMessage(TradeContext tradeContext) {
 		assert tradeContext != null;
 		Shopkeeper shopkeeper = tradeContext.getShopkeeper();
 
@@ -300,7 +302,7 @@ public class TradeNotifications implements Listener {
 		return this.getTradeNotificationMessage(tradeContext, message, shopText, tradeCountText);
 	}
 
-	private Text getTradeNotificationMessage(
+	private PreparedMessage getTradeNotificationMessage(
 			TradeContext tradeContext,
 			Text message,
 			Text shopText,
@@ -318,9 +320,11 @@ public class TradeNotifications implements Listener {
 		tradeCountText.setPlaceholderArguments("count", tradeContext.getTradeCount());
 		tradeMsgArgs.put("trade_count", tradeCountText);
 
-		message.setPlaceholderArguments(tradeMsgArgs);
-		message.setPlaceholderArguments(shopMsgArgs);
-		return message;
+		// The shop message arguments take precedence:
+		MessageArguments messageArgs = shopMsgArgs.combinedWith(
+				MessageArguments.ofMap(tradeMsgArgs)
+		);
+		return Messages.getTemplate(message).prepare(messageArgs);
 	}
 
 	private void sendOwnerTradeNotifications(TradeContext tradeContext) {
@@ -336,13 +340,13 @@ public class TradeNotifications implements Listener {
 
 		// Note: We also send trade notifications for own trades (i.e. when the trading player
 		// matches the recipient of the notification).
-		Text message = this.getOwnerTradeNotificationMessage(tradeContext);
+		PreparedMessage message = this.getOwnerTradeNotificationMessage(tradeContext);
 		TextUtils.sendMessage(owner, message);
 		Settings.shopOwnerTradeNotificationSound.play(owner);
 		this.sendDisableTradeNotificationsHint(owner);
 	}
 
-	private Text getOwnerTradeNotificationMessage(TradeContext tradeContext) {
+	private PreparedMessage getOwnerTradeNotificationMessage(TradeContext tradeContext) {
 		assert tradeContext != null;
 		Shopkeeper shopkeeper = tradeContext.getShopkeeper();
 
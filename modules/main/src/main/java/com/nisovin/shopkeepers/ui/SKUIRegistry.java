@@ -15,6 +15,7 @@ import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryEvent;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
 import com.nisovin.shopkeepers.api.ShopkeepersPlugin;
 import com.nisovin.shopkeepers.api.events.PlayerOpenUIEvent;
 import com.nisovin.shopkeepers.api.events.ShopkeeperOpenUIEvent;
@@ -23,6 +24,7 @@ import com.nisovin.shopkeepers.api.shopkeeper.Shopkeeper;
 import com.nisovin.shopkeepers.api.ui.UIRegistry;
 import com.nisovin.shopkeepers.api.ui.UISession;
 import com.nisovin.shopkeepers.api.ui.UIType;
+import com.nisovin.shopkeepers.debug.metrics.MetricsRegistry;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.types.AbstractTypeRegistry;
 import com.nisovin.shopkeepers.ui.state.UIState;
@@ -190,7 +192,11 @@ public class SKUIRegistry extends AbstractTypeRegistry<AbstractUIType>
 
 		// Open the new UI:
 		Log.debug(() -> "Opening UI '" + uiIdentifier + "' ...");
+		long openStartNanos = System.nanoTime();
 		boolean isOpen = uiHandler.openWindow(session, uiState);
+		SKShopkeepersPlugin.getInstance().getMetricsRegistry()
+				.getHistogram(MetricsRegistry.UI_OPENING)
+				.record(System.nanoTime() - openStartNanos);
 		if (!isOpen) {
 			Log.debug(() -> "Failed to open UI '" + uiIdentifier + "'!");
 			this.endUISession(player, null);
@@ -37,6 +37,7 @@ import com.nisovin.shopkeepers.currency.Currencies;
 import com.nisovin.shopkeepers.currency.Currency;
 import com.nisovin.shopkeepers.debug.Debug;
 import com.nisovin.shopkeepers.debug.DebugOptions;
+import com.nisovin.shopkeepers.debug.metrics.MetricsRegistry;
 import com.nisovin.shopkeepers.lang.Messages;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.ui.AbstractShopkeeperUIHandler;
@@ -344,6 +345,14 @@ public class TradingHandler extends AbstractShopkeeperUIHandler {
 	@Override
 	protected void onInventoryClickLate(UISession uiSession, InventoryClickEvent clickEvent) {
 		assert uiSession != null && clickEvent != null;
+		long startNanos = System.nanoTime();
+		this.handleTradingClick(uiSession, clickEvent);
+		SKShopkeepersPlugin.getInstance().getMetricsRegistry()
+				.getHistogram(MetricsRegistry.TRADING)
+				.record(System.nanoTime() - startNanos);
+	}
+
+	private void handleTradingClick(UISession uiSession, InventoryClickEvent clickEvent) {
 
 		// Inform listeners:
 		tradingListeners.forEach(listener -> listener.onInventoryClick(uiSession, clickEvent));
@@ -25,6 +25,8 @@ import com.nisovin.shopkeepers.api.user.User;
 import com.nisovin.shopkeepers.api.util.ChunkCoords;
 import com.nisovin.shopkeepers.api.util.UnmodifiableItemStack;
 import com.nisovin.shopkeepers.compat.NMSManager;
+import com.nisovin.shopkeepers.spigot.text.MessageTemplate;
+import com.nisovin.shopkeepers.spigot.text.PreparedMessage;
 import com.nisovin.shopkeepers.spigot.text.SpigotText;
 import com.nisovin.shopkeepers.text.HoverEventText;
 import com.nisovin.shopkeepers.text.Text;
@@ -519,6 +521,41 @@ public final class TextUtils {
 		SpigotText.sendMessage(recipient, message);
 	}
 
+	/**
+	 * Converts the given message, with its currently set placeholder arguments, once into the form
+	 * in which it is sent.
+	 * <p>
+	 * This avoids converting the message again for each recipient when the same message is sent to
+	 * several recipients.
+	 * 
+	 * @param message
+	 *            the message, not <code>null</code>
+	 * @return the prepared message, not <code>null</code>
+	 * @see #sendMessage(CommandSender, PreparedMessage)
+	 */
+	public static PreparedMessage prepareMessage(Text message) {
+		return SpigotText.prepareMessage(message);
+	}
+
+	/**
+	 * Compiles the given message into a {@link MessageTemplate}.
+	 * <p>
+	 * This avoids converting the static parts of the message again each time the message is
+	 * prepared with new placeholder arguments.
+	 * 
+	 * @param message
+	 *            the message, not <code>null</code>
+	 * @return the message template, not <code>null</code>
+	 * @see MessageTemplate#prepare(MessageArguments)
+	 */
+	public static MessageTemplate compileMessage(Text message) {
+		return SpigotText.compileMessage(message);
+	}
+
+	public static void sendMessage(CommandSender recipient, PreparedMessage message) {
+		SpigotText.sendMessage(recipient, message);
+	}
+
 	public static void sendMessage(
 			CommandSender recipient,
 			Text message,
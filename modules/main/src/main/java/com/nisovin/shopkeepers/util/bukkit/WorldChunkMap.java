@@ -0,0 +1,220 @@
+package com.nisovin.shopkeepers.util.bukkit;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import org.bukkit.Chunk;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.api.util.ChunkCoords;
+import com.nisovin.shopkeepers.util.java.LongHashMap;
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * A map of chunks to values, grouped by world.
+ * <p>
+ * The chunks of each world are stored inside a {@link LongHashMap}, keyed by their
+ * {@link #getChunkKey(int, int) chunk key}. Unlike a map with {@link ChunkCoords} keys, lookups
+ * neither need to allocate (or reuse) a {@link ChunkCoords} instance, nor compare world names for
+ * every probed entry. Code that performs many lookups inside the same world can further avoid the
+ * world lookup by retrieving the chunks of the world via {@link #getWorldChunks(String)}.
+ * <p>
+ * The chunk maps of worlds are removed once they become empty.
+ * <p>
+ * <code>null</code> values are not supported.
+ * 
+ * @param <V>
+ *            the value type
+ */
+public final class WorldChunkMap<V> {
+
+	/**
+	 * Gets the key that identifies the specified chunk within its world.
+	 * <p>
+	 * The chunk x coordinate is stored in the upper 32 bits and the chunk z coordinate in the
+	 * lower 32 bits of the key.
+	 * 
+	 * @param chunkX
+	 *            the chunk x coordinate
+	 * @param chunkZ
+	 *            the chunk z coordinate
+	 * @return the chunk key
+	 */
+	public static long getChunkKey(int chunkX, int chunkZ) {
+		// The z coordinate needs to be masked, since negative values would otherwise overwrite the
+		// upper bits:
+		return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Gets the chunk x coordinate of the given {@link #getChunkKey(int, int) chunk key}.
+	 * 
+	 * @param chunkKey
+	 *            the chunk key
+	 * @return the chunk x coordinate
+	 */
+	public static int getChunkX(long chunkKey) {
+		return (int) (chunkKey >> 32);
+	}
+
+	/**
+	 * Gets the chunk z coordinate of the given {@link #getChunkKey(int, int) chunk key}.
+	 * 
+	 * @param chunkKey
+	 *            the chunk key
+	 * @return the chunk z coordinate
+	 */
+	public static int getChunkZ(long chunkKey) {
+		return (int) chunkKey;
+	}
+
+	private final Map<String, LongHashMap<V>> worlds = new HashMap<>();
+	private int size = 0;
+
+	public WorldChunkMap() {
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+
+	/**
+	 * Gets the chunks of the specified world.
+	 * <p>
+	 * The returned map must not be modified.
+	 * 
+	 * @param worldName
+	 *            the world name
+	 * @return the chunks of the world, or <code>null</code> if there are no chunks for the world
+	 */
+	public @Nullable LongHashMap<V> getWorldChunks(String worldName) {
+		return worlds.get(worldName);
+	}
+
+	public @Nullable V get(String worldName, int chunkX, int chunkZ) {
+		LongHashMap<V> worldChunks = worlds.get(worldName);
+		if (worldChunks == null) return null;
+		return worldChunks.get(getChunkKey(chunkX, chunkZ));
+	}
+
+	public @Nullable V get(ChunkCoords chunkCoords) {
+		return this.get(chunkCoords.getWorldName(), chunkCoords.getChunkX(), chunkCoords.getChunkZ());
+	}
+
+	public @Nullable V get(Chunk chunk) {
+		return this.get(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+	}
+
+	public boolean containsKey(String worldName, int chunkX, int chunkZ) {
+		return this.get(worldName, chunkX, chunkZ) != null;
+	}
+
+	private LongHashMap<V> getOrCreateWorldChunks(String worldName) {
+		Validate.notEmpty(worldName, "worldName is null or empty");
+		return worlds.computeIfAbsent(worldName, name -> new LongHashMap<>());
+	}
+
+	/**
+	 * Associates the given value with the specified chunk.
+	 * 
+	 * @param worldName
+	 *            the world name, not <code>null</code> or empty
+	 * @param chunkX
+	 *            the chunk x coordinate
+	 * @param chunkZ
+	 *            the chunk z coordinate
+	 * @param value
+	 *            the value, not <code>null</code>
+	 * @return the previous value, or <code>null</code> if there was no value for the chunk
+	 */
+	public @Nullable V put(String worldName, int chunkX, int chunkZ, V value) {
+		LongHashMap<V> worldChunks = this.getOrCreateWorldChunks(worldName);
+		V oldValue = worldChunks.put(getChunkKey(chunkX, chunkZ), value);
+		if (oldValue == null) {
+			size++;
+		}
+		return oldValue;
+	}
+
+	public @Nullable V put(ChunkCoords chunkCoords, V value) {
+		return this.put(
+				chunkCoords.getWorldName(),
+				chunkCoords.getChunkX(),
+				chunkCoords.getChunkZ(),
+				value
+		);
+	}
+
+	/**
+	 * Gets the value of the specified chunk, or creates and inserts a new value if there is none
+	 * yet.
+	 * 
+	 * @param worldName
+	 *            the world name, not <code>null</code> or empty
+	 * @param chunkX
+	 *            the chunk x coordinate
+	 * @param chunkZ
+	 *            the chunk z coordinate
+	 * @param valueFactory
+	 *            creates the new value based on the chunk key, not <code>null</code>, and may not
+	 *            modify this map
+	 * @return the value, not <code>null</code>
+	 */
+	public V computeIfAbsent(
+			String worldName,
+			int chunkX,
+			int chunkZ,
+			LongFunction<? extends V> valueFactory
+	) {
+		LongHashMap<V> worldChunks = this.getOrCreateWorldChunks(worldName);
+		int sizeBefore = worldChunks.size();
+		V value = worldChunks.computeIfAbsent(getChunkKey(chunkX, chunkZ), valueFactory);
+		size += (worldChunks.size() - sizeBefore);
+		return value;
+	}
+
+	public @Nullable V remove(String worldName, int chunkX, int chunkZ) {
+		LongHashMap<V> worldChunks = worlds.get(worldName);
+		if (worldChunks == null) return null;
+
+		V oldValue = worldChunks.remove(getChunkKey(chunkX, chunkZ));
+		if (oldValue != null) {
+			size--;
+			if (worldChunks.isEmpty()) {
+				worlds.remove(worldName);
+			}
+		}
+		return oldValue;
+	}
+
+	public @Nullable V remove(ChunkCoords chunkCoords) {
+		return this.remove(
+				chunkCoords.getWorldName(),
+				chunkCoords.getChunkX(),
+				chunkCoords.getChunkZ()
+		);
+	}
+
+	public void clear() {
+		worlds.clear();
+		size = 0;
+	}
+
+	/**
+	 * Passes all values of this map to the given consumer.
+	 * <p>
+	 * The consumer must not modify this map.
+	 * 
+	 * @param consumer
+	 *            the consumer, not <code>null</code>
+	 */
+	public void forEachValue(Consumer<? super V> consumer) {
+		worlds.values().forEach(worldChunks -> worldChunks.forEachValue(consumer));
+	}
+}
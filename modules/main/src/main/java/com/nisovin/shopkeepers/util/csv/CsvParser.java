@@ -0,0 +1,62 @@
+package com.nisovin.shopkeepers.util.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * Parses single-line CSV records that use the default format of the {@link CsvFormatter}, i.e.
+ * commas as field separator, and double quotes to quote fields and escape quotes within fields.
+ * <p>
+ * Escaped newlines and backslashes are not unescaped again.
+ */
+public final class CsvParser {
+
+	private static final char FIELD_SEPARATOR = ',';
+	private static final char QUOTE = '"';
+
+	/**
+	 * Parses the fields of the given CSV record.
+	 * 
+	 * @param record
+	 *            the CSV record, without the record separator, not <code>null</code>
+	 * @return the unquoted fields
+	 * @throws IllegalArgumentException
+	 *             if the record is malformed, e.g. if it contains an unterminated quoted field
+	 */
+	public static List<String> parseRecord(String record) {
+		Validate.notNull(record, "record is null");
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		int length = record.length();
+		for (int i = 0; i < length; i++) {
+			char c = record.charAt(i);
+			if (quoted) {
+				if (c != QUOTE) {
+					field.append(c);
+				} else if (i + 1 < length && record.charAt(i + 1) == QUOTE) {
+					// Escaped quote:
+					field.append(QUOTE);
+					i++;
+				} else {
+					quoted = false;
+				}
+			} else if (c == QUOTE) {
+				quoted = true;
+			} else if (c == FIELD_SEPARATOR) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		Validate.isTrue(!quoted, "Unterminated quoted field!");
+		fields.add(field.toString());
+		return fields;
+	}
+
+	private CsvParser() {
+	}
+}
@@ -0,0 +1,357 @@
+package com.nisovin.shopkeepers.util.data.persistence.bukkit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.util.bukkit.ConfigUtils;
+import com.nisovin.shopkeepers.util.data.container.DataContainer;
+import com.nisovin.shopkeepers.util.data.persistence.InvalidDataFormatException;
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * A compact binary encoding of the data that can also be stored inside a Bukkit
+ * {@link ConfigurationSection}.
+ * <p>
+ * The encoded data starts with a magic number and a format version, followed by the top-level
+ * entries. Each value is encoded as a one byte type tag, followed by the value's data. Lengths and
+ * integral numbers are encoded as variable-length integers.
+ * <p>
+ * Strings are deduplicated via a dictionary that is implicitly built up during encoding and
+ * decoding: The first occurrence of a (short) String is stored inline and assigned the next
+ * dictionary index. Subsequent occurrences of the same String only store this index. This
+ * considerably reduces the size of the data for the frequently repeated data keys, item types,
+ * enum constants, etc.
+ * <p>
+ * Similar to Bukkit's Yaml serialization, {@link ConfigurationSerializable}s are encoded as Maps
+ * that contain the {@link ConfigurationSerialization#SERIALIZED_TYPE_KEY serialized type key}, and
+ * are deserialized again during decoding. {@link ConfigurationSection}s are encoded as Maps.
+ */
+final class BinaryDataFormat {
+
+	private static final byte[] MAGIC = new byte[] { 'S', 'K', 'B', 'D' };
+	private static final int FORMAT_VERSION = 1;
+
+	// Strings longer than this are not added to the dictionary:
+	private static final int MAX_DICTIONARY_STRING_LENGTH = 256;
+
+	private static final int TAG_NULL = 0;
+	private static final int TAG_FALSE = 1;
+	private static final int TAG_TRUE = 2;
+	private static final int TAG_INT = 3;
+	private static final int TAG_LONG = 4;
+	private static final int TAG_FLOAT = 5;
+	private static final int TAG_DOUBLE = 6;
+	private static final int TAG_STRING = 7; // Added to the dictionary
+	private static final int TAG_STRING_REF = 8;
+	private static final int TAG_LONG_STRING = 9; // Not added to the dictionary
+	private static final int TAG_LIST = 10;
+	private static final int TAG_MAP = 11;
+
+	/**
+	 * Encodes the given top-level entries.
+	 * 
+	 * @param values
+	 *            the values, not <code>null</code>
+	 * @return the encoded data, not <code>null</code>
+	 * @throws IllegalArgumentException
+	 *             if the values contain an object of an unsupported type
+	 */
+	static byte[] write(Map<?, ?> values) {
+		Validate.notNull(values, "values is null");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.write(MAGIC);
+			writeVarInt(out, FORMAT_VERSION);
+			new Writer(out).writeMapEntries(values);
+		} catch (IOException e) {
+			// Not expected to occur when writing into memory:
+			throw new IllegalStateException("Could not encode data!", e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes the top-level entries from the given data.
+	 * 
+	 * @param data
+	 *            the encoded data, not <code>null</code>
+	 * @return the decoded values, not <code>null</code>
+	 * @throws InvalidDataFormatException
+	 *             if the data is not in the expected format
+	 */
+	static Map<String, Object> read(byte[] data) throws InvalidDataFormatException {
+		Validate.notNull(data, "data is null");
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new InvalidDataFormatException("Missing binary data header!");
+			}
+			int formatVersion = readVarInt(in);
+			if (formatVersion != FORMAT_VERSION) {
+				throw new InvalidDataFormatException("Unsupported binary data format version: "
+						+ formatVersion);
+			}
+
+			Map<String, Object> values = new Reader(in).readMapEntries();
+			if (in.available() > 0) {
+				throw new InvalidDataFormatException("Binary data was not fully consumed!");
+			}
+			return values;
+		} catch (EOFException e) {
+			throw new InvalidDataFormatException("Unexpected end of binary data!", e);
+		} catch (IOException e) {
+			throw new InvalidDataFormatException("Could not read binary data!", e);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidDataFormatException("Could not deserialize binary data!", e);
+		}
+	}
+
+	private static final class Writer {
+
+		private final DataOutputStream out;
+		private final Map<String, Integer> dictionary = new HashMap<>();
+
+		Writer(DataOutputStream out) {
+			this.out = out;
+		}
+
+		void writeMapEntries(Map<?, ?> map) throws IOException {
+			writeVarInt(out, map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				this.writeString(String.valueOf(entry.getKey()));
+				this.writeValue(entry.getValue());
+			}
+		}
+
+		void writeValue(@Nullable Object value) throws IOException {
+			if (value == null) {
+				out.writeByte(TAG_NULL);
+			} else if (value instanceof String) {
+				this.writeString((String) value);
+			} else if (value instanceof Boolean) {
+				out.writeByte(((Boolean) value) ? TAG_TRUE : TAG_FALSE);
+			} else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+				out.writeByte(TAG_INT);
+				writeVarInt(out, zigZag(((Number) value).intValue()));
+			} else if (value instanceof Long) {
+				out.writeByte(TAG_LONG);
+				writeVarLong(out, zigZag(((Long) value).longValue()));
+			} else if (value instanceof Float) {
+				out.writeByte(TAG_FLOAT);
+				out.writeFloat((Float) value);
+			} else if (value instanceof Double) {
+				out.writeByte(TAG_DOUBLE);
+				out.writeDouble((Double) value);
+			} else if (value instanceof Character) {
+				this.writeString(value.toString());
+			} else if (value instanceof List) {
+				List<?> list = (List<?>) value;
+				out.writeByte(TAG_LIST);
+				writeVarInt(out, list.size());
+				for (Object element : list) {
+					this.writeValue(element);
+				}
+			} else if (value instanceof Map) {
+				out.writeByte(TAG_MAP);
+				this.writeMapEntries((Map<?, ?>) value);
+			} else if (value instanceof ConfigurationSection) {
+				out.writeByte(TAG_MAP);
+				this.writeMapEntries(ConfigUtils.getValues((ConfigurationSection) value));
+			} else if (value instanceof ConfigurationSerializable) {
+				out.writeByte(TAG_MAP);
+				this.writeMapEntries(ConfigUtils.serialize((ConfigurationSerializable) value));
+			} else if (value instanceof DataContainer) {
+				this.writeValue(((DataContainer) value).serialize());
+			} else {
+				throw new IllegalArgumentException("Unsupported value type: "
+						+ value.getClass().getName());
+			}
+		}
+
+		void writeString(String string) throws IOException {
+			Integer index = dictionary.get(string);
+			if (index != null) {
+				out.writeByte(TAG_STRING_REF);
+				writeVarInt(out, index);
+				return;
+			}
+
+			if (string.length() <= MAX_DICTIONARY_STRING_LENGTH) {
+				out.writeByte(TAG_STRING);
+				dictionary.put(string, dictionary.size());
+			} else {
+				out.writeByte(TAG_LONG_STRING);
+			}
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(out, bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static final class Reader {
+
+		private final DataInputStream in;
+		private final List<String> dictionary = new ArrayList<>();
+
+		Reader(DataInputStream in) {
+			this.in = in;
+		}
+
+		Map<String, Object> readMapEntries() throws IOException, InvalidDataFormatException {
+			int size = readLength();
+			Map<String, Object> map = new LinkedHashMap<>();
+			for (int i = 0; i < size; i++) {
+				String key = this.readString(in.readUnsignedByte());
+				Object value = this.readValue();
+				if (value != null) {
+					map.put(key, value);
+				}
+			}
+			return map;
+		}
+
+		@Nullable Object readValue() throws IOException, InvalidDataFormatException {
+			int tag = in.readUnsignedByte();
+			switch (tag) {
+			case TAG_NULL:
+				return null;
+			case TAG_FALSE:
+				return Boolean.FALSE;
+			case TAG_TRUE:
+				return Boolean.TRUE;
+			case TAG_INT:
+				return unZigZag(readVarInt(in));
+			case TAG_LONG:
+				return unZigZag(readVarLong(in));
+			case TAG_FLOAT:
+				return in.readFloat();
+			case TAG_DOUBLE:
+				return in.readDouble();
+			case TAG_STRING:
+			case TAG_STRING_REF:
+			case TAG_LONG_STRING:
+				return this.readString(tag);
+			case TAG_LIST:
+				int size = readLength();
+				List<@Nullable Object> list = new ArrayList<>(Math.min(size, 1024));
+				for (int i = 0; i < size; i++) {
+					list.add(this.readValue());
+				}
+				return list;
+			case TAG_MAP:
+				Map<String, Object> map = this.readMapEntries();
+				if (map.containsKey(ConfigurationSerialization.SERIALIZED_TYPE_KEY)) {
+					return ConfigUtils.deserialize(map);
+				} // Else: This is a regular Map.
+				return map;
+			default:
+				throw new InvalidDataFormatException("Unknown binary data tag: " + tag);
+			}
+		}
+
+		String readString(int tag) throws IOException, InvalidDataFormatException {
+			switch (tag) {
+			case TAG_STRING_REF:
+				int index = readVarInt(in);
+				if (index < 0 || index >= dictionary.size()) {
+					throw new InvalidDataFormatException("Invalid string reference: " + index);
+				}
+				return dictionary.get(index);
+			case TAG_STRING:
+			case TAG_LONG_STRING:
+				byte[] bytes = new byte[readLength()];
+				in.readFully(bytes);
+				String string = new String(bytes, StandardCharsets.UTF_8);
+				if (tag == TAG_STRING) {
+					dictionary.add(string);
+				}
+				return string;
+			default:
+				throw new InvalidDataFormatException("Expected a string, but got binary data tag: "
+						+ tag);
+			}
+		}
+
+		private int readLength() throws IOException, InvalidDataFormatException {
+			int length = readVarInt(in);
+			if (length < 0) {
+				throw new InvalidDataFormatException("Invalid length: " + length);
+			}
+			return length;
+		}
+	}
+
+	private static int zigZag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int unZigZag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		int remaining = value;
+		while ((remaining & ~0x7F) != 0) {
+			out.writeByte((remaining & 0x7F) | 0x80);
+			remaining >>>= 7;
+		}
+		out.writeByte(remaining);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+		throw new IOException("Variable-length int is too long!");
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		long remaining = value;
+		while ((remaining & ~0x7FL) != 0) {
+			out.writeByte((int) ((remaining & 0x7F) | 0x80));
+			remaining >>>= 7;
+		}
+		out.writeByte((int) remaining);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+		throw new IOException("Variable-length long is too long!");
+	}
+
+	private BinaryDataFormat() {
+	}
+}
@@ -0,0 +1,98 @@
+package com.nisovin.shopkeepers.util.data.persistence.bukkit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Map;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+
+import com.nisovin.shopkeepers.util.data.container.MapBasedDataContainer;
+import com.nisovin.shopkeepers.util.data.persistence.DataStore;
+import com.nisovin.shopkeepers.util.data.persistence.DataStoreBase;
+import com.nisovin.shopkeepers.util.data.persistence.InvalidDataFormatException;
+import com.nisovin.shopkeepers.util.java.FileUtils;
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * A {@link DataStore} that stores its data inside a {@link Map} and saves and loads the data in a
+ * compact binary format.
+ * <p>
+ * The binary format supports the same kinds of values as Bukkit's Yaml configurations, including
+ * {@link ConfigurationSerializable}s and {@link ConfigurationSection}s (which are loaded as Maps).
+ * The data can therefore be converted losslessly between this data store and a
+ * {@link BukkitConfigDataStore}, e.g. via {@link #setAll(Map)}.
+ * <p>
+ * Files are read and written as raw bytes. Since the binary data is not valid text, the
+ * String-based and character stream based methods of this data store use the Base64 encoding of
+ * the binary data.
+ */
+public class BukkitBinaryDataStore extends MapBasedDataContainer implements DataStoreBase {
+
+	/**
+	 * Creates a new empty {@link BukkitBinaryDataStore}.
+	 */
+	public BukkitBinaryDataStore() {
+		super();
+	}
+
+	/**
+	 * Loads the contents of this data container from the given binary data.
+	 * <p>
+	 * All currently stored values of this data container are removed and subsequently replaced with
+	 * the newly loaded values.
+	 * 
+	 * @param data
+	 *            the binary data, not <code>null</code>
+	 * @throws InvalidDataFormatException
+	 *             if the given data is not in the expected format
+	 */
+	public void loadFromBytes(byte[] data) throws InvalidDataFormatException {
+		Map<String, Object> values = BinaryDataFormat.read(data);
+		this.clear();
+		this.setAll(values);
+	}
+
+	/**
+	 * Saves the contents of this data container in the binary format.
+	 * 
+	 * @return the binary data, not <code>null</code>
+	 * @throws IllegalArgumentException
+	 *             if this data container contains a value of an unsupported type
+	 */
+	public byte[] saveToBytes() {
+		return BinaryDataFormat.write(this.getValues());
+	}
+
+	@Override
+	public void load(Path path) throws IOException, InvalidDataFormatException {
+		Validate.notNull(path, "path is null");
+		this.loadFromBytes(Files.readAllBytes(path));
+	}
+
+	@Override
+	public void loadFromString(String data) throws InvalidDataFormatException {
+		Validate.notNull(data, "data is null");
+		byte[] bytes;
+		try {
+			bytes = Base64.getDecoder().decode(data.trim());
+		} catch (IllegalArgumentException e) {
+			throw new InvalidDataFormatException("Invalid Base64 data!", e);
+		}
+		this.loadFromBytes(bytes);
+	}
+
+	@Override
+	public void save(Path path) throws IOException {
+		Validate.notNull(path, "path is null");
+		FileUtils.createParentDirectories(path);
+		Files.write(path, this.saveToBytes());
+	}
+
+	@Override
+	public String saveToString() {
+		return Base64.getEncoder().encodeToString(this.saveToBytes());
+	}
+}
@@ -451,6 +451,33 @@ public final class FileUtils {
 			Charset charset,
 			Logger logger,
 			@Nullable Path basePath
+	) throws IOException {
+		writeSafely(path, content.getBytes(charset), logger, basePath);
+	}
+
+	/**
+	 * Safely writes the given bytes to a file at the specified path.
+	 * <p>
+	 * See {@link #writeSafely(Path, String, Charset, Logger, Path)} for details on the writing
+	 * procedure.
+	 * 
+	 * @param path
+	 *            the file path
+	 * @param content
+	 *            the file content
+	 * @param logger
+	 *            the {@link Logger} to use for certain warnings
+	 * @param basePath
+	 *            if specified, any error or warning messages that include path strings will use the
+	 *            path relative to this base path instead
+	 * @throws IOException
+	 *             if the operation fails
+	 */
+	public static void writeSafely(
+			Path path,
+			byte[] content,
+			Logger logger,
+			@Nullable Path basePath
 	) throws IOException {
 		var tempPath = getTempSibling(path);
 		assert tempPath != null;
@@ -473,8 +500,8 @@ public final class FileUtils {
 		}
 
 		// Create new temporary file and write data to it:
-		try (Writer writer = Files.newBufferedWriter(tempPath, charset)) {
-			writer.write(content);
+		try {
+			Files.write(tempPath, content);
 		} catch (IOException e) {
 			throw new IOException("Could not write temporary file ("
 					+ relativize(basePath, tempPath) + "): " + ThrowableUtils.getDescription(e), e);
@@ -0,0 +1,248 @@
+package com.nisovin.shopkeepers.util.java;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.api.internal.util.Unsafe;
+
+/**
+ * A hash map with primitive <code>long</code> keys.
+ * <p>
+ * Unlike a {@link java.util.HashMap} with {@link Long} keys, this map does not box its keys and
+ * does not allocate entry objects. The entries are stored in two parallel arrays using open
+ * addressing with linear probing. Removals shift the subsequent entries of the same probe sequence
+ * back, so that no tombstones are required.
+ * <p>
+ * <code>null</code> values are not supported.
+ * <p>
+ * This map is not thread-safe, and it must not be modified while its values are iterated.
+ * 
+ * @param <V>
+ *            the value type
+ */
+public final class LongHashMap<V> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	// We resize the arrays when more than half of their slots are occupied, in order to keep the
+	// probe sequences short.
+	private static final int MAX_LOAD_FACTOR_INVERSE = 2;
+
+	private long[] keys;
+	// A null value indicates an empty slot:
+	private @Nullable V[] values;
+	private int mask;
+	private int size = 0;
+	private int modCount = 0;
+
+	public LongHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new {@link LongHashMap}.
+	 * 
+	 * @param expectedSize
+	 *            the number of entries that the map is expected to hold without having to resize
+	 */
+	public LongHashMap(int expectedSize) {
+		Validate.isTrue(expectedSize >= 0, "expectedSize cannot be negative");
+		this.allocate(getCapacity(expectedSize));
+	}
+
+	private static int getCapacity(int expectedSize) {
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity / MAX_LOAD_FACTOR_INVERSE < expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private void allocate(int capacity) {
+		assert Integer.bitCount(capacity) == 1;
+		keys = new long[capacity];
+		values = Unsafe.castNonNull(new Object[capacity]);
+		mask = capacity - 1;
+	}
+
+	// Spreads the bits of the key (in particular the chunk x coordinate in the upper half of chunk
+	// keys) to the lower bits used for the slot index.
+	private static int hash(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	// Returns the slot of the given key, or the negated (minus one) empty slot at which the key
+	// would be inserted.
+	private int findSlot(long key) {
+		int slot = hash(key) & mask;
+		while (true) {
+			if (values[slot] == null) return -slot - 1;
+			if (keys[slot] == key) return slot;
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+
+	public boolean containsKey(long key) {
+		return this.findSlot(key) >= 0;
+	}
+
+	public @Nullable V get(long key) {
+		int slot = this.findSlot(key);
+		if (slot < 0) return null;
+		return values[slot];
+	}
+
+	/**
+	 * Associates the given value with the given key.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value, not <code>null</code>
+	 * @return the previous value, or <code>null</code> if there was no value for the key
+	 */
+	public @Nullable V put(long key, V value) {
+		Validate.notNull(value, "value is null");
+		int slot = this.findSlot(key);
+		if (slot >= 0) {
+			V oldValue = values[slot];
+			values[slot] = value;
+			return oldValue;
+		}
+
+		this.insert(-slot - 1, key, value);
+		return null;
+	}
+
+	/**
+	 * Gets the value for the given key, or creates and inserts a new value if there is none yet.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param valueFactory
+	 *            creates the new value, not <code>null</code>, and may not modify this map
+	 * @return the value, not <code>null</code>
+	 */
+	public V computeIfAbsent(long key, LongFunction<? extends V> valueFactory) {
+		int slot = this.findSlot(key);
+		if (slot >= 0) {
+			return Unsafe.assertNonNull(values[slot]);
+		}
+
+		V value = valueFactory.apply(key);
+		Validate.State.notNull(value, "valueFactory returned null");
+		this.insert(-slot - 1, key, value);
+		return value;
+	}
+
+	private void insert(int slot, long key, V value) {
+		assert values[slot] == null;
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+		modCount++;
+		if (size > keys.length / MAX_LOAD_FACTOR_INVERSE) {
+			this.resize(keys.length << 1);
+		}
+	}
+
+	private void resize(int newCapacity) {
+		long[] oldKeys = keys;
+		@Nullable V[] oldValues = values;
+		this.allocate(newCapacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			V value = oldValues[i];
+			if (value == null) continue;
+
+			long key = oldKeys[i];
+			int slot = hash(key) & mask;
+			while (values[slot] != null) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = key;
+			values[slot] = value;
+		}
+	}
+
+	public @Nullable V remove(long key) {
+		int slot = this.findSlot(key);
+		if (slot < 0) return null;
+
+		V oldValue = values[slot];
+		this.removeSlot(slot);
+		return oldValue;
+	}
+
+	private void removeSlot(int slot) {
+		size--;
+		modCount++;
+
+		// Shift back the subsequent entries of the probe sequence that would no longer be
+		// reachable once the slot is empty:
+		int emptySlot = slot;
+		int currentSlot = slot;
+		while (true) {
+			currentSlot = (currentSlot + 1) & mask;
+			V value = values[currentSlot];
+			if (value == null) break;
+
+			int idealSlot = hash(keys[currentSlot]) & mask;
+			// Check if the ideal slot is cyclically outside the range (emptySlot, currentSlot]:
+			boolean shift;
+			if (emptySlot <= currentSlot) {
+				shift = (idealSlot <= emptySlot || idealSlot > currentSlot);
+			} else {
+				shift = (idealSlot <= emptySlot && idealSlot > currentSlot);
+			}
+			if (shift) {
+				keys[emptySlot] = keys[currentSlot];
+				values[emptySlot] = value;
+				emptySlot = currentSlot;
+			}
+		}
+		values[emptySlot] = null;
+	}
+
+	public void clear() {
+		if (size == 0) return;
+		Arrays.fill(values, null);
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * Passes all values of this map to the given consumer.
+	 * <p>
+	 * The consumer must not modify this map.
+	 * 
+	 * @param consumer
+	 *            the consumer, not <code>null</code>
+	 * @throws ConcurrentModificationException
+	 *             if the consumer modifies this map
+	 */
+	public void forEachValue(Consumer<? super V> consumer) {
+		int expectedModCount = modCount;
+		@Nullable V[] currentValues = values;
+		for (int i = 0; i < currentValues.length; i++) {
+			V value = currentValues[i];
+			if (value == null) continue;
+
+			consumer.accept(value);
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+}
@@ -212,6 +212,28 @@ public final class StringUtils {
 		return builder.toString();
 	}
 
+	/**
+	 * Gets the smallest String that is greater than all Strings that start with the given prefix.
+	 * <p>
+	 * This can for example be used to look up all Strings with a certain prefix inside a sorted
+	 * map or set, in the range between the prefix (inclusive) and its upper bound (exclusive).
+	 * 
+	 * @param prefix
+	 *            the prefix, not <code>null</code>
+	 * @return the upper bound, or <code>null</code> if there is no such String, i.e. if the prefix
+	 *         is empty or only consists of {@link Character#MAX_VALUE} characters
+	 */
+	public static @Nullable String getPrefixUpperBound(String prefix) {
+		Validate.notNull(prefix, "prefix is null");
+		for (int i = prefix.length() - 1; i >= 0; i--) {
+			char c = prefix.charAt(i);
+			if (c != Character.MAX_VALUE) {
+				return prefix.substring(0, i) + (char) (c + 1);
+			}
+		}
+		return null;
+	}
+
 	// Matches any Unicode newlines (including the Windows newline sequence):
 	private static final Pattern NEWLINE_PATTERN = Pattern.compile("\\R");
 	// Additionally matches literal Unix newlines:
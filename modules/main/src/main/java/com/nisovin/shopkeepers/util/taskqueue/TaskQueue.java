@@ -1,7 +1,12 @@
 package com.nisovin.shopkeepers.util.taskqueue;
 
-import java.util.ArrayDeque;
-import java.util.Queue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
@@ -16,11 +21,11 @@ import com.nisovin.shopkeepers.util.java.Validate;
  * A {@link BukkitScheduler} task that processes a queue of work units.
  * <p>
  * A {@link TaskQueue} has two main characteristics: The rate at which the task executes and can
- * therefore process pending work units, and how many of these work units it processes per
- * execution. The chosen execution rate and the number of processed work units per execution are a
- * balance between the following considerations:
+ * therefore process pending work units, and the time budget for processing these work units per
+ * execution. The chosen execution rate and the time budget per execution are a balance between the
+ * following considerations:
  * <ul>
- * <li>The number of work units processed per execution has to remain low enough to avoid
+ * <li>The time spent on processing work units per execution has to remain low enough to avoid
  * performance drops.
  * <li>More frequent execution rates have lower latencies for work units to be processed, balance
  * the load across more ticks, and can process more work units per time unit while still avoiding
@@ -35,42 +40,60 @@ import com.nisovin.shopkeepers.util.java.Validate;
  * which new work units are typically produced, without causing disruptions due to other components
  * or users having to wait for these work units to be processed.
  * </ul>
+ * <p>
+ * The pending work units are processed in the order of their {@link #getPriority(Object)
+ * priority}, and in the order in which they were added if their priorities are equal. Since
+ * priorities can change over time (e.g. when they depend on the locations of players), they are
+ * only evaluated when a work unit is added and when {@link #updatePriorities()} is called.
  *
  * @param <T>
  *            the type of work units
  */
 public abstract class TaskQueue<@NonNull T> implements TaskQueueStatistics {
 
-	// Note: In comparison to a linked list, ArrayDeque is more cache friendly, requires one less
-	// reference lookup to retrieve elements, and produces less objects and therefore garbage
-	// collection overhead.
-	// However, in order to more efficiently remove work units from the queue again (ArrayDeque has
-	// to move elements when removing an element from the middle), an idea has been to set the
-	// element to null and then ignore null elements when processing work units. Since ArrayDeque
-	// doesn't support null elements, this would either require our own implementation of
-	// ArrayDeque, or we would have to store separate 'Entry' objects which then hold the references
-	// to the work units. To not wastefully create and throw away these Entry objects, a second
-	// ArrayDeque could be used as cache for unused Entry objects.
-	// However, this would negate some of the benefits of using an ArrayDeque in the first place:
-	// It's less cache friendly (the Entry objects require their own memory and may be distributed
-	// across the memory), and adding, removing, and retrieving elements is slightly more costly.
-	// This has not yet been benchmarked (TODO), but taking the following additional considerations
-	// into account (specific to how we use this queue though), we simply keep using ArrayDeque as
-	// it is for now:
-	// - Accessing (and searching through) elements is cache friendly.
-	// - Moving array elements is highly optimized.
-	// - We expect the queue to remain relatively small in size, so moving elements is probably not
-	// that costly.
-	// - We expect actual removals to occur relatively infrequently (whereas checking if the queue
-	// contains an element that needs to be removed may occur comparatively more often).
+	// The number of most recent wait times that are kept for the wait time percentiles:
+	private static final int WAIT_TIME_SAMPLES = 1024;
+
+	private static final class Entry<@NonNull T> {
+
+		final T workUnit;
+		final long sequence;
+		final long addedNanos;
+		long priority;
+		// Removed entries remain inside the priority queue until they are polled or until the
+		// priority queue is rebuilt.
+		boolean removed = false;
+
+		Entry(T workUnit, long sequence, long addedNanos, long priority) {
+			this.workUnit = workUnit;
+			this.sequence = sequence;
+			this.addedNanos = addedNanos;
+			this.priority = priority;
+		}
+	}
+
+	private static final Comparator<Entry<?>> ENTRY_ORDER = Comparator
+			.<Entry<?>>comparingLong(entry -> entry.priority)
+			.thenComparingLong(entry -> entry.sequence);
 
 	private final Plugin plugin;
 	private final int taskPeriodTicks;
-	private final int workUnitsPerExecution;
-	private final Queue<@NonNull T> pending = new ArrayDeque<>();
+	private final long budgetNanos;
+	// Note: Removing an element from the middle of a PriorityQueue requires a linear search. We
+	// therefore keep track of the entries of the pending work units and only mark removed entries,
+	// and then skip them when they are polled. If the removed entries accumulate, the priority queue
+	// is rebuilt.
+	private final Map<@NonNull T, Entry<@NonNull T>> entries = new HashMap<>();
+	private PriorityQueue<Entry<@NonNull T>> queue = new PriorityQueue<>(ENTRY_ORDER);
+	private long nextSequence = 0L;
 	private int maxPending = 0;
 	private @Nullable BukkitTask task = null;
 
+	// Ring buffer of the most recent wait times:
+	private final long[] waitTimeSamples = new long[WAIT_TIME_SAMPLES];
+	private int waitTimeSamplesCount = 0;
+	private int nextWaitTimeSample = 0;
+
 	/**
 	 * Creates a new {@link TaskQueue}.
 	 * 
@@ -78,16 +101,18 @@ public abstract class TaskQueue<@NonNull T> implements TaskQueueStatistics {
 	 *            the plugin, not <code>null</code>
 	 * @param taskPeriodTicks
 	 *            the period ticks of the task processing work units
-	 * @param workUnitsPerExecution
-	 *            the number of work units that are processed per task execution
+	 * @param budgetNanos
+	 *            the time in nanoseconds after which the task stops processing work units during an
+	 *            execution, and continues during its next execution; at least one work unit is
+	 *            processed per execution
 	 */
-	public TaskQueue(Plugin plugin, int taskPeriodTicks, int workUnitsPerExecution) {
+	public TaskQueue(Plugin plugin, int taskPeriodTicks, long budgetNanos) {
 		Validate.notNull(plugin, "plugin is null");
 		Validate.isTrue(taskPeriodTicks > 0, "taskPeriodTicks has to be positive");
-		Validate.isTrue(workUnitsPerExecution > 0, "workUnitsPerExecution has to be positive");
+		Validate.isTrue(budgetNanos > 0, "budgetNanos has to be positive");
 		this.plugin = plugin;
 		this.taskPeriodTicks = taskPeriodTicks;
-		this.workUnitsPerExecution = workUnitsPerExecution;
+		this.budgetNanos = budgetNanos;
 	}
 
 	/**
@@ -106,10 +131,14 @@ public abstract class TaskQueue<@NonNull T> implements TaskQueueStatistics {
 	 */
 	public void shutdown() {
 		// Invoke removal callbacks for all pending work units:
-		pending.forEach(this::onRemoval);
-		pending.clear();
+		List<@NonNull T> pendingWorkUnits = new ArrayList<>(entries.keySet());
+		entries.clear();
+		queue.clear();
+		pendingWorkUnits.forEach(this::onRemoval);
 		this.stopTask();
 		maxPending = 0;
+		waitTimeSamplesCount = 0;
+		nextWaitTimeSample = 0;
 	}
 
 	// WORK UNITS
@@ -118,14 +147,22 @@ public abstract class TaskQueue<@NonNull T> implements TaskQueueStatistics {
 	 * Adds a new work unit to the queue.
 	 * 
 	 * @param workUnit
-	 *            the work unit, not <code>null</code>
+	 *            the work unit, not <code>null</code>, and not already pending
 	 */
 	public void add(@NonNull T workUnit) {
-		assert workUnit != null; // Also checked by queue already
-		pending.add(workUnit);
+		Validate.notNull(workUnit, "workUnit is null");
+		Validate.isTrue(!entries.containsKey(workUnit), "workUnit is already pending");
+		Entry<@NonNull T> entry = new Entry<>(
+				workUnit,
+				nextSequence++,
+				System.nanoTime(),
+				this.getPriority(workUnit)
+		);
+		entries.put(workUnit, entry);
+		queue.add(entry);
 
 		// Update max pending:
-		int size = pending.size();
+		int size = entries.size();
 		if (size > maxPending) {
 			maxPending = size;
 		}
@@ -150,8 +187,15 @@ public abstract class TaskQueue<@NonNull T> implements TaskQueueStatistics {
 	 *            the work unit, not <code>null</code>
 	 */
 	public void remove(@NonNull T workUnit) {
-		assert workUnit != null; // Also checked by queue already
-		if (pending.remove(workUnit)) {
+		assert workUnit != null;
+		Entry<@NonNull T> entry = entries.remove(workUnit);
+		if (entry != null) {
+			entry.removed = true;
+			// Rebuild the priority queue if most of its entries have been removed:
+			if (queue.size() > 2 * entries.size() + 16) {
+				this.rebuildQueue();
+			}
+
 			// Callback for subclasses:
 			this.onRemoval(workUnit);
 		}
@@ -167,11 +211,47 @@ public abstract class TaskQueue<@NonNull T> implements TaskQueueStatistics {
 	protected void onRemoval(@NonNull T workUnit) {
 	}
 
+	// PRIORITIES
+
+	/**
+	 * Gets the priority of the given work unit.
+	 * <p>
+	 * Work units with lower values are processed first. By default, all work units have the same
+	 * priority, i.e. they are processed in the order in which they were added.
+	 * 
+	 * @param workUnit
+	 *            the work unit, not <code>null</code>
+	 * @return the priority
+	 */
+	protected long getPriority(@NonNull T workUnit) {
+		return 0L;
+	}
+
+	/**
+	 * Re-evaluates the {@link #getPriority(Object) priorities} of all pending work units.
+	 */
+	protected void updatePriorities() {
+		if (entries.isEmpty()) return;
+		entries.values().forEach(entry -> {
+			entry.priority = this.getPriority(entry.workUnit);
+		});
+		this.rebuildQueue();
+	}
+
+	private void rebuildQueue() {
+		PriorityQueue<Entry<@NonNull T>> newQueue = new PriorityQueue<>(
+				Math.max(1, entries.size()),
+				ENTRY_ORDER
+		);
+		newQueue.addAll(entries.values());
+		queue = newQueue;
+	}
+
 	// STATISTICS
 
 	@Override
 	public int getPendingCount() {
-		return pending.size();
+		return entries.size();
 	}
 
 	@Override
@@ -179,6 +259,29 @@ public abstract class TaskQueue<@NonNull T> implements TaskQueueStatistics {
 		return maxPending;
 	}
 
+	@Override
+	public double getWaitTimePercentileMillis(double percentile) {
+		Validate.isTrue(percentile >= 0.0D && percentile <= 100.0D,
+				"percentile has to be between 0 and 100");
+		int count = waitTimeSamplesCount;
+		if (count == 0) return 0.0D;
+
+		long[] sortedSamples = Arrays.copyOf(waitTimeSamples, count);
+		Arrays.sort(sortedSamples);
+		// Nearest-rank method:
+		int rank = (int) Math.ceil(percentile / 100.0D * count);
+		int index = Math.max(0, rank - 1);
+		return sortedSamples[index] / 1000000.0D;
+	}
+
+	private void recordWaitTime(long waitTimeNanos) {
+		waitTimeSamples[nextWaitTimeSample] = waitTimeNanos;
+		nextWaitTimeSample = (nextWaitTimeSample + 1) % WAIT_TIME_SAMPLES;
+		if (waitTimeSamplesCount < WAIT_TIME_SAMPLES) {
+			waitTimeSamplesCount++;
+		}
+	}
+
 	// TASK
 
 	private void startTask() {
@@ -213,21 +316,26 @@ public abstract class TaskQueue<@NonNull T> implements TaskQueueStatistics {
 
 	private void execute() {
 		// Skip the whole loop if there are no pending work units:
-		Queue<@NonNull T> queue = pending;
-		if (queue.isEmpty()) {
+		if (entries.isEmpty()) {
 			return;
 		}
 
-		int localWorkUnitsPerExecution = workUnitsPerExecution;
-		for (int i = 0; i < localWorkUnitsPerExecution; ++i) {
-			@Nullable T workUnit = queue.poll();
-			if (workUnit == null) {
+		long startNanos = System.nanoTime();
+		boolean first = true;
+		while (first || (System.nanoTime() - startNanos) < budgetNanos) {
+			@Nullable Entry<@NonNull T> entry = queue.poll();
+			if (entry == null) {
 				// The queue is empty:
 				return;
 			}
+			if (entry.removed) continue;
+
+			first = false;
+			entries.remove(entry.workUnit);
+			this.recordWaitTime(System.nanoTime() - entry.addedNanos);
 
 			// Process the work unit:
-			this.process(workUnit);
+			this.process(entry.workUnit);
 		}
 	}
 
@@ -18,4 +18,18 @@ public interface TaskQueueStatistics {
 	 * @return the maximum number of pending work units
 	 */
 	public int getMaxPendingCount();
+
+	/**
+	 * Gets the given percentile of the times that the most recently processed work units were
+	 * pending before they were processed.
+	 * <p>
+	 * High wait times indicate that the queue is not able to keep up with the rate at which new
+	 * work units are added.
+	 * 
+	 * @param percentile
+	 *            the percentile, between <code>0</code> and <code>100</code>
+	 * @return the wait time in milliseconds, or <code>0</code> if no work units have been processed
+	 *         yet
+	 */
+	public double getWaitTimePercentileMillis(double percentile);
 }
@@ -0,0 +1,134 @@
+package com.nisovin.shopkeepers.util.timer;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.nisovin.shopkeepers.util.java.TimeUtils;
+import com.nisovin.shopkeepers.util.java.Validate;
+
+/**
+ * Records the distribution of durations in order to provide percentiles.
+ * <p>
+ * Similar to an HDR histogram, the recorded values are counted in buckets whose size grows with
+ * the magnitude of the values: Each power of two range is split into {@value #SUB_BUCKETS} buckets
+ * of equal size. The reported percentiles therefore deviate by at most around 6% from the actually
+ * recorded values, regardless of their magnitude, while the memory usage of the histogram is
+ * constant.
+ * <p>
+ * This class is thread-safe, so that durations can also be recorded by asynchronous tasks.
+ */
+public final class Histogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // 16
+	// Values below SUB_BUCKETS are counted exactly. The remaining buckets cover the shifts 0 to
+	// (63 - SUB_BUCKET_BITS) of the values' top bits.
+	private static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS + 1);
+
+	private final long[] counts = new long[BUCKETS];
+	private long count = 0L;
+	private long totalNanos = 0L;
+	private long maxNanos = 0L;
+
+	public Histogram() {
+	}
+
+	private static int getBucket(long value) {
+		assert value >= 0;
+		if (value < SUB_BUCKETS) return (int) value;
+		int highestBit = 63 - Long.numberOfLeadingZeros(value);
+		int shift = highestBit - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS; // Top bits without the highest bit
+		return SUB_BUCKETS * (shift + 1) + subBucket;
+	}
+
+	// The highest value that is counted in the given bucket.
+	private static long getBucketUpperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		int shift = bucket / SUB_BUCKETS - 1;
+		long topBits = SUB_BUCKETS + (bucket % SUB_BUCKETS);
+		long upperBound = ((topBits + 1) << shift) - 1;
+		return (upperBound < 0) ? Long.MAX_VALUE : upperBound; // Overflow for the highest bucket
+	}
+
+	/**
+	 * Records the given duration.
+	 * 
+	 * @param nanos
+	 *            the duration in nanoseconds, negative durations are recorded as <code>0</code>
+	 */
+	public synchronized void record(long nanos) {
+		long value = Math.max(0L, nanos);
+		counts[getBucket(value)]++;
+		count++;
+		totalNanos += value;
+		if (value > maxNanos) {
+			maxNanos = value;
+		}
+	}
+
+	public synchronized void reset() {
+		Arrays.fill(counts, 0L);
+		count = 0L;
+		totalNanos = 0L;
+		maxNanos = 0L;
+	}
+
+	/**
+	 * Gets the number of recorded durations.
+	 * 
+	 * @return the number of recorded durations
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the sum of all recorded durations.
+	 * 
+	 * @return the total duration in nanoseconds
+	 */
+	public synchronized long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public synchronized long getMaxNanos() {
+		return maxNanos;
+	}
+
+	/**
+	 * Gets the given percentile of the recorded durations.
+	 * 
+	 * @param percentile
+	 *            the percentile, between <code>0</code> and <code>100</code>
+	 * @return the duration in nanoseconds, or <code>0</code> if no durations have been recorded
+	 */
+	public synchronized long getPercentileNanos(double percentile) {
+		Validate.isTrue(percentile >= 0.0D && percentile <= 100.0D,
+				"percentile has to be between 0 and 100");
+		if (count == 0L) return 0L;
+
+		// Nearest-rank method:
+		long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0D * count));
+		long seen = 0L;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += counts[bucket];
+			if (seen >= rank) {
+				return Math.min(getBucketUpperBound(bucket), maxNanos);
+			}
+		}
+		return maxNanos;
+	}
+
+	public double getPercentileMillis(double percentile) {
+		return TimeUtils.convert(
+				this.getPercentileNanos(percentile),
+				TimeUnit.NANOSECONDS,
+				TimeUnit.MILLISECONDS
+		);
+	}
+
+	public double getMaxMillis() {
+		return TimeUtils.convert(this.getMaxNanos(), TimeUnit.NANOSECONDS, TimeUnit.MILLISECONDS);
+	}
+}
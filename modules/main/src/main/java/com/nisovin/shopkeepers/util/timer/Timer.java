@@ -2,6 +2,8 @@ package com.nisovin.shopkeepers.util.timer;
 
 import java.util.concurrent.TimeUnit;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import com.nisovin.shopkeepers.util.java.TimeUtils;
 import com.nisovin.shopkeepers.util.logging.Log;
 
@@ -14,6 +16,9 @@ public class Timer implements Timings {
 	// log with errors when an unexpected timer state is retained and also affects all future timer
 	// operations, we only log the error once and then disable all future timer state checks.
 
+	// Optional: Additionally records the individual timings.
+	private final @Nullable Histogram histogram;
+
 	private long counter = 0L;
 	private long totalTimeNanos = 0L;
 	private long maxTimeNanos = 0L;
@@ -27,6 +32,17 @@ public class Timer implements Timings {
 	private boolean stateErrorEncountered = false;
 
 	public Timer() {
+		this(null);
+	}
+
+	/**
+	 * Creates a new {@link Timer}.
+	 * 
+	 * @param histogram
+	 *            if not <code>null</code>, the timings are additionally recorded in this histogram
+	 */
+	public Timer(@Nullable Histogram histogram) {
+		this.histogram = histogram;
 	}
 
 	private void validateState(boolean expectedStated) {
@@ -87,6 +103,23 @@ public class Timer implements Timings {
 		if (elapsedTimeNanos > maxTimeNanos) {
 			maxTimeNanos = elapsedTimeNanos;
 		}
+
+		if (histogram != null) {
+			histogram.record(elapsedTimeNanos);
+		}
+	}
+
+	/**
+	 * Gets the elapsed time of the current timing.
+	 * <p>
+	 * This can be used to check the elapsed time while the timing is still in progress.
+	 * 
+	 * @return the elapsed time in nanoseconds, or <code>0</code> if there is no current timing
+	 */
+	public long getElapsedTimeNanos() {
+		if (!started) return 0L;
+		if (paused) return elapsedTimeNanos;
+		return elapsedTimeNanos + (System.nanoTime() - startTimeNanos);
 	}
 
 	// TIMINGS
@@ -0,0 +1,425 @@
+package com.nisovin.shopkeepers.world;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.api.internal.util.Unsafe;
+import com.nisovin.shopkeepers.api.util.ChunkCoords;
+import com.nisovin.shopkeepers.util.bukkit.WorldChunkMap;
+import com.nisovin.shopkeepers.util.java.Validate;
+import com.nisovin.shopkeepers.util.timer.Timer;
+import com.nisovin.shopkeepers.util.timer.Timings;
+
+/**
+ * Keeps track of the chunks that are near online players.
+ * <p>
+ * For every {@link #addListener(int, ProximityListener) requested} chunk radius, we keep track of
+ * the number of players within that radius around each chunk. These counts are updated
+ * incrementally whenever a player crosses a chunk border, changes the world, joins, or quits the
+ * server, and the registered {@link ProximityListener}s are informed whenever a chunk enters or
+ * leaves the proximity of all players. Components that need to know which chunks are near players
+ * can therefore react to these transitions, instead of periodically checking the chunks around
+ * every online player.
+ * <p>
+ * The updates caused by player joins and teleports are applied with a delay of one tick, after the
+ * server has completely handled the join or teleport and loaded the chunks at the player's new
+ * location. Since player movements are not reliably indicated by events in all cases (e.g. when
+ * the player is riding a vehicle), we also periodically compare the tracked chunk of each player
+ * with the player's current chunk.
+ */
+public final class PlayerProximityIndex {
+
+	/**
+	 * Receives the proximity transitions of chunks.
+	 */
+	public interface ProximityListener {
+
+		/**
+		 * Called when the specified chunk enters the chunk radius around at least one player.
+		 * 
+		 * @param worldName
+		 *            the world name
+		 * @param chunkX
+		 *            the chunk x coordinate
+		 * @param chunkZ
+		 *            the chunk z coordinate
+		 */
+		public void onChunkNearPlayers(String worldName, int chunkX, int chunkZ);
+
+		/**
+		 * Called when the specified chunk is no longer within the chunk radius around any player.
+		 * 
+		 * @param worldName
+		 *            the world name
+		 * @param chunkX
+		 *            the chunk x coordinate
+		 * @param chunkZ
+		 *            the chunk z coordinate
+		 */
+		public void onChunkNoLongerNearPlayers(String worldName, int chunkX, int chunkZ);
+	}
+
+	/**
+	 * The period in ticks in which we compare the tracked chunks of all players with their current
+	 * chunks.
+	 */
+	private static final long PLAYER_RESYNC_PERIOD_TICKS = 20L;
+
+	private static final Location sharedLocation = new Location(null, 0, 0, 0);
+
+	private final class PlayerListener implements Listener {
+
+		PlayerListener() {
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onPlayerJoin(PlayerJoinEvent event) {
+			updatePlayerDelayed(event.getPlayer());
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onPlayerQuit(PlayerQuitEvent event) {
+			removePlayer(event.getPlayer());
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onPlayerMove(PlayerMoveEvent event) {
+			Location to = event.getTo();
+			if (to == null) return;
+
+			// Quick check: Most player movements don't cross a chunk border.
+			Location from = event.getFrom();
+			if ((from.getBlockX() >> 4) == (to.getBlockX() >> 4)
+					&& (from.getBlockZ() >> 4) == (to.getBlockZ() >> 4)) {
+				return;
+			}
+			updatePlayer(event.getPlayer(), to);
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		void onPlayerTeleport(PlayerTeleportEvent event) {
+			// The target location can be null in some circumstances (e.g. when a player enters an
+			// end gateway, but there is no end world). We ignore the event in this case.
+			if (event.getTo() == null) return;
+
+			updatePlayerDelayed(event.getPlayer());
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR)
+		void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+			updatePlayerDelayed(event.getPlayer());
+		}
+
+		@EventHandler(priority = EventPriority.MONITOR)
+		void onPlayerRespawn(PlayerRespawnEvent event) {
+			updatePlayerDelayed(event.getPlayer());
+		}
+	}
+
+	private static final class PlayerData {
+
+		private String worldName;
+		private int chunkX;
+		private int chunkZ;
+
+		PlayerData(String worldName, int chunkX, int chunkZ) {
+			this.worldName = worldName;
+			this.chunkX = chunkX;
+			this.chunkZ = chunkZ;
+		}
+
+		boolean isAt(String worldName, int chunkX, int chunkZ) {
+			return this.chunkX == chunkX && this.chunkZ == chunkZ
+					&& this.worldName.equals(worldName);
+		}
+	}
+
+	// Mutable to avoid boxing the counts on every update:
+	private static final class PlayerCount {
+
+		private int value = 0;
+
+		PlayerCount() {
+		}
+	}
+
+	// Tracks the player counts for a specific chunk radius.
+	private static final class Layer {
+
+		private final int chunkRadius;
+		private final WorldChunkMap<PlayerCount> playerCounts = new WorldChunkMap<>();
+		private final List<ProximityListener> listeners = new ArrayList<>();
+
+		Layer(int chunkRadius) {
+			this.chunkRadius = chunkRadius;
+		}
+
+		boolean isNearPlayers(String worldName, int chunkX, int chunkZ) {
+			return playerCounts.containsKey(worldName, chunkX, chunkZ);
+		}
+
+		void addPlayer(String worldName, int centerChunkX, int centerChunkZ, boolean notify) {
+			int minChunkX = centerChunkX - chunkRadius;
+			int maxChunkX = centerChunkX + chunkRadius;
+			int minChunkZ = centerChunkZ - chunkRadius;
+			int maxChunkZ = centerChunkZ + chunkRadius;
+			for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+				for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+					PlayerCount count = playerCounts.computeIfAbsent(
+							worldName,
+							chunkX,
+							chunkZ,
+							chunkKey -> new PlayerCount()
+					);
+					count.value++;
+					if (notify && count.value == 1) {
+						for (ProximityListener listener : listeners) {
+							listener.onChunkNearPlayers(worldName, chunkX, chunkZ);
+						}
+					}
+				}
+			}
+		}
+
+		void removePlayer(String worldName, int centerChunkX, int centerChunkZ) {
+			int minChunkX = centerChunkX - chunkRadius;
+			int maxChunkX = centerChunkX + chunkRadius;
+			int minChunkZ = centerChunkZ - chunkRadius;
+			int maxChunkZ = centerChunkZ + chunkRadius;
+			for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+				for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+					PlayerCount count = playerCounts.get(worldName, chunkX, chunkZ);
+					if (count == null) continue; // Unexpected
+					count.value--;
+					if (count.value > 0) continue;
+
+					playerCounts.remove(worldName, chunkX, chunkZ);
+					for (ProximityListener listener : listeners) {
+						listener.onChunkNoLongerNearPlayers(worldName, chunkX, chunkZ);
+					}
+				}
+			}
+		}
+	}
+
+	private final Plugin plugin;
+	private final PlayerListener listener = new PlayerListener();
+	private final Map<UUID, PlayerData> players = new HashMap<>();
+	private final List<Layer> layers = new ArrayList<>();
+	private @Nullable BukkitTask resyncTask = null;
+	private boolean enabled = false;
+
+	private final Timer updateTimings = new Timer();
+
+	public PlayerProximityIndex(Plugin plugin) {
+		Validate.notNull(plugin, "plugin is null");
+		this.plugin = plugin;
+	}
+
+	public void onEnable() {
+		Bukkit.getPluginManager().registerEvents(listener, plugin);
+		enabled = true;
+
+		for (Player player : Bukkit.getOnlinePlayers()) {
+			assert player != null;
+			this.updatePlayer(player);
+		}
+
+		resyncTask = Bukkit.getScheduler().runTaskTimer(
+				plugin,
+				this::resyncPlayers,
+				PLAYER_RESYNC_PERIOD_TICKS,
+				PLAYER_RESYNC_PERIOD_TICKS
+		);
+	}
+
+	public void onDisable() {
+		HandlerList.unregisterAll(listener);
+		enabled = false;
+		if (resyncTask != null) {
+			resyncTask.cancel();
+			resyncTask = null;
+		}
+		players.clear();
+		layers.clear();
+		updateTimings.reset();
+	}
+
+	// LISTENERS
+
+	/**
+	 * Registers the given {@link ProximityListener} for the specified chunk radius.
+	 * <p>
+	 * The listener is only informed about future proximity transitions. Use
+	 * {@link #isNearPlayers(int, String, int, int)} to determine the current state of a chunk.
+	 * 
+	 * @param chunkRadius
+	 *            the radius in chunks around players, a radius of {@code zero} only includes the
+	 *            players' own chunks
+	 * @param listener
+	 *            the listener, not <code>null</code>
+	 */
+	public void addListener(int chunkRadius, ProximityListener listener) {
+		Validate.notNull(listener, "listener is null");
+		this.getOrCreateLayer(chunkRadius).listeners.add(listener);
+	}
+
+	/**
+	 * Unregisters the given {@link ProximityListener}.
+	 * 
+	 * @param listener
+	 *            the listener, not <code>null</code>
+	 */
+	public void removeListener(ProximityListener listener) {
+		Validate.notNull(listener, "listener is null");
+		// Note: We keep the layer even if it has no listeners anymore. We expect only a few
+		// distinct chunk radii to be used during the lifetime of the plugin.
+		for (Layer layer : layers) {
+			layer.listeners.remove(listener);
+		}
+	}
+
+	private @Nullable Layer getLayer(int chunkRadius) {
+		for (Layer layer : layers) {
+			if (layer.chunkRadius == chunkRadius) {
+				return layer;
+			}
+		}
+		return null;
+	}
+
+	private Layer getOrCreateLayer(int chunkRadius) {
+		Validate.isTrue(chunkRadius >= 0, "chunkRadius cannot be negative");
+		Layer layer = this.getLayer(chunkRadius);
+		if (layer == null) {
+			layer = new Layer(chunkRadius);
+			layers.add(layer);
+
+			// Add the already tracked players:
+			for (PlayerData playerData : players.values()) {
+				layer.addPlayer(playerData.worldName, playerData.chunkX, playerData.chunkZ, false);
+			}
+		}
+		return layer;
+	}
+
+	// PLAYERS
+
+	private void updatePlayerDelayed(Player player) {
+		if (!enabled) return;
+		Bukkit.getScheduler().runTask(plugin, () -> {
+			if (!enabled) return;
+			if (!player.isOnline()) return; // Player is no longer online
+			this.updatePlayer(player);
+		});
+	}
+
+	private void resyncPlayers() {
+		for (Player player : Bukkit.getOnlinePlayers()) {
+			assert player != null;
+			this.updatePlayer(player);
+		}
+	}
+
+	private void updatePlayer(Player player) {
+		Location location = Unsafe.assertNonNull(player.getLocation(sharedLocation));
+		this.updatePlayer(player, location);
+		sharedLocation.setWorld(null); // Reset
+	}
+
+	private void updatePlayer(Player player, Location location) {
+		World world = Unsafe.assertNonNull(location.getWorld());
+		String worldName = world.getName();
+		int chunkX = ChunkCoords.fromBlock(location.getBlockX());
+		int chunkZ = ChunkCoords.fromBlock(location.getBlockZ());
+
+		PlayerData playerData = players.get(player.getUniqueId());
+		if (playerData != null && playerData.isAt(worldName, chunkX, chunkZ)) return;
+
+		updateTimings.start();
+		// We add the player to their new chunks before we remove them from their old chunks, so
+		// that chunks that are near the player before and after the move remain near players.
+		for (Layer layer : layers) {
+			layer.addPlayer(worldName, chunkX, chunkZ, true);
+			if (playerData != null) {
+				layer.removePlayer(playerData.worldName, playerData.chunkX, playerData.chunkZ);
+			}
+		}
+		updateTimings.stop();
+
+		if (playerData == null) {
+			players.put(player.getUniqueId(), new PlayerData(worldName, chunkX, chunkZ));
+		} else {
+			playerData.worldName = worldName;
+			playerData.chunkX = chunkX;
+			playerData.chunkZ = chunkZ;
+		}
+	}
+
+	private void removePlayer(Player player) {
+		PlayerData playerData = players.remove(player.getUniqueId());
+		if (playerData == null) return;
+
+		updateTimings.start();
+		for (Layer layer : layers) {
+			layer.removePlayer(playerData.worldName, playerData.chunkX, playerData.chunkZ);
+		}
+		updateTimings.stop();
+	}
+
+	// QUERIES
+
+	/**
+	 * Checks if the specified chunk is within the given chunk radius around at least one player.
+	 * 
+	 * @param chunkRadius
+	 *            the radius in chunks around players, a {@link #addListener(int, ProximityListener)
+	 *            listener} needs to be registered for this radius
+	 * @param worldName
+	 *            the world name
+	 * @param chunkX
+	 *            the chunk x coordinate
+	 * @param chunkZ
+	 *            the chunk z coordinate
+	 * @return <code>true</code> if the chunk is near at least one player
+	 */
+	public boolean isNearPlayers(int chunkRadius, String worldName, int chunkX, int chunkZ) {
+		Layer layer = this.getLayer(chunkRadius);
+		if (layer == null) {
+			throw new IllegalStateException("No listener registered for chunk radius "
+					+ chunkRadius + "!");
+		}
+		return layer.isNearPlayers(worldName, chunkX, chunkZ);
+	}
+
+	/**
+	 * Gets the timings of the updates caused by players crossing chunk borders, including the
+	 * invocations of the listeners.
+	 * 
+	 * @return the update timings
+	 */
+	public Timings getUpdateTimings() {
+		return updateTimings;
+	}
+}
@@ -3,7 +3,14 @@ package com.nisovin.shopkeepers;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
@@ -11,11 +18,21 @@ import org.bukkit.Material;
 import org.bukkit.craftbukkit.v1_20_R4.inventory.CraftItemStack;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.junit.Test;
 
 import com.nisovin.shopkeepers.api.internal.util.Unsafe;
+import com.nisovin.shopkeepers.api.util.ChunkCoords;
+import com.nisovin.shopkeepers.config.Settings;
+import com.nisovin.shopkeepers.currency.Currencies;
+import com.nisovin.shopkeepers.currency.Currency;
 import com.nisovin.shopkeepers.testutil.AbstractBukkitTest;
 import com.nisovin.shopkeepers.util.TestItemStacks;
+import com.nisovin.shopkeepers.util.bukkit.MutableChunkCoords;
+import com.nisovin.shopkeepers.util.bukkit.WorldChunkMap;
+import com.nisovin.shopkeepers.util.data.persistence.InvalidDataFormatException;
+import com.nisovin.shopkeepers.util.data.persistence.bukkit.BukkitBinaryDataStore;
+import com.nisovin.shopkeepers.util.data.persistence.bukkit.BukkitConfigDataStore;
 import com.nisovin.shopkeepers.util.inventory.ItemData;
 import com.nisovin.shopkeepers.util.inventory.ItemUtils;
 import com.nisovin.shopkeepers.util.java.MutableLong;
@@ -277,6 +294,125 @@ public class PerformanceTests extends AbstractBukkitTest {
 		);
 	}
 
+	private static ItemStack createNamedItemStack(Material type, String displayName) {
+		ItemStack itemStack = new ItemStack(type);
+		ItemMeta itemMeta = Unsafe.assertNonNull(itemStack.getItemMeta());
+		itemMeta.setDisplayName(displayName);
+		itemStack.setItemMeta(itemMeta);
+		return itemStack;
+	}
+
+	// The contents of a full double chest with a mix of currency and non-currency items, similar to
+	// the chest of a player shop.
+	private static List<CraftItemStack> createDoubleChestContents() {
+		List<ItemStack> itemStacks = List.of(
+				createNamedItemStack(Material.EMERALD, "Coin"),
+				createNamedItemStack(Material.EMERALD_BLOCK, "Big Coin"),
+				new ItemStack(Material.EMERALD), // Not currency: Missing the display name
+				createNamedItemStack(Material.EMERALD, "Not a coin"),
+				TestItemStacks.createItemStackBasic(),
+				TestItemStacks.createItemStackDisplayName(),
+				TestItemStacks.createItemStackComplete(),
+				TestItemStacks.createItemStackUncommonMeta()
+		);
+		List<CraftItemStack> contents = new ArrayList<>(54);
+		for (int slot = 0; slot < 54; slot++) {
+			contents.add(CraftItemStack.asCraftCopy(itemStacks.get(slot % itemStacks.size())));
+		}
+		return contents;
+	}
+
+	@Test
+	public void testCurrencyMatchingPerformance() {
+		LOGGER.info("Testing currency matching performance (full double chest):");
+		int warmupCount = 1000;
+		int testCount = 100000;
+		// All cases use the same currencies: We temporarily configure the currency items and reload
+		// the currencies.
+		ItemData previousCurrencyItem = Settings.currencyItem;
+		ItemData previousHighCurrencyItem = Settings.highCurrencyItem;
+		int previousHighCurrencyValue = Settings.highCurrencyValue;
+		Settings.currencyItem = new ItemData(createNamedItemStack(Material.EMERALD, "Coin"));
+		Settings.highCurrencyItem = new ItemData(
+				createNamedItemStack(Material.EMERALD_BLOCK, "Big Coin")
+		);
+		Settings.highCurrencyValue = 9;
+		Currencies.load();
+		try {
+			runCurrencyMatchingTests(warmupCount, testCount);
+		} finally {
+			Settings.currencyItem = previousCurrencyItem;
+			Settings.highCurrencyItem = previousHighCurrencyItem;
+			Settings.highCurrencyValue = previousHighCurrencyValue;
+			Currencies.load();
+		}
+	}
+
+	private static void runCurrencyMatchingTests(int warmupCount, int testCount) {
+		List<? extends Currency> currencies = Currencies.getAll();
+		if (currencies.size() != 2) {
+			throw new IllegalStateException("Unexpected number of currencies.");
+		}
+		List<CraftItemStack> contents = createDoubleChestContents();
+
+		// In order to avoid that the compiler optimizes these operations away, we increment this
+		// value during the tests:
+		MutableLong matches = new MutableLong();
+
+		testPerformance(
+				"  ",
+				"linear ItemData#matches",
+				warmupCount,
+				testCount,
+				() -> {
+					for (ItemStack itemStack : contents) {
+						for (Currency currency : currencies) {
+							if (currency.getItemData().matches(itemStack)) {
+								matches.increment(1);
+								break;
+							}
+						}
+					}
+				}
+		);
+
+		testPerformance(
+				"  ",
+				"linear Currency#matches",
+				warmupCount,
+				testCount,
+				() -> {
+					for (ItemStack itemStack : contents) {
+						for (Currency currency : currencies) {
+							if (currency.matches(itemStack)) {
+								matches.increment(1);
+								break;
+							}
+						}
+					}
+				}
+		);
+
+		// Looks up the candidate currencies by item type:
+		testPerformance(
+				"  ",
+				"Currencies#match",
+				warmupCount,
+				testCount,
+				() -> {
+					for (ItemStack itemStack : contents) {
+						if (Currencies.match(itemStack) != null) {
+							matches.increment(1);
+						}
+					}
+				}
+		);
+
+		if (matches.getValue() == 0) {
+			throw new IllegalStateException("Unexpected test outcome.");
+		}
+	}
+
 	@Test
 	public void testCraftItemStackReflectiveHandleVsCopyPerformance() throws Exception {
 		LOGGER.info("Testing reflective CraftItemStack.handle access vs asNMSCopy performance:");
@@ -398,4 +534,192 @@ public class PerformanceTests extends AbstractBukkitTest {
 			throw new IllegalStateException("Unexpected test outcome.");
 		}
 	}
+
+	// Synthetic shopkeeper data that roughly resembles the data of admin shopkeepers with a few
+	// trading offers.
+	private static Map<String, Object> createSyntheticSaveData(int shopkeeperCount) {
+		ItemStack basicItemStack = TestItemStacks.createItemStackBasic();
+		ItemStack fullItemStack = TestItemStacks.createItemStackComplete();
+		Map<String, Object> saveData = new LinkedHashMap<>();
+		saveData.put("data-version", "4|3953");
+		for (int id = 1; id <= shopkeeperCount; id++) {
+			Map<String, Object> shopkeeperData = new LinkedHashMap<>();
+			shopkeeperData.put("id", id);
+			shopkeeperData.put("uniqueId", UUID.randomUUID().toString());
+			shopkeeperData.put("name", "Shop " + id);
+			shopkeeperData.put("type", "admin");
+			shopkeeperData.put("world", "world");
+			shopkeeperData.put("x", id % 1000);
+			shopkeeperData.put("y", 64);
+			shopkeeperData.put("z", id / 1000);
+			shopkeeperData.put("yaw", 90.0D);
+			Map<String, Object> objectData = new LinkedHashMap<>();
+			objectData.put("type", "villager");
+			objectData.put("profession", "minecraft:farmer");
+			shopkeeperData.put("object", objectData);
+			Map<String, Object> offers = new LinkedHashMap<>();
+			for (int offer = 1; offer <= 3; offer++) {
+				Map<String, Object> offerData = new LinkedHashMap<>();
+				offerData.put("resultItem", fullItemStack);
+				offerData.put("item1", basicItemStack);
+				offers.put(String.valueOf(offer), offerData);
+			}
+			shopkeeperData.put("offers", offers);
+			saveData.put(String.valueOf(id), shopkeeperData);
+		}
+		return saveData;
+	}
+
+	private static long getUsedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	// Keeps the measured object reachable during the heap measurement:
+	private static volatile @Nullable Object heapMeasurementResult = null;
+
+	private static long measureRetainedHeap(Callable<Object> function) throws Exception {
+		long heapBefore = getUsedHeap();
+		heapMeasurementResult = function.call();
+		long retainedHeap = getUsedHeap() - heapBefore;
+		heapMeasurementResult = null;
+		return retainedHeap;
+	}
+
+	@Test
+	public void testSaveFormatPerformance() throws Exception {
+		LOGGER.info("Testing save format performance:");
+		int shopkeeperCount = 50000;
+		int warmupCount = 1;
+		int testCount = 3;
+		Map<String, Object> saveData = createSyntheticSaveData(shopkeeperCount);
+
+		BukkitConfigDataStore yamlData = BukkitConfigDataStore.ofNewYamlConfig();
+		yamlData.setAll(saveData);
+		String yaml = yamlData.saveToString();
+		BukkitBinaryDataStore binaryData = new BukkitBinaryDataStore();
+		binaryData.setAll(saveData);
+		byte[] binary = binaryData.saveToBytes();
+		LOGGER.info("  Size of " + shopkeeperCount + " shopkeepers: Yaml: "
+				+ yaml.getBytes(StandardCharsets.UTF_8).length + " bytes, binary: "
+				+ binary.length + " bytes");
+
+		testPerformance("  ", "Yaml save", warmupCount, testCount, yamlData::saveToString);
+		testPerformance("  ", "Binary save", warmupCount, testCount, binaryData::saveToBytes);
+
+		testPerformance("  ", "Yaml load", warmupCount, testCount, () -> {
+			try {
+				BukkitConfigDataStore.ofNewYamlConfig().loadFromString(yaml);
+			} catch (InvalidDataFormatException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		testPerformance("  ", "Binary load", warmupCount, testCount, () -> {
+			try {
+				new BukkitBinaryDataStore().loadFromBytes(binary);
+			} catch (InvalidDataFormatException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+
+		// Heap retained by the loaded data:
+		long yamlHeap = measureRetainedHeap(() -> {
+			BukkitConfigDataStore loadedData = BukkitConfigDataStore.ofNewYamlConfig();
+			loadedData.loadFromString(yaml);
+			return loadedData;
+		});
+		long binaryHeap = measureRetainedHeap(() -> {
+			BukkitBinaryDataStore loadedData = new BukkitBinaryDataStore();
+			loadedData.loadFromBytes(binary);
+			return loadedData;
+		});
+		LOGGER.info("  Heap usage of the loaded data: Yaml: " + (yamlHeap / 1024) + " KiB, binary: "
+				+ (binaryHeap / 1024) + " KiB");
+	}
+
+	// Simulates a chunk load and unload storm: The chunks of a square area are loaded (added),
+	// looked up multiple times (similar to the chunk activation and the AI / gravity processing),
+	// and then unloaded (removed) again.
+	@Test
+	public void testChunkMapPerformance() {
+		LOGGER.info("Testing chunk map performance:");
+		int warmupCount = 20;
+		int testCount = 200;
+		String worldName = "world";
+		int radius = 32; // 65x65 chunks
+		int lookupsPerChunk = 4;
+		Object value = new Object();
+
+		// In order to avoid that the compiler optimizes these operations away, we increment this
+		// value during the tests:
+		MutableLong hits = new MutableLong();
+
+		Map<ChunkCoords, Object> chunkCoordsMap = new HashMap<>();
+		MutableChunkCoords sharedChunkCoords = new MutableChunkCoords();
+		testPerformance(
+				"  ",
+				"HashMap<ChunkCoords> load/lookup/unload",
+				warmupCount,
+				testCount,
+				() -> {
+					for (int x = -radius; x <= radius; x++) {
+						for (int z = -radius; z <= radius; z++) {
+							chunkCoordsMap.put(new ChunkCoords(worldName, x, z), value);
+						}
+					}
+					for (int i = 0; i < lookupsPerChunk; i++) {
+						for (int x = -radius; x <= radius; x++) {
+							for (int z = -radius; z <= radius; z++) {
+								sharedChunkCoords.set(worldName, x, z);
+								if (chunkCoordsMap.get(sharedChunkCoords) != null) {
+									hits.increment(1);
+								}
+							}
+						}
+					}
+					for (int x = -radius; x <= radius; x++) {
+						for (int z = -radius; z <= radius; z++) {
+							sharedChunkCoords.set(worldName, x, z);
+							chunkCoordsMap.remove(sharedChunkCoords);
+						}
+					}
+				}
+		);
+
+		WorldChunkMap<Object> worldChunkMap = new WorldChunkMap<>();
+		testPerformance(
+				"  ",
+				"WorldChunkMap load/lookup/unload",
+				warmupCount,
+				testCount,
+				() -> {
+					for (int x = -radius; x <= radius; x++) {
+						for (int z = -radius; z <= radius; z++) {
+							worldChunkMap.put(worldName, x, z, value);
+						}
+					}
+					for (int i = 0; i < lookupsPerChunk; i++) {
+						for (int x = -radius; x <= radius; x++) {
+							for (int z = -radius; z <= radius; z++) {
+								if (worldChunkMap.get(worldName, x, z) != null) {
+									hits.increment(1);
+								}
+							}
+						}
+					}
+					for (int x = -radius; x <= radius; x++) {
+						for (int z = -radius; z <= radius; z++) {
+							worldChunkMap.remove(worldName, x, z);
+						}
+					}
+				}
+		);
+
+		if (hits.getValue() == 0) {
+			throw new IllegalStateException("Unexpected test outcome.");
+		}
+	}
 }
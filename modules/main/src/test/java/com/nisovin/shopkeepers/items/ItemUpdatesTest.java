@@ -0,0 +1,184 @@
+package com.nisovin.shopkeepers.items;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.nisovin.shopkeepers.api.events.UpdateItemEvent;
+import com.nisovin.shopkeepers.api.shopkeeper.offers.TradeOffer;
+import com.nisovin.shopkeepers.api.util.UnmodifiableItemStack;
+import com.nisovin.shopkeepers.shopkeeper.offers.SKTradeOffer;
+import com.nisovin.shopkeepers.testutil.AbstractBukkitTest;
+import com.nisovin.shopkeepers.testutil.PluginManagerMock;
+
+public class ItemUpdatesTest extends AbstractBukkitTest {
+
+	// The original items of the called UpdateItemEvents:
+	private final List<UnmodifiableItemStack> eventItems = new ArrayList<>();
+
+	@Before
+	public void setup() {
+		// Emeralds are replaced with diamonds. All other items are not altered.
+		PluginManagerMock.setEventHandler(event -> {
+			if (!(event instanceof UpdateItemEvent)) return;
+
+			UpdateItemEvent updateItemEvent = (UpdateItemEvent) event;
+			UnmodifiableItemStack item = updateItemEvent.getOriginalItem();
+			eventItems.add(item);
+			if (item.getType() == Material.EMERALD) {
+				updateItemEvent.setItem(createItem(Material.DIAMOND, item.getAmount()));
+			}
+		});
+	}
+
+	@After
+	public void cleanup() {
+		PluginManagerMock.setEventHandler(null);
+	}
+
+	private static UnmodifiableItemStack createItem(Material type, int amount) {
+		return UnmodifiableItemStack.ofNonNull(new ItemStack(type, amount));
+	}
+
+	private static TradeOffer createOffer(
+			UnmodifiableItemStack resultItem,
+			UnmodifiableItemStack item1,
+			@Nullable UnmodifiableItemStack item2
+	) {
+		return new SKTradeOffer(resultItem, item1, item2);
+	}
+
+	@Test
+	public void testWithoutMemo() {
+		UnmodifiableItemStack item = createItem(Material.EMERALD, 1);
+		UnmodifiableItemStack updatedItem = ItemUpdates.updateItem(item);
+		Assert.assertEquals(createItem(Material.DIAMOND, 1), updatedItem);
+		// Each update of the item calls an event:
+		Assert.assertEquals(updatedItem, ItemUpdates.updateItem(item));
+		Assert.assertEquals(2, eventItems.size());
+	}
+
+	@Test
+	public void testMemoization() {
+		ItemUpdates.Memo memo = new ItemUpdates.Memo();
+		UnmodifiableItemStack item = createItem(Material.EMERALD, 1);
+		ItemUpdates.runMemoized(memo, () -> {
+			UnmodifiableItemStack updatedItem = ItemUpdates.updateItem(item);
+			Assert.assertEquals(createItem(Material.DIAMOND, 1), updatedItem);
+			// Equal items reuse the outcome of the first event:
+			Assert.assertSame(updatedItem, ItemUpdates.updateItem(createItem(Material.EMERALD, 1)));
+			// Items that differ in their stack size are distinct items:
+			Assert.assertEquals(
+					createItem(Material.DIAMOND, 2),
+					ItemUpdates.updateItem(createItem(Material.EMERALD, 2))
+			);
+			return 0;
+		});
+		Assert.assertEquals(Arrays.asList(item, createItem(Material.EMERALD, 2)), eventItems);
+		Assert.assertEquals(2, memo.getSize());
+
+		// The memo keeps its outcomes across runs:
+		ItemUpdates.runMemoized(memo, () -> {
+			ItemUpdates.updateItem(item);
+			return 0;
+		});
+		Assert.assertEquals(2, eventItems.size());
+
+		// The memo is no longer active after the run:
+		ItemUpdates.updateItem(item);
+		Assert.assertEquals(3, eventItems.size());
+	}
+
+	@Test
+	public void testNotAltered() {
+		ItemUpdates.Memo memo = new ItemUpdates.Memo();
+		ItemUpdates.runMemoized(memo, () -> {
+			UnmodifiableItemStack item = createItem(Material.STONE, 1);
+			Assert.assertSame(item, ItemUpdates.updateItem(item));
+			// The memoized outcome of items that were not altered returns the given item:
+			UnmodifiableItemStack equalItem = createItem(Material.STONE, 1);
+			Assert.assertSame(equalItem, ItemUpdates.updateItem(equalItem));
+			return 0;
+		});
+		Assert.assertEquals(1, eventItems.size());
+		Assert.assertEquals(1, memo.getSize());
+	}
+
+	@Test
+	public void testEmptyItems() {
+		ItemUpdates.Memo memo = new ItemUpdates.Memo();
+		ItemUpdates.runMemoized(memo, () -> {
+			Assert.assertNull(ItemUpdates.updateItem(null));
+			UnmodifiableItemStack air = createItem(Material.AIR, 1);
+			Assert.assertSame(air, ItemUpdates.updateItem(air));
+			return 0;
+		});
+		Assert.assertEquals(0, eventItems.size());
+		Assert.assertEquals(0, memo.getSize());
+	}
+
+	@Test
+	public void testNestingGuard() {
+		ItemUpdates.Memo memo = new ItemUpdates.Memo();
+		UnmodifiableItemStack item = createItem(Material.EMERALD, 1);
+		ItemUpdates.runMemoized(memo, () -> {
+			try {
+				ItemUpdates.runMemoized(new ItemUpdates.Memo(), () -> 0);
+				Assert.fail("Nested memos are not allowed");
+			} catch (IllegalStateException e) {
+				// Expected
+			}
+
+			// The outer memo is still active:
+			ItemUpdates.updateItem(item);
+			ItemUpdates.updateItem(item);
+			return 0;
+		});
+		Assert.assertEquals(1, eventItems.size());
+		Assert.assertEquals(1, memo.getSize());
+
+		// The failed nested run did not leave a memo active:
+		ItemUpdates.runMemoized(new ItemUpdates.Memo(), () -> 0);
+	}
+
+	@Test
+	public void testItemsSharedBySeveralShops() {
+		UnmodifiableItemStack emerald = createItem(Material.EMERALD, 1);
+		UnmodifiableItemStack emeralds = createItem(Material.EMERALD, 2);
+		UnmodifiableItemStack dirt = createItem(Material.DIRT, 1);
+		UnmodifiableItemStack sand = createItem(Material.SAND, 1);
+		// The shops use separate, but equal, item instances:
+		List<TradeOffer> shop1Offers = new ArrayList<>(Arrays.asList(
+				createOffer(dirt, createItem(Material.EMERALD, 1), null),
+				createOffer(sand, createItem(Material.EMERALD, 2), null)
+		));
+		List<TradeOffer> shop2Offers = new ArrayList<>(Arrays.asList(
+				createOffer(createItem(Material.DIRT, 1), createItem(Material.EMERALD, 1), null),
+				createOffer(createItem(Material.SAND, 1), emerald, emeralds)
+		));
+
+		ItemUpdates.Memo memo = new ItemUpdates.Memo();
+		int updatedItems = ItemUpdates.runMemoized(memo, () -> {
+			return SKTradeOffer.updateItems(shop1Offers, "Shop 1: ")
+					+ SKTradeOffer.updateItems(shop2Offers, "Shop 2: ");
+		});
+		// All emerald stacks have been updated:
+		Assert.assertEquals(5, updatedItems);
+		Assert.assertEquals(createItem(Material.DIAMOND, 2), shop1Offers.get(1).getItem1());
+		Assert.assertEquals(createItem(Material.DIAMOND, 1), shop2Offers.get(1).getItem1());
+		Assert.assertEquals(createItem(Material.DIAMOND, 2), shop2Offers.get(1).getItem2());
+
+		// Only one event per distinct item stack:
+		Assert.assertEquals(4, eventItems.size());
+		Assert.assertEquals(Arrays.asList(dirt, emerald, sand, emeralds), eventItems);
+		Assert.assertEquals(4, memo.getSize());
+	}
+}
@@ -0,0 +1,179 @@
+package com.nisovin.shopkeepers.shopkeeper.player;
+
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.Damageable;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nisovin.shopkeepers.api.internal.util.Unsafe;
+import com.nisovin.shopkeepers.api.util.UnmodifiableItemStack;
+import com.nisovin.shopkeepers.testutil.AbstractBukkitTest;
+import com.nisovin.shopkeepers.util.inventory.ItemUtils;
+
+public class ContainerStockIndexTests extends AbstractBukkitTest {
+
+	private static ItemStack namedItem(Material type, int amount, String displayName) {
+		return ItemUtils.setDisplayNameAndLore(
+				new ItemStack(type, amount),
+				"{\"text\":\"" + displayName + "\"}",
+				null
+		);
+	}
+
+	private static ItemStack enchantedItem(Material type, int amount) {
+		ItemStack itemStack = new ItemStack(type, amount);
+		ItemMeta itemMeta = Unsafe.assertNonNull(itemStack.getItemMeta());
+		itemMeta.addEnchant(Enchantment.UNBREAKING, 1, true);
+		itemStack.setItemMeta(itemMeta);
+		return itemStack;
+	}
+
+	private static ItemStack damagedItem(Material type, int damage) {
+		ItemStack itemStack = new ItemStack(type);
+		ItemMeta itemMeta = Unsafe.assertNonNull(itemStack.getItemMeta());
+		((Damageable) itemMeta).setDamage(damage);
+		itemStack.setItemMeta(itemMeta);
+		return itemStack;
+	}
+
+	private static UnmodifiableItemStack unmodifiable(ItemStack itemStack) {
+		return UnmodifiableItemStack.ofNonNull(itemStack.clone());
+	}
+
+	private static ContainerStockIndex createIndex(@Nullable ItemStack... contents) {
+		ContainerStockIndex containerStock = new ContainerStockIndex();
+		containerStock.update(contents);
+		return containerStock;
+	}
+
+	@Test
+	public void testAvailableAmount() {
+		ContainerStockIndex containerStock = createIndex(
+				new ItemStack(Material.EMERALD, 10),
+				null,
+				new ItemStack(Material.AIR),
+				new ItemStack(Material.DIRT, 64),
+				new ItemStack(Material.EMERALD, 5)
+		);
+		Assert.assertTrue(containerStock.isValid());
+		// The amounts of all similar container items are summed up, regardless of the amount of
+		// the given item:
+		Assert.assertEquals(15, containerStock.getAvailableAmount(
+				unmodifiable(new ItemStack(Material.EMERALD))
+		));
+		Assert.assertEquals(15, containerStock.getAvailableAmount(
+				unmodifiable(new ItemStack(Material.EMERALD, 64))
+		));
+		Assert.assertEquals(64, containerStock.getAvailableAmount(
+				unmodifiable(new ItemStack(Material.DIRT))
+		));
+		Assert.assertEquals(0, containerStock.getAvailableAmount(
+				unmodifiable(new ItemStack(Material.STONE))
+		));
+
+		Assert.assertTrue(containerStock.containsAtLeast(
+				unmodifiable(new ItemStack(Material.EMERALD)),
+				15
+		));
+		Assert.assertFalse(containerStock.containsAtLeast(
+				unmodifiable(new ItemStack(Material.EMERALD)),
+				16
+		));
+		// Non-positive amounts are always available:
+		Assert.assertTrue(containerStock.containsAtLeast(
+				unmodifiable(new ItemStack(Material.STONE)),
+				0
+		));
+	}
+
+	@Test
+	public void testSimilarItemsWithDifferentMetadata() {
+		ContainerStockIndex containerStock = createIndex(
+				new ItemStack(Material.EMERALD, 10),
+				namedItem(Material.EMERALD, 3, "Coin"),
+				namedItem(Material.EMERALD, 4, "Other Coin"),
+				enchantedItem(Material.EMERALD, 2),
+				new ItemStack(Material.DIAMOND_SWORD),
+				damagedItem(Material.DIAMOND_SWORD, 5),
+				damagedItem(Material.DIAMOND_SWORD, 5)
+		);
+
+		// Items of the same type, but with different metadata, are not counted:
+		Assert.assertEquals(10, containerStock.getAvailableAmount(
+				unmodifiable(new ItemStack(Material.EMERALD))
+		));
+		Assert.assertEquals(3, containerStock.getAvailableAmount(
+				unmodifiable(namedItem(Material.EMERALD, 1, "Coin"))
+		));
+		Assert.assertEquals(4, containerStock.getAvailableAmount(
+				unmodifiable(namedItem(Material.EMERALD, 1, "Other Coin"))
+		));
+		Assert.assertEquals(0, containerStock.getAvailableAmount(
+				unmodifiable(namedItem(Material.EMERALD, 1, "Unknown Coin"))
+		));
+		Assert.assertEquals(2, containerStock.getAvailableAmount(
+				unmodifiable(enchantedItem(Material.EMERALD, 1))
+		));
+		Assert.assertEquals(1, containerStock.getAvailableAmount(
+				unmodifiable(new ItemStack(Material.DIAMOND_SWORD))
+		));
+		Assert.assertEquals(2, containerStock.getAvailableAmount(
+				unmodifiable(damagedItem(Material.DIAMOND_SWORD, 5))
+		));
+		Assert.assertEquals(0, containerStock.getAvailableAmount(
+				unmodifiable(damagedItem(Material.DIAMOND_SWORD, 6))
+		));
+
+		Assert.assertTrue(containerStock.containsAtLeast(
+				unmodifiable(namedItem(Material.EMERALD, 1, "Coin")),
+				3
+		));
+		// The other emeralds do not count towards the named emeralds:
+		Assert.assertFalse(containerStock.containsAtLeast(
+				unmodifiable(namedItem(Material.EMERALD, 1, "Coin")),
+				4
+		));
+		Assert.assertFalse(containerStock.containsAtLeast(
+				unmodifiable(new ItemStack(Material.EMERALD)),
+				11
+		));
+	}
+
+	@Test
+	public void testInvalidation() {
+		ContainerStockIndex containerStock = new ContainerStockIndex();
+		// The index is initially invalid:
+		Assert.assertFalse(containerStock.isValid());
+
+		containerStock.update(new @Nullable ItemStack[] { new ItemStack(Material.EMERALD, 10) });
+		Assert.assertTrue(containerStock.isValid());
+
+		// Invalidated indices are cleared until they are rebuilt:
+		containerStock.invalidate();
+		Assert.assertFalse(containerStock.isValid());
+		Assert.assertEquals(0, containerStock.getAvailableAmount(
+				unmodifiable(new ItemStack(Material.EMERALD))
+		));
+
+		// Rebuilding the index replaces the previous contents:
+		containerStock.update(new @Nullable ItemStack[] {
+				new ItemStack(Material.EMERALD, 3),
+				new ItemStack(Material.DIRT, 1)
+		});
+		Assert.assertTrue(containerStock.isValid());
+		Assert.assertEquals(3, containerStock.getAvailableAmount(
+				unmodifiable(new ItemStack(Material.EMERALD))
+		));
+		containerStock.update(new @Nullable ItemStack[] { new ItemStack(Material.DIRT, 2) });
+		Assert.assertEquals(0, containerStock.getAvailableAmount(
+				unmodifiable(new ItemStack(Material.EMERALD))
+		));
+		Assert.assertEquals(2, containerStock.getAvailableAmount(
+				unmodifiable(new ItemStack(Material.DIRT))
+		));
+	}
+}
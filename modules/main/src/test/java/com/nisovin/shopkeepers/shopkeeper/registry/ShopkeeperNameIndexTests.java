@@ -0,0 +1,103 @@
+package com.nisovin.shopkeepers.shopkeeper.registry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bukkit.ChatColor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nisovin.shopkeepers.testutil.AbstractBukkitTest;
+
+public class ShopkeeperNameIndexTests extends AbstractBukkitTest {
+
+	// The shopkeepers are represented by Strings that differ from their names:
+	private final ShopkeeperNameIndex<String> index = new ShopkeeperNameIndex<>();
+
+	private List<? extends String> getByName(String name) {
+		return index.getShopkeepersByName(ShopkeeperNameIndex.normalize(name));
+	}
+
+	private List<String> getByPrefix(String prefix) {
+		return index.getShopkeepersByNamePrefix(ShopkeeperNameIndex.normalize(prefix))
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void testSharedNames() {
+		index.addShopkeeper("shop-1", "Shop");
+		index.addShopkeeper("shop-2", ChatColor.GREEN + "SHOP"); // Same normalized name
+		index.addShopkeeper("shop-3", "Other");
+		index.addShopkeeper("shop-4", ""); // Not indexed
+		Assert.assertEquals(Arrays.asList("shop-1", "shop-2"), this.getByName("shop"));
+		Assert.assertEquals(Arrays.asList("shop-3"), this.getByName("other"));
+		Assert.assertEquals(Collections.emptyList(), this.getByName("missing"));
+
+		// Renaming one of several shopkeepers with the same name:
+		index.renameShopkeeper("shop-1", "Other");
+		Assert.assertEquals(Arrays.asList("shop-2"), this.getByName("shop"));
+		Assert.assertEquals(Arrays.asList("shop-3", "shop-1"), this.getByName("other"));
+
+		// Renaming to the same normalized name does not affect the index:
+		index.renameShopkeeper("shop-3", "OTHER");
+		Assert.assertEquals(Arrays.asList("shop-3", "shop-1"), this.getByName("other"));
+
+		// Removing one of several shopkeepers with the same name:
+		index.removeShopkeeper("shop-3");
+		Assert.assertEquals(Arrays.asList("shop-1"), this.getByName("other"));
+		Assert.assertEquals(Arrays.asList("shop-1"), this.getByPrefix("o"));
+		Assert.assertEquals(Arrays.asList("shop-2"), this.getByPrefix("s"));
+
+		// Removing the last shopkeeper with a name also removes the name:
+		index.removeShopkeeper("shop-2");
+		Assert.assertEquals(Collections.emptyList(), this.getByName("shop"));
+		Assert.assertEquals(Collections.emptyList(), this.getByPrefix("s"));
+
+		// Removing the name of a shopkeeper removes it from the index:
+		index.renameShopkeeper("shop-1", "");
+		Assert.assertEquals(Collections.emptyList(), this.getByName("other"));
+		// Removing shopkeepers that are not indexed has no effect:
+		index.removeShopkeeper("shop-1");
+		index.removeShopkeeper("shop-4");
+	}
+
+	@Test
+	public void testPrefixQuery() {
+		index.addShopkeeper("abd", "abd");
+		index.addShopkeeper("ab", "ab");
+		index.addShopkeeper("b", "b");
+		index.addShopkeeper("abc", "abc");
+		index.addShopkeeper("ac", "ac");
+		index.addShopkeeper("aa", "aa");
+		// Sorted by name, and excludes names that are greater than the prefix but don't start with
+		// it:
+		Assert.assertEquals(Arrays.asList("ab", "abc", "abd"), this.getByPrefix("ab"));
+		Assert.assertEquals(Arrays.asList("abc"), this.getByPrefix("abc"));
+		Assert.assertEquals(
+				Arrays.asList("aa", "ab", "abc", "abd", "ac"),
+				this.getByPrefix("a")
+		);
+		Assert.assertEquals(Collections.emptyList(), this.getByPrefix("abcd"));
+	}
+
+	@Test
+	public void testPrefixQueryMaxValueCharacters() {
+		index.addShopkeeper("a-max", "a\uFFFF");
+		index.addShopkeeper("a-max-z", "a\uFFFFz");
+		index.addShopkeeper("b", "b");
+		index.addShopkeeper("max", "\uFFFF");
+		index.addShopkeeper("max-a", "\uFFFFa");
+		index.addShopkeeper("max-max", "\uFFFF\uFFFF");
+		// The upper bound of the prefix is carried over to the preceding character:
+		Assert.assertEquals(Arrays.asList("a-max", "a-max-z"), this.getByPrefix("a\uFFFF"));
+		// There is no upper bound for prefixes that only consist of max value characters, so the
+		// lookup falls back to all subsequent names:
+		Assert.assertEquals(
+				Arrays.asList("max", "max-a", "max-max"),
+				this.getByPrefix("\uFFFF")
+		);
+		Assert.assertEquals(Arrays.asList("max-max"), this.getByPrefix("\uFFFF\uFFFF"));
+	}
+}
@@ -0,0 +1,231 @@
+package com.nisovin.shopkeepers.shopkeeper.registry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ShopkeeperSpatialIndexTests {
+
+	private static final String WORLD = "world";
+	private static final String OTHER_WORLD = "other";
+
+	// The shopkeepers are represented by their names, and their positions are tracked separately
+	// in order to compare the query results with a brute force search.
+	private final ShopkeeperSpatialIndex<String> index = new ShopkeeperSpatialIndex<>();
+	private final Map<String, int[]> positions = new HashMap<>();
+
+	private void add(String shopkeeper, int x, int y, int z) {
+		this.add(shopkeeper, WORLD, x, y, z);
+	}
+
+	private void add(String shopkeeper, String worldName, int x, int y, int z) {
+		index.addShopkeeper(shopkeeper, worldName, x, y, z);
+		if (worldName.equals(WORLD)) {
+			positions.put(shopkeeper, new int[] { x, y, z });
+		}
+	}
+
+	private List<String> getShopkeepersInArea(
+			int minX,
+			int minY,
+			int minZ,
+			int maxX,
+			int maxY,
+			int maxZ
+	) {
+		List<String> shopkeepers = new ArrayList<>();
+		index.visitShopkeepersInArea(WORLD, minX, minY, minZ, maxX, maxY, maxZ, shopkeepers::add);
+		shopkeepers.sort(null);
+		return shopkeepers;
+	}
+
+	private double getDistanceSquared(String shopkeeper, double x, double y, double z) {
+		int[] position = positions.get(shopkeeper);
+		double dx = position[0] + 0.5D - x;
+		double dy = position[1] + 0.5D - y;
+		double dz = position[2] + 0.5D - z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	@Test
+	public void testAreaQuery() {
+		// Around the cell borders at 0 and 64:
+		this.add("a", -1, 64, -1);
+		this.add("b", 0, 64, 0);
+		this.add("c", 63, 64, 63);
+		this.add("d", 64, 64, 64);
+		this.add("e", 63, 70, 63);
+		this.add("f", 10, 64, -65);
+		this.add("g", OTHER_WORLD, 10, 64, 10);
+
+		// All bounds are inclusive:
+		Assert.assertEquals(
+				Arrays.asList("b", "c"),
+				this.getShopkeepersInArea(0, 64, 0, 63, 64, 63)
+		);
+		Assert.assertEquals(
+				Arrays.asList("a", "b", "c", "d", "e"),
+				this.getShopkeepersInArea(-1, 0, -1, 64, 255, 64)
+		);
+		Assert.assertEquals(
+				Arrays.asList("e"),
+				this.getShopkeepersInArea(63, 65, 63, 63, 70, 63)
+		);
+		Assert.assertEquals(
+				Arrays.asList("f"),
+				this.getShopkeepersInArea(10, 64, -65, 10, 64, -65)
+		);
+		// Empty and inverted areas:
+		Assert.assertEquals(
+				Arrays.asList(),
+				this.getShopkeepersInArea(1, 64, 1, 62, 64, 62)
+		);
+		Assert.assertEquals(
+				Arrays.asList(),
+				this.getShopkeepersInArea(63, 64, 63, 0, 64, 0)
+		);
+		// Areas that cover more cells than there are non-empty cells inspect all non-empty cells:
+		Assert.assertEquals(
+				Arrays.asList("a", "b", "c", "d", "e", "f"),
+				this.getShopkeepersInArea(-10000, 0, -10000, 10000, 255, 10000)
+		);
+		Assert.assertEquals(
+				Arrays.asList("c", "d", "e"),
+				this.getShopkeepersInArea(63, 0, 63, 10000, 255, 10000)
+		);
+	}
+
+	@Test
+	public void testMoveAndRemove() {
+		this.add("a", 0, 64, 0);
+		index.moveShopkeeper("a", WORLD, 100, 64, 100);
+		Assert.assertEquals(Arrays.asList(), this.getShopkeepersInArea(0, 64, 0, 0, 64, 0));
+		Assert.assertEquals(
+				Arrays.asList("a"),
+				this.getShopkeepersInArea(100, 64, 100, 100, 64, 100)
+		);
+		// Moved within the same cell:
+		index.moveShopkeeper("a", WORLD, 101, 65, 101);
+		Assert.assertEquals(
+				Arrays.asList("a"),
+				this.getShopkeepersInArea(101, 65, 101, 101, 65, 101)
+		);
+		index.removeShopkeeper("a");
+		Assert.assertEquals(0, index.getSize());
+		Assert.assertEquals(
+				Arrays.asList(),
+				this.getShopkeepersInArea(-10000, 0, -10000, 10000, 255, 10000)
+		);
+	}
+
+	@Test
+	public void testNearestShopkeeperJustOutsideRing() {
+		// The position is close to the border of its cell. The closest shopkeeper is located just
+		// beyond that border inside the first ring, and needs to beat the farther shopkeeper inside
+		// the position's own cell:
+		this.add("inside", 60, 64, 1);
+		this.add("outside", -2, 64, 1);
+		Assert.assertEquals(
+				Arrays.asList("outside"),
+				index.getNearestShopkeepers(WORLD, 1.5D, 64.5D, 1.5D, 1, 100.0D)
+		);
+		Assert.assertEquals(
+				Arrays.asList("outside", "inside"),
+				index.getNearestShopkeepers(WORLD, 1.5D, 64.5D, 1.5D, 2, 100.0D)
+		);
+	}
+
+	@Test
+	public void testNearestShopkeeperInsideRing() {
+		// A shopkeeper just outside the position's cell must not beat a closer shopkeeper inside
+		// the position's cell:
+		this.add("inside", 60, 64, 1);
+		this.add("outside", 64, 64, 1);
+		Assert.assertEquals(
+				Arrays.asList("inside"),
+				index.getNearestShopkeepers(WORLD, 58.5D, 64.5D, 1.5D, 1, 100.0D)
+		);
+		Assert.assertEquals(
+				Arrays.asList("inside", "outside"),
+				index.getNearestShopkeepers(WORLD, 58.5D, 64.5D, 1.5D, 2, 100.0D)
+		);
+	}
+
+	@Test
+	public void testNearestShopkeeperMaxDistance() {
+		this.add("a", 10, 64, 0);
+		this.add("b", 20, 64, 0);
+		// The max distance is inclusive:
+		Assert.assertEquals(
+				Arrays.asList("a"),
+				index.getNearestShopkeepers(WORLD, 0.5D, 64.5D, 0.5D, 2, 10.0D)
+		);
+		Assert.assertEquals(
+				Arrays.asList("a", "b"),
+				index.getNearestShopkeepers(WORLD, 0.5D, 64.5D, 0.5D, 2, 20.0D)
+		);
+		Assert.assertEquals(
+				Arrays.asList(),
+				index.getNearestShopkeepers(WORLD, 0.5D, 64.5D, 0.5D, 2, 9.9D)
+		);
+		Assert.assertEquals(
+				Arrays.asList(),
+				index.getNearestShopkeepers(OTHER_WORLD, 0.5D, 64.5D, 0.5D, 2, 100.0D)
+		);
+	}
+
+	// Compares the radius and nearest neighbor queries with the results of a brute force search:
+	@Test
+	public void testRandomQueries() {
+		Random random = new Random(42L);
+		for (int i = 0; i < 500; i++) {
+			this.add(
+					"shop-" + i,
+					random.nextInt(1000) - 500,
+					random.nextInt(64) + 32,
+					random.nextInt(1000) - 500
+			);
+		}
+
+		for (int i = 0; i < 200; i++) {
+			double x = random.nextDouble() * 1200.0D - 600.0D;
+			double y = random.nextDouble() * 128.0D;
+			double z = random.nextDouble() * 1200.0D - 600.0D;
+			double radius = random.nextDouble() * 300.0D;
+			int count = random.nextInt(10) + 1;
+
+			List<String> expected = new ArrayList<>();
+			for (String shopkeeper : positions.keySet()) {
+				if (this.getDistanceSquared(shopkeeper, x, y, z) <= radius * radius) {
+					expected.add(shopkeeper);
+				}
+			}
+			expected.sort(null);
+			List<String> inRadius = index.getShopkeepersInRadius(WORLD, x, y, z, radius);
+			inRadius.sort(null);
+			Assert.assertEquals(expected, inRadius);
+
+			// Compares the distances instead of the shopkeepers, since shopkeepers with the same
+			// distance can be returned in any order:
+			expected.sort(Comparator.comparingDouble(
+					shopkeeper -> this.getDistanceSquared(shopkeeper, x, y, z)
+			));
+			List<Double> expectedDistances = new ArrayList<>();
+			for (String shopkeeper : expected.subList(0, Math.min(count, expected.size()))) {
+				expectedDistances.add(this.getDistanceSquared(shopkeeper, x, y, z));
+			}
+			List<Double> nearestDistances = new ArrayList<>();
+			for (String shopkeeper : index.getNearestShopkeepers(WORLD, x, y, z, count, radius)) {
+				nearestDistances.add(this.getDistanceSquared(shopkeeper, x, y, z));
+			}
+			Assert.assertEquals(expectedDistances, nearestDistances);
+		}
+	}
+}
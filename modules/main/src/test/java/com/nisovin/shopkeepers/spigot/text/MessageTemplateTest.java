@@ -0,0 +1,256 @@
+package com.nisovin.shopkeepers.spigot.text;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nisovin.shopkeepers.api.internal.util.Unsafe;
+import com.nisovin.shopkeepers.testutil.AbstractBukkitTest;
+import com.nisovin.shopkeepers.text.ClickEventText;
+import com.nisovin.shopkeepers.text.HoverEventText;
+import com.nisovin.shopkeepers.text.Text;
+import com.nisovin.shopkeepers.text.TextBuilder;
+import com.nisovin.shopkeepers.util.text.MessageArguments;
+
+import net.md_5.bungee.api.chat.BaseComponent;
+
+public class MessageTemplateTest extends AbstractBukkitTest {
+
+	private static final List<String> MESSAGES = Arrays.asList(
+			"&aHello {player}&7, you have {count} items.",
+			"{a}{b}",
+			"&l{a} text &r{b}&#aabbcc hex",
+			"{a} and {a} again",
+			"&cMissing {missing}",
+			"No placeholders"
+	);
+
+	// Returns the visible characters, each prefixed with its formatting codes, so that messages
+	// that are displayed the same can be compared regardless of their component structure.
+	private static String toStyledText(PreparedMessage message) {
+		if (message.isEmpty()) return "";
+
+		String legacyText;
+		Object component = message.getComponent();
+		if (component != null) {
+			legacyText = ((BaseComponent) component).toLegacyText();
+		} else {
+			legacyText = Unsafe.assertNonNull(message.getPlainText());
+		}
+
+		StringBuilder styledText = new StringBuilder();
+		String color = "";
+		String formats = "";
+		for (int i = 0; i < legacyText.length(); i++) {
+			char c = legacyText.charAt(i);
+			if (c == '§' && i + 1 < legacyText.length()) {
+				char code = Character.toLowerCase(legacyText.charAt(i + 1));
+				if (code == 'x' && i + 13 < legacyText.length()) {
+					color = legacyText.substring(i, i + 14);
+					formats = "";
+					i += 13;
+				} else if ("klmno".indexOf(code) != -1) {
+					if (formats.indexOf(code) == -1) {
+						formats += code;
+					}
+					i++;
+				} else {
+					color = (code == 'r') ? "" : String.valueOf(code);
+					formats = "";
+					i++;
+				}
+				continue;
+			}
+			styledText.append('[').append(color).append(formats).append(']').append(c);
+		}
+		return styledText.toString();
+	}
+
+	private static Map<String, Object> createArguments(Object... argumentPairs) {
+		Map<String, Object> arguments = new HashMap<>();
+		for (int i = 0; i < argumentPairs.length; i += 2) {
+			arguments.put((String) argumentPairs[i], argumentPairs[i + 1]);
+		}
+		return arguments;
+	}
+
+	private static PreparedMessage prepareCopy(Text message, MessageArguments arguments) {
+		Text messageCopy = message.copy();
+		messageCopy.setPlaceholderArguments(arguments);
+		return SpigotText.prepareMessage(messageCopy);
+	}
+
+	private static void testMatchesMessage(Text message, Map<String, Object> arguments) {
+		MessageArguments messageArguments = MessageArguments.ofMap(arguments);
+		MessageTemplate template = SpigotText.compileMessage(message);
+		Assert.assertEquals(
+				"Message: " + message.toFormat() + ", arguments: " + arguments,
+				toStyledText(prepareCopy(message, messageArguments)),
+				toStyledText(template.prepare(messageArguments))
+		);
+	}
+
+	@Test
+	public void testMatchesMessageConversion() {
+		List<Map<String, Object>> argumentSets = Arrays.asList(
+				new HashMap<>(),
+				createArguments(
+						"player", "Alice",
+						"count", 3,
+						"a", "first",
+						"b", "second"
+				),
+				// Arguments that change the text style of the subsequent static segments:
+				createArguments(
+						"player", Text.parse("&eBob&o!"),
+						"count", Text.parse("&l3"),
+						"a", Text.parse("&#112233hex"),
+						"b", Text.parse("&nunderlined")
+				),
+				// Arguments with hover events:
+				createArguments(
+						"player", Text.hoverEvent(Text.of("uuid")).childText("Carl").buildRoot(),
+						"a", Text.hoverEvent(HoverEventText.Action.SHOW_TEXT, Text.of("info"))
+								.childText("item")
+								.buildRoot(),
+						"b", ""
+				)
+		);
+		for (String message : MESSAGES) {
+			for (Map<String, Object> arguments : argumentSets) {
+				testMatchesMessage(Text.parse(message), arguments);
+			}
+		}
+	}
+
+	@Test
+	public void testNotCompiled() {
+		TextBuilder clickText = Text.clickEvent(ClickEventText.Action.RUN_COMMAND, "/help");
+		clickText.childText("Click here");
+		Text message = Text.formatting("a")
+				.next(clickText)
+				.next(Text.text(", "))
+				.next(Text.placeholder("player"))
+				.buildRoot();
+		MessageTemplate template = SpigotText.compileMessage(message);
+		Assert.assertFalse(template.isCompiled());
+		testMatchesMessage(message, createArguments("player", "Alice"));
+	}
+
+	@Test
+	public void testPlaceholderIndices() {
+		MessageTemplate template = SpigotText.compileMessage(Text.parse("{a} {b} {a} {c}"));
+		Assert.assertTrue(template.isCompiled());
+		Assert.assertEquals(Arrays.asList("a", "b", "c"), template.getPlaceholderKeys());
+	}
+
+	@Test
+	public void testOriginalMessageUnchanged() {
+		Text message = Text.parse("&aHello {player}");
+		MessageTemplate template = SpigotText.compileMessage(message);
+		template.prepare(MessageArguments.ofMap(createArguments("player", "Alice")));
+		Assert.assertEquals("&aHello {player}", message.toFormat());
+	}
+
+	@Test
+	public void testCache() {
+		MessageTemplate template = SpigotText.compileMessage(Text.parse("&a{player}: {count}"));
+		MessageArguments arguments = MessageArguments.ofMap(createArguments(
+				"player", "Alice",
+				"count", 3
+		));
+		PreparedMessage message = template.prepare(arguments);
+		Assert.assertSame(message, template.prepare(arguments));
+		Assert.assertNotSame(message, template.prepare(MessageArguments.ofMap(createArguments(
+				"player", "Alice",
+				"count", 4
+		))));
+
+		// Supplier arguments are cached by the values they resolve to:
+		Assert.assertSame(message, template.prepare(MessageArguments.ofMap(createArguments(
+				"player", (Supplier<Object>) () -> "Alice",
+				"count", (Supplier<Object>) () -> 3
+		))));
+
+		// Text arguments are cached by their contents, but distinct from String arguments:
+		PreparedMessage textMessage = template.prepare(MessageArguments.ofMap(createArguments(
+				"player", Text.of("Alice"),
+				"count", 3
+		)));
+		Assert.assertNotSame(message, textMessage);
+		Assert.assertEquals(toStyledText(message), toStyledText(textMessage));
+		Assert.assertSame(textMessage, template.prepare(MessageArguments.ofMap(createArguments(
+				"player", Text.of("Alice"),
+				"count", 3
+		))));
+		// Texts with the same plain text, but different text features:
+		Text hoverText = Text.hoverEvent(Text.of("info")).childText("Alice").buildRoot();
+		PreparedMessage hoverMessage = template.prepare(MessageArguments.ofMap(createArguments(
+				"player", hoverText,
+				"count", 3
+		)));
+		Assert.assertNotSame(textMessage, hoverMessage);
+		Text otherHoverText = Text.hoverEvent(Text.of("other")).childText("Alice").buildRoot();
+		Assert.assertNotSame(hoverMessage, template.prepare(MessageArguments.ofMap(createArguments(
+				"player", otherHoverText,
+				"count", 3
+		))));
+
+		// Text arguments with placeholders are cached by their current placeholder arguments:
+		Text shopText = Text.parse("shop {id}");
+		shopText.setPlaceholderArguments("id", 1);
+		MessageArguments shopArguments = MessageArguments.ofMap(createArguments(
+				"player", shopText,
+				"count", 3
+		));
+		PreparedMessage shopMessage = template.prepare(shopArguments);
+		Assert.assertSame(shopMessage, template.prepare(shopArguments));
+		shopText.setPlaceholderArguments("id", 2);
+		PreparedMessage otherShopMessage = template.prepare(shopArguments);
+		Assert.assertNotSame(shopMessage, otherShopMessage);
+		Assert.assertTrue(toStyledText(otherShopMessage).contains("]2"));
+	}
+
+	@Test
+	public void testNestedPreparation() {
+		MessageTemplate template = SpigotText.compileMessage(Text.parse("{a}: {b}"));
+		MessageTemplate innerTemplate = SpigotText.compileMessage(Text.parse("&e{a}"));
+		Map<String, Object> arguments = createArguments(
+				"a", "outer",
+				// The resolution of this argument prepares another message:
+				"b", (Supplier<Object>) () -> {
+					PreparedMessage innerMessage = innerTemplate.prepare(
+							MessageArguments.ofMap(createArguments("a", "inner"))
+					);
+					return toStyledText(innerMessage);
+				}
+		);
+		PreparedMessage message = template.prepare(MessageArguments.ofMap(arguments));
+		// The inner message does not affect the arguments of the outer message:
+		Assert.assertEquals(
+				toStyledText(prepareCopy(Text.parse("{a}: {b}"), MessageArguments.ofMap(
+						createArguments("a", "outer", "b", "[e]i[e]n[e]n[e]e[e]r")
+				))),
+				toStyledText(message)
+		);
+	}
+
+	@Test
+	public void testEmptyMessage() {
+		MessageArguments arguments = MessageArguments.ofMap(createArguments("a", ""));
+		Assert.assertTrue(SpigotText.compileMessage(Text.EMPTY).prepare(arguments).isEmpty());
+		// Placeholders with empty arguments:
+		MessageTemplate template = SpigotText.compileMessage(Text.parse("{a}"));
+		Assert.assertTrue(template.prepare(arguments).isEmpty());
+		// Like Text#isPlainTextEmpty, placeholders without argument are ignored:
+		template = SpigotText.compileMessage(Text.parse("{b}"));
+		Assert.assertTrue(template.prepare(arguments).isEmpty());
+		template = SpigotText.compileMessage(Text.parse("{a}!"));
+		Assert.assertFalse(template.prepare(arguments).isEmpty());
+	}
+}
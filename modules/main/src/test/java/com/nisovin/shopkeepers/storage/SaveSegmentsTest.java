@@ -0,0 +1,185 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nisovin.shopkeepers.util.data.container.DataContainer;
+
+public class SaveSegmentsTest {
+
+	@Rule
+	public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private SaveSegments createSaveSegments(int segmentSize) {
+		return new SaveSegments(tempFolder.getRoot().toPath(), segmentSize, SaveFormat.YAML);
+	}
+
+	// The shopkeeper data of the given shopkeeper ids, with the id as data:
+	private static Map<String, Object> createShopkeeperValues(int... shopkeeperIds) {
+		Map<String, Object> shopkeeperValues = new LinkedHashMap<>();
+		for (int shopkeeperId : shopkeeperIds) {
+			shopkeeperValues.put(String.valueOf(shopkeeperId), shopkeeperId);
+		}
+		return shopkeeperValues;
+	}
+
+	private static void assertSegment(
+			Map<Integer, @Nullable Map<String, Object>> segmentValues,
+			int segment,
+			@Nullable Map<String, Object> expectedValues
+	) {
+		Assert.assertTrue("Missing segment " + segment, segmentValues.containsKey(segment));
+		Assert.assertEquals(expectedValues, segmentValues.get(segment));
+	}
+
+	@Test
+	public void testSegmentAssignment() {
+		SaveSegments segments = this.createSaveSegments(100);
+		Assert.assertEquals(0, segments.getSegment(1));
+		Assert.assertEquals(0, segments.getSegment(100));
+		Assert.assertEquals(1, segments.getSegment(101));
+		Assert.assertEquals(2, segments.getSegment("250"));
+		// Keys that are no valid shopkeeper ids are stored in the first segment:
+		Assert.assertEquals(0, segments.getSegment(0));
+		Assert.assertEquals(0, segments.getSegment(-5));
+		Assert.assertEquals(0, segments.getSegment("invalid"));
+
+		// The assignment only depends on the shopkeeper id and the segment size, and is therefore
+		// not affected by the other shopkeepers:
+		Map<Integer, @Nullable Map<String, Object>> segmentValues = segments.groupBySegment(
+				createShopkeeperValues(1, 150),
+				null
+		);
+		assertSegment(segmentValues, 0, createShopkeeperValues(1));
+		assertSegment(segmentValues, 1, createShopkeeperValues(150));
+
+		segmentValues = this.createSaveSegments(100).groupBySegment(
+				createShopkeeperValues(1, 2, 120, 150, 999),
+				null
+		);
+		assertSegment(segmentValues, 0, createShopkeeperValues(1, 2));
+		assertSegment(segmentValues, 1, createShopkeeperValues(120, 150));
+		assertSegment(segmentValues, 9, createShopkeeperValues(999));
+	}
+
+	@Test
+	public void testFullSave() {
+		SaveSegments segments = this.createSaveSegments(100);
+		Map<Integer, @Nullable Map<String, Object>> segmentValues = segments.groupBySegment(
+				createShopkeeperValues(1, 2, 150, 350),
+				null
+		);
+		Assert.assertEquals(Arrays.asList(0, 1, 3), Arrays.asList(
+				segmentValues.keySet().toArray()
+		));
+		assertSegment(segmentValues, 0, createShopkeeperValues(1, 2));
+		assertSegment(segmentValues, 1, createShopkeeperValues(150));
+		assertSegment(segmentValues, 3, createShopkeeperValues(350));
+	}
+
+	@Test
+	public void testDirtySegments() {
+		SaveSegments segments = this.createSaveSegments(100);
+		Map<String, Object> shopkeeperValues = createShopkeeperValues(1, 2, 150, 350);
+		Map<Integer, @Nullable Map<String, Object>> segmentValues = segments.groupBySegment(
+				shopkeeperValues,
+				Collections.singleton(1)
+		);
+		// Only the dirty segment is written:
+		Assert.assertEquals(Collections.singleton(1), segmentValues.keySet());
+		assertSegment(segmentValues, 1, createShopkeeperValues(150));
+
+		segmentValues = segments.groupBySegment(
+				shopkeeperValues,
+				new HashSet<>(Arrays.asList(0, 3))
+		);
+		Assert.assertEquals(new HashSet<>(Arrays.asList(0, 3)), segmentValues.keySet());
+		assertSegment(segmentValues, 0, createShopkeeperValues(1, 2));
+		assertSegment(segmentValues, 3, createShopkeeperValues(350));
+	}
+
+	@Test
+	public void testDeletedShopkeepers() {
+		SaveSegments segments = this.createSaveSegments(100);
+		// Shopkeepers 2 (segment 0) and 150 (segment 1) have been deleted:
+		Map<Integer, @Nullable Map<String, Object>> segmentValues = segments.groupBySegment(
+				createShopkeeperValues(1, 350),
+				new HashSet<>(Arrays.asList(0, 1))
+		);
+		Assert.assertEquals(new HashSet<>(Arrays.asList(0, 1)), segmentValues.keySet());
+		// Segment 0 still contains data and is rewritten:
+		assertSegment(segmentValues, 0, createShopkeeperValues(1));
+		// Segment 1 no longer contains any data and its file is deleted:
+		assertSegment(segmentValues, 1, null);
+	}
+
+	@Test
+	public void testMergeSegments() {
+		SaveSegments segments = this.createSaveSegments(100);
+		DataContainer saveData = DataContainer.create();
+		saveData.set("150", "old");
+
+		DataContainer segmentData = DataContainer.create();
+		segmentData.set("150", "new");
+		segmentData.set("199", "other");
+		Assert.assertTrue(SaveSegments.mergeSegment(segments, 1, segmentData, saveData));
+		// The merged data replaces the previous data:
+		Assert.assertEquals("new", saveData.get("150"));
+		Assert.assertEquals("other", saveData.get("199"));
+
+		// A segment file that was written with a different segment size:
+		DataContainer oldSegmentData = DataContainer.create();
+		oldSegmentData.set("250", "old layout");
+		Assert.assertFalse(SaveSegments.mergeSegment(segments, 5, oldSegmentData, saveData));
+		Assert.assertEquals("old layout", saveData.get("250"));
+
+		// Segment files are no longer used:
+		Assert.assertFalse(SaveSegments.mergeSegment(null, 1, segmentData, saveData));
+	}
+
+	private List<String> getFileNames() throws IOException {
+		try (Stream<Path> files = Files.list(tempFolder.getRoot().toPath())) {
+			return files.map(file -> String.valueOf(file.getFileName()))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	public void testSegmentFiles() throws IOException {
+		Path directory = tempFolder.getRoot().toPath();
+		for (String fileName : Arrays.asList("0.yml", "1.yml", "1.yml.tmp", "2.yml.tmp", "3.dat",
+				"other.txt")) {
+			Files.createFile(directory.resolve(fileName));
+		}
+
+		Map<Integer, Path> segmentFiles = SaveSegments.findSegmentFiles(directory, SaveFormat.YAML);
+		Assert.assertEquals(Arrays.asList(0, 1, 2), Arrays.asList(
+				segmentFiles.keySet().toArray()
+		));
+		Assert.assertEquals(directory.resolve("1.yml"), segmentFiles.get(1));
+		// There is only a temporary file for segment 2:
+		Assert.assertEquals(directory.resolve("2.yml.tmp"), segmentFiles.get(2));
+
+		SaveSegments.deleteSegmentFiles(directory, Collections.singleton(1), SaveFormat.YAML);
+		Assert.assertEquals(Arrays.asList("1.yml", "other.txt"), this.getFileNames());
+
+		SaveSegments.deleteSegmentFiles(directory, null, SaveFormat.YAML);
+		Assert.assertEquals(Arrays.asList("other.txt"), this.getFileNames());
+	}
+}
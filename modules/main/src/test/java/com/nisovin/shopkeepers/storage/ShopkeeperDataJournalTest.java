@@ -0,0 +1,152 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nisovin.shopkeepers.testutil.AbstractBukkitTest;
+
+public class ShopkeeperDataJournalTest extends AbstractBukkitTest {
+
+	// The size of an entry without its payload: The payload length and the checksum.
+	private static final int ENTRY_FRAME_SIZE = Integer.BYTES + Long.BYTES;
+
+	private static final List<String> PAYLOADS = Arrays.asList(
+			"saved:\n  '1':\n    name: First\n",
+			"deleted:\n- '2'\n",
+			"saved:\n  '3':\n    name: Ünicode ✓\n"
+	);
+
+	@Rule
+	public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Path getJournalFile() {
+		return tempFolder.getRoot().toPath().resolve("save.journal");
+	}
+
+	private ShopkeeperDataJournal createJournal() throws IOException {
+		ShopkeeperDataJournal journal = new ShopkeeperDataJournal(this.getJournalFile());
+		for (String payload : PAYLOADS) {
+			journal.append(payload);
+		}
+		return journal;
+	}
+
+	// The offset of the specified entry inside the journal file:
+	private static long getEntryOffset(int entryIndex) {
+		long offset = 0L;
+		for (int i = 0; i < entryIndex; i++) {
+			offset += ENTRY_FRAME_SIZE + PAYLOADS.get(i).getBytes(StandardCharsets.UTF_8).length;
+		}
+		return offset;
+	}
+
+	private void truncateJournal(long length) throws IOException {
+		Path journalFile = this.getJournalFile();
+		try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+			channel.truncate(length);
+		}
+	}
+
+	// Flips a bit of the payload of the specified entry:
+	private void corruptEntry(int entryIndex) throws IOException {
+		Path journalFile = this.getJournalFile();
+		byte[] bytes = Files.readAllBytes(journalFile);
+		int payloadOffset = (int) getEntryOffset(entryIndex) + Integer.BYTES;
+		bytes[payloadOffset] ^= 0x01;
+		Files.write(journalFile, bytes);
+	}
+
+	@Test
+	public void testAppendAndRead() throws IOException {
+		ShopkeeperDataJournal journal = new ShopkeeperDataJournal(this.getJournalFile());
+		Assert.assertFalse(journal.exists());
+		Assert.assertEquals(Collections.emptyList(), journal.read());
+
+		journal = this.createJournal();
+		Assert.assertTrue(journal.exists());
+		Assert.assertEquals(getEntryOffset(PAYLOADS.size()), Files.size(this.getJournalFile()));
+		// The entries are read in the order in which they have been appended:
+		Assert.assertEquals(PAYLOADS, journal.read());
+		// Reading the journal does not modify it:
+		Assert.assertEquals(PAYLOADS, new ShopkeeperDataJournal(this.getJournalFile()).read());
+	}
+
+	@Test
+	public void testTruncatedLastEntry() throws IOException {
+		ShopkeeperDataJournal journal = this.createJournal();
+		long lastEntryOffset = getEntryOffset(PAYLOADS.size() - 1);
+		// Entries that end inside their payload, their checksum, or their length:
+		for (long length : Arrays.asList(
+				getEntryOffset(PAYLOADS.size()) - 1,
+				lastEntryOffset + Integer.BYTES + 2,
+				lastEntryOffset + 2
+		)) {
+			this.truncateJournal(length);
+			Assert.assertEquals(PAYLOADS.subList(0, PAYLOADS.size() - 1), journal.read());
+			// The incomplete entry has been removed:
+			Assert.assertEquals(lastEntryOffset, Files.size(this.getJournalFile()));
+
+			// Subsequently appended entries are not lost:
+			journal.append(PAYLOADS.get(PAYLOADS.size() - 1));
+			Assert.assertEquals(PAYLOADS, journal.read());
+		}
+	}
+
+	@Test
+	public void testChecksumMismatchAtEnd() throws IOException {
+		ShopkeeperDataJournal journal = this.createJournal();
+		this.corruptEntry(PAYLOADS.size() - 1);
+		Assert.assertEquals(PAYLOADS.subList(0, PAYLOADS.size() - 1), journal.read());
+		Assert.assertEquals(
+				getEntryOffset(PAYLOADS.size() - 1),
+				Files.size(this.getJournalFile())
+		);
+	}
+
+	@Test
+	public void testChecksumMismatchInMiddle() throws IOException {
+		ShopkeeperDataJournal journal = this.createJournal();
+		this.corruptEntry(1);
+		// The entries after the corrupted entry are not applied either, because they might depend
+		// on the changes of the corrupted entry:
+		Assert.assertEquals(PAYLOADS.subList(0, 1), journal.read());
+		Assert.assertEquals(getEntryOffset(1), Files.size(this.getJournalFile()));
+	}
+
+	@Test
+	public void testInvalidLength() throws IOException {
+		ShopkeeperDataJournal journal = this.createJournal();
+		Path journalFile = this.getJournalFile();
+		byte[] bytes = Files.readAllBytes(journalFile);
+		// A length that exceeds the size of the journal file:
+		bytes[(int) getEntryOffset(1)] = 0x7F;
+		Files.write(journalFile, bytes);
+		Assert.assertEquals(PAYLOADS.subList(0, 1), journal.read());
+	}
+
+	@Test
+	public void testCompaction() throws IOException {
+		ShopkeeperDataJournal journal = this.createJournal();
+		// Once the save files contain the journal's changes, the journal is deleted:
+		journal.delete();
+		Assert.assertFalse(journal.exists());
+		Assert.assertEquals(Collections.emptyList(), journal.read());
+		journal.delete(); // No effect if the journal does not exist
+
+		// The next save starts a new journal:
+		journal.append(PAYLOADS.get(0));
+		Assert.assertEquals(PAYLOADS.subList(0, 1), journal.read());
+	}
+}
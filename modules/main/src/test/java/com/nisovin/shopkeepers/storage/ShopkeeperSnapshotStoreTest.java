@@ -0,0 +1,126 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nisovin.shopkeepers.api.internal.util.Unsafe;
+import com.nisovin.shopkeepers.shopkeeper.SKShopkeeperSnapshot;
+import com.nisovin.shopkeepers.shopkeeper.ShopkeeperData;
+import com.nisovin.shopkeepers.testutil.AbstractBukkitTest;
+import com.nisovin.shopkeepers.util.TestItemStacks;
+import com.nisovin.shopkeepers.util.data.container.DataContainer;
+import com.nisovin.shopkeepers.util.data.persistence.InvalidDataFormatException;
+import com.nisovin.shopkeepers.util.data.persistence.bukkit.BukkitConfigDataStore;
+import com.nisovin.shopkeepers.util.data.serialization.InvalidDataException;
+
+public class ShopkeeperSnapshotStoreTest extends AbstractBukkitTest {
+
+	private static Map<String, Object> createOffer(int price) {
+		Map<String, Object> offer = new LinkedHashMap<>();
+		offer.put("item", TestItemStacks.createItemStackComplete());
+		offer.put("price", price);
+		return offer;
+	}
+
+	private static Map<String, Object> createObjectData(String profession) {
+		Map<String, Object> objectData = new LinkedHashMap<>();
+		objectData.put("type", "villager");
+		objectData.put("profession", profession);
+		return objectData;
+	}
+
+	private static SKShopkeeperSnapshot createSnapshot(
+			String name,
+			int price,
+			String profession
+	) {
+		ShopkeeperData shopkeeperData = ShopkeeperData.ofNonNull(DataContainer.create());
+		shopkeeperData.set("name", "Shop " + name);
+		shopkeeperData.set("open", true);
+		shopkeeperData.set("offers", Arrays.asList(createOffer(price), createOffer(price + 1)));
+		shopkeeperData.set("object", createObjectData(profession));
+		return new SKShopkeeperSnapshot(
+				name,
+				Instant.ofEpochSecond(1700000000L, 123456789L),
+				shopkeeperData
+		);
+	}
+
+	private static String serialize(List<? extends SKShopkeeperSnapshot> snapshots) {
+		byte[] serialized = Unsafe.assertNonNull(ShopkeeperSnapshotStore.serialize(snapshots));
+		return new String(serialized, StandardCharsets.UTF_8);
+	}
+
+	private static BukkitConfigDataStore load(String serialized)
+			throws InvalidDataFormatException {
+		BukkitConfigDataStore dataStore = BukkitConfigDataStore.ofNewYamlConfig();
+		dataStore.loadFromString(serialized);
+		return dataStore;
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		List<SKShopkeeperSnapshot> snapshots = Arrays.asList(
+				createSnapshot("first", 1, "farmer"),
+				// Same offers, different object data:
+				createSnapshot("second", 1, "cleric"),
+				// Different offers, same object data:
+				createSnapshot("third", 2, "cleric")
+		);
+		String serialized = serialize(snapshots);
+
+		// The shared sub-trees are only stored once: Two distinct offer lists and two distinct
+		// object data.
+		DataContainer objects = Unsafe.assertNonNull(load(serialized).getContainer("objects"));
+		Assert.assertEquals(4, objects.getKeys().size());
+
+		List<SKShopkeeperSnapshot> deserialized = ShopkeeperSnapshotStore.deserialize(serialized);
+		Assert.assertEquals(snapshots.size(), deserialized.size());
+		for (int i = 0; i < snapshots.size(); i++) {
+			SKShopkeeperSnapshot snapshot = snapshots.get(i);
+			SKShopkeeperSnapshot deserializedSnapshot = deserialized.get(i);
+			Assert.assertEquals(snapshot.getName(), deserializedSnapshot.getName());
+			Assert.assertEquals(snapshot.getTimestamp(), deserializedSnapshot.getTimestamp());
+			// Also compares the contained item stacks:
+			Assert.assertEquals(
+					snapshot.getShopkeeperData().getValues(),
+					deserializedSnapshot.getShopkeeperData().getValues()
+			);
+		}
+
+		// The deserialized snapshots do not share their data:
+		Assert.assertNotSame(
+				deserialized.get(0).getShopkeeperData().get("offers"),
+				deserialized.get(1).getShopkeeperData().get("offers")
+		);
+	}
+
+	@Test(expected = InvalidDataException.class)
+	public void testMissingObject() throws Exception {
+		BukkitConfigDataStore dataStore = load(serialize(Arrays.asList(
+				createSnapshot("first", 1, "farmer")
+		)));
+		DataContainer objects = Unsafe.assertNonNull(dataStore.getContainer("objects"));
+		String hash = objects.getKeys().iterator().next();
+		objects.remove(hash);
+		ShopkeeperSnapshotStore.deserialize(dataStore.saveToString());
+	}
+
+	@Test
+	public void testNoSnapshots() throws Exception {
+		// There is no data to store, so the snapshot file can be deleted:
+		Assert.assertNull(ShopkeeperSnapshotStore.serialize(Collections.emptyList()));
+		Assert.assertEquals(
+				Collections.emptyList(),
+				ShopkeeperSnapshotStore.deserialize("")
+		);
+	}
+}
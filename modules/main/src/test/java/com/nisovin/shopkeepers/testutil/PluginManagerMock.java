@@ -0,0 +1,49 @@
+package com.nisovin.shopkeepers.testutil;
+
+import java.util.function.Consumer;
+
+import org.bukkit.event.Event;
+import org.bukkit.plugin.PluginManager;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.nisovin.shopkeepers.api.internal.util.Unsafe;
+
+/**
+ * Mocks the PluginManager (at least the functions required for our tests).
+ * <p>
+ * Called events are passed to the {@link #setEventHandler(Consumer) event handler}, if there is
+ * one.
+ */
+public final class PluginManagerMock extends ProxyHandler<PluginManager> {
+
+	private static @Nullable Consumer<? super Event> eventHandler = null;
+
+	/**
+	 * Sets the handler that is invoked for all called events.
+	 * <p>
+	 * Tests that set an event handler are expected to reset it once they are done.
+	 * 
+	 * @param eventHandler
+	 *            the event handler, or <code>null</code> to ignore all called events
+	 */
+	public static void setEventHandler(@Nullable Consumer<? super Event> eventHandler) {
+		PluginManagerMock.eventHandler = eventHandler;
+	}
+
+	PluginManagerMock() {
+		super(PluginManager.class);
+	}
+
+	@Override
+	protected void setupMethodHandlers() throws Exception {
+		this.addHandler(PluginManager.class.getMethod("callEvent", Event.class), (proxy, args) -> {
+			assert args != null;
+			Event event = Unsafe.castNonNull(args[0]);
+			Consumer<? super Event> eventHandler = PluginManagerMock.eventHandler;
+			if (eventHandler != null) {
+				eventHandler.accept(event);
+			}
+			return null;
+		});
+	}
+}
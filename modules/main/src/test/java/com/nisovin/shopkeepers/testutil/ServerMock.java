@@ -14,6 +14,7 @@ import org.bukkit.craftbukkit.v1_20_R4.block.data.CraftBlockData;
 import org.bukkit.craftbukkit.v1_20_R4.inventory.CraftItemFactory;
 import org.bukkit.craftbukkit.v1_20_R4.util.CraftMagicNumbers;
 import org.bukkit.craftbukkit.v1_20_R4.util.Versioning;
+import org.bukkit.plugin.PluginManager;
 
 import com.nisovin.shopkeepers.api.internal.util.Unsafe;
 import com.nisovin.shopkeepers.util.java.Validate;
@@ -115,6 +116,11 @@ class ServerMock extends ProxyHandler<Server> {
 			return CraftMagicNumbers.INSTANCE;
 		});
 
+		final PluginManager pluginManager = new PluginManagerMock().newProxy();
+		this.addHandler(Server.class.getMethod("getPluginManager"), (proxy, args) -> {
+			return pluginManager;
+		});
+
 		this.addHandler(
 				Server.class.getMethod("createBlockData", Material.class),
 				(proxy, args) -> {
@@ -62,4 +62,18 @@ public class StringUtilsTests {
 		String expected = "Text with replacement and {key}!";
 		Assert.assertEquals(expected, result);
 	}
+
+	@Test
+	public void testGetPrefixUpperBound() {
+		Assert.assertEquals("abd", StringUtils.getPrefixUpperBound("abc"));
+		Assert.assertEquals("b", StringUtils.getPrefixUpperBound("a"));
+		// Trailing max value characters are carried over to the preceding character:
+		Assert.assertEquals("ac", StringUtils.getPrefixUpperBound("ab\uFFFF"));
+		Assert.assertEquals("b", StringUtils.getPrefixUpperBound("a\uFFFF\uFFFF"));
+		Assert.assertEquals("\uFFFFb", StringUtils.getPrefixUpperBound("\uFFFFa\uFFFF"));
+		// There is no upper bound:
+		Assert.assertNull(StringUtils.getPrefixUpperBound("\uFFFF"));
+		Assert.assertNull(StringUtils.getPrefixUpperBound("\uFFFF\uFFFF"));
+		Assert.assertNull(StringUtils.getPrefixUpperBound(""));
+	}
 }
@@ -0,0 +1,109 @@
+package com.nisovin.shopkeepers.util.data.persistence.bukkit;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.inventory.ItemStack;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nisovin.shopkeepers.util.AbstractItemStackSerializationTest;
+import com.nisovin.shopkeepers.util.TestItemStacks;
+import com.nisovin.shopkeepers.util.data.persistence.InvalidDataFormatException;
+
+public class BinarySerializationTest extends AbstractItemStackSerializationTest<byte @Nullable []> {
+
+	private static final String KEY = "item";
+
+	@Override
+	protected byte @Nullable [] serialize(@Nullable ItemStack itemStack) {
+		BukkitBinaryDataStore dataStore = new BukkitBinaryDataStore();
+		dataStore.set(KEY, itemStack);
+		return dataStore.saveToBytes();
+	}
+
+	@Override
+	protected @Nullable ItemStack deserialize(byte @Nullable [] serialized) {
+		if (serialized == null) return null;
+		BukkitBinaryDataStore dataStore = new BukkitBinaryDataStore();
+		try {
+			dataStore.loadFromBytes(serialized);
+		} catch (InvalidDataFormatException e) {
+			throw new IllegalArgumentException(e);
+		}
+		return (ItemStack) dataStore.get(KEY);
+	}
+
+	private static Map<String, Object> createTestData() {
+		Map<String, Object> shopkeeperData = new LinkedHashMap<>();
+		shopkeeperData.put("id", 1);
+		shopkeeperData.put("uniqueId", "5458ec26-8221-366d-8836-be7a07a5e29b");
+		shopkeeperData.put("name", "Multiline\nText\n\nWith empty lines and trailing\n");
+		shopkeeperData.put("x", -125);
+		shopkeeperData.put("timestamp", Long.MAX_VALUE);
+		shopkeeperData.put("yaw", 12.5D);
+		shopkeeperData.put("open", true);
+		shopkeeperData.put("lore", Arrays.asList("first", "second", "first"));
+		shopkeeperData.put("item", TestItemStacks.createItemStackComplete());
+
+		Map<String, Object> data = new LinkedHashMap<>();
+		data.put("data-version", "4|3953");
+		data.put("1", shopkeeperData);
+		data.put("2", new LinkedHashMap<>(shopkeeperData));
+		return data;
+	}
+
+	@Test
+	public void testDataRoundTrip() throws InvalidDataFormatException {
+		Map<String, Object> data = createTestData();
+		BukkitBinaryDataStore dataStore = new BukkitBinaryDataStore();
+		dataStore.setAll(data);
+
+		BukkitBinaryDataStore loaded = new BukkitBinaryDataStore();
+		loaded.loadFromBytes(dataStore.saveToBytes());
+		Assert.assertEquals(data, loaded.getValues());
+
+		// String-based round trip:
+		loaded.loadFromString(dataStore.saveToString());
+		Assert.assertEquals(data, loaded.getValues());
+	}
+
+	@Test
+	public void testYamlConversion() throws InvalidDataFormatException {
+		BukkitConfigDataStore yamlData = BukkitConfigDataStore.ofNewYamlConfig();
+		yamlData.setAll(createTestData());
+		String yaml = yamlData.saveToString();
+
+		// Yaml -> binary -> Yaml:
+		BukkitConfigDataStore loadedYamlData = BukkitConfigDataStore.ofNewYamlConfig();
+		loadedYamlData.loadFromString(yaml);
+		BukkitBinaryDataStore binaryData = new BukkitBinaryDataStore();
+		binaryData.setAll(loadedYamlData.getValues());
+		BukkitBinaryDataStore loadedBinaryData = new BukkitBinaryDataStore();
+		loadedBinaryData.loadFromBytes(binaryData.saveToBytes());
+
+		BukkitConfigDataStore convertedYamlData = BukkitConfigDataStore.ofNewYamlConfig();
+		convertedYamlData.setAll(loadedBinaryData.getValues());
+		Assert.assertEquals(yaml, convertedYamlData.saveToString());
+	}
+
+	@Test
+	public void testDictionaryDeduplicatesStrings() {
+		BukkitBinaryDataStore dataStore = new BukkitBinaryDataStore();
+		List<String> values = Arrays.asList("some-repeated-value", "some-repeated-value");
+		dataStore.set("values", values);
+		int repeatedSize = dataStore.saveToBytes().length;
+		dataStore.set("values", Arrays.asList("some-repeated-value"));
+		int singleSize = dataStore.saveToBytes().length;
+		// The repeated value is only stored as a short dictionary reference:
+		Assert.assertTrue(repeatedSize - singleSize <= 2);
+	}
+
+	@Test(expected = InvalidDataFormatException.class)
+	public void testInvalidData() throws InvalidDataFormatException {
+		new BukkitBinaryDataStore().loadFromBytes(new byte[] { 'S', 'K', 'B', 'D', 1, 1 });
+	}
+}
@@ -0,0 +1,70 @@
+package com.nisovin.shopkeepers.util.java;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nisovin.shopkeepers.util.bukkit.WorldChunkMap;
+
+public class LongHashMapTests {
+
+	@Test
+	public void testBasicOperations() {
+		LongHashMap<String> map = new LongHashMap<>();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.put(0L, "zero"));
+		Assert.assertNull(map.put(-1L, "minus one"));
+		Assert.assertEquals("zero", map.put(0L, "ZERO"));
+		Assert.assertEquals(2, map.size());
+		Assert.assertEquals("ZERO", map.get(0L));
+		Assert.assertEquals("minus one", map.get(-1L));
+		Assert.assertNull(map.get(1L));
+		Assert.assertEquals("computed", map.computeIfAbsent(1L, key -> "computed"));
+		Assert.assertEquals("computed", map.computeIfAbsent(1L, key -> "other"));
+		Assert.assertEquals("ZERO", map.remove(0L));
+		Assert.assertNull(map.remove(0L));
+		Assert.assertFalse(map.containsKey(0L));
+		Assert.assertEquals(2, map.size());
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.get(-1L));
+	}
+
+	// Compares random operations (including removals that need to shift colliding entries) with
+	// the results of a HashMap:
+	@Test
+	public void testRandomOperations() {
+		Random random = new Random(42L);
+		LongHashMap<Long> map = new LongHashMap<>();
+		Map<Long, Long> expected = new HashMap<>();
+		for (int i = 0; i < 100000; i++) {
+			// Small coordinate range to provoke collisions and repeated keys:
+			long key = WorldChunkMap.getChunkKey(random.nextInt(64) - 32, random.nextInt(64) - 32);
+			if (random.nextInt(3) == 0) {
+				Assert.assertEquals(expected.remove(key), map.remove(key));
+			} else {
+				Long value = random.nextLong();
+				Assert.assertEquals(expected.put(key, value), map.put(key, value));
+			}
+			Assert.assertEquals(expected.size(), map.size());
+		}
+		for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+			Assert.assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+		int[] count = new int[1];
+		map.forEachValue(value -> count[0]++);
+		Assert.assertEquals(expected.size(), count[0]);
+	}
+
+	@Test
+	public void testChunkKeys() {
+		long key = WorldChunkMap.getChunkKey(-5, -7);
+		Assert.assertEquals(-5, WorldChunkMap.getChunkX(key));
+		Assert.assertEquals(-7, WorldChunkMap.getChunkZ(key));
+		Assert.assertNotEquals(key, WorldChunkMap.getChunkKey(-1, -7));
+		Assert.assertNotEquals(key, WorldChunkMap.getChunkKey(-5, 7));
+	}
+}
@@ -0,0 +1,52 @@
+package com.nisovin.shopkeepers.util.timer;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HistogramTests {
+
+	@Test
+	public void testEmpty() {
+		Histogram histogram = new Histogram();
+		Assert.assertEquals(0L, histogram.getCount());
+		Assert.assertEquals(0L, histogram.getPercentileNanos(50));
+		Assert.assertEquals(0L, histogram.getMaxNanos());
+	}
+
+	@Test
+	public void testSmallValuesAreExact() {
+		for (long value = 0; value < 100; value++) {
+			Histogram histogram = new Histogram();
+			histogram.record(value);
+			Assert.assertEquals(value, histogram.getPercentileNanos(50));
+		}
+	}
+
+	// Compares the percentiles with the exact percentiles of the recorded values:
+	@Test
+	public void testPercentilePrecision() {
+		Random random = new Random(42L);
+		Histogram histogram = new Histogram();
+		long[] values = new long[10000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long) Math.exp(random.nextGaussian() * 2 + 12);
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+
+		for (double percentile : new double[] { 1, 50, 95, 99, 100 }) {
+			int rank = (int) Math.ceil(percentile / 100.0D * values.length);
+			long exact = values[rank - 1];
+			long approximate = histogram.getPercentileNanos(percentile);
+			Assert.assertTrue("percentile " + percentile, approximate >= exact);
+			Assert.assertTrue("percentile " + percentile, approximate <= exact * 1.07D);
+		}
+		Assert.assertEquals(values[values.length - 1], histogram.getMaxNanos());
+
+		histogram.reset();
+		Assert.assertEquals(0L, histogram.getCount());
+	}
+}